@@ -0,0 +1,60 @@
+package org.grails.datastore.benchmarks
+
+import groovy.transform.CompileStatic
+import org.grails.datastore.benchmarks.domain.Author
+import org.grails.datastore.benchmarks.domain.Book
+import org.grails.datastore.mapping.core.AbstractSession
+import org.grails.datastore.mapping.simple.SimpleMapDatastore
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+
+/**
+ * Shared benchmark state holding a {@link SimpleMapDatastore} populated with test data and a session bound to it
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@CompileStatic
+@State(Scope.Benchmark)
+class DatastoreState {
+
+    static final int AUTHOR_COUNT = 10
+    static final int BOOKS_PER_AUTHOR = 10
+
+    SimpleMapDatastore datastore
+    AbstractSession session
+    List<Serializable> bookIds = []
+
+    @Setup(Level.Trial)
+    void setup() {
+        datastore = new SimpleMapDatastore(Author, Book)
+        session = (AbstractSession) datastore.connect()
+
+        for (int i = 0; i < AUTHOR_COUNT; i++) {
+            Author author = new Author(name: "Author $i".toString(), age: 30 + i)
+            session.persist(author)
+            for (int j = 0; j < BOOKS_PER_AUTHOR; j++) {
+                Book book = new Book(title: "Book $i-$j".toString(), isbn: "978-0-00-00$i$j", pages: 100 + j, published: new Date(), author: author)
+                session.persist(book)
+            }
+        }
+        session.flush()
+        for (Book book in (List<Book>) session.createQuery(Book).list()) {
+            bookIds.add(book.id)
+        }
+        session.clear()
+    }
+
+    @TearDown(Level.Trial)
+    void tearDown() {
+        session.disconnect()
+        datastore.close()
+    }
+
+    Book newBook(int i) {
+        new Book(title: "New Book $i".toString(), isbn: "978-1-00-00$i", pages: 100 + i, published: new Date())
+    }
+}
@@ -0,0 +1,66 @@
+package org.grails.datastore.benchmarks
+
+import groovy.transform.CompileStatic
+import org.grails.datastore.benchmarks.domain.Book
+import org.grails.datastore.mapping.model.PersistentEntity
+import org.grails.datastore.mapping.reflect.EntityReflector
+import org.grails.datastore.mapping.reflect.FieldEntityAccess
+import org.openjdk.jmh.annotations.*
+
+/**
+ * Benchmarks property access through {@link FieldEntityAccess} and {@link EntityReflector}
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@CompileStatic
+@BenchmarkMode(Mode.Throughput)
+class EntityAccessBenchmark {
+
+    @State(Scope.Thread)
+    static class AccessState {
+        Book book
+        FieldEntityAccess entityAccess
+        EntityReflector reflector
+        int titleIndex
+        int pagesIndex
+        int counter
+
+        @Setup(Level.Trial)
+        void setup(DatastoreState state) {
+            PersistentEntity entity = state.datastore.mappingContext.getPersistentEntity(Book.name)
+            book = new Book(title: "The Stand", isbn: "978-0-385-12168-2", pages: 1153, published: new Date())
+            entityAccess = new FieldEntityAccess(entity, book, state.datastore.mappingContext.conversionService)
+            reflector = entity.reflector
+            titleIndex = entity.persistentProperties.findIndexOf { it.name == 'title' }
+            pagesIndex = entity.persistentProperties.findIndexOf { it.name == 'pages' }
+        }
+    }
+
+    @Benchmark
+    Object getPropertyByName(AccessState state) {
+        state.entityAccess.getProperty("title")
+    }
+
+    @Benchmark
+    Object setPropertyByName(AccessState state) {
+        state.entityAccess.setProperty("pages", ++state.counter)
+        return state.book
+    }
+
+    @Benchmark
+    Object getPropertyByIndex(AccessState state) {
+        state.reflector.getProperty(state.book, state.titleIndex)
+    }
+
+    @Benchmark
+    Object setPropertyByIndex(AccessState state) {
+        state.reflector.setProperty(state.book, state.pagesIndex, ++state.counter)
+        return state.book
+    }
+
+    @Benchmark
+    Object getIdentifier(AccessState state) {
+        state.reflector.getIdentifier(state.book)
+    }
+}
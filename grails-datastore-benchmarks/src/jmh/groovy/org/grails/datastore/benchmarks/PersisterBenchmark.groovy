@@ -0,0 +1,40 @@
+package org.grails.datastore.benchmarks
+
+import groovy.transform.CompileStatic
+import org.grails.datastore.benchmarks.domain.Book
+import org.grails.datastore.mapping.engine.NativeEntryEntityPersister
+import org.openjdk.jmh.annotations.*
+
+/**
+ * Benchmarks hydration of entities from native entries by {@link NativeEntryEntityPersister}
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@CompileStatic
+@BenchmarkMode(Mode.Throughput)
+class PersisterBenchmark {
+
+    @State(Scope.Thread)
+    static class HydrationState {
+        int index
+
+        Serializable nextId(DatastoreState state) {
+            index = (index + 1) % state.bookIds.size()
+            state.bookIds.get(index)
+        }
+    }
+
+    @Benchmark
+    Object hydrateEntity(DatastoreState state, HydrationState hydration) {
+        // clear the session so that every retrieve reads and hydrates the native entry
+        state.session.clear()
+        state.session.retrieve(Book, hydration.nextId(state))
+    }
+
+    @Benchmark
+    Object hydrateAllEntities(DatastoreState state) {
+        state.session.clear()
+        state.session.retrieveAll(Book, state.bookIds)
+    }
+}
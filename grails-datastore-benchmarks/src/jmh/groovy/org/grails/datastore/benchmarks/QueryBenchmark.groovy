@@ -0,0 +1,53 @@
+package org.grails.datastore.benchmarks
+
+import grails.gorm.DetachedCriteria
+import groovy.transform.CompileStatic
+import org.grails.datastore.benchmarks.domain.Book
+import org.grails.datastore.gorm.finders.DynamicFinder
+import org.grails.datastore.gorm.finders.FindAllByFinder
+import org.openjdk.jmh.annotations.*
+
+/**
+ * Benchmarks parsing of dynamic finders and building of {@link DetachedCriteria} queries
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@CompileStatic
+@BenchmarkMode(Mode.Throughput)
+class QueryBenchmark {
+
+    @State(Scope.Benchmark)
+    static class FinderState {
+        DynamicFinder finder
+        Object[] arguments = ["Book 1-1", 50] as Object[]
+
+        @Setup(Level.Trial)
+        void setup(DatastoreState state) {
+            finder = new FindAllByFinder(state.datastore)
+        }
+    }
+
+    @Benchmark
+    Object parseDynamicFinder(FinderState state) {
+        state.finder.createFinderInvocation(Book, "findAllByTitleAndPagesGreaterThan", null, state.arguments)
+    }
+
+    @Benchmark
+    Object buildDetachedCriteria() {
+        new DetachedCriteria<Book>(Book)
+                .eq("title", "Book 1-1")
+                .gt("pages", 50)
+                .like("isbn", "978%")
+                .order("title")
+                .max(10)
+    }
+
+    @Benchmark
+    Object executeDetachedCriteria(DatastoreState state) {
+        new DetachedCriteria<Book>(Book)
+                .eq("title", "Book 1-1")
+                .gt("pages", 50)
+                .list()
+    }
+}
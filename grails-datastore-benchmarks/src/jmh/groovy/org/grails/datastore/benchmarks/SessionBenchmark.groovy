@@ -0,0 +1,86 @@
+package org.grails.datastore.benchmarks
+
+import groovy.transform.CompileStatic
+import org.grails.datastore.benchmarks.domain.Author
+import org.grails.datastore.benchmarks.domain.Book
+import org.grails.datastore.mapping.core.AbstractSession
+import org.grails.datastore.mapping.simple.SimpleMapDatastore
+import org.openjdk.jmh.annotations.*
+
+/**
+ * Benchmarks for {@link AbstractSession#persist(java.lang.Object)}, {@link AbstractSession#flush()} and retrieval
+ * through the first level cache
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@CompileStatic
+@BenchmarkMode(Mode.Throughput)
+class SessionBenchmark {
+
+    static final int BATCH_SIZE = 100
+
+    @State(Scope.Thread)
+    static class WriteState {
+        SimpleMapDatastore datastore
+        AbstractSession session
+        List<Book> books = []
+
+        @Setup(Level.Trial)
+        void setup() {
+            datastore = new SimpleMapDatastore(Author, Book)
+            session = (AbstractSession) datastore.connect()
+        }
+
+        @Setup(Level.Invocation)
+        void createBooks() {
+            books.clear()
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                books.add(new Book(title: "Book $i".toString(), isbn: "978-1-00-00$i".toString(), pages: 100 + i, published: new Date()))
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        void clearData() {
+            session.clear()
+            datastore.clearData()
+        }
+
+        @TearDown(Level.Trial)
+        void tearDown() {
+            session.disconnect()
+            datastore.close()
+        }
+    }
+
+    @State(Scope.Thread)
+    static class CachedState {
+        int index
+
+        @Setup(Level.Trial)
+        void setup(DatastoreState state) {
+            // populate the first level cache
+            state.session.retrieveAll(Book, state.bookIds)
+        }
+
+        Serializable nextId(DatastoreState state) {
+            index = (index + 1) % state.bookIds.size()
+            state.bookIds.get(index)
+        }
+    }
+
+    @Benchmark
+    Object persistAndFlush(WriteState state) {
+        AbstractSession session = state.session
+        for (Book book in state.books) {
+            session.persist(book)
+        }
+        session.flush()
+        return session
+    }
+
+    @Benchmark
+    Object retrieveFromFirstLevelCache(DatastoreState state, CachedState cached) {
+        state.session.retrieve(Book, cached.nextId(state))
+    }
+}
@@ -0,0 +1,58 @@
+package org.grails.datastore.benchmarks
+
+import grails.gorm.validation.PersistentEntityValidator
+import groovy.transform.CompileStatic
+import org.grails.datastore.benchmarks.domain.Author
+import org.grails.datastore.benchmarks.domain.Book
+import org.grails.datastore.gorm.validation.constraints.eval.DefaultConstraintEvaluator
+import org.grails.datastore.gorm.validation.constraints.registry.DefaultConstraintRegistry
+import org.grails.datastore.mapping.model.MappingContext
+import org.grails.datastore.mapping.model.PersistentEntity
+import org.grails.datastore.mapping.validation.ValidationErrors
+import org.openjdk.jmh.annotations.*
+import org.springframework.context.support.StaticMessageSource
+
+/**
+ * Benchmarks {@link PersistentEntityValidator#validate(java.lang.Object, org.springframework.validation.Errors, boolean)}
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@CompileStatic
+@BenchmarkMode(Mode.Throughput)
+class ValidationBenchmark {
+
+    @State(Scope.Benchmark)
+    static class ValidatorState {
+        PersistentEntityValidator validator
+        Book valid
+        Book invalid
+
+        @Setup(Level.Trial)
+        void setup(DatastoreState state) {
+            MappingContext mappingContext = state.datastore.mappingContext
+            PersistentEntity entity = mappingContext.getPersistentEntity(Book.name)
+            StaticMessageSource messageSource = new StaticMessageSource()
+            DefaultConstraintEvaluator evaluator = new DefaultConstraintEvaluator(new DefaultConstraintRegistry(messageSource), mappingContext, Collections.emptyMap())
+            validator = new PersistentEntityValidator(entity, messageSource, evaluator)
+
+            Author author = new Author(name: "Stephen King", age: 70)
+            valid = new Book(title: "The Stand", isbn: "978-0-385-12168-2", pages: 1153, published: new Date(), author: author)
+            invalid = new Book(title: "", isbn: "not an isbn", pages: 0, author: author)
+        }
+    }
+
+    @Benchmark
+    Object validateValidEntity(ValidatorState state) {
+        ValidationErrors errors = new ValidationErrors(state.valid)
+        state.validator.validate(state.valid, errors, true)
+        return errors
+    }
+
+    @Benchmark
+    Object validateInvalidEntity(ValidatorState state) {
+        ValidationErrors errors = new ValidationErrors(state.invalid)
+        state.validator.validate(state.invalid, errors, true)
+        return errors
+    }
+}
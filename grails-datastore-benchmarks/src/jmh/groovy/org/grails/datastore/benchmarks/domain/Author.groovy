@@ -0,0 +1,16 @@
+package org.grails.datastore.benchmarks.domain
+
+import grails.gorm.annotation.Entity
+
+@Entity
+class Author {
+    String name
+    int age
+
+    static hasMany = [books: Book]
+
+    static constraints = {
+        name blank: false, size: 2..100
+        age min: 0
+    }
+}
@@ -0,0 +1,20 @@
+package org.grails.datastore.benchmarks.domain
+
+import grails.gorm.annotation.Entity
+
+@Entity
+class Book {
+    String title
+    String isbn
+    int pages
+    Date published
+
+    static belongsTo = [author: Author]
+
+    static constraints = {
+        title blank: false, maxSize: 255
+        isbn nullable: true, matches: /[0-9\-]+/
+        pages min: 1
+        published nullable: true
+    }
+}
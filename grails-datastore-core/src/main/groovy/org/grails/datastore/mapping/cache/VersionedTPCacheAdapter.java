@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.cache;
+
+import org.grails.datastore.mapping.cache.exception.CacheException;
+
+import java.io.Serializable;
+
+/**
+ * A {@link TPCacheAdapter} that can be kept consistent with the datastore: entries carry the version of the entity
+ * they represent, so that a stale entry never replaces a newer one, and entries can be evicted when the entity is
+ * deleted or modified without going through the persister.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+public interface VersionedTPCacheAdapter<T> extends TPCacheAdapter<T> {
+
+    /**
+     * Stores an entry that was written by an insert or an update, unless an entry with a newer version is already
+     * cached. Entries loaded before the write can no longer be cached with {@link #cacheLoadedEntry(Serializable, Object, Object, long)}
+     *
+     * @param key the entry key
+     * @param entry the entry
+     * @param version the version of the entry or null if the entity is not versioned
+     * @throws CacheException runtime exception indicating any cache-related problems
+     */
+    void cacheEntry(Serializable key, T entry, Object version) throws CacheException;
+
+    /**
+     * Returns a stamp for the given key, which has to be obtained before the entry is loaded from the datastore and
+     * passed to {@link #cacheLoadedEntry(Serializable, Object, Object, long)} once it was loaded
+     *
+     * @param key the entry key
+     * @return the stamp
+     */
+    long getLoadStamp(Serializable key);
+
+    /**
+     * Stores an entry that was loaded from the datastore, unless the key was written or evicted since the given stamp
+     * was obtained or an entry with a newer version is already cached
+     *
+     * @param key the entry key
+     * @param entry the entry
+     * @param version the version of the entry or null if the entity is not versioned
+     * @param stamp the stamp obtained with {@link #getLoadStamp(Serializable)} before the entry was loaded
+     * @throws CacheException runtime exception indicating any cache-related problems
+     */
+    void cacheLoadedEntry(Serializable key, T entry, Object version, long stamp) throws CacheException;
+
+    /**
+     * Removes the entry for the specified key
+     *
+     * @param key the entry key
+     * @throws CacheException runtime exception indicating any cache-related problems
+     */
+    void evictEntry(Serializable key) throws CacheException;
+
+    /**
+     * Removes all entries
+     *
+     * @throws CacheException runtime exception indicating any cache-related problems
+     */
+    void evictAll() throws CacheException;
+}
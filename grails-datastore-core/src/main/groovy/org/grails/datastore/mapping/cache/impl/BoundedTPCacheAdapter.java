@@ -0,0 +1,531 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.cache.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.EntryWeigher;
+import com.googlecode.concurrentlinkedhashmap.EvictionListener;
+import org.grails.datastore.mapping.cache.VersionedTPCacheAdapter;
+import org.grails.datastore.mapping.cache.exception.CacheException;
+import org.springframework.core.ConfigurableObjectInputStream;
+
+/**
+ * An in-process {@link org.grails.datastore.mapping.cache.TPCacheAdapter} with bounded memory. Entries are evicted in
+ * least recently used order once either the maximum number of entries or the maximum total weight is exceeded, and
+ * expire a configurable time after they were written or last read.
+ *
+ * Entries can optionally be stored off-heap: they are serialized into direct buffers and every lookup returns a new
+ * copy, which keeps large caches out of the garbage collected heap and isolates cached entries from modifications.
+ * Each entry is copied into its own direct buffer, whose native memory is only released once the garbage collector
+ * reclaims the buffer after the entry was evicted or replaced. Applications that churn through many off-heap entries
+ * should therefore size {@code -XX:MaxDirectMemorySize} for the maximum weight of the cache plus the entries awaiting
+ * collection.
+ * Without off-heap storage the entries themselves are cached, as with {@link HashMapTPCacheAdapter}.
+ *
+ * Entries are versioned: an entry is never replaced by one with an older version. Independently of versions, every
+ * write and eviction of a key is stamped with a sequence number, and an entry that was loaded from the datastore is
+ * only cached if the key was neither written nor evicted since the stamp obtained before loading it, so a reader that
+ * loaded an entity before a concurrent update cannot cache the outdated state. The stamps of the most recently written
+ * keys are retained up to the maximum number of entries; once a stamp is discarded, or after {@link #evictAll()},
+ * loads that started before it are refused for every key.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class BoundedTPCacheAdapter<T> implements VersionedTPCacheAdapter<T> {
+
+    /**
+     * The default maximum number of entries
+     */
+    public static final long DEFAULT_MAX_SIZE = 10000;
+
+    private final ConcurrentLinkedHashMap<Serializable, CachedEntry<T>> entries;
+    private final TPCacheStatistics statistics = new TPCacheStatistics();
+    private final long maxSize;
+    private final long maxWeight;
+    private final long expireAfterWrite;
+    private final long expireAfterAccess;
+    private final Weigher<? super T> weigher;
+    private final Serializer<T> serializer;
+    private final AtomicLong writeSequence = new AtomicLong();
+    private final AtomicLong invalidatedUpTo = new AtomicLong();
+    private final ConcurrentLinkedHashMap<Serializable, Long> writeStamps;
+
+    protected BoundedTPCacheAdapter(Builder<T> builder) {
+        this.maxSize = builder.maxSize;
+        this.maxWeight = builder.maxWeight;
+        this.expireAfterWrite = builder.expireAfterWrite;
+        this.expireAfterAccess = builder.expireAfterAccess;
+        this.weigher = builder.weigher;
+        this.serializer = builder.offHeap ? (builder.serializer != null ? builder.serializer : new JavaSerializer<T>()) : null;
+        if (maxSize < 1 && maxWeight < 1) {
+            throw new IllegalArgumentException("Either the maximum size or the maximum weight of a cache adapter must be at least 1");
+        }
+
+        final boolean weighted = maxWeight > 0;
+        this.entries = new ConcurrentLinkedHashMap.Builder<Serializable, CachedEntry<T>>()
+                .maximumWeightedCapacity(weighted ? maxWeight : maxSize)
+                .weigher(new EntryWeigher<Serializable, CachedEntry<T>>() {
+                    @Override
+                    public int weightOf(Serializable key, CachedEntry<T> value) {
+                        return weighted ? value.weight : 1;
+                    }
+                })
+                .listener(new EvictionListener<Serializable, CachedEntry<T>>() {
+                    @Override
+                    public void onEviction(Serializable key, CachedEntry<T> value) {
+                        statistics.recordEviction();
+                    }
+                })
+                .build();
+        this.writeStamps = new ConcurrentLinkedHashMap.Builder<Serializable, Long>()
+                .maximumWeightedCapacity(maxSize > 0 ? maxSize : DEFAULT_MAX_SIZE)
+                .listener(new EvictionListener<Serializable, Long>() {
+                    @Override
+                    public void onEviction(Serializable key, Long stamp) {
+                        // without the stamp of the key, any load that started before it has to be refused
+                        invalidateUpTo(stamp);
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @return A builder for a cache adapter
+     */
+    public static <T> Builder<T> builder() {
+        return new Builder<T>();
+    }
+
+    @Override
+    public void cacheEntry(Serializable key, T entry) throws CacheException {
+        cacheEntry(key, entry, null);
+    }
+
+    @Override
+    public void cacheEntry(Serializable key, T entry, Object version) throws CacheException {
+        if (key == null || entry == null) {
+            return;
+        }
+        stampWrite(key);
+        if (store(key, createCachedEntry(entry, version))) {
+            statistics.recordPut();
+            trimToMaxSize();
+        }
+    }
+
+    @Override
+    public long getLoadStamp(Serializable key) {
+        return writeSequence.get();
+    }
+
+    @Override
+    public void cacheLoadedEntry(Serializable key, T entry, Object version, long stamp) throws CacheException {
+        if (key == null || entry == null) {
+            return;
+        }
+        if (isWrittenSince(key, stamp)) {
+            statistics.recordStaleWrite();
+            return;
+        }
+
+        CachedEntry<T> cachedEntry = createCachedEntry(entry, version);
+        if (!store(key, cachedEntry)) {
+            return;
+        }
+        // a write stamps the key before it replaces the entry, so a write that raced with the store is detected here
+        if (isWrittenSince(key, stamp)) {
+            entries.remove(key, cachedEntry);
+            statistics.recordStaleWrite();
+            return;
+        }
+        statistics.recordPut();
+        trimToMaxSize();
+    }
+
+    @Override
+    public T getCachedEntry(Serializable key) throws CacheException {
+        if (key == null) {
+            return null;
+        }
+
+        CachedEntry<T> cachedEntry = entries.get(key);
+        if (cachedEntry == null) {
+            statistics.recordMiss();
+            return null;
+        }
+
+        long now = currentTimeMillis();
+        if (isExpired(cachedEntry, now)) {
+            if (entries.remove(key, cachedEntry)) {
+                statistics.recordExpiration();
+            }
+            statistics.recordMiss();
+            return null;
+        }
+
+        cachedEntry.accessed = now;
+        statistics.recordHit();
+        return serializer != null ? serializer.deserialize(cachedEntry.read()) : cachedEntry.value;
+    }
+
+    @Override
+    public void evictEntry(Serializable key) throws CacheException {
+        if (key == null) {
+            return;
+        }
+        stampWrite(key);
+        CachedEntry<T> evicted = entries.remove(key);
+        if (evicted != null) {
+            statistics.recordInvalidation();
+        }
+    }
+
+    @Override
+    public void evictAll() throws CacheException {
+        invalidateUpTo(writeSequence.incrementAndGet());
+        entries.clear();
+        statistics.recordInvalidation();
+    }
+
+    /**
+     * @return The number of cached entries, including expired entries that have not yet been discarded
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The total weight of the cached entries if a maximum weight is configured, otherwise the number of entries
+     */
+    public long getWeightedSize() {
+        return entries.weightedSize();
+    }
+
+    /**
+     * @return The maximum number of entries or -1 if only the weight is bounded
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The maximum total weight of the entries or -1 if only the number of entries is bounded
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @return Whether entries are serialized and stored outside of the heap
+     */
+    public boolean isOffHeap() {
+        return serializer != null;
+    }
+
+    /**
+     * @return The statistics of this cache
+     */
+    public TPCacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return The current time in milliseconds
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private CachedEntry<T> createCachedEntry(T entry, Object version) {
+        long now = currentTimeMillis();
+        if (serializer != null) {
+            byte[] bytes = serializer.serialize(entry);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+            buffer.put(bytes);
+            buffer.flip();
+            int weight = weigher != null ? weigher.weigh(entry) : bytes.length;
+            return new CachedEntry<T>(null, buffer, version, Math.max(1, weight), now);
+        }
+        int weight = weigher != null ? weigher.weigh(entry) : 1;
+        return new CachedEntry<T>(entry, null, version, Math.max(1, weight), now);
+    }
+
+    private boolean isExpired(CachedEntry<T> cachedEntry, long now) {
+        if (expireAfterWrite > 0 && now - cachedEntry.created >= expireAfterWrite) {
+            return true;
+        }
+        return expireAfterAccess > 0 && now - cachedEntry.accessed >= expireAfterAccess;
+    }
+
+    /**
+     * Stores the given entry unless an entry with a newer version is cached
+     *
+     * @return Whether the entry was stored
+     */
+    private boolean store(Serializable key, CachedEntry<T> cachedEntry) {
+        while (true) {
+            CachedEntry<T> existing = entries.putIfAbsent(key, cachedEntry);
+            if (existing == null) {
+                return true;
+            }
+            if (isNewer(existing.version, cachedEntry.version)) {
+                statistics.recordStaleWrite();
+                return false;
+            }
+            if (entries.replace(key, existing, cachedEntry)) {
+                return true;
+            }
+        }
+    }
+
+    private void stampWrite(Serializable key) {
+        Long stamp = writeSequence.incrementAndGet();
+        while (true) {
+            Long existing = writeStamps.putIfAbsent(key, stamp);
+            if (existing == null || existing >= stamp || writeStamps.replace(key, existing, stamp)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Whether the key was written or evicted after the given stamp was obtained, or that cannot be ruled out
+     */
+    private boolean isWrittenSince(Serializable key, long stamp) {
+        if (invalidatedUpTo.get() > stamp) {
+            return true;
+        }
+        Long written = writeStamps.get(key);
+        return written != null && written > stamp;
+    }
+
+    private void invalidateUpTo(long stamp) {
+        long current = invalidatedUpTo.get();
+        while (current < stamp && !invalidatedUpTo.compareAndSet(current, stamp)) {
+            current = invalidatedUpTo.get();
+        }
+    }
+
+    private boolean isNewer(Object cachedVersion, Object version) {
+        if (cachedVersion == null || version == null || !(cachedVersion instanceof Comparable)) {
+            return false;
+        }
+        try {
+            return ((Comparable) cachedVersion).compareTo(version) > 0;
+        } catch (ClassCastException e) {
+            return false;
+        }
+    }
+
+    private void trimToMaxSize() {
+        // the map itself is bounded by weight when a maximum weight is configured, hence the size is enforced separately
+        if (maxWeight > 0 && maxSize > 0) {
+            long excess = entries.size() - maxSize;
+            if (excess > 0) {
+                for (Serializable key : entries.ascendingKeySetWithLimit((int) excess)) {
+                    if (entries.remove(key) != null) {
+                        statistics.recordEviction();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the weight of an entry, for example its approximate size in bytes
+     */
+    public interface Weigher<T> {
+        /**
+         * @param entry The entry
+         * @return The weight, at least 1
+         */
+        int weigh(T entry);
+    }
+
+    /**
+     * Converts entries to and from bytes for off-heap storage
+     */
+    public interface Serializer<T> {
+        byte[] serialize(T entry) throws CacheException;
+
+        T deserialize(byte[] bytes) throws CacheException;
+    }
+
+    /**
+     * A {@link Serializer} that uses Java serialization, hence requires the entries to be {@link Serializable}
+     */
+    public static class JavaSerializer<T> implements Serializer<T> {
+        private final ClassLoader classLoader;
+
+        public JavaSerializer() {
+            this(JavaSerializer.class.getClassLoader());
+        }
+
+        public JavaSerializer(ClassLoader classLoader) {
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        public byte[] serialize(T entry) throws CacheException {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+                ObjectOutputStream out = new ObjectOutputStream(bytes);
+                try {
+                    out.writeObject(entry);
+                } finally {
+                    out.close();
+                }
+                return bytes.toByteArray();
+            } catch (IOException e) {
+                throw new CacheException("Cannot serialize cache entry: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public T deserialize(byte[] bytes) throws CacheException {
+            try {
+                ConfigurableObjectInputStream in = new ConfigurableObjectInputStream(new ByteArrayInputStream(bytes), classLoader);
+                try {
+                    return (T) in.readObject();
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                throw new CacheException("Cannot deserialize cache entry: " + e.getMessage(), e);
+            } catch (ClassNotFoundException e) {
+                throw new CacheException("Cannot deserialize cache entry: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Builds a {@link BoundedTPCacheAdapter}
+     */
+    public static class Builder<T> {
+        private long maxSize = DEFAULT_MAX_SIZE;
+        private long maxWeight = -1;
+        private long expireAfterWrite;
+        private long expireAfterAccess;
+        private Weigher<? super T> weigher;
+        private boolean offHeap;
+        private Serializer<T> serializer;
+
+        /**
+         * @param maxSize The maximum number of entries or -1 to only bound the weight
+         * @return This builder
+         */
+        public Builder<T> maxSize(long maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * @param maxWeight The maximum total weight of the entries. Off-heap entries weigh their size in bytes unless a weigher is specified
+         * @return This builder
+         */
+        public Builder<T> maxWeight(long maxWeight) {
+            this.maxWeight = maxWeight;
+            return this;
+        }
+
+        /**
+         * @param weigher The weigher used to compute the weight of an entry
+         * @return This builder
+         */
+        public Builder<T> weigher(Weigher<? super T> weigher) {
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * @param expireAfterWrite The time in milliseconds after which an entry expires once written or 0 for no expiry
+         * @return This builder
+         */
+        public Builder<T> expireAfterWrite(long expireAfterWrite) {
+            this.expireAfterWrite = expireAfterWrite;
+            return this;
+        }
+
+        /**
+         * @param expireAfterAccess The time in milliseconds after which an entry expires once last read or written or 0 for no expiry
+         * @return This builder
+         */
+        public Builder<T> expireAfterAccess(long expireAfterAccess) {
+            this.expireAfterAccess = expireAfterAccess;
+            return this;
+        }
+
+        /**
+         * @param offHeap Whether entries are serialized and stored outside of the heap. The direct buffers holding evicted entries are freed by the garbage collector
+         * @return This builder
+         */
+        public Builder<T> offHeap(boolean offHeap) {
+            this.offHeap = offHeap;
+            return this;
+        }
+
+        /**
+         * @param serializer The serializer for off-heap entries. Defaults to Java serialization
+         * @return This builder
+         */
+        public Builder<T> serializer(Serializer<T> serializer) {
+            this.serializer = serializer;
+            return this;
+        }
+
+        /**
+         * @return The cache adapter
+         */
+        public BoundedTPCacheAdapter<T> build() {
+            return new BoundedTPCacheAdapter<T>(this);
+        }
+    }
+
+    private static final class CachedEntry<T> {
+        private final T value;
+        private final ByteBuffer buffer;
+        private final Object version;
+        private final int weight;
+        private final long created;
+        private volatile long accessed;
+
+        private CachedEntry(T value, ByteBuffer buffer, Object version, int weight, long created) {
+            this.value = value;
+            this.buffer = buffer;
+            this.version = version;
+            this.weight = weight;
+            this.created = created;
+            this.accessed = created;
+        }
+
+        private byte[] read() {
+            ByteBuffer source = buffer.duplicate();
+            byte[] bytes = new byte[source.remaining()];
+            source.get(bytes);
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.cache.impl;
+
+import org.grails.datastore.mapping.cache.TPCacheAdapter;
+import org.grails.datastore.mapping.model.PersistentEntity;
+
+/**
+ * A {@link org.grails.datastore.mapping.cache.TPCacheAdapterRepository} that creates a {@link BoundedTPCacheAdapter}
+ * for each entity on first use. Adapters registered explicitly, for example with different limits for a particular
+ * entity, take precedence.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+public class BoundedTPCacheAdapterRepository<T> extends TPCacheAdapterRepositoryImpl<T> {
+
+    private final BoundedTPCacheAdapter.Builder<T> defaults;
+
+    public BoundedTPCacheAdapterRepository() {
+        this(BoundedTPCacheAdapter.<T>builder());
+    }
+
+    /**
+     * @param defaults The builder used to create the adapter of an entity that has no adapter registered
+     */
+    public BoundedTPCacheAdapterRepository(BoundedTPCacheAdapter.Builder<T> defaults) {
+        this.defaults = defaults;
+    }
+
+    @Override
+    public TPCacheAdapter<T> getTPCacheAdapter(PersistentEntity entity) {
+        TPCacheAdapter<T> adapter = super.getTPCacheAdapter(entity);
+        if (adapter == null && entity != null) {
+            synchronized (this) {
+                adapter = super.getTPCacheAdapter(entity);
+                if (adapter == null) {
+                    adapter = defaults.build();
+                    setTPCacheAdapter(entity, adapter);
+                }
+            }
+        }
+        return adapter;
+    }
+}
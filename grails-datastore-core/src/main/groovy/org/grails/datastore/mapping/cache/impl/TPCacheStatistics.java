@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.cache.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit, miss, eviction and invalidation counters for a {@link BoundedTPCacheAdapter}
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+public class TPCacheStatistics {
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong puts = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong staleWrites = new AtomicLong();
+
+    /**
+     * @return The number of lookups that found a cached entry
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of lookups that did not find a cached entry, including expired entries
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of entries stored
+     */
+    public long getPutCount() {
+        return puts.get();
+    }
+
+    /**
+     * @return The number of entries evicted due to size or weight limits
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return The number of entries discarded because they expired
+     */
+    public long getExpirationCount() {
+        return expirations.get();
+    }
+
+    /**
+     * @return The number of entries removed because the entity was deleted or modified outside of the persister
+     */
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    /**
+     * @return The number of entries that were not stored because a newer version was already cached
+     */
+    public long getStaleWriteCount() {
+        return staleWrites.get();
+    }
+
+    /**
+     * @return The ratio of hits to total lookups or 0 if there were no lookups
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0d : (double) h / total;
+    }
+
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    public void recordPut() {
+        puts.incrementAndGet();
+    }
+
+    public void recordEviction() {
+        evictions.incrementAndGet();
+    }
+
+    public void recordExpiration() {
+        expirations.incrementAndGet();
+    }
+
+    public void recordInvalidation() {
+        invalidations.incrementAndGet();
+    }
+
+    public void recordStaleWrite() {
+        staleWrites.incrementAndGet();
+    }
+
+    /**
+     * Resets all counters
+     */
+    public void reset() {
+        hits.set(0);
+        misses.set(0);
+        puts.set(0);
+        evictions.set(0);
+        expirations.set(0);
+        invalidations.set(0);
+        staleWrites.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "TPCacheStatistics{hits=" + hits + ", misses=" + misses + ", puts=" + puts + ", evictions=" + evictions +
+                ", expirations=" + expirations + ", invalidations=" + invalidations + ", staleWrites=" + staleWrites + '}';
+    }
+}
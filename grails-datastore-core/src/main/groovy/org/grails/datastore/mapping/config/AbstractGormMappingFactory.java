@@ -21,6 +21,7 @@ import java.beans.PropertyDescriptor;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.grails.datastore.mapping.config.groovy.DefaultMappingConfigurationBuilder;
 import org.grails.datastore.mapping.config.groovy.MappingConfigurationBuilder;
@@ -37,12 +38,15 @@ import org.springframework.beans.BeanUtils;
 @SuppressWarnings({"rawtypes", "unchecked"})
 public abstract class AbstractGormMappingFactory<R extends Entity, T extends Property> extends MappingFactory<R, T> {
 
-    protected Map<PersistentEntity, Map<String, T>> entityToPropertyMap = new HashMap<PersistentEntity, Map<String, T>>();
-    protected Map<PersistentEntity, R> entityToMapping = new HashMap<PersistentEntity, R>();
+    protected Map<PersistentEntity, Map<String, T>> entityToPropertyMap = new ConcurrentHashMap<PersistentEntity, Map<String, T>>();
+    protected Map<PersistentEntity, R> entityToMapping = new ConcurrentHashMap<PersistentEntity, R>();
+    private final Map<PersistentEntity, R> evaluatingMappings = new HashMap<PersistentEntity, R>();
+    private final Object mappingLock = new Object();
     private Closure defaultMapping;
     private Object contextObject;
     protected Closure defaultConstraints;
     protected boolean versionByDefault = true;
+    protected MappingSnapshotCache mappingSnapshotCache;
 
     /**
      * @param contextObject Context object to be passed to mapping blocks
@@ -55,6 +59,38 @@ public abstract class AbstractGormMappingFactory<R extends Entity, T extends Pro
         this.defaultConstraints = defaultConstraints;
     }
 
+    /**
+     * Sets the cache used to load the mapped forms of entities evaluated by a previous start
+     *
+     * @param mappingSnapshotCache The mapping snapshot cache
+     */
+    public void setMappingSnapshotCache(MappingSnapshotCache mappingSnapshotCache) {
+        if(mappingSnapshotCache != null) {
+            mappingSnapshotCache.allowTypes(getMappedFormValueTypes());
+        }
+        this.mappingSnapshotCache = mappingSnapshotCache;
+    }
+
+    /**
+     * @return The types referenced by the mapped forms of this factory that are neither mapped forms, simple values nor JDK collections
+     */
+    protected Class[] getMappedFormValueTypes() {
+        return new Class[0];
+    }
+
+    public MappingSnapshotCache getMappingSnapshotCache() {
+        return mappingSnapshotCache;
+    }
+
+    /**
+     * Writes the mapped forms evaluated so far to the mapping snapshot, if one is configured
+     */
+    public void saveMappingSnapshot() {
+        if(mappingSnapshotCache != null) {
+            mappingSnapshotCache.save();
+        }
+    }
+
     /**
      * Whether the version entities using optimistic locking by default
      *
@@ -64,14 +100,54 @@ public abstract class AbstractGormMappingFactory<R extends Entity, T extends Pro
         this.versionByDefault = versionByDefault;
     }
 
+    /**
+     * Creates the mapped form of the given entity. Each entity is evaluated once and its mapped form is only published
+     * once fully evaluated, so that connection sources that are created concurrently from the same mapping context share
+     * the same mapped form instead of evaluating their own
+     *
+     * @param entity The entity
+     * @return The mapped form
+     */
     @Override
     public R createMappedForm(PersistentEntity entity) {
-        if(entityToMapping.containsKey(entity)) {
-            return entityToMapping.get(entity);
+        R mappedForm = entityToMapping.get(entity);
+        if(mappedForm != null) {
+            return mappedForm;
         }
-        else {
-            R family = BeanUtils.instantiate(getEntityMappedFormType());
-            entityToMapping.put(entity, family);
+        synchronized (mappingLock) {
+            mappedForm = entityToMapping.get(entity);
+            if(mappedForm == null) {
+                // the mapping block of an entity can refer back to the entity while it is evaluated
+                mappedForm = evaluatingMappings.get(entity);
+            }
+            if(mappedForm != null) {
+                return mappedForm;
+            }
+            return evaluateMappedForm(entity);
+        }
+    }
+
+    private R evaluateMappedForm(PersistentEntity entity) {
+        List<Object> values = ClassPropertyFetcher.getStaticPropertyValuesFromInheritanceHierarchy(entity.getJavaClass(),GormProperties.MAPPING, Object.class);
+        List<Closure> constraintValues = ClassPropertyFetcher.getStaticPropertyValuesFromInheritanceHierarchy(entity.getJavaClass(),GormProperties.CONSTRAINTS, Closure.class);
+        String snapshotKey = null;
+        long checksum = MappingSnapshotCache.UNCACHEABLE;
+        // the mapping can read anything from a context object that isn't a simple value, so it can't be cached
+        if(mappingSnapshotCache != null && MappingSnapshotCache.isSimpleValue(contextObject)) {
+            snapshotKey = getEntityMappedFormType().getName() + ':' + entity.getName();
+            checksum = MappingSnapshotCache.checksum(entity.getJavaClass(), getClass(), versionByDefault, contextObject, defaultMapping, defaultConstraints, values, constraintValues);
+            MappingSnapshotCache.MappedForms snapshot = mappingSnapshotCache.get(snapshotKey, checksum);
+            if(snapshot != null) {
+                R family = (R) snapshot.getEntity();
+                entityToPropertyMap.put(entity, (Map<String, T>) snapshot.getProperties());
+                entityToMapping.put(entity, family);
+                return family;
+            }
+        }
+
+        R family = BeanUtils.instantiate(getEntityMappedFormType());
+        evaluatingMappings.put(entity, family);
+        try {
             MappingConfigurationBuilder builder = createConfigurationBuilder(entity, family);
 
             if (defaultMapping != null) {
@@ -80,7 +156,6 @@ public abstract class AbstractGormMappingFactory<R extends Entity, T extends Pro
             if (defaultConstraints != null) {
                 evaluateWithContext(builder, defaultConstraints);
             }
-            List<Object> values = ClassPropertyFetcher.getStaticPropertyValuesFromInheritanceHierarchy(entity.getJavaClass(),GormProperties.MAPPING, Object.class);
             for (Object value : values) {
                 if(value instanceof MappingDefinition) {
                     MappingDefinition definition = (MappingDefinition) value;
@@ -90,15 +165,19 @@ public abstract class AbstractGormMappingFactory<R extends Entity, T extends Pro
                     evaluateWithContext(builder, (Closure) value);
                 }
             }
-            List<Closure> constraintValues = ClassPropertyFetcher.getStaticPropertyValuesFromInheritanceHierarchy(entity.getJavaClass(),GormProperties.CONSTRAINTS, Closure.class);
             for (Closure value : constraintValues) {
                 evaluateWithContext(builder, value);
             }
             Map properties = builder.getProperties();
 
-
             entityToPropertyMap.put(entity, properties);
+            entityToMapping.put(entity, family);
+            if(mappingSnapshotCache != null) {
+                mappingSnapshotCache.put(snapshotKey, checksum, new MappingSnapshotCache.MappedForms(family, properties));
+            }
             return family;
+        } finally {
+            evaluatingMappings.remove(entity);
         }
     }
 
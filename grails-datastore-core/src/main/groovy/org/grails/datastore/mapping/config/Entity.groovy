@@ -29,7 +29,7 @@ import org.grails.datastore.mapping.model.config.GormProperties
  */
 @CompileStatic
 @Builder(builderStrategy = SimpleStrategy, prefix = '')
-class Entity<P extends Property> {
+class Entity<P extends Property> implements Serializable {
 
     /**
      * @deprecated Use {@link ConnectionSource#DEFAULT} instead
@@ -71,6 +71,11 @@ class Entity<P extends Property> {
      */
     boolean version = true
 
+    /**
+     * @return The number of proxies of this entity to initialize at once when one of them is accessed
+     */
+    Integer batchSize
+
     /**
      * @return The property configurations
      */
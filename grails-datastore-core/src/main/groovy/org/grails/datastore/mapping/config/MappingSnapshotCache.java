@@ -0,0 +1,414 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.config;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.ConfigurableObjectInputStream;
+
+/**
+ * A cache of the mapped forms evaluated from the static mapping and constraints blocks of entities that is written to
+ * a file, allowing later starts of an identical application to skip evaluating the blocks.
+ *
+ * An entry is only used when the checksum of the bytecode of the entity, its superclasses, their nested classes such as
+ * the closures of the mapping and constraints blocks and the global mapping configuration matches the checksum recorded
+ * when the entry was written. Entities whose bytecode can't be read, for example classes compiled in memory, or whose
+ * mapped forms are not serializable are never cached.
+ *
+ * Only mapped forms, simple values, JDK collections and the types registered with {@link #allowTypes(Class[])} are
+ * read back from the file, anything else makes the entry unusable.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+public class MappingSnapshotCache {
+
+    /**
+     * The checksum returned for classes that can't be cached
+     */
+    public static final long UNCACHEABLE = -1L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappingSnapshotCache.class);
+    private static final int FORMAT_VERSION = 1;
+    private static final Set<Class> JDK_TYPES = new HashSet<Class>(Arrays.<Class>asList(
+            String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class, BigDecimal.class, BigInteger.class, Number.class,
+            ArrayList.class, LinkedList.class, HashMap.class, LinkedHashMap.class, TreeMap.class, HashSet.class,
+            LinkedHashSet.class, TreeSet.class, Hashtable.class, Properties.class
+    ));
+
+    private final File file;
+    private final ClassLoader classLoader;
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final Set<Class> allowedTypes = Collections.newSetFromMap(new ConcurrentHashMap<Class, Boolean>());
+    private volatile boolean modified;
+
+    /**
+     * @param file The file the snapshot is read from and written to
+     * @param classLoader The class loader used to read the mapped forms
+     */
+    public MappingSnapshotCache(File file, ClassLoader classLoader) {
+        this.file = file;
+        this.classLoader = classLoader;
+        load();
+    }
+
+    /**
+     * Allows the given types, referenced by mapped forms, to be read from the snapshot
+     *
+     * @param types The types
+     */
+    public void allowTypes(Class... types) {
+        allowedTypes.addAll(Arrays.asList(types));
+    }
+
+    /**
+     * @return The file the snapshot is read from and written to
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Obtains the mapped forms of an entity
+     *
+     * @param key The key of the entity
+     * @param checksum The current checksum of the entity
+     * @return The mapped forms or null if there are none or they are outdated
+     */
+    public MappedForms get(String key, long checksum) {
+        if(checksum == UNCACHEABLE) {
+            return null;
+        }
+        Snapshot snapshot = snapshots.get(key);
+        if(snapshot == null || snapshot.checksum != checksum) {
+            return null;
+        }
+        try {
+            ObjectInputStream in = new MappedFormsInputStream(new ByteArrayInputStream(snapshot.data));
+            try {
+                return (MappedForms) in.readObject();
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            if(LOG.isDebugEnabled()) {
+                LOG.debug("Unable to read mapping snapshot of [" + key + "], the mapping will be evaluated: " + e.getMessage(), e);
+            }
+            snapshots.remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the mapped forms of an entity
+     *
+     * @param key The key of the entity
+     * @param checksum The current checksum of the entity
+     * @param mappedForms The mapped forms
+     */
+    public void put(String key, long checksum, MappedForms mappedForms) {
+        if(checksum == UNCACHEABLE) {
+            return;
+        }
+        Snapshot existing = snapshots.get(key);
+        if(existing != null && existing.checksum == checksum) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            try {
+                out.writeObject(mappedForms);
+            } finally {
+                out.close();
+            }
+            snapshots.put(key, new Snapshot(checksum, bytes.toByteArray()));
+            modified = true;
+        } catch (IOException e) {
+            if(LOG.isDebugEnabled()) {
+                LOG.debug("Mapping of [" + key + "] can't be written to the mapping snapshot: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Writes the snapshot to the file if entries were added since it was loaded
+     */
+    public synchronized void save() {
+        if(!modified) {
+            return;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        try {
+            if(parent != null) {
+                parent.mkdirs();
+            }
+            File temp = File.createTempFile(file.getName(), ".tmp", parent);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(snapshots.size());
+                for (Map.Entry<String, Snapshot> entry : snapshots.entrySet()) {
+                    Snapshot snapshot = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(snapshot.checksum);
+                    out.writeInt(snapshot.data.length);
+                    out.write(snapshot.data);
+                }
+            } finally {
+                out.close();
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            modified = false;
+        } catch (IOException e) {
+            LOG.warn("Unable to write mapping snapshot to [" + file + "]: " + e.getMessage(), e);
+        }
+    }
+
+    private void load() {
+        if(!file.isFile()) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if(in.readInt() != FORMAT_VERSION) {
+                    return;
+                }
+                int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                    String key = in.readUTF();
+                    long checksum = in.readLong();
+                    byte[] data = new byte[in.readInt()];
+                    in.readFully(data);
+                    snapshots.put(key, new Snapshot(checksum, data));
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to read mapping snapshot from [" + file + "], mappings will be evaluated: " + e.getMessage(), e);
+            snapshots.clear();
+        }
+    }
+
+    /**
+     * Computes the checksum of an entity from the bytecode of the class, its superclasses and their nested classes
+     * together with the configuration the mapping depends on. Simple values contribute their value, collections their
+     * elements and other objects, like closures, the bytecode of their class and its nested classes
+     *
+     * @param entityClass The entity class
+     * @param configuration The configuration
+     * @return The checksum or {@link #UNCACHEABLE} if the bytecode of a class can't be read
+     */
+    public static long checksum(Class entityClass, Object... configuration) {
+        CRC32 crc = new CRC32();
+        Class current = entityClass;
+        while(current != null && current != Object.class) {
+            if(!update(crc, current)) {
+                return UNCACHEABLE;
+            }
+            current = current.getSuperclass();
+        }
+        for (Object value : configuration) {
+            if(!update(crc, value)) {
+                return UNCACHEABLE;
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * @param value The value
+     * @return Whether the value is hashed by its value rather than by the bytecode of its class
+     */
+    public static boolean isSimpleValue(Object value) {
+        return value == null || value instanceof CharSequence || value instanceof Number || value instanceof Boolean ||
+                value instanceof Character || value instanceof Class || value instanceof Enum;
+    }
+
+    private static boolean update(CRC32 crc, Object value) {
+        if(isSimpleValue(value)) {
+            byte[] bytes = String.valueOf(value instanceof Class ? ((Class) value).getName() : value).getBytes(StandardCharsets.UTF_8);
+            crc.update(bytes, 0, bytes.length);
+            return true;
+        }
+        else if(value instanceof Collection) {
+            for (Object element : (Collection) value) {
+                if(!update(crc, element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return update(crc, value.getClass());
+    }
+
+    private static boolean update(CRC32 crc, Class type) {
+        ClassLoader loader = type.getClassLoader();
+        if(loader == null) {
+            loader = ClassLoader.getSystemClassLoader();
+        }
+        String resource = type.getName().replace('.', '/') + ".class";
+        URL url = loader.getResource(resource);
+        if(url == null) {
+            return false;
+        }
+        try {
+            update(crc, url.openStream());
+            // closures of the mapping and constraints blocks are compiled to nested classes named Type$...
+            String prefix = resource.substring(0, resource.length() - ".class".length()) + '$';
+            if("file".equals(url.getProtocol())) {
+                File directory = new File(url.toURI()).getParentFile();
+                String namePrefix = prefix.substring(prefix.lastIndexOf('/') + 1);
+                String[] names = directory.list();
+                if(names == null) {
+                    return false;
+                }
+                Arrays.sort(names);
+                for (String name : names) {
+                    if(name.startsWith(namePrefix) && name.endsWith(".class")) {
+                        update(crc, new FileInputStream(new File(directory, name)));
+                    }
+                }
+                return true;
+            }
+            else if("jar".equals(url.getProtocol())) {
+                URLConnection connection = url.openConnection();
+                connection.setUseCaches(false);
+                JarFile jar = ((JarURLConnection) connection).getJarFile();
+                try {
+                    List<String> names = new ArrayList<String>();
+                    for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+                        String name = entries.nextElement().getName();
+                        if(name.startsWith(prefix) && name.endsWith(".class")) {
+                            names.add(name);
+                        }
+                    }
+                    Collections.sort(names);
+                    for (String name : names) {
+                        update(crc, jar.getInputStream(jar.getJarEntry(name)));
+                    }
+                } finally {
+                    jar.close();
+                }
+                return true;
+            }
+            // nested classes can't be listed
+            return false;
+        } catch (IOException e) {
+            return false;
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+
+    private static void update(CRC32 crc, InputStream in) throws IOException {
+        try {
+            byte[] buffer = new byte[4096];
+            int read;
+            while((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads mapped forms, refusing any class that isn't a mapped form, a simple value, a JDK collection or an
+     * allowed type
+     */
+    private class MappedFormsInputStream extends ConfigurableObjectInputStream {
+
+        MappedFormsInputStream(InputStream in) throws IOException {
+            super(in, classLoader);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass classDesc) throws IOException, ClassNotFoundException {
+            Class<?> type = super.resolveClass(classDesc);
+            if(!isAllowed(type)) {
+                throw new InvalidClassException(type.getName(), "Type is not allowed in a mapping snapshot");
+            }
+            return type;
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+            throw new InvalidClassException("Proxies are not allowed in a mapping snapshot");
+        }
+
+        private boolean isAllowed(Class<?> type) {
+            while(type.isArray()) {
+                type = type.getComponentType();
+            }
+            return type.isPrimitive() || type.isEnum() || JDK_TYPES.contains(type) || allowedTypes.contains(type) ||
+                    type == MappedForms.class || Entity.class.isAssignableFrom(type) || Property.class.isAssignableFrom(type) ||
+                    (type.getName().startsWith("java.util.Collections$"));
+        }
+    }
+
+    private static class Snapshot {
+        final long checksum;
+        final byte[] data;
+
+        Snapshot(long checksum, byte[] data) {
+            this.checksum = checksum;
+            this.data = data;
+        }
+    }
+
+    /**
+     * The mapped forms of an entity and its properties
+     */
+    public static class MappedForms implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final Entity entity;
+        private final Map<String, Property> properties;
+
+        public MappedForms(Entity entity, Map<String, Property> properties) {
+            this.entity = entity;
+            this.properties = properties;
+        }
+
+        public Entity getEntity() {
+            return entity;
+        }
+
+        public Map<String, Property> getProperties() {
+            return properties;
+        }
+    }
+}
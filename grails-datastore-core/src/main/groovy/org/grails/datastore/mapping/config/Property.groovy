@@ -33,7 +33,7 @@ import javax.persistence.FetchType
  */
 @CompileStatic
 @Builder(builderStrategy = SimpleStrategy, prefix = '')
-class Property implements Cloneable {
+class Property implements Cloneable, Serializable {
 
     /**
      * @return Whether this property is index
@@ -62,6 +62,12 @@ class Property implements Cloneable {
      * @return Whether to use lazy proxies for collection elements
      */
     Boolean lazy = null
+    /**
+     * The number of uninitialized instances of this association to load at once when one of them is accessed
+     *
+     * @return The batch size or null if the association is loaded one owner at a time
+     */
+    Integer batchSize
     /**
      * The target to map to, could be a database column, document attribute, or hash key
      *
@@ -50,6 +50,63 @@ public interface Settings {
      * The multi tenancy resolver class
      */
     String SETTING_MULTI_TENANT_RESOLVER = PREFIX + '.' + "multiTenancy.tenantResolver";
+    /**
+     * The maximum number of instances of a single entity to hold in the first level cache of a session
+     */
+    String SETTING_SESSION_MAX_CACHED_INSTANCES_PER_ENTITY = PREFIX + '.' + "session.maxCachedInstancesPerEntity";
+
+    /**
+     * The maximum number of instances to hold in the first level cache of a session
+     */
+    String SETTING_SESSION_MAX_CACHED_INSTANCES = PREFIX + '.' + "session.maxCachedInstances";
+
+    /**
+     * The number of pending operations after which a session is flushed automatically
+     */
+    String SETTING_SESSION_AUTO_FLUSH_THRESHOLD = PREFIX + '.' + "session.autoFlushThreshold";
+
+    /**
+     * Whether the results of queries that enable caching are cached by datastores that support it. Defaults to false
+     */
+    String SETTING_QUERY_CACHE_ENABLED = PREFIX + '.' + "queryCache.enabled";
+
+    /**
+     * The maximum number of query results to cache
+     */
+    String SETTING_QUERY_CACHE_MAX_SIZE = PREFIX + '.' + "queryCache.maxSize";
+
+    /**
+     * The time in milliseconds after which cached query results expire
+     */
+    String SETTING_QUERY_CACHE_TIME_TO_LIVE = PREFIX + '.' + "queryCache.timeToLive";
+
+    /**
+     * The executor used to run blocking asynchronous GORM tasks. Either "virtual", "default" or the class name of a task executor factory. Read from the
+     * datastore configuration, falling back to the system property of the same name
+     */
+    String SETTING_TASK_EXECUTOR = PREFIX + '.' + "taskExecutor";
+
+    /**
+     * Whether the entity indexes written at compile time are used instead of scanning the classpath roots that contain
+     * one for entities. Disabled by default since entities compiled without the GORM transformation are not indexed
+     */
+    String SETTING_ENTITY_INDEX_ENABLED = PREFIX + '.' + "entityIndex.enabled";
+
+    /**
+     * Whether the evaluated mappings of entities are written to a snapshot that is loaded by later starts
+     */
+    String SETTING_MAPPING_SNAPSHOT_ENABLED = PREFIX + '.' + "mappingSnapshot.enabled";
+
+    /**
+     * The location of the mapping snapshot file, required when the mapping snapshot is enabled
+     */
+    String SETTING_MAPPING_SNAPSHOT_LOCATION = PREFIX + '.' + "mappingSnapshot.location";
+
+    /**
+     * The maximum number of connection sources created concurrently at startup
+     */
+    String SETTING_CONNECTION_SOURCES_INITIALIZATION_CONCURRENCY = PREFIX + '.' + "connectionSources.initializationConcurrency";
+
     /**
      * The data sources setting
      */
@@ -20,11 +20,14 @@ import groovy.lang.MetaClassRegistry;
 import groovy.util.ConfigObject;
 import org.grails.datastore.mapping.cache.TPCacheAdapterRepository;
 import org.grails.datastore.mapping.config.Property;
+import org.grails.datastore.mapping.core.connections.ConnectionSourceSettings;
 import org.grails.datastore.mapping.model.MappingContext;
 import org.grails.datastore.mapping.model.PersistentEntity;
 import org.grails.datastore.mapping.model.PersistentProperty;
 import org.grails.datastore.mapping.model.PropertyMapping;
 import org.grails.datastore.mapping.model.types.BasicTypeConverterRegistrar;
+import org.grails.datastore.mapping.query.cache.QueryResultCache;
+import org.grails.datastore.mapping.query.cache.QueryResultCacheInvalidator;
 import org.grails.datastore.mapping.reflect.ClassPropertyFetcher;
 import org.grails.datastore.mapping.reflect.FieldEntityAccess;
 import org.grails.datastore.mapping.services.DefaultServiceRegistry;
@@ -37,6 +40,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.core.convert.converter.ConverterRegistry;
 import org.springframework.core.env.MapPropertySource;
@@ -61,7 +65,7 @@ public abstract class AbstractDatastore implements Datastore, StatelessDatastore
     protected final ServiceRegistry serviceRegistry;
     protected final PropertyResolver connectionDetails;
     protected final TPCacheAdapterRepository cacheAdapterRepository;
-
+    protected QueryResultCache queryResultCache;
 
     public AbstractDatastore(MappingContext mappingContext) {
         this(mappingContext,(PropertyResolver) null, null);
@@ -248,6 +252,59 @@ public abstract class AbstractDatastore implements Datastore, StatelessDatastore
         return false;
     }
 
+    /**
+     * @return The cache used for queries that enable {@link org.grails.datastore.mapping.query.Query#cache(boolean)} or null if query results are not cached
+     */
+    public QueryResultCache getQueryResultCache() {
+        return queryResultCache;
+    }
+
+    /**
+     * Sets the cache used for queries that enable {@link org.grails.datastore.mapping.query.Query#cache(boolean)}. Implementations
+     * should register a {@link org.grails.datastore.mapping.query.cache.QueryResultCacheInvalidator} so that writes invalidate the cached results.
+     *
+     * @param queryResultCache The query result cache
+     */
+    public void setQueryResultCache(QueryResultCache queryResultCache) {
+        this.queryResultCache = queryResultCache;
+    }
+
+    /**
+     * Creates the query result cache if it is enabled by the given settings and registers a {@link QueryResultCacheInvalidator}
+     * for it. The cache is not created if the invalidator cannot be registered, since the cached results would never be invalidated
+     *
+     * @param settings The settings of the default connection source
+     */
+    protected void initializeQueryResultCache(ConnectionSourceSettings settings) {
+        ConnectionSourceSettings.QueryCacheSettings queryCacheSettings = settings.getQueryCache();
+        if (!queryCacheSettings.isEnabled()) {
+            return;
+        }
+        QueryResultCache cache = new QueryResultCache(queryCacheSettings.getMaxSize(), queryCacheSettings.getTimeToLive());
+        if (registerApplicationListener(new QueryResultCacheInvalidator(this, cache))) {
+            this.queryResultCache = cache;
+        }
+        else {
+            LOG.warn("The query result cache is enabled, but is not used since datastore [" + getClass().getName() + "] cannot register a listener for its persistence events");
+        }
+    }
+
+    /**
+     * Registers a listener for the persistence events published by this datastore. Datastores that do not publish events
+     * through the application context should override this method
+     *
+     * @param listener The listener
+     * @return Whether the listener was registered
+     */
+    protected boolean registerApplicationListener(ApplicationListener<?> listener) {
+        ApplicationEventPublisher publisher = getApplicationEventPublisher();
+        if (publisher instanceof ConfigurableApplicationContext) {
+            ((ConfigurableApplicationContext) publisher).addApplicationListener(listener);
+            return true;
+        }
+        return false;
+    }
+
 
     @Override
     public <T> T withSession(final Closure<T> callable) {
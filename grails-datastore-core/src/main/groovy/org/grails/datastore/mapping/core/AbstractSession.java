@@ -18,11 +18,18 @@ import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.persistence.FlushModeType;
 
+import org.grails.datastore.mapping.cache.TPCacheAdapter;
 import org.grails.datastore.mapping.cache.TPCacheAdapterRepository;
+import org.grails.datastore.mapping.cache.VersionedTPCacheAdapter;
 import org.grails.datastore.mapping.config.Entity;
+import org.grails.datastore.mapping.core.cache.BoundedInstanceCache;
+import org.grails.datastore.mapping.core.cache.FirstLevelCacheStatistics;
+import org.grails.datastore.mapping.core.connections.ConnectionSourceSettings;
 import org.grails.datastore.mapping.core.impl.*;
 import org.grails.datastore.mapping.dirty.checking.DirtyCheckable;
 import org.grails.datastore.mapping.dirty.checking.DirtyCheckingSupport;
@@ -30,24 +37,20 @@ import org.grails.datastore.mapping.engine.*;
 import org.grails.datastore.mapping.model.MappingContext;
 import org.grails.datastore.mapping.model.PersistentEntity;
 import org.grails.datastore.mapping.model.PersistentProperty;
+import org.grails.datastore.mapping.proxy.ProxyHandler;
 import org.grails.datastore.mapping.query.Query;
 import org.grails.datastore.mapping.query.api.QueryableCriteria;
+import org.grails.datastore.mapping.query.cache.QueryResultCache;
 import org.grails.datastore.mapping.transactions.Transaction;
-import org.springframework.beans.BeanWrapper;
-import org.springframework.beans.BeanWrapperImpl;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.convert.ConversionFailedException;
 import org.springframework.core.convert.ConversionService;
-import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.dao.InvalidDataAccessResourceUsageException;
 import org.springframework.transaction.NoTransactionException;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
 import org.springframework.util.Assert;
 
-import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap.Builder;
-import com.googlecode.concurrentlinkedhashmap.EvictionListener;
-
 /**
  * Abstract implementation of the {@link org.grails.datastore.mapping.core.Session} interface that uses
  * a list of {@link org.grails.datastore.mapping.engine.Persister} instances
@@ -62,26 +65,6 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
 
     public static final String ENTITY_ACCESS = "org.grails.gorm.ENTITY_ACCESS";
 
-    private static final EvictionListener<PersistentEntity, Collection<PendingInsert>> EXCEPTION_THROWING_INSERT_LISTENER =
-            new EvictionListener<PersistentEntity, Collection<PendingInsert>>() {
-        public void onEviction(PersistentEntity key, Collection<PendingInsert> value) {
-            throw new DataAccessResourceFailureException("Maximum number (5000) of insert operations to flush() exceeded. Flush the session periodically to avoid this error for batch operations.");
-        }
-    };
-
-    private static final EvictionListener<PersistentEntity, Collection<PendingUpdate>> EXCEPTION_THROWING_UPDATE_LISTENER =
-            new EvictionListener<PersistentEntity, Collection<PendingUpdate>>() {
-        public void onEviction(PersistentEntity key, Collection<PendingUpdate> value) {
-            throw new DataAccessResourceFailureException("Maximum number (5000) of update operations to flush() exceeded. Flush the session periodically to avoid this error for batch operations.");
-        }
-    };
-
-    private static final EvictionListener<PersistentEntity, Collection<PendingDelete>> EXCEPTION_THROWING_DELETE_LISTENER =
-            new EvictionListener<PersistentEntity, Collection<PendingDelete>>() {
-                public void onEviction(PersistentEntity key, Collection<PendingDelete> value) {
-                    throw new DataAccessResourceFailureException("Maximum number (5000) of delete operations to flush() exceeded. Flush the session periodically to avoid this error for batch operations.");
-                }
-            };
     private static final String NULL = "null";
 
     protected Map<Class, Persister> persisters = new ConcurrentHashMap<Class,Persister>();
@@ -95,24 +78,23 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
     protected Map<Class, Map<Serializable, Object>> firstLevelEntryCache = new ConcurrentHashMap<Class, Map<Serializable, Object>>();
     protected Map<Class, Map<Serializable, Object>> firstLevelEntryCacheDirtyCheck = new ConcurrentHashMap<Class, Map<Serializable, Object>>();
     protected Map<CollectionKey, Collection> firstLevelCollectionCache = new ConcurrentHashMap<CollectionKey, Collection>();
+    protected final FirstLevelCacheStatistics firstLevelCacheStatistics = new FirstLevelCacheStatistics();
+    protected int maxCachedInstancesPerEntity = -1;
+    protected int maxCachedInstances = -1;
 
     protected TPCacheAdapterRepository cacheAdapterRepository;
 
-    private Collection<Serializable> objectsPendingOperations = new ConcurrentLinkedQueue<>();
-    private Map<PersistentEntity, Collection<PendingInsert>> pendingInserts =
-        new Builder<PersistentEntity, Collection<PendingInsert>>()
-           .listener(EXCEPTION_THROWING_INSERT_LISTENER)
-           .maximumWeightedCapacity(5000).build();
-
-    private Map<PersistentEntity, Collection<PendingUpdate>> pendingUpdates =
-        new Builder<PersistentEntity, Collection<PendingUpdate>>()
-           .listener(EXCEPTION_THROWING_UPDATE_LISTENER)
-           .maximumWeightedCapacity(5000).build();
-
-    private Map<PersistentEntity, Collection<PendingDelete>> pendingDeletes =
-            new Builder<PersistentEntity, Collection<PendingDelete>>()
-                    .listener(EXCEPTION_THROWING_DELETE_LISTENER)
-                    .maximumWeightedCapacity(5000).build();
+    private Collection<Serializable> objectsPendingOperations = Collections.newSetFromMap(new ConcurrentHashMap<Serializable, Boolean>());
+    private final ConcurrentMap<Class, Set<Serializable>> pendingIdsByType = new ConcurrentHashMap<Class, Set<Serializable>>();
+    private final Set<Object> pendingInstancesWithoutId = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>()));
+    private Map<PersistentEntity, Collection<PendingInsert>> pendingInserts = new ConcurrentHashMap<PersistentEntity, Collection<PendingInsert>>();
+    private Map<PersistentEntity, Collection<PendingUpdate>> pendingUpdates = new ConcurrentHashMap<PersistentEntity, Collection<PendingUpdate>>();
+    private Map<PersistentEntity, Collection<PendingDelete>> pendingDeletes = new ConcurrentHashMap<PersistentEntity, Collection<PendingDelete>>();
+    private final ConcurrentMap<PersistentEntity, AtomicInteger> pendingOperationCounts = new ConcurrentHashMap<PersistentEntity, AtomicInteger>();
+    protected int autoFlushThreshold = -1;
+    private int operationDepth = 0;
+    protected int bulkOperationBatchSize = 100;
+    private AssociationBatchLoader associationBatchLoader;
 
     protected Collection<Runnable> postFlushOperations = new ConcurrentLinkedQueue<Runnable>();
     private boolean exceptionOccurred;
@@ -147,6 +129,66 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
         this.cacheAdapterRepository = cacheAdapterRepository;
     }
 
+    /**
+     * Applies the first level cache limits from the given settings
+     *
+     * @param settings The session settings
+     */
+    public void configure(ConnectionSourceSettings.SessionSettings settings) {
+        if (settings != null) {
+            setMaxCachedInstancesPerEntity(settings.getMaxCachedInstancesPerEntity());
+            setMaxCachedInstances(settings.getMaxCachedInstances());
+            setAutoFlushThreshold(settings.getAutoFlushThreshold());
+        }
+    }
+
+    /**
+     * Sets the number of pending insert, update and delete operations of a single entity after which the session is
+     * flushed automatically once the current persist or delete operation completes, provided the flush mode is
+     * {@link FlushModeType#AUTO}. Batch imports with {@link #persist(Iterable)} are split into batches of this size so
+     * that memory usage stays constant.
+     *
+     * @param autoFlushThreshold The threshold or -1 to only flush when requested
+     */
+    public void setAutoFlushThreshold(int autoFlushThreshold) {
+        this.autoFlushThreshold = autoFlushThreshold;
+    }
+
+    /**
+     * @return The number of pending operations of an entity that triggers an automatic flush or -1 if disabled
+     */
+    public int getAutoFlushThreshold() {
+        return autoFlushThreshold;
+    }
+
+    /**
+     * Sets the maximum number of instances of any one entity held in the first level cache. Once exceeded the least
+     * recently used instance that is not dirty, locked or pending an operation is evicted. The limit applies to the
+     * caches created after it is set, so it should be configured before the session is used, typically through
+     * {@link #configure(ConnectionSourceSettings.SessionSettings)}.
+     *
+     * @param maxCachedInstancesPerEntity The maximum or -1 for unbounded
+     */
+    public void setMaxCachedInstancesPerEntity(int maxCachedInstancesPerEntity) {
+        this.maxCachedInstancesPerEntity = maxCachedInstancesPerEntity;
+    }
+
+    /**
+     * Sets the maximum number of instances held in the first level cache across all entities
+     *
+     * @param maxCachedInstances The maximum or -1 for unbounded
+     */
+    public void setMaxCachedInstances(int maxCachedInstances) {
+        this.maxCachedInstances = maxCachedInstances;
+    }
+
+    /**
+     * @return The hit, miss and eviction statistics for the first level cache
+     */
+    public FirstLevelCacheStatistics getFirstLevelCacheStatistics() {
+        return firstLevelCacheStatistics;
+    }
+
     @Override
     public boolean isSchemaless() {
         return this.datastore.isSchemaless();
@@ -175,6 +217,7 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
         }
 
         inserts.add(insert);
+        incrementPendingOperationCount(insert.getEntity());
     }
 
     @Override
@@ -196,6 +239,7 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
                 if(!objectsPendingOperations.contains(id)) {
                     objectsPendingOperations.add(id);
                 }
+                getPendingIds(obj.getClass()).add(id);
             }
             else {
 
@@ -203,6 +247,7 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
                 if(!objectsPendingOperations.contains(identityHashCode)) {
                     objectsPendingOperations.add(identityHashCode);
                 }
+                pendingInstancesWithoutId.add(obj);
             }
         }
     }
@@ -220,6 +265,7 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
         }
 
         inserts.add(update);
+        incrementPendingOperationCount(update.getEntity());
     }
 
     public void addPendingDelete(PendingDelete delete) {
@@ -235,6 +281,7 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
         }
 
         deletes.add(delete);
+        incrementPendingOperationCount(delete.getEntity());
     }
 
     public Object getCachedEntry(PersistentEntity entity, Serializable key) {
@@ -339,6 +386,9 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
                 flushPendingDeletes(pendingDeletes);
 
                 firstLevelCollectionCache.clear();
+                if (associationBatchLoader != null) {
+                    associationBatchLoader.discardPrefetched();
+                }
 
                 executePendings(postFlushOperations);
             }
@@ -347,6 +397,9 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
             clearPendingOperations();
             flushActive = false;
         }
+        if (maxCachedInstances > -1 || maxCachedInstancesPerEntity > -1) {
+            resetEviction();
+        }
         postFlush(hasInserts);
     }
 
@@ -445,6 +498,39 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
         // do nothing
     }
 
+    /**
+     * Flushes the session once the pending operations of any entity reach the configured auto flush threshold. The
+     * whole session is flushed through {@link #flush()} so that the operations of all entities are written in the
+     * usual order and post flush operations run. Sessions in {@link FlushModeType#COMMIT} mode are never flushed
+     * automatically.
+     *
+     * @return True if a flush occurred
+     */
+    protected boolean flushIfThresholdReached() {
+        if (autoFlushThreshold < 1 || operationDepth > 0 || flushActive || exceptionOccurred || flushMode != FlushModeType.AUTO) {
+            return false;
+        }
+        for (AtomicInteger count : pendingOperationCounts.values()) {
+            if (count.get() >= autoFlushThreshold) {
+                flush();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void incrementPendingOperationCount(PersistentEntity entity) {
+        AtomicInteger count = pendingOperationCounts.get(entity);
+        if (count == null) {
+            count = new AtomicInteger();
+            AtomicInteger existing = pendingOperationCounts.putIfAbsent(entity, count);
+            if (existing != null) {
+                count = existing;
+            }
+        }
+        count.incrementAndGet();
+    }
+
     protected void executePendings(Collection<? extends Runnable> pendings) {
         try {
             for (Runnable pending : pendings) {
@@ -462,13 +548,19 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
         clearMaps(firstLevelEntryCache);
         clearMaps(firstLevelEntryCacheDirtyCheck);
         firstLevelCollectionCache.clear();
+        if (associationBatchLoader != null) {
+            associationBatchLoader.clear();
+        }
         clearPendingOperations();
         attributes.clear();
         exceptionOccurred = false;
     }
 
     protected void clearPendingOperations() {
+        pendingOperationCounts.clear();
         objectsPendingOperations.clear();
+        pendingIdsByType.clear();
+        pendingInstancesWithoutId.clear();
         pendingInserts.clear();
         pendingUpdates.clear();
         pendingDeletes.clear();
@@ -497,8 +589,8 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
         if (p == null) {
             p = createPersister(cls, getMappingContext());
             if (p != null) {
-                if(!isStateless(((EntityPersister)p).getPersistentEntity())) {
-                    firstLevelCache.put(cls, new ConcurrentHashMap<Serializable, Object>());
+                if(!isStateless(((EntityPersister)p).getPersistentEntity()) && !firstLevelCache.containsKey(cls)) {
+                    firstLevelCache.put(cls, createInstanceCache(cls));
                 }
                 persisters.put(cls, p);
             }
@@ -537,6 +629,41 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
         }
         if(isStateless(getMappingContext().getPersistentEntity(type.getName()))) return;
         getInstanceCache(type).put(key, instance);
+        if (maxCachedInstances > -1) {
+            evictToMaxCachedInstances();
+        }
+    }
+
+    /**
+     * Evicts instances until the first level cache is within the session wide limit again. The size is tracked across
+     * all caches, so nothing is scanned unless the limit is exceeded, and a cache that found all of its instances pinned
+     * only checks the instances added since then until pinned instances are released by a flush
+     */
+    private void evictToMaxCachedInstances() {
+        if (firstLevelCacheStatistics.getSize() <= maxCachedInstances) {
+            return;
+        }
+        Set<BoundedInstanceCache> pinned = null;
+        while (firstLevelCacheStatistics.getSize() > maxCachedInstances) {
+            BoundedInstanceCache largest = null;
+            for (Map<Serializable, Object> cache : firstLevelCache.values()) {
+                if (cache instanceof BoundedInstanceCache && (pinned == null || !pinned.contains(cache))
+                        && (largest == null || cache.size() > largest.size())) {
+                    largest = (BoundedInstanceCache) cache;
+                }
+            }
+            if (largest == null) {
+                // everything left is pinned
+                return;
+            }
+            if (!largest.evictEldest()) {
+                // move on to the next largest cache
+                if (pinned == null) {
+                    pinned = Collections.newSetFromMap(new IdentityHashMap<BoundedInstanceCache, Boolean>());
+                }
+                pinned.add(largest);
+            }
+        }
     }
 
     public Object getCachedInstance(Class type, Serializable key) {
@@ -545,7 +672,17 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
             return null;
         }
         if(isStateless(getMappingContext().getPersistentEntity(type.getName()))) return null;
-        return getInstanceCache(type).get(key);
+        return recordLookup(getInstanceCache(type).get(key));
+    }
+
+    private Object recordLookup(Object cached) {
+        if (cached != null) {
+            firstLevelCacheStatistics.recordHit();
+        }
+        else {
+            firstLevelCacheStatistics.recordMiss();
+        }
+        return cached;
     }
 
     public void clear(Object o) {
@@ -553,6 +690,13 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
             return;
         }
 
+        if (associationBatchLoader != null) {
+            ProxyHandler proxyHandler = getMappingContext().getProxyHandler();
+            if (proxyHandler.isProxy(o)) {
+                associationBatchLoader.evictProxy(proxyHandler.getProxiedClass(o), proxyHandler.getIdentifier(o));
+            }
+        }
+
         final Map<Serializable, Object> cache = firstLevelCache.get(o.getClass());
         if (cache != null) {
             Persister persister = getPersister(o);
@@ -595,8 +739,15 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
                     "] cannot be persisted. It is not a known persistent type.");
         }
 
-        final Serializable key = persister.persist(o);
+        final Serializable key;
+        operationDepth++;
+        try {
+            key = persister.persist(o);
+        } finally {
+            operationDepth--;
+        }
         cacheObject(key, o);
+        flushIfThresholdReached();
         return key;
     }
 
@@ -609,8 +760,15 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
                     "] cannot be persisted. It is not a known persistent type.");
         }
 
-        final Serializable key = persister.insert(o);
+        final Serializable key;
+        operationDepth++;
+        try {
+            key = persister.insert(o);
+        } finally {
+            operationDepth--;
+        }
         cacheObject(key, o);
+        flushIfThresholdReached();
         return key;
     }
 
@@ -649,7 +807,7 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
             return null;
         }
 
-        Object o = getInstanceCache(type).get(key);
+        Object o = recordLookup(getInstanceCache(type).get(key));
         if (o == null) {
             o = persister.retrieve(key);
             if (o != null) {
@@ -659,6 +817,21 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
         return o;
     }
 
+    /**
+     * Retrieves the target of an uninitialized proxy. If other proxies of the same type are pending they are loaded
+     * together with the target in a single batch
+     *
+     * @param type The proxied type
+     * @param key The key of the proxy
+     * @return The target or null if it doesn't exist
+     */
+    public Object retrieveProxyTarget(Class type, Serializable key) {
+        if (associationBatchLoader != null && key != null && type != null) {
+            associationBatchLoader.loadProxyBatch(type, key);
+        }
+        return retrieve(type, key);
+    }
+
     protected Serializable convertIdentityIfNecessasry(PersistentProperty identity, Serializable key) {
         ConversionService conversionService = getMappingContext().getConversionService();
         if(conversionService.canConvert(key.getClass(), identity.getType())) {
@@ -700,42 +873,232 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
     }
 
     public void unlock(Object o) {
-        if (o != null) {
-            lockedObjects.remove(o);
+        if (o != null && lockedObjects.remove(o) && (maxCachedInstances > -1 || maxCachedInstancesPerEntity > -1)) {
+            resetEviction();
         }
     }
 
     /**
-     * This default implementation of the deleteAll method is unlikely to be optimal as it iterates and deletes each object.
+     * Deletes all entities matching the criteria. If the persister is {@link BulkOperationCapable} the delete is
+     * executed as a single operation by the datastore. Otherwise the matching identifiers are queried and the
+     * entities are loaded and deleted in batches of {@link #getBulkOperationBatchSize()}.
      *
-     * Subclasses should override to optimize for the batch operation capability of the underlying datastore
+     * Pending operations are flushed before the delete and after each batch, whatever the flush mode.
+     *
+     * Subclasses can override to optimize for the batch operation capability of the underlying datastore
      *
      * @param criteria The criteria
      */
     public long deleteAll(QueryableCriteria criteria) {
-        List list = criteria.list();
-        delete(list);
-        return list.size();
+        final PersistentEntity entity = criteria.getPersistentEntity();
+        final Persister persister = getPersister(entity);
+        if (persister instanceof BulkOperationCapable) {
+            flushBeforeBulkOperation();
+            long total = ((BulkOperationCapable) persister).deleteAll(criteria);
+            if (total > -1) {
+                evictAll(entity.getJavaClass());
+                invalidateCaches(entity);
+                return total;
+            }
+        }
+
+        final Class type = entity.getJavaClass();
+        long total = 0;
+        Serializable lastId = null;
+        List<Serializable> batch;
+        do {
+            batch = listIdentifiers(criteria, lastId, bulkOperationBatchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            List objects = retrieveBatch(type, batch);
+            delete(objects);
+            flush();
+            total += objects.size();
+            for (Object o : objects) {
+                clear(o);
+            }
+            lastId = batch.get(batch.size() - 1);
+        } while (bulkOperationBatchSize > 0 && batch.size() == bulkOperationBatchSize);
+        return total;
     }
 
     /**
-     * This default implementation of updateAll is unlikely to be optimal as it iterates and updates each object one by one.
+     * Bulk operations bypass the persister and do not publish persistence events, hence the second level cache and
+     * the cached query results are invalidated explicitly
+     */
+    private void invalidateCaches(PersistentEntity entity) {
+        if (cacheAdapterRepository != null) {
+            TPCacheAdapter cacheAdapter = cacheAdapterRepository.getTPCacheAdapter(entity);
+            if (cacheAdapter instanceof VersionedTPCacheAdapter) {
+                ((VersionedTPCacheAdapter) cacheAdapter).evictAll();
+            }
+        }
+        Datastore datastore = getDatastore();
+        if (datastore instanceof AbstractDatastore) {
+            QueryResultCache queryResultCache = ((AbstractDatastore) datastore).getQueryResultCache();
+            if (queryResultCache != null) {
+                queryResultCache.recordWrite(entity);
+            }
+        }
+    }
+
+    /**
+     * Updates all entities matching the criteria. If the persister is {@link BulkOperationCapable} the update is
+     * executed as a single operation by the datastore. Otherwise the matching identifiers are queried and the
+     * entities are loaded and updated in batches of {@link #getBulkOperationBatchSize()}.
      *
-     * Subclasses should override to optimize for the batch operation capability of the underlying datastore
+     * Pending operations are flushed before the update and after each batch, whatever the flush mode. As with batch
+     * DML in Hibernate, an update executed by the datastore does not increment the version nor set the lastUpdated
+     * property of the matching entities. Include them in the properties to update them.
+     *
+     * Subclasses can override to optimize for the batch operation capability of the underlying datastore
      *
      * @param criteria The criteria
      * @param properties The properties
      */
     public long updateAll(QueryableCriteria criteria, Map<String, Object> properties) {
-        List list = criteria.list();
-        for (Object o : list) {
-            BeanWrapper bean = new BeanWrapperImpl(o);
-            for (String property : properties.keySet()) {
-                bean.setPropertyValue(property, properties.get(property));
+        final PersistentEntity entity = criteria.getPersistentEntity();
+        final Persister persister = getPersister(entity);
+        if (persister instanceof BulkOperationCapable) {
+            flushBeforeBulkOperation();
+            long total = ((BulkOperationCapable) persister).updateAll(criteria, properties);
+            if (total > -1) {
+                evictAll(entity.getJavaClass());
+                invalidateCaches(entity);
+                return total;
+            }
+        }
+
+        final Class type = entity.getJavaClass();
+        final Map<Serializable, Object> cache = getInstanceCache(type);
+        long total = 0;
+        Serializable lastId = null;
+        List<Serializable> batch;
+        do {
+            batch = listIdentifiers(criteria, lastId, bulkOperationBatchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<Serializable> loaded = new ArrayList<Serializable>();
+            for (Serializable id : batch) {
+                if (!cache.containsKey(id)) {
+                    loaded.add(id);
+                }
+            }
+            List objects = retrieveBatch(type, batch);
+            for (Object o : objects) {
+                EntityAccess access = createEntityAccess(entity, o);
+                for (Map.Entry<String, Object> property : properties.entrySet()) {
+                    access.setProperty(property.getKey(), property.getValue());
+                }
+            }
+            persist(objects);
+            flush();
+            total += objects.size();
+            // release the instances this operation loaded once they are written
+            for (Serializable id : loaded) {
+                Object o = cache.get(id);
+                if (o != null) {
+                    clear(o);
+                }
+            }
+            lastId = batch.get(batch.size() - 1);
+        } while (bulkOperationBatchSize > 0 && batch.size() == bulkOperationBatchSize);
+        return total;
+    }
+
+    /**
+     * @return The loader used to initialize lazy associations of sibling instances in batches
+     */
+    public AssociationBatchLoader getAssociationBatchLoader() {
+        if (associationBatchLoader == null) {
+            associationBatchLoader = new AssociationBatchLoader(this);
+        }
+        return associationBatchLoader;
+    }
+
+    /**
+     * @return The number of entities loaded at a time when deleteAll or updateAll cannot be executed as a bulk operation
+     */
+    public int getBulkOperationBatchSize() {
+        return bulkOperationBatchSize;
+    }
+
+    public void setBulkOperationBatchSize(int bulkOperationBatchSize) {
+        this.bulkOperationBatchSize = bulkOperationBatchSize;
+    }
+
+    /**
+     * Queries the next batch of identifiers of the entities matching the given criteria. Batches are ordered by
+     * identifier and each batch starts after the last identifier of the previous one, so that entities deleted or
+     * changed by a previous batch do not shift the following batches
+     *
+     * @param criteria The criteria
+     * @param after The last identifier of the previous batch or null for the first batch
+     * @param max The maximum number of identifiers or a value less than 1 for all of them
+     * @return The identifiers
+     */
+    protected List<Serializable> listIdentifiers(QueryableCriteria criteria, Serializable after, int max) {
+        PersistentEntity entity = criteria.getPersistentEntity();
+        Query query = createQuery(entity.getJavaClass());
+        for (Object criterion : criteria.getCriteria()) {
+            query.add((Query.Criterion) criterion);
+        }
+        PersistentProperty identity = entity.getIdentity();
+        if (identity == null) {
+            // composite identifiers cannot be ordered, so they are queried in one go
+            if (after != null) {
+                return Collections.emptyList();
+            }
+        }
+        else {
+            if (after != null) {
+                query.gt(identity.getName(), after);
+            }
+            query.order(Query.Order.asc(identity.getName()));
+            if (max > 0) {
+                query.max(max);
+            }
+        }
+        query.projections().id();
+        return query.list();
+    }
+
+    /**
+     * Bulk operations are executed immediately, as with batch DML in Hibernate and JPA. Pending operations are flushed
+     * first regardless of the flush mode, otherwise queued updates would later overwrite the result of the operation
+     */
+    private void flushBeforeBulkOperation() {
+        flush();
+    }
+
+    private void evictAll(Class type) {
+        Map<Serializable, Object> cache = firstLevelCache.get(type);
+        if (cache != null) {
+            for (Object o : cache.values()) {
+                removeAttributesForEntity(o);
+            }
+            cache.clear();
+        }
+        Map<Serializable, Object> entries = firstLevelEntryCache.get(type);
+        if (entries != null) {
+            entries.clear();
+        }
+        entries = firstLevelEntryCacheDirtyCheck.get(type);
+        if (entries != null) {
+            entries.clear();
+        }
+    }
+
+    private List retrieveBatch(Class type, List<Serializable> ids) {
+        List objects = new ArrayList(ids.size());
+        for (Object o : retrieveAll(type, ids)) {
+            if (o != null) {
+                objects.add(o);
             }
         }
-        persist(list);
-        return list.size();
+        return objects;
     }
 
     public void delete(final Object obj) {
@@ -749,8 +1112,14 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
         }
 
 
-        p.delete(obj);
+        operationDepth++;
+        try {
+            p.delete(obj);
+        } finally {
+            operationDepth--;
+        }
         clear(obj);
+        flushIfThresholdReached();
     }
 
     public void delete(final Iterable objects) {
@@ -777,7 +1146,13 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
         // for each type (usually only 1 type), set up a pendingDelete of that type
         for (Map.Entry<Persister, List> entry : toDelete.entrySet()) {
             final EntityPersister p = (EntityPersister) entry.getKey();
-            p.delete(entry.getValue());
+            operationDepth++;
+            try {
+                p.delete(entry.getValue());
+            } finally {
+                operationDepth--;
+            }
+            flushIfThresholdReached();
         }
     }
 
@@ -799,7 +1174,37 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
                      obj.getClass().getName() + "] is not a known persistent type.");
         }
 
-        return p.persist(objects);
+        if (autoFlushThreshold < 1 || operationDepth > 0 || flushMode != FlushModeType.AUTO) {
+            return p.persist(objects);
+        }
+
+        // persist in batches, flushing in between, so that large imports run in constant memory
+        List<Serializable> keys = new ArrayList<Serializable>();
+        List batch = new ArrayList(autoFlushThreshold);
+        batch.add(obj);
+        while (i.hasNext()) {
+            batch.add(i.next());
+            if (batch.size() == autoFlushThreshold) {
+                keys.addAll(persistBatch(p, batch));
+                batch = new ArrayList(autoFlushThreshold);
+            }
+        }
+        if (!batch.isEmpty()) {
+            keys.addAll(persistBatch(p, batch));
+        }
+        return keys;
+    }
+
+    private List<Serializable> persistBatch(Persister p, List batch) {
+        List<Serializable> keys;
+        operationDepth++;
+        try {
+            keys = p.persist(batch);
+        } finally {
+            operationDepth--;
+        }
+        flushIfThresholdReached();
+        return keys;
     }
 
     public List retrieveAll(Class type, Iterable keys) {
@@ -814,7 +1219,7 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
         final Map<Serializable, Object> cache = getInstanceCache(type);
         for (Object key : keys) {
             Serializable serializable = (Serializable) key;
-            Object cached = cache.get(serializable);
+            Object cached = recordLookup(cache.get(serializable));
             list.add(cached);
             if (cached == null) {
                 toRetrieve.add(serializable);
@@ -891,12 +1296,95 @@ public abstract class AbstractSession<N> extends AbstractAttributeStoringSession
     private Map<Serializable, Object> getInstanceCache(Class c) {
         Map<Serializable, Object> cache = firstLevelCache.get(c);
         if (cache == null) {
-            cache = new ConcurrentHashMap<Serializable, Object>();
+            cache = createInstanceCache(c);
             firstLevelCache.put(c, cache);
         }
         return cache;
     }
 
+    /**
+     * Creates the first level cache for the given type. If no limits are configured the cache is unbounded, otherwise
+     * a {@link BoundedInstanceCache} is used that never evicts dirty, locked or pending instances.
+     *
+     * Subclasses can override to plug in an alternative cache implementation.
+     *
+     * @param type The entity type
+     * @return The cache
+     */
+    protected Map<Serializable, Object> createInstanceCache(final Class type) {
+        if (maxCachedInstancesPerEntity < 0 && maxCachedInstances < 0) {
+            return new ConcurrentHashMap<Serializable, Object>();
+        }
+        return new BoundedInstanceCache(maxCachedInstancesPerEntity, firstLevelCacheStatistics, new BoundedInstanceCache.EvictionHandler() {
+            @Override
+            public boolean isPinned(Serializable key, Object instance) {
+                Set<Serializable> pendingIds = pendingIdsByType.get(type);
+                return (pendingIds != null && pendingIds.contains(key)) ||
+                        pendingInstancesWithoutId.contains(instance) ||
+                        lockedObjects.contains(instance) ||
+                        !isProvablyClean(key, instance);
+            }
+
+            @Override
+            public void evicted(Serializable key, Object instance) {
+                Map<Serializable, Object> entries = firstLevelEntryCache.get(type);
+                if (entries != null) {
+                    entries.remove(key);
+                }
+                entries = firstLevelEntryCacheDirtyCheck.get(type);
+                if (entries != null) {
+                    entries.remove(key);
+                }
+                removeAttributesForEntity(instance);
+            }
+        });
+    }
+
+    /**
+     * Whether the given cached instance is known to have no unflushed changes, which is required before it is evicted.
+     * Instances that track their own changes are asked directly, any other instance is compared with the native entry
+     * it was loaded from and cannot be proven clean without one
+     */
+    private boolean isProvablyClean(Serializable key, Object instance) {
+        if (instance instanceof DirtyCheckable) {
+            return !((DirtyCheckable) instance).hasChanged();
+        }
+        Persister persister = getPersister(instance);
+        if (!(persister instanceof NativeEntryEntityPersister)) {
+            return false;
+        }
+        NativeEntryEntityPersister nativeEntryPersister = (NativeEntryEntityPersister) persister;
+        Object entry = getCachedEntry(nativeEntryPersister.getPersistentEntity(), key, false);
+        return !nativeEntryPersister.isDirty(instance, entry);
+    }
+
+    /**
+     * Considers every cached instance for eviction again, once pinned instances may have been released
+     */
+    private void resetEviction() {
+        for (Map<Serializable, Object> cache : firstLevelCache.values()) {
+            if (cache instanceof BoundedInstanceCache) {
+                ((BoundedInstanceCache) cache).resetEviction();
+            }
+        }
+    }
+
+    /**
+     * The identifiers of the instances of the given type with pending operations, which are never evicted from the
+     * first level cache
+     */
+    private Set<Serializable> getPendingIds(Class type) {
+        Set<Serializable> pendingIds = pendingIdsByType.get(type);
+        if (pendingIds == null) {
+            pendingIds = Collections.newSetFromMap(new ConcurrentHashMap<Serializable, Boolean>());
+            Set<Serializable> existing = pendingIdsByType.putIfAbsent(type, pendingIds);
+            if (existing != null) {
+                pendingIds = existing;
+            }
+        }
+        return pendingIds;
+    }
+
     private Map<Serializable, Object> getEntryCache(Class c, boolean forDirtyCheck) {
         Map<Class, Map<Serializable, Object>> caches = forDirtyCheck ? firstLevelEntryCacheDirtyCheck : firstLevelEntryCache;
         Map<Serializable, Object> cache = caches.get(c);
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.core.cache;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * A first level cache for a single entity type that holds at most a configured number of instances and evicts the
+ * least recently used instance once the limit is exceeded. Instances that the {@link EvictionHandler} reports as pinned
+ * (for example dirty instances or those with pending operations) are never evicted, and neither is the instance that was
+ * added last, so if every other instance is pinned the cache temporarily exceeds its limit.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+public class BoundedInstanceCache extends AbstractMap<Serializable, Object> {
+
+    private final int maxSize;
+    private final LinkedHashMap<Serializable, Object> delegate;
+    private final FirstLevelCacheStatistics statistics;
+    private final EvictionHandler evictionHandler;
+    private Serializable lastPutKey;
+    private boolean evictionBlocked;
+    private final Deque<Serializable> evictionCandidates = new ArrayDeque<Serializable>();
+
+    /**
+     * @param maxSize The maximum number of instances to hold or -1 if the cache is only bounded by the session wide limit
+     * @param statistics The statistics to update
+     * @param evictionHandler The handler to consult for pinned instances and to notify on eviction
+     */
+    public BoundedInstanceCache(int maxSize, FirstLevelCacheStatistics statistics, EvictionHandler evictionHandler) {
+        this.maxSize = maxSize;
+        this.statistics = statistics;
+        this.evictionHandler = evictionHandler;
+        this.delegate = new LinkedHashMap<Serializable, Object>(16, 0.75f, true);
+    }
+
+    @Override
+    public synchronized Object get(Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return delegate.containsKey(key);
+    }
+
+    @Override
+    public synchronized boolean containsValue(Object value) {
+        return delegate.containsValue(value);
+    }
+
+    @Override
+    public Object put(Serializable key, Object value) {
+        Object previous;
+        Map.Entry<Serializable, Object> evicted = null;
+        synchronized (this) {
+            previous = delegate.put(key, value);
+            if (evictionBlocked && lastPutKey != null && !lastPutKey.equals(key)) {
+                // the previously added instance is the only one that may have become evictable
+                evictionCandidates.add(lastPutKey);
+            }
+            lastPutKey = key;
+            if (previous == null) {
+                statistics.adjustSize(1);
+                if (maxSize > -1 && delegate.size() > maxSize) {
+                    evicted = removeEldestUnpinned();
+                }
+            }
+        }
+        if (evicted != null) {
+            evictionHandler.evicted(evicted.getKey(), evicted.getValue());
+        }
+        return previous;
+    }
+
+    @Override
+    public synchronized Object remove(Object key) {
+        Object removed = delegate.remove(key);
+        if (removed != null) {
+            statistics.adjustSize(-1);
+        }
+        return removed;
+    }
+
+    @Override
+    public synchronized int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        statistics.adjustSize(-delegate.size());
+        delegate.clear();
+        lastPutKey = null;
+        resetEviction();
+    }
+
+    /**
+     * Evicts the least recently used instance that is not pinned
+     *
+     * @return True if an instance was evicted
+     */
+    public boolean evictEldest() {
+        Map.Entry<Serializable, Object> evicted;
+        synchronized (this) {
+            evicted = removeEldestUnpinned();
+        }
+        if (evicted != null) {
+            evictionHandler.evicted(evicted.getKey(), evicted.getValue());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Considers every instance for eviction again, for example once a flush may have released pinned instances. Until
+     * then a cache that found all of its instances pinned only checks the instances added since, so that a cache full
+     * of pinned instances is not scanned on every put
+     */
+    public synchronized void resetEviction() {
+        evictionBlocked = false;
+        evictionCandidates.clear();
+    }
+
+    @Override
+    public synchronized Set<Entry<Serializable, Object>> entrySet() {
+        return Collections.unmodifiableSet(new LinkedHashMap<Serializable, Object>(delegate).entrySet());
+    }
+
+    private Map.Entry<Serializable, Object> removeEldestUnpinned() {
+        if (evictionBlocked) {
+            return removeUnpinnedCandidate();
+        }
+        Iterator<Map.Entry<Serializable, Object>> i = delegate.entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry<Serializable, Object> entry = i.next();
+            if (entry.getKey().equals(lastPutKey)) {
+                // the instance that was just added must remain available to the caller
+                continue;
+            }
+            if (!evictionHandler.isPinned(entry.getKey(), entry.getValue())) {
+                Map.Entry<Serializable, Object> evicted = new AbstractMap.SimpleImmutableEntry<Serializable, Object>(entry);
+                i.remove();
+                recordEviction();
+                return evicted;
+            }
+        }
+        evictionBlocked = true;
+        return null;
+    }
+
+    private Map.Entry<Serializable, Object> removeUnpinnedCandidate() {
+        Serializable key;
+        while ((key = evictionCandidates.poll()) != null) {
+            if (key.equals(lastPutKey) || !delegate.containsKey(key)) {
+                continue;
+            }
+            Object instance = delegate.get(key);
+            if (!evictionHandler.isPinned(key, instance)) {
+                delegate.remove(key);
+                recordEviction();
+                return new AbstractMap.SimpleImmutableEntry<Serializable, Object>(key, instance);
+            }
+        }
+        return null;
+    }
+
+    private void recordEviction() {
+        statistics.adjustSize(-1);
+        statistics.recordEviction();
+    }
+
+    /**
+     * Decides which instances may be evicted and receives notification of evictions
+     */
+    public interface EvictionHandler {
+
+        /**
+         * @param key The key
+         * @param instance The cached instance
+         * @return True if the instance must remain in the cache
+         */
+        boolean isPinned(Serializable key, Object instance);
+
+        /**
+         * Called once an instance has been evicted
+         *
+         * @param key The key
+         * @param instance The evicted instance
+         */
+        void evicted(Serializable key, Object instance);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.core.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit, miss and eviction counters for the first level cache of a session
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+public class FirstLevelCacheStatistics {
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong size = new AtomicLong();
+
+    /**
+     * @return The number of lookups that found a cached instance
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of lookups that did not find a cached instance
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of instances evicted due to size limits
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return The number of instances currently held in bounded caches
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    /**
+     * @return The ratio of hits to total lookups or zero if there were no lookups
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0d : (double) h / total;
+    }
+
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    public void recordEviction() {
+        evictions.incrementAndGet();
+    }
+
+    void adjustSize(long delta) {
+        size.addAndGet(delta);
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters
+     */
+    public void reset() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "FirstLevelCacheStatistics{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", size=" + size + '}';
+    }
+}
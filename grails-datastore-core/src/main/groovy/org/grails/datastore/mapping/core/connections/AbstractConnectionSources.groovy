@@ -3,8 +3,17 @@ package org.grails.datastore.mapping.core.connections
 import groovy.transform.CompileDynamic
 import groovy.transform.CompileStatic
 import org.grails.datastore.mapping.core.DatastoreUtils
+import org.grails.datastore.mapping.core.exceptions.ConfigurationException
 import org.springframework.core.env.PropertyResolver
 
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
+
 /**
  * Abstract implementation of the {@link ConnectionSources} interface
  *
@@ -53,6 +62,99 @@ abstract class AbstractConnectionSources <T, S extends ConnectionSourceSettings>
         return toValidConnectionSourceNames(allConnectionSources);
     }
 
+    /**
+     * Creates the connection sources with the given names using the factory. When the initialization concurrency of the
+     * default connection source settings is greater than 1 the connection sources are created concurrently on a bounded pool
+     *
+     * @param names The names of the connection sources
+     * @return The created connection sources in the order of the names
+     */
+    protected Map<String, ConnectionSource<T, S>> createConnectionSources(List<String> names) {
+        final S fallbackSettings = defaultConnectionSource.getSettings()
+        Map<String, ConnectionSource<T, S>> connectionSources = new LinkedHashMap<>()
+        int concurrency = Math.min(fallbackSettings.connectionSources.initializationConcurrency, names.size())
+        if(concurrency <= 1) {
+            for(String name in names) {
+                ConnectionSource<T, S> connectionSource = connectionSourceFactory.create(name, configuration, fallbackSettings)
+                if(connectionSource != null) {
+                    connectionSources.put(name, connectionSource)
+                }
+            }
+            return connectionSources
+        }
+
+        final ClassLoader classLoader = Thread.currentThread().contextClassLoader
+        final AtomicInteger threadCount = new AtomicInteger()
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+            @Override
+            Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "gorm-connection-source-" + threadCount.incrementAndGet())
+                thread.setDaemon(true)
+                thread.setContextClassLoader(classLoader)
+                return thread
+            }
+        })
+        try {
+            Map<String, Future<ConnectionSource<T, S>>> futures = new LinkedHashMap<>()
+            for(String name in names) {
+                futures.put(name, executor.submit(new CreateConnectionSourceTask<T, S>(connectionSourceFactory, name, configuration, fallbackSettings)))
+            }
+
+            // wait for every connection source so that none are left half created if one fails
+            Throwable failure = null
+            for(Map.Entry<String, Future<ConnectionSource<T, S>>> entry in futures.entrySet()) {
+                try {
+                    ConnectionSource<T, S> connectionSource = entry.value.get()
+                    if(connectionSource != null) {
+                        connectionSources.put(entry.key, connectionSource)
+                    }
+                } catch (ExecutionException e) {
+                    if(failure == null) {
+                        failure = e.cause
+                    }
+                }
+            }
+            if(failure != null) {
+                for(ConnectionSource<T, S> connectionSource in connectionSources.values()) {
+                    try {
+                        connectionSource.close()
+                    } catch (Throwable ignored) {
+                        // already failing
+                    }
+                }
+                if(failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure
+                }
+                throw new ConfigurationException("Error creating connection source: " + failure.message, failure)
+            }
+            return connectionSources
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt()
+            throw new ConfigurationException("Interrupted while creating connection sources", e)
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    private static class CreateConnectionSourceTask<T, S extends ConnectionSourceSettings> implements Callable<ConnectionSource<T, S>> {
+        private final ConnectionSourceFactory<T, S> connectionSourceFactory
+        private final String name
+        private final PropertyResolver configuration
+        private final S fallbackSettings
+
+        CreateConnectionSourceTask(ConnectionSourceFactory<T, S> connectionSourceFactory, String name, PropertyResolver configuration, S fallbackSettings) {
+            this.connectionSourceFactory = connectionSourceFactory
+            this.name = name
+            this.configuration = configuration
+            this.fallbackSettings = fallbackSettings
+        }
+
+        @Override
+        ConnectionSource<T, S> call() throws Exception {
+            return connectionSourceFactory.create(name, configuration, fallbackSettings)
+        }
+    }
+
     public static Set<String> toValidConnectionSourceNames(Map<String, Object> allConnectionSources) {
         Set<String> names = allConnectionSources.keySet();
         Set<String> newNames = new LinkedHashSet<>();
@@ -7,6 +7,7 @@ import groovy.transform.builder.SimpleStrategy
 import org.grails.datastore.mapping.config.Settings
 import org.grails.datastore.mapping.engine.types.CustomTypeMarshaller
 import org.grails.datastore.mapping.multitenancy.MultiTenancySettings
+import org.grails.datastore.mapping.query.cache.QueryResultCache
 
 import javax.persistence.FlushModeType
 
@@ -69,6 +70,26 @@ class ConnectionSourceSettings implements Settings {
      */
     MultiTenancySettings multiTenancy = new MultiTenancySettings()
 
+    /**
+     * The settings for sessions
+     */
+    SessionSettings session = new SessionSettings()
+
+    /**
+     * The settings for the query result cache
+     */
+    QueryCacheSettings queryCache = new QueryCacheSettings()
+
+    /**
+     * The settings for the mapping snapshot
+     */
+    MappingSnapshotSettings mappingSnapshot = new MappingSnapshotSettings()
+
+    /**
+     * The settings for initializing connection sources
+     */
+    ConnectionSourcesSettings connectionSources = new ConnectionSourcesSettings()
+
     /**
      * @return Any defaults
      */
@@ -97,6 +118,75 @@ class ConnectionSourceSettings implements Settings {
         Closure constraints
     }
 
+    /**
+     * Represents the session settings
+     */
+    @Builder(builderStrategy = SimpleStrategy, prefix = '')
+    static class SessionSettings {
+        /**
+         * The maximum number of instances of a single entity to hold in the first level cache. -1 means unbounded
+         */
+        int maxCachedInstancesPerEntity = -1
+
+        /**
+         * The maximum number of instances to hold in the first level cache across all entities. -1 means unbounded
+         */
+        int maxCachedInstances = -1
+
+        /**
+         * The number of pending operations after which the session is flushed automatically. -1 disables automatic flushing
+         */
+        int autoFlushThreshold = -1
+    }
+
+    /**
+     * Represents the settings of the query result cache
+     */
+    @Builder(builderStrategy = SimpleStrategy, prefix = '')
+    static class QueryCacheSettings {
+        /**
+         * Whether the results of queries that enable caching are cached. Disabled by default, since cached results are only invalidated by writes made through GORM
+         */
+        boolean enabled = false
+
+        /**
+         * The maximum number of query results to cache
+         */
+        int maxSize = QueryResultCache.DEFAULT_MAX_SIZE
+
+        /**
+         * The time in milliseconds after which cached query results expire. 0 means results only expire when the queried entities are written to
+         */
+        long timeToLive = QueryResultCache.DEFAULT_TIME_TO_LIVE
+    }
+
+    /**
+     * Represents the settings of the mapping snapshot
+     */
+    @Builder(builderStrategy = SimpleStrategy, prefix = '')
+    static class MappingSnapshotSettings {
+        /**
+         * Whether the evaluated mappings of entities are written to a snapshot that is loaded by later starts
+         */
+        boolean enabled = false
+
+        /**
+         * The location of the snapshot file, required when the snapshot is enabled. Should be within a directory only the application can write to
+         */
+        String location
+    }
+
+    /**
+     * Represents the settings for initializing connection sources
+     */
+    @Builder(builderStrategy = SimpleStrategy, prefix = '')
+    static class ConnectionSourcesSettings {
+        /**
+         * The maximum number of connection sources created concurrently at startup. 1 creates them one after another
+         */
+        int initializationConcurrency = 1
+    }
+
     /**
      * Any custom settings
      */
@@ -21,13 +21,12 @@ public class InMemoryConnectionSources<T, S extends ConnectionSourceSettings> ex
         super(defaultConnectionSource, connectionSourceFactory, configuration);
         this.connectionSourceMap.put(ConnectionSource.DEFAULT, defaultConnectionSource);
 
+        List<String> names = new ArrayList<>();
         for(String name : getConnectionSourceNames(connectionSourceFactory, configuration)) {
             if(name.equals("dataSource")) continue; // data source is reserved name for the default
-            ConnectionSource<T, S> connectionSource = connectionSourceFactory.create(name, configuration, defaultConnectionSource.getSettings());
-            if(connectionSource != null) {
-                this.connectionSourceMap.put(name, connectionSource);
-            }
+            names.add(name);
         }
+        this.connectionSourceMap.putAll(createConnectionSources(names));
     }
 
     @Override
@@ -23,7 +23,16 @@ trait DirtyCheckable {
      * changes
      */
     void trackChanges() {
-        $changedProperties = new LinkedHashMap<String, Object>()
+        $changedProperties = createDirtyCheckingState()
+    }
+
+    /**
+     * Creates the map that changes are recorded in. Overridden by classes that use compact change tracking.
+     *
+     * @return The map of changed property names to their original values
+     */
+    Map<String, Object> createDirtyCheckingState() {
+        new LinkedHashMap<String, Object>()
     }
 
     /**
@@ -97,6 +106,25 @@ trait DirtyCheckable {
         }
     }
 
+    /**
+     * Marks the property with the given index as dirty. Used by setters generated for compact change tracking, which
+     * pass the current value so that it does not need to be read dynamically.
+     *
+     * @param propertyIndex The index of the property in the {@link DirtyCheckedPropertyIndex} of the class
+     * @param propertyName The property name
+     * @param newValue The new value
+     * @param oldValue The current value
+     */
+    void markDirty(int propertyIndex, String propertyName, newValue, oldValue) {
+        Map<String, Object> changedProperties = $changedProperties
+        if(changedProperties instanceof IndexedChangedProperties) {
+            ((IndexedChangedProperties) changedProperties).markDirty(propertyIndex, newValue, oldValue)
+        }
+        else {
+            markDirty(propertyName, newValue, oldValue)
+        }
+    }
+
     /**
      * @return A list of the dirty property names
      */
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.dirty.checking;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns each dirty checked property of a class a fixed index so that changes can be recorded in a bitset by
+ * {@link IndexedChangedProperties}. A single instance is generated per class by the dirty checking transformation.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+public final class DirtyCheckedPropertyIndex {
+
+    private final String[] propertyNames;
+    private final Map<String, Integer> indices;
+
+    public DirtyCheckedPropertyIndex(String[] propertyNames) {
+        this.propertyNames = propertyNames.clone();
+        Map<String, Integer> indices = new HashMap<String, Integer>(propertyNames.length * 2);
+        for (int i = 0; i < propertyNames.length; i++) {
+            indices.put(propertyNames[i], i);
+        }
+        this.indices = Collections.unmodifiableMap(indices);
+    }
+
+    /**
+     * @param propertyName The property name
+     * @return The index of the property or -1 if it is not indexed
+     */
+    public int indexOf(String propertyName) {
+        Integer index = indices.get(propertyName);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * @param index The index
+     * @return The name of the property at the given index
+     */
+    public String getPropertyName(int index) {
+        return propertyNames[index];
+    }
+
+    /**
+     * @return The number of indexed properties
+     */
+    public int size() {
+        return propertyNames.length;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.dirty.checking;
+
+import org.codehaus.groovy.runtime.typehandling.DefaultTypeTransformation;
+
+import java.util.*;
+
+/**
+ * A compact record of the changed properties of a {@link DirtyCheckable} instance. Changes to indexed properties are
+ * recorded in a {@code long[]} bitset with the original values held in an array that is only allocated once the
+ * first change is made, avoiding a hash insert per change. Properties that are not indexed, such as those declared by
+ * a subclass, are recorded in a regular map.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+public class IndexedChangedProperties extends AbstractMap<String, Object> {
+
+    private final DirtyCheckedPropertyIndex index;
+    private final long[] dirty;
+    private Object[] originalValues;
+    private Map<String, Object> unindexed;
+
+    public IndexedChangedProperties(DirtyCheckedPropertyIndex index) {
+        this.index = index;
+        this.dirty = new long[(index.size() + 63) >>> 6];
+    }
+
+    /**
+     * Records a change to the property at the given index unless it is already changed or the value is equal to
+     * the current value
+     *
+     * @param propertyIndex The property index
+     * @param newValue The new value
+     * @param oldValue The current value
+     */
+    public void markDirty(int propertyIndex, Object newValue, Object oldValue) {
+        if (!isDirty(propertyIndex) && !DefaultTypeTransformation.compareEqual(newValue, oldValue)) {
+            setDirty(propertyIndex, oldValue);
+        }
+    }
+
+    /**
+     * @param propertyIndex The property index
+     * @return Whether the property at the given index has changed
+     */
+    public boolean isDirty(int propertyIndex) {
+        return (dirty[propertyIndex >>> 6] & (1L << propertyIndex)) != 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int i = indexOf(key);
+        if (i > -1) {
+            return isDirty(i);
+        }
+        return unindexed != null && unindexed.containsKey(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+        int i = indexOf(key);
+        if (i > -1) {
+            return isDirty(i) ? originalValues[i] : null;
+        }
+        return unindexed != null ? unindexed.get(key) : null;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int i = index.indexOf(key);
+        if (i > -1) {
+            Object previous = isDirty(i) ? originalValues[i] : null;
+            setDirty(i, value);
+            return previous;
+        }
+        if (unindexed == null) {
+            unindexed = new LinkedHashMap<String, Object>();
+        }
+        return unindexed.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int i = indexOf(key);
+        if (i > -1) {
+            if (!isDirty(i)) {
+                return null;
+            }
+            Object previous = originalValues[i];
+            dirty[i >>> 6] &= ~(1L << i);
+            originalValues[i] = null;
+            return previous;
+        }
+        return unindexed != null ? unindexed.remove(key) : null;
+    }
+
+    @Override
+    public int size() {
+        int size = unindexed != null ? unindexed.size() : 0;
+        for (long word : dirty) {
+            size += Long.bitCount(word);
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (long word : dirty) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return unindexed == null || unindexed.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(dirty, 0L);
+        originalValues = null;
+        unindexed = null;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        Map<String, Object> changes = new LinkedHashMap<String, Object>();
+        for (int w = 0; w < dirty.length; w++) {
+            long word = dirty[w];
+            while (word != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                changes.put(index.getPropertyName(i), originalValues[i]);
+                word &= word - 1;
+            }
+        }
+        if (unindexed != null) {
+            changes.putAll(unindexed);
+        }
+        return Collections.unmodifiableMap(changes).entrySet();
+    }
+
+    private void setDirty(int propertyIndex, Object originalValue) {
+        if (originalValues == null) {
+            originalValues = new Object[index.size()];
+        }
+        dirty[propertyIndex >>> 6] |= 1L << propertyIndex;
+        originalValues[propertyIndex] = originalValue;
+    }
+
+    private int indexOf(Object key) {
+        return key instanceof String ? index.indexOf((String) key) : -1;
+    }
+}
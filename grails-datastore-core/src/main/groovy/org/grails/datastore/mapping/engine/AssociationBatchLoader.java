@@ -0,0 +1,389 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.engine;
+
+import org.grails.datastore.mapping.config.Entity;
+import org.grails.datastore.mapping.config.Property;
+import org.grails.datastore.mapping.core.AbstractSession;
+import org.grails.datastore.mapping.model.ClassMapping;
+import org.grails.datastore.mapping.model.MappingContext;
+import org.grails.datastore.mapping.model.PersistentEntity;
+import org.grails.datastore.mapping.model.PropertyMapping;
+import org.grails.datastore.mapping.model.types.Association;
+import org.grails.datastore.mapping.model.types.ToOne;
+import org.grails.datastore.mapping.proxy.ProxyHandler;
+import org.grails.datastore.mapping.query.Query;
+
+import javax.persistence.FlushModeType;
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Loads lazy associations of sibling instances held in the same session in batches. Uninitialized proxies and lazy
+ * collections are registered as they are created, and when one of them is initialized up to the configured
+ * {@link Property#getBatchSize() batchSize} pending siblings are loaded with a single query using an {@link Query.In} criterion.
+ * Lists are not batch loaded since the query cannot preserve the order of their elements.
+ *
+ * Batch queries never flush the session, since proxies and collections may be initialized during a flush or from an
+ * event listener. At most {@link #MAX_PENDING_BATCHES} batches of keys are remembered per type or association, older
+ * keys are forgotten and loaded individually.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class AssociationBatchLoader {
+
+    /**
+     * The maximum number of batches of pending keys remembered per type or association
+     */
+    public static final int MAX_PENDING_BATCHES = 10;
+
+    private final AbstractSession session;
+    private final ConcurrentMap<Class, PendingProxies> pendingProxies = new ConcurrentHashMap<Class, PendingProxies>();
+    private final ConcurrentMap<Association, BatchingAssociationQueryExecutor> collectionExecutors = new ConcurrentHashMap<Association, BatchingAssociationQueryExecutor>();
+
+    public AssociationBatchLoader(AbstractSession session) {
+        this.session = session;
+    }
+
+    /**
+     * Resolves the batch size for the given association. The batch size of the property mapping is used if specified,
+     * otherwise for to-one associations the batch size of the associated entity's mapping is used.
+     *
+     * @param association The association
+     * @return The batch size or -1 if the association should not be batch loaded
+     */
+    public static int getBatchSize(Association association) {
+        PropertyMapping<Property> mapping = association.getMapping();
+        Property mappedForm = mapping != null ? mapping.getMappedForm() : null;
+        Integer batchSize = mappedForm != null ? mappedForm.getBatchSize() : null;
+        if (batchSize == null && association instanceof ToOne) {
+            PersistentEntity associatedEntity = association.getAssociatedEntity();
+            ClassMapping classMapping = associatedEntity != null ? associatedEntity.getMapping() : null;
+            Entity entityMapping = classMapping != null ? classMapping.getMappedForm() : null;
+            batchSize = entityMapping != null ? entityMapping.getBatchSize() : null;
+        }
+        return batchSize != null && batchSize > 1 ? batchSize : -1;
+    }
+
+    /**
+     * Registers an uninitialized proxy so that it can be loaded together with other proxies of the same type
+     *
+     * @param type The proxied type
+     * @param key The key of the proxied instance
+     * @param batchSize The maximum number of proxies to load at once
+     */
+    public void registerProxy(Class type, Serializable key, int batchSize) {
+        if (key == null || batchSize < 2) {
+            return;
+        }
+        PendingProxies pending = pendingProxies.get(type);
+        if (pending == null) {
+            pending = new PendingProxies(type);
+            PendingProxies existing = pendingProxies.putIfAbsent(type, pending);
+            if (existing != null) {
+                pending = existing;
+            }
+        }
+        pending.add(key, batchSize);
+    }
+
+    /**
+     * Forgets a pending proxy, for example because it was evicted from the session
+     *
+     * @param type The proxied type
+     * @param key The key of the proxied instance
+     */
+    public void evictProxy(Class type, Serializable key) {
+        if (type == null || key == null) {
+            return;
+        }
+        PendingProxies pending = pendingProxies.get(type);
+        if (pending != null) {
+            pending.remove(key);
+        }
+    }
+
+    /**
+     * Loads the instance with the given key together with other pending proxies of the same type into the first level
+     * cache. Keys are no longer pending once they have been loaded
+     *
+     * @param type The type
+     * @param key The key of the proxy that is being initialized
+     * @return True if a batch was loaded
+     */
+    public boolean loadProxyBatch(Class type, Serializable key) {
+        PendingProxies pending = pendingProxies.get(type);
+        if (pending == null) {
+            return false;
+        }
+        List<Serializable> batch = pending.nextBatch(key);
+        if (pending.isEmpty()) {
+            pendingProxies.remove(type, pending);
+        }
+        if (batch == null) {
+            return false;
+        }
+
+        PersistentEntity entity = session.getMappingContext().getPersistentEntity(type.getName());
+        if (entity == null) {
+            return false;
+        }
+        Query query = session.createQuery(type);
+        query.in(entity.getIdentity().getName(), batch);
+        for (Object instance : listWithoutFlush(query)) {
+            Serializable id = session.getObjectIdentifier(instance);
+            if (id != null && !session.isCached(type, id)) {
+                session.cacheInstance(type, id, instance);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wraps the executor of a lazy collection so that the collections of sibling owners are loaded in batches
+     *
+     * @param association The association
+     * @param delegate The executor used when no siblings are pending
+     * @param ownerKey The key of the owner of the collection being created
+     * @param batchSize The maximum number of collections to load at once
+     * @return The executor to use for the collection
+     */
+    public AssociationQueryExecutor registerCollection(Association association, AssociationQueryExecutor delegate, Serializable ownerKey, int batchSize) {
+        Association inverseSide = association.getInverseSide();
+        if (ownerKey == null || batchSize < 2 || !association.isBidirectional() || !(inverseSide instanceof ToOne)) {
+            return delegate;
+        }
+        if (List.class.isAssignableFrom(association.getType())) {
+            // the batched query cannot preserve the order of the elements of each list
+            return delegate;
+        }
+        BatchingAssociationQueryExecutor executor = collectionExecutors.get(association);
+        if (executor == null) {
+            executor = new BatchingAssociationQueryExecutor(association, delegate, batchSize);
+            BatchingAssociationQueryExecutor existing = collectionExecutors.putIfAbsent(association, executor);
+            if (existing != null) {
+                executor = existing;
+            }
+        }
+        executor.register(ownerKey);
+        return executor;
+    }
+
+    /**
+     * Discards collection contents that were loaded ahead of time, since they may be stale after a flush
+     */
+    public void discardPrefetched() {
+        for (BatchingAssociationQueryExecutor executor : collectionExecutors.values()) {
+            executor.discardPrefetched();
+        }
+    }
+
+    /**
+     * Forgets all pending proxies and collections
+     */
+    public void clear() {
+        pendingProxies.clear();
+        collectionExecutors.clear();
+    }
+
+    /**
+     * Lists the results of a batch query without flushing the session first
+     */
+    private List listWithoutFlush(Query query) {
+        FlushModeType flushMode = session.getFlushMode();
+        if (flushMode == FlushModeType.COMMIT) {
+            return query.list();
+        }
+        session.setFlushMode(FlushModeType.COMMIT);
+        try {
+            return query.list();
+        } finally {
+            session.setFlushMode(flushMode);
+        }
+    }
+
+    /**
+     * Adds a key to a set of pending keys, forgetting the oldest keys once the set holds more than
+     * {@link #MAX_PENDING_BATCHES} batches
+     */
+    private static void addPending(Set<Serializable> pending, Serializable key, int batchSize) {
+        pending.add(key);
+        int limit = batchSize * MAX_PENDING_BATCHES;
+        Iterator<Serializable> i = pending.iterator();
+        while (pending.size() > limit && i.hasNext()) {
+            i.next();
+            i.remove();
+        }
+    }
+
+    private static List<Serializable> takeBatch(Set<Serializable> pending, Serializable key, int batchSize) {
+        if (!pending.remove(key)) {
+            return null;
+        }
+        List<Serializable> batch = new ArrayList<Serializable>(batchSize);
+        batch.add(key);
+        Iterator<Serializable> i = pending.iterator();
+        while (i.hasNext() && batch.size() < batchSize) {
+            batch.add(i.next());
+            i.remove();
+        }
+        return batch;
+    }
+
+    private class PendingProxies {
+        private final Class type;
+        private final Set<Serializable> keys = new LinkedHashSet<Serializable>();
+        private int batchSize;
+
+        PendingProxies(Class type) {
+            this.type = type;
+        }
+
+        synchronized void add(Serializable key, int batchSize) {
+            this.batchSize = Math.max(this.batchSize, batchSize);
+            addPending(keys, key, this.batchSize);
+        }
+
+        synchronized void remove(Serializable key) {
+            keys.remove(key);
+        }
+
+        synchronized boolean isEmpty() {
+            return keys.isEmpty();
+        }
+
+        synchronized List<Serializable> nextBatch(Serializable key) {
+            if (!keys.remove(key) || session.isCached(type, key)) {
+                return null;
+            }
+            List<Serializable> batch = new ArrayList<Serializable>(batchSize);
+            batch.add(key);
+            Iterator<Serializable> i = keys.iterator();
+            while (i.hasNext() && batch.size() < batchSize) {
+                Serializable pendingKey = i.next();
+                i.remove();
+                // skip proxies whose targets were loaded in the meantime
+                if (!session.isCached(type, pendingKey)) {
+                    batch.add(pendingKey);
+                }
+            }
+            return batch.size() > 1 ? batch : null;
+        }
+    }
+
+    private class BatchingAssociationQueryExecutor implements AssociationQueryExecutor<Serializable, Object> {
+        private final Association association;
+        private final AssociationQueryExecutor delegate;
+        private final int batchSize;
+        private final Set<Serializable> pending = new LinkedHashSet<Serializable>();
+        private final Map<Serializable, List<Object>> prefetched = new HashMap<Serializable, List<Object>>();
+
+        BatchingAssociationQueryExecutor(Association association, AssociationQueryExecutor delegate, int batchSize) {
+            this.association = association;
+            this.delegate = delegate;
+            this.batchSize = batchSize;
+        }
+
+        synchronized void register(Serializable ownerKey) {
+            if (!prefetched.containsKey(ownerKey)) {
+                addPending(pending, ownerKey, batchSize);
+            }
+        }
+
+        synchronized void discardPrefetched() {
+            prefetched.clear();
+        }
+
+        @Override
+        public List<Object> query(Serializable primaryKey) {
+            List<Serializable> batch;
+            synchronized (this) {
+                List<Object> results = prefetched.remove(primaryKey);
+                if (results != null) {
+                    return results;
+                }
+                pending.add(primaryKey);
+                batch = takeBatch(pending, primaryKey, batchSize);
+            }
+            if (batch.size() == 1) {
+                return delegate.query(primaryKey);
+            }
+
+            Map<Serializable, List<Object>> grouped = loadBatch(batch);
+            List<Object> results;
+            synchronized (this) {
+                results = grouped.remove(primaryKey);
+                prefetched.putAll(grouped);
+            }
+            return results;
+        }
+
+        private Map<Serializable, List<Object>> loadBatch(List<Serializable> ownerKeys) {
+            Map<Serializable, List<Object>> grouped = new LinkedHashMap<Serializable, List<Object>>();
+            for (Serializable ownerKey : ownerKeys) {
+                grouped.put(ownerKey, new ArrayList<Object>());
+            }
+
+            MappingContext mappingContext = session.getMappingContext();
+            ProxyHandler proxyHandler = mappingContext.getProxyHandler();
+            PersistentEntity owner = association.getOwner();
+            Class ownerIdType = owner.getIdentity().getType();
+            PersistentEntity childEntity = association.getAssociatedEntity();
+            Class childType = childEntity.getJavaClass();
+            String inverseName = association.getInverseSide().getName();
+            boolean returnKeys = delegate.doesReturnKeys();
+
+            Query query = session.createQuery(childType);
+            query.in(inverseName, ownerKeys);
+            for (Object child : listWithoutFlush(query)) {
+                Object ownerInstance = mappingContext.getEntityReflector(childEntity).getProperty(child, inverseName);
+                if (ownerInstance == null) {
+                    continue;
+                }
+                Serializable ownerId = proxyHandler.isProxy(ownerInstance) ?
+                        proxyHandler.getIdentifier(ownerInstance) :
+                        session.getObjectIdentifier(ownerInstance);
+                if (ownerId != null && !ownerIdType.isInstance(ownerId)) {
+                    ownerId = (Serializable) mappingContext.getConversionService().convert(ownerId, ownerIdType);
+                }
+                List<Object> group = grouped.get(ownerId);
+                if (group == null) {
+                    continue;
+                }
+                Serializable childId = session.getObjectIdentifier(child);
+                if (childId != null && !session.isCached(childType, childId)) {
+                    session.cacheInstance(childType, childId, child);
+                }
+                group.add(returnKeys ? childId : child);
+            }
+            return grouped;
+        }
+
+        @Override
+        public PersistentEntity getIndexedEntity() {
+            return delegate.getIndexedEntity();
+        }
+
+        @Override
+        public boolean doesReturnKeys() {
+            return delegate.doesReturnKeys();
+        }
+    }
+}
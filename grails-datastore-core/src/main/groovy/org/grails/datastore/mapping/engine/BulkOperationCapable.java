@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.engine;
+
+import java.util.Map;
+
+import org.grails.datastore.mapping.query.api.QueryableCriteria;
+
+/**
+ * Implemented by {@link Persister} instances that can execute a delete or update of all entities matching a
+ * criteria as a single operation against the datastore, without loading the matching entities.
+ *
+ * As with batch DML in Hibernate and JPA, persistence events are not triggered for the individual entities affected.
+ * If -1 is returned the session falls back to loading and processing the matching entities in batches.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+public interface BulkOperationCapable {
+
+    /**
+     * Deletes all entities matching the given criteria
+     *
+     * @param criteria The criteria
+     * @return The number of entities deleted or -1 if the criteria cannot be executed as a bulk operation
+     */
+    long deleteAll(QueryableCriteria criteria);
+
+    /**
+     * Updates the given properties of all entities matching the given criteria. Only the given properties are written,
+     * the version and the lastUpdated property are not changed unless they are included
+     *
+     * @param criteria The criteria
+     * @param properties The property names and values to set
+     * @return The number of entities updated or -1 if the criteria or properties cannot be executed as a bulk operation
+     */
+    long updateAll(QueryableCriteria criteria, Map<String, Object> properties);
+}
@@ -22,6 +22,7 @@ import java.util.List;
 import org.grails.datastore.mapping.config.Property;
 import org.grails.datastore.mapping.core.Session;
 import org.grails.datastore.mapping.core.SessionImplementor;
+import org.grails.datastore.mapping.engine.event.ListenerAwareEventPublisher;
 import org.grails.datastore.mapping.engine.event.PostDeleteEvent;
 import org.grails.datastore.mapping.engine.event.PostInsertEvent;
 import org.grails.datastore.mapping.engine.event.PostLoadEvent;
@@ -37,6 +38,7 @@ import org.grails.datastore.mapping.model.PropertyMapping;
 import org.grails.datastore.mapping.model.config.GormProperties;
 import org.grails.datastore.mapping.proxy.ProxyFactory;
 import org.grails.datastore.mapping.reflect.EntityReflector;
+import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationEventPublisher;
 
 /**
@@ -282,8 +284,10 @@ public abstract class EntityPersister implements Persister {
 
     protected Object newEntityInstance(PersistentEntity persistentEntity) {
         Object o = persistentEntity.newInstance();
-        publisher.publishEvent(new PreLoadEvent(session.getDatastore(), getPersistentEntity(),
-                createEntityAccess(persistentEntity, o)));
+        if (hasListeners(PreLoadEvent.class)) {
+            publisher.publishEvent(new PreLoadEvent(session.getDatastore(), getPersistentEntity(),
+                    createEntityAccess(persistentEntity, o)));
+        }
         return o;
     }
 
@@ -294,12 +298,18 @@ public abstract class EntityPersister implements Persister {
     * @return true if the operation should be cancelled
     */
     public boolean cancelInsert(final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
+       if (!hasListeners(PreInsertEvent.class)) {
+           return false;
+       }
        PreInsertEvent event = new PreInsertEvent(session.getDatastore(), persistentEntity, entityAccess);
        publisher.publishEvent(event);
        return event.isCancelled();
    }
 
     public void firePostInsertEvent(final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
+        if (!hasListeners(PostInsertEvent.class)) {
+            return;
+        }
         publisher.publishEvent(new PostInsertEvent(
                 session.getDatastore(), persistentEntity, entityAccess));
     }
@@ -311,6 +321,9 @@ public abstract class EntityPersister implements Persister {
     * @return true if the operation should be cancelled
     */
     public boolean cancelUpdate(final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
+       if (!hasListeners(PreUpdateEvent.class)) {
+           return false;
+       }
        PreUpdateEvent event = new PreUpdateEvent(session.getDatastore(), persistentEntity, entityAccess);
        publisher.publishEvent(event);
        return event.isCancelled();
@@ -323,6 +336,9 @@ public abstract class EntityPersister implements Persister {
      * @return true if the operation should be cancelled
      */
     public boolean cancelDelete( final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
+        if (!hasListeners(PreDeleteEvent.class)) {
+            return false;
+        }
         PreDeleteEvent event = new PreDeleteEvent(session.getDatastore(), persistentEntity, entityAccess);
         publisher.publishEvent(event);
         return event.isCancelled();
@@ -335,31 +351,60 @@ public abstract class EntityPersister implements Persister {
      * @return true if the operation should be cancelled
      */
     public boolean cancelLoad( final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
+        if (!hasListeners(PreLoadEvent.class)) {
+            return false;
+        }
         PreLoadEvent event = new PreLoadEvent(session.getDatastore(), persistentEntity, entityAccess);
         publisher.publishEvent(event);
         return event.isCancelled();
     }
 
     public void firePostUpdateEvent(final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
+        if (!hasListeners(PostUpdateEvent.class)) {
+            return;
+        }
         publisher.publishEvent(new PostUpdateEvent(
                 session.getDatastore(), persistentEntity, entityAccess));
     }
 
     public void firePostDeleteEvent(final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
+        if (!hasListeners(PostDeleteEvent.class)) {
+            return;
+        }
         publisher.publishEvent(new PostDeleteEvent(
                 session.getDatastore(), persistentEntity, entityAccess));
     }
 
     public void firePreLoadEvent(final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
+        if (!hasListeners(PreLoadEvent.class)) {
+            return;
+        }
         publisher.publishEvent(new PreLoadEvent(
                 session.getDatastore(), persistentEntity, entityAccess));
     }
 
     public void firePostLoadEvent(final PersistentEntity persistentEntity, final EntityAccess entityAccess) {
+        if (!hasListeners(PostLoadEvent.class)) {
+            return;
+        }
         publisher.publishEvent(new PostLoadEvent(
                 session.getDatastore(), persistentEntity, entityAccess));
     }
 
+    /**
+     * Whether any listener would receive a persistence event of the given type. Publishers that cannot tell are
+     * assumed to have listeners.
+     *
+     * @param eventType The event type
+     * @return True if the event should be created and published
+     */
+    protected boolean hasListeners(Class<? extends ApplicationEvent> eventType) {
+        if (publisher instanceof ListenerAwareEventPublisher) {
+            return ((ListenerAwareEventPublisher) publisher).hasListeners(eventType, session.getDatastore().getClass());
+        }
+        return publisher != null;
+    }
+
     public boolean isVersioned(final EntityAccess ea) {
 
         if (ea != null && !ea.getPersistentEntity().isVersioned()) {
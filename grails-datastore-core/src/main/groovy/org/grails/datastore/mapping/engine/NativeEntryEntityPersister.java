@@ -39,6 +39,7 @@ import org.grails.datastore.mapping.collection.PersistentList;
 import org.grails.datastore.mapping.collection.PersistentSet;
 import org.grails.datastore.mapping.collection.PersistentSortedSet;
 import org.grails.datastore.mapping.config.Property;
+import org.grails.datastore.mapping.core.AbstractSession;
 import org.grails.datastore.mapping.core.Session;
 import org.grails.datastore.mapping.core.SessionImplementor;
 import org.grails.datastore.mapping.core.impl.PendingInsert;
@@ -122,6 +123,7 @@ public abstract class NativeEntryEntityPersister<T, K> extends ThirdPartyCacheEn
             session.setFlushMode(FlushModeType.COMMIT);
             cascadeBeforeDelete(persistentEntity, entityAccess, key, obj);
             deleteEntry(getEntityFamily(), key, obj);
+            evictFromTPCache(persistentEntity, (Serializable) key);
             cascadeAfterDelete(persistentEntity, entityAccess, key, obj);
         }
         finally {
@@ -248,6 +250,9 @@ public abstract class NativeEntryEntityPersister<T, K> extends ThirdPartyCacheEn
 
             if (!keys.isEmpty()) {
                 deleteEntries(getEntityFamily(), new ArrayList<K>(keys));
+                for (K key : keys) {
+                    evictFromTPCache(persistentEntity, (Serializable) key);
+                }
                 for (Object object : deleteList) {
                     firePostDeleteEvent(persistentEntity, createEntityAccess(persistentEntity, object));
                 }
@@ -315,11 +320,19 @@ public abstract class NativeEntryEntityPersister<T, K> extends ThirdPartyCacheEn
         // do nothing
     }
 
+    @Override
+    protected Object getTPCacheVersion(PersistentEntity persistentEntity, T e) {
+        if (persistentEntity.isVersioned() && persistentEntity.getVersion() != null) {
+            return getEntryValue(e, getPropertyKey(persistentEntity.getVersion()));
+        }
+        return null;
+    }
+
     @Override
     protected final Object retrieveEntity(PersistentEntity persistentEntity, Serializable nativeKey) {
 
         final Serializable key = convertToNativeKey(nativeKey);
-        T nativeEntry = getFromTPCache(persistentEntity, nativeKey);
+        T nativeEntry = getFromTPCache(persistentEntity, key);
         if (nativeEntry == null) {
             nativeEntry = retrieveEntry(persistentEntity, getEntityFamily(), key);
             if (nativeEntry == null) {
@@ -492,9 +505,18 @@ public abstract class NativeEntryEntityPersister<T, K> extends ThirdPartyCacheEn
                                 boolean isLazy = isLazyAssociation(associationPropertyMapping);
 
                                 final Class propType = prop.getType();
-                                Object value = isLazy ?
-                                        session.proxy(propType, associationKey) :
-                                        session.retrieve(propType, associationKey);
+                                Object value;
+                                if (isLazy) {
+                                    value = session.proxy(propType, associationKey);
+                                    int batchSize = AssociationBatchLoader.getBatchSize(association);
+                                    if (batchSize > 1 && session instanceof AbstractSession && getProxyFactory().isProxy(value)) {
+                                        ((AbstractSession) session).getAssociationBatchLoader()
+                                                .registerProxy(propType, associationKey, batchSize);
+                                    }
+                                }
+                                else {
+                                    value = session.retrieve(propType, associationKey);
+                                }
                                 ea.setProperty(prop.getName(), value);
                             }
                         }
@@ -542,17 +564,23 @@ public abstract class NativeEntryEntityPersister<T, K> extends ThirdPartyCacheEn
                     if(indexer != null) {
                         nativeKey = convertIdIfNecessary(getPersistentEntity(), nativeKey );
                         if (isLazy) {
+                            AssociationQueryExecutor executor = indexer;
+                            int batchSize = AssociationBatchLoader.getBatchSize(association);
+                            if (batchSize > 1 && session instanceof AbstractSession) {
+                                executor = ((AbstractSession) session).getAssociationBatchLoader()
+                                        .registerCollection(association, indexer, nativeKey, batchSize);
+                            }
                             if (List.class.isAssignableFrom(association.getType())) {
                                 ea.setPropertyNoConversion(association.getName(),
-                                        new PersistentList(nativeKey, session, indexer));
+                                        new PersistentList(nativeKey, session, executor));
                             }
                             else if (SortedSet.class.isAssignableFrom(association.getType())) {
                                 ea.setPropertyNoConversion(association.getName(),
-                                        new PersistentSortedSet(nativeKey, session, indexer));
+                                        new PersistentSortedSet(nativeKey, session, executor));
                             }
                             else if (Set.class.isAssignableFrom(association.getType())) {
                                 ea.setPropertyNoConversion(association.getName(),
-                                        new PersistentSet(nativeKey, session, indexer));
+                                        new PersistentSet(nativeKey, session, executor));
                             }
                         }
                         else {
@@ -16,6 +16,7 @@ package org.grails.datastore.mapping.engine;
 
 import org.grails.datastore.mapping.cache.TPCacheAdapter;
 import org.grails.datastore.mapping.cache.TPCacheAdapterRepository;
+import org.grails.datastore.mapping.cache.VersionedTPCacheAdapter;
 import org.grails.datastore.mapping.core.Session;
 import org.grails.datastore.mapping.model.MappingContext;
 import org.grails.datastore.mapping.model.PersistentEntity;
@@ -48,11 +49,43 @@ public abstract class ThirdPartyCacheEntityPersister<T> extends LockableEntityPe
         }
 
         TPCacheAdapter<T> cacheAdapter = cacheAdapterRepository.getTPCacheAdapter(persistentEntity);
-        if (cacheAdapter != null) {
+        if (cacheAdapter instanceof VersionedTPCacheAdapter) {
+            ((VersionedTPCacheAdapter<T>) cacheAdapter).cacheEntry(id, e, getTPCacheVersion(persistentEntity, e));
+        }
+        else if (cacheAdapter != null) {
             cacheAdapter.cacheEntry(id, e);
         }
     }
 
+    /**
+     * Removes the entry for the given id from the cache, if the cache adapter supports eviction
+     *
+     * @param persistentEntity The entity
+     * @param id The id
+     */
+    protected void evictFromTPCache(PersistentEntity persistentEntity, Serializable id) {
+        if (cacheAdapterRepository == null || id == null) {
+            return;
+        }
+
+        TPCacheAdapter<T> cacheAdapter = cacheAdapterRepository.getTPCacheAdapter(persistentEntity);
+        if (cacheAdapter instanceof VersionedTPCacheAdapter) {
+            ((VersionedTPCacheAdapter<T>) cacheAdapter).evictEntry(id);
+        }
+    }
+
+    /**
+     * Subclasses can override to supply the version of a native entry, which prevents a {@link VersionedTPCacheAdapter}
+     * from replacing a cached entry with an older one
+     *
+     * @param persistentEntity The entity
+     * @param e The native entry
+     * @return The version or null if unknown
+     */
+    protected Object getTPCacheVersion(PersistentEntity persistentEntity, T e) {
+        return null;
+    }
+
     protected T getFromTPCache(PersistentEntity persistentEntity, Serializable id) {
         if (cacheAdapterRepository == null) {
             return null;
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.engine.event;
+
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * An {@link ApplicationEventPublisher} that can report whether any listener is interested in a given event, allowing
+ * callers to avoid creating events that nobody would receive
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+public interface ListenerAwareEventPublisher extends ApplicationEventPublisher {
+
+    /**
+     * @param eventType The type of the event
+     * @param sourceType The type of the event source
+     * @return True if at least one listener supports the event and source type
+     */
+    boolean hasListeners(Class<? extends ApplicationEvent> eventType, Class<?> sourceType);
+}
@@ -15,15 +15,26 @@
 package org.grails.datastore.mapping.model;
 
 import java.beans.Introspector;
+import java.io.File;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import groovy.lang.GroovySystem;
+import groovy.lang.MetaClassRegistry;
 
 import org.grails.datastore.mapping.config.AbstractGormMappingFactory;
 import org.grails.datastore.mapping.config.ConfigurationUtils;
+import org.grails.datastore.mapping.config.MappingSnapshotCache;
+import org.grails.datastore.mapping.config.Settings;
 import org.grails.datastore.mapping.core.connections.ConnectionSourceSettings;
+import org.grails.datastore.mapping.core.exceptions.ConfigurationException;
 import org.grails.datastore.mapping.engine.BeanEntityAccess;
 import org.grails.datastore.mapping.engine.EntityAccess;
 import org.grails.datastore.mapping.engine.types.CustomTypeMarshaller;
@@ -34,10 +45,12 @@ import org.grails.datastore.mapping.multitenancy.MultiTenancySettings;
 import org.grails.datastore.mapping.proxy.JavassistProxyFactory;
 import org.grails.datastore.mapping.proxy.ProxyFactory;
 import org.grails.datastore.mapping.proxy.ProxyHandler;
-import org.grails.datastore.mapping.reflect.ClassPropertyFetcher;
+import org.grails.datastore.mapping.query.plan.QueryPlanCache;
 import org.grails.datastore.mapping.reflect.EntityReflector;
 import org.grails.datastore.mapping.reflect.FieldEntityAccess;
 import org.grails.datastore.mapping.validation.ValidatorRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.core.convert.converter.Converter;
@@ -57,6 +70,8 @@ import org.springframework.validation.Validator;
 @SuppressWarnings("rawtypes")
 public abstract class AbstractMappingContext implements MappingContext, Initializable {
 
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractMappingContext.class);
+
     public static final String GROOVY_PROXY_FACTORY_NAME = "org.grails.datastore.gorm.proxy.GroovyProxyFactory";
     public static final String JAVASIST_PROXY_FACTORY = "javassist.util.proxy.ProxyFactory";
     public static final String CONFIGURATION_PREFIX = "grails.gorm.";
@@ -69,7 +84,10 @@ public abstract class AbstractMappingContext implements MappingContext, Initiali
     protected GenericConversionService conversionService = new DefaultConversionService();
     protected ProxyFactory proxyFactory;
     protected ValidatorRegistry validatorRegistry;
+    protected Map<Class, QueryPlanCache> queryPlanCaches = new ConcurrentHashMap<>();
+    private static final int MIN_ENTITIES_PER_THREAD = 8;
     private boolean canInitializeEntities = true;
+    private int initializationParallelism = Runtime.getRuntime().availableProcessors();
     private boolean initialized;
     private MultiTenancySettings.MultiTenancyMode multiTenancyMode;
 
@@ -105,6 +123,27 @@ public abstract class AbstractMappingContext implements MappingContext, Initiali
             gormMappingFactory.setDefaultConstraints(settings.getDefault().getConstraints());
             gormMappingFactory.setDefaultMapping(settings.getDefault().getMapping());
         }
+        configureMappingSnapshot(settings);
+    }
+
+    /**
+     * Configures the mapping snapshot of the mapping factory if it is enabled
+     *
+     * @param settings The settings
+     */
+    protected void configureMappingSnapshot(ConnectionSourceSettings settings) {
+        MappingFactory mappingFactory = getMappingFactory();
+        ConnectionSourceSettings.MappingSnapshotSettings snapshotSettings = settings.getMappingSnapshot();
+        if(mappingFactory instanceof AbstractGormMappingFactory && snapshotSettings != null && snapshotSettings.isEnabled()) {
+            String location = snapshotSettings.getLocation();
+            // a shared default such as the temporary directory would let other users plant the file that is read back
+            if(location == null || location.trim().isEmpty()) {
+                throw new ConfigurationException("The mapping snapshot is enabled but no location is configured. Set [" + Settings.SETTING_MAPPING_SNAPSHOT_LOCATION + "] to a file in a directory private to the application");
+            }
+            File file = new File(location);
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            ((AbstractGormMappingFactory) mappingFactory).setMappingSnapshotCache(new MappingSnapshotCache(file, classLoader != null ? classLoader : getClass().getClassLoader()));
+        }
     }
 
     public ConversionService getConversionService() {
@@ -190,6 +229,25 @@ public abstract class AbstractMappingContext implements MappingContext, Initiali
         return validatorRegistry;
     }
 
+    /**
+     * Obtains the cache of query plans of the given type shared by all the queries of this mapping context
+     *
+     * @param planType The type of the plan
+     * @param <P> The type of the plan
+     * @return The query plan cache
+     */
+    public <P> QueryPlanCache<P> getQueryPlanCache(Class<P> planType) {
+        QueryPlanCache<P> planCache = queryPlanCaches.get(planType);
+        if (planCache == null) {
+            planCache = new QueryPlanCache<P>();
+            QueryPlanCache<P> existing = queryPlanCaches.putIfAbsent(planType, planCache);
+            if (existing != null) {
+                planCache = existing;
+            }
+        }
+        return planCache;
+    }
+
     private static class DefaultProxyFactoryCreator {
         public static ProxyFactory create() {
             return new JavassistProxyFactory();
@@ -262,14 +320,27 @@ public abstract class AbstractMappingContext implements MappingContext, Initiali
     public PersistentEntity addPersistentEntity(Class javaClass, boolean override) {
         Assert.notNull(javaClass, "PersistentEntity class cannot be null");
         if (override) {
+            // plans rendered against the previous version of the entity are stale
+            for (QueryPlanCache planCache : queryPlanCaches.values()) {
+                planCache.clear();
+            }
             return addPersistentEntityInternal(javaClass, false, canInitializeEntities);
         }
         return addPersistentEntity(javaClass);
     }
 
+    /**
+     * Adds the given classes as entities in bulk. Initialization happens in phases: the meta classes of the entities are
+     * loaded, the entities are then created, registered and initialized in inheritance order so that associations
+     * resolve against already registered entities and finally the reflectors are built in parallel.
+     *
+     * @param javaClasses The classes
+     * @return The entities
+     */
     public Collection<PersistentEntity> addPersistentEntities(Class... javaClasses) {
-        Collection<PersistentEntity> entities = new ArrayList<>();
+        loadMetaClasses(javaClasses);
 
+        Collection<PersistentEntity> entities = new ArrayList<>();
         for (Class javaClass : javaClasses) {
             PersistentEntity entity = createPersistentEntity(javaClass);
             if(entity == null) continue;
@@ -279,19 +350,148 @@ public abstract class AbstractMappingContext implements MappingContext, Initiali
 
         }
         if(canInitializeEntities) {
-            for (PersistentEntity entity : entities) {
+            for (PersistentEntity entity : sortByInheritanceDepth(entities)) {
                 initializePersistentEntity(entity);
             }
+            initializeReflectors(entities);
         }
         for (Listener eventListener : eventListeners) {
             for (PersistentEntity entity : entities) {
                 eventListener.persistentEntityAdded(entity);
             }
         }
-        ClassPropertyFetcher.clearCache();
+        MappingFactory mappingFactory = getMappingFactory();
+        if(mappingFactory instanceof AbstractGormMappingFactory) {
+            ((AbstractGormMappingFactory) mappingFactory).saveMappingSnapshot();
+        }
         return entities;
     }
 
+    /**
+     * @return The number of threads used to initialize entities in bulk
+     */
+    public int getInitializationParallelism() {
+        return initializationParallelism;
+    }
+
+    /**
+     * Sets the number of threads used to initialize entities in bulk. A value of 1 or less initializes entities in the calling thread
+     *
+     * @param initializationParallelism The parallelism
+     */
+    public void setInitializationParallelism(int initializationParallelism) {
+        this.initializationParallelism = initializationParallelism;
+    }
+
+    /**
+     * Loads the meta classes of the given classes in inheritance order. Loading a meta class initializes the class, so
+     * this happens in the calling thread since the static initializers of entities commonly reference each other and
+     * initializing them concurrently could deadlock
+     */
+    protected void loadMetaClasses(Class... javaClasses) {
+        MetaClassRegistry registry = GroovySystem.getMetaClassRegistry();
+        for (Class javaClass : sortClassesByInheritanceDepth(Arrays.asList(javaClasses))) {
+            try {
+                registry.getMetaClass(javaClass);
+            } catch (Throwable e) {
+                LOG.warn("Unable to load the meta class of entity [" + javaClass.getName() + "] ahead of time: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Builds the reflectors of the given initialized entities
+     */
+    protected void initializeReflectors(Collection<PersistentEntity> entities) {
+        Map<String, Callable<Object>> tasks = new LinkedHashMap<>(entities.size());
+        for (final PersistentEntity entity : entities) {
+            if(!entity.isInitialized()) continue;
+
+            tasks.put(entity.getName(), new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return FieldEntityAccess.getOrIntializeReflector(entity);
+                }
+            });
+        }
+        invokeInParallel(tasks);
+    }
+
+    /**
+     * Runs the given tasks, keyed by entity name, on a fork join pool. Failures are logged but otherwise ignored since
+     * the work is repeated lazily when it is first needed
+     */
+    private void invokeInParallel(Map<String, Callable<Object>> tasks) {
+        int parallelism = Math.min(initializationParallelism, tasks.size() / MIN_ENTITIES_PER_THREAD);
+        if(parallelism <= 1) {
+            for (Map.Entry<String, Callable<Object>> task : tasks.entrySet()) {
+                try {
+                    task.getValue().call();
+                } catch (Throwable e) {
+                    logInitializationFailure(task.getKey(), e);
+                }
+            }
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<String> entityNames = new ArrayList<>(tasks.keySet());
+            List<Future<Object>> futures = pool.invokeAll(tasks.values());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    logInitializationFailure(entityNames.get(i), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void logInitializationFailure(String entityName, Throwable e) {
+        LOG.warn("Unable to initialize the reflector of entity [" + entityName + "] ahead of time, it will be initialized when first used: " + e.getMessage(), e);
+    }
+
+    private static List<Class> sortClassesByInheritanceDepth(Collection<Class> classes) {
+        List<Class> sorted = new ArrayList<>(classes);
+        Collections.sort(sorted, new Comparator<Class>() {
+            @Override
+            public int compare(Class c1, Class c2) {
+                return Integer.compare(inheritanceDepth(c1), inheritanceDepth(c2));
+            }
+        });
+        return sorted;
+    }
+
+    private static int inheritanceDepth(Class javaClass) {
+        int depth = 0;
+        Class superClass = javaClass.getSuperclass();
+        while(superClass != null) {
+            depth++;
+            superClass = superClass.getSuperclass();
+        }
+        return depth;
+    }
+
+    private static List<PersistentEntity> sortByInheritanceDepth(Collection<PersistentEntity> entities) {
+        List<PersistentEntity> sorted = new ArrayList<>(entities);
+        final Map<PersistentEntity, Integer> depths = new HashMap<>();
+        for (PersistentEntity entity : sorted) {
+            depths.put(entity, inheritanceDepth(entity.getJavaClass()));
+        }
+        Collections.sort(sorted, new Comparator<PersistentEntity>() {
+            @Override
+            public int compare(PersistentEntity e1, PersistentEntity e2) {
+                return depths.get(e1).compareTo(depths.get(e2));
+            }
+        });
+        return sorted;
+    }
+
     /**
      * Adds a PersistentEntity instance
      *
@@ -326,22 +526,36 @@ public abstract class AbstractMappingContext implements MappingContext, Initiali
         for (Listener eventListener : eventListeners) {
             eventListener.persistentEntityAdded(entity);
         }
-        ClassPropertyFetcher.clearCache();
         return entity;
     }
 
     private void registerEntityWithContext(PersistentEntity entity) {
-        persistentEntities.remove(entity);
+        PersistentEntity previous = persistentEntitiesByName.put(entity.getName(), entity);
+        if(previous != null) {
+            // only overriding an existing entity requires a linear search of the queue
+            persistentEntities.remove(previous);
+        }
         persistentEntities.add(entity);
-        persistentEntitiesByName.put(entity.getName(), entity);
-
     }
 
     public void initialize() {
-        for(PersistentEntity entity : persistentEntities) {
-            initializePersistentEntity(entity);
-            FieldEntityAccess.getOrIntializeReflector(entity);
+        Set<PersistentEntity> initializedEntities = new LinkedHashSet<>();
+        List<PersistentEntity> pending = sortByInheritanceDepth(persistentEntities);
+        while(!pending.isEmpty()) {
+            for(PersistentEntity entity : pending) {
+                initializePersistentEntity(entity);
+                initializedEntities.add(entity);
+            }
+            // pick up entities added during initialization, for example the targets of associations
+            pending = new ArrayList<>();
+            for(PersistentEntity entity : persistentEntities) {
+                if(!initializedEntities.contains(entity)) {
+                    pending.add(entity);
+                }
+            }
+            pending = sortByInheritanceDepth(pending);
         }
+        initializeReflectors(initializedEntities);
         this.initialized = true;
     }
 
@@ -15,6 +15,7 @@
 
 package org.grails.datastore.mapping.proxy;
 
+import org.grails.datastore.mapping.core.AbstractSession;
 import org.grails.datastore.mapping.core.Session;
 import org.grails.datastore.mapping.model.PersistentEntity;
 import org.grails.datastore.mapping.reflect.FieldEntityAccess;
@@ -69,7 +70,9 @@ public class SessionEntityProxyMethodHandler extends EntityProxyMethodHandler {
         if(LOG.isDebugEnabled()) {
             LOG.debug("Lazy loading proxy for class {} with id {}", cls.getName(), id);
         }
-        target = session.retrieve(cls, id);
+        target = session instanceof AbstractSession ?
+                ((AbstractSession) session).retrieveProxyTarget(cls, id) :
+                session.retrieve(cls, id);
     }
 
     @Override
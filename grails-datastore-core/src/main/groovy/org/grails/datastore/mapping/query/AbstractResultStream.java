@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.query;
+
+import org.grails.datastore.mapping.core.DatastoreUtils;
+import org.grails.datastore.mapping.core.Session;
+import org.grails.datastore.mapping.model.PersistentEntity;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Base class for {@link ResultStream} implementations that optionally detaches each entity from the session as it is
+ * returned so that iterating over a large result does not grow the first level cache.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+public abstract class AbstractResultStream<T> implements ResultStream<T> {
+
+    protected final Session session;
+    protected final PersistentEntity entity;
+    protected final boolean detach;
+    private boolean closed;
+
+    /**
+     * @param session The session the results are loaded with
+     * @param entity The entity being queried
+     * @param detach Whether entities should be removed from the session once they are returned
+     */
+    protected AbstractResultStream(Session session, PersistentEntity entity, boolean detach) {
+        this.session = session;
+        this.entity = entity;
+        this.detach = detach;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        boolean hasNext = hasNextResult();
+        if (!hasNext) {
+            close();
+        }
+        return hasNext;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T result = nextResult();
+        if (detach && result != null && session != null && entity != null && entity.getJavaClass().isInstance(result)) {
+            session.clear(result);
+        }
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Method remove() not supported by " + getClass().getName());
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            closeInternal();
+        }
+    }
+
+    /**
+     * @return Whether the stream has been closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return Whether the underlying cursor has another result
+     */
+    protected abstract boolean hasNextResult();
+
+    /**
+     * @return The next result of the underlying cursor
+     */
+    protected abstract T nextResult();
+
+    /**
+     * Releases the resources held by the underlying cursor
+     */
+    protected void closeInternal() {
+        // no-op by default
+    }
+
+    /**
+     * A stream over an iterator whose results have already been loaded or that loads them lazily
+     */
+    public static class IteratorResultStream<T> extends AbstractResultStream<T> {
+        private final Iterator<T> iterator;
+
+        public IteratorResultStream(Session session, PersistentEntity entity, boolean detach, Iterator<T> iterator) {
+            super(session, entity, detach);
+            this.iterator = iterator;
+        }
+
+        @Override
+        protected boolean hasNextResult() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        protected T nextResult() {
+            return iterator.next();
+        }
+    }
+
+    /**
+     * A stream that owns the session its results are loaded with, closing the session when the stream is closed.
+     * Used when a stream is created outside of an existing session so that the session lives as long as the stream
+     */
+    public static class SessionClosingResultStream<T> extends AbstractResultStream<T> {
+        private final ResultStream<T> delegate;
+
+        public SessionClosingResultStream(Session session, ResultStream<T> delegate) {
+            super(session, null, false);
+            this.delegate = delegate;
+        }
+
+        @Override
+        protected boolean hasNextResult() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        protected T nextResult() {
+            return delegate.next();
+        }
+
+        @Override
+        protected void closeInternal() {
+            try {
+                delegate.close();
+            } finally {
+                DatastoreUtils.closeSession(session);
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.query;
+
+import org.grails.datastore.mapping.model.PersistentEntity;
+import org.grails.datastore.mapping.model.PersistentProperty;
+import org.grails.datastore.mapping.reflect.EntityReflector;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.util.Base64Utils;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * The position of a keyset (seek) paginated query: the sort key values of the last result of a page. Rather than
+ * skipping an offset, the next page is obtained by restricting the query to results that sort after these values,
+ * which datastores can answer from an index regardless of how deep the page is.
+ *
+ * <p>A cursor can be encoded as an opaque, URL safe continuation token that records the sort it was created for, so
+ * a token cannot be applied to a query with a different sort. Sort properties must be non-null and compared case
+ * sensitively.</p>
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+public final class KeysetCursor {
+
+    private static final String VERSION = "k1";
+    private static final String SEPARATOR = "&";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final List<Query.Order> orders;
+    private final List<Object> values;
+
+    /**
+     * @param orders The orders of the query
+     * @param values The sort key values of the last seen result, one for each of the leading orders
+     */
+    public KeysetCursor(List<Query.Order> orders, List<Object> values) {
+        if (values.isEmpty() || values.size() > orders.size()) {
+            throw new IllegalArgumentException("Keyset cursor requires between 1 and " + orders.size() + " sort key values, got " + values.size());
+        }
+        this.orders = Collections.unmodifiableList(new ArrayList<Query.Order>(orders));
+        this.values = Collections.unmodifiableList(new ArrayList<Object>(values));
+    }
+
+    /**
+     * Returns the orders to use for keyset pagination of the given entity. The identity is appended as a tie breaker
+     * if it is not already sorted on, so that every result has a unique position.
+     *
+     * @param entity The entity
+     * @param orders The requested orders
+     * @return The orders to paginate with
+     */
+    public static List<Query.Order> keysetOrders(PersistentEntity entity, List<Query.Order> orders) {
+        List<Query.Order> keysetOrders = new ArrayList<Query.Order>(orders);
+        PersistentProperty identity = entity.getIdentity();
+        if (identity == null) {
+            throw new IllegalArgumentException("Keyset pagination is not supported for entity [" + entity.getName() + "] without a single identity");
+        }
+        for (Query.Order order : orders) {
+            if (order.getProperty().equals(identity.getName())) {
+                return keysetOrders;
+            }
+        }
+        keysetOrders.add(Query.Order.asc(identity.getName()));
+        return keysetOrders;
+    }
+
+    /**
+     * Creates a cursor positioned at the given instance
+     *
+     * @param entity The entity
+     * @param orders The keyset orders
+     * @param instance The last seen instance
+     * @return The cursor
+     */
+    public static KeysetCursor forInstance(PersistentEntity entity, List<Query.Order> orders, Object instance) {
+        EntityReflector reflector = entity.getMappingContext().getEntityReflector(entity);
+        String identityName = entity.getIdentity().getName();
+        List<Object> values = new ArrayList<Object>(orders.size());
+        for (Query.Order order : orders) {
+            String property = order.getProperty();
+            Object value = property.equals(identityName) ? reflector.getIdentifier(instance) : reflector.getProperty(instance, property);
+            if (value == null) {
+                throw new IllegalStateException("Keyset pagination requires non-null values for sort property [" + property + "] of entity [" + entity.getName() + "]");
+            }
+            values.add(value);
+        }
+        return new KeysetCursor(orders, values);
+    }
+
+    /**
+     * Creates a cursor from a continuation token previously produced by {@link #encode()}
+     *
+     * @param entity The entity
+     * @param orders The keyset orders of the query the token is applied to
+     * @param token The continuation token
+     * @return The cursor
+     * @throws IllegalArgumentException If the token is malformed or was created for a different sort
+     */
+    public static KeysetCursor decode(PersistentEntity entity, List<Query.Order> orders, String token) {
+        String decoded;
+        try {
+            decoded = new String(Base64Utils.decodeFromUrlSafeString(token), UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid continuation token [" + token + "]", e);
+        }
+        String[] segments = decoded.split(SEPARATOR, -1);
+        if (segments.length < 3 || !VERSION.equals(segments[0])) {
+            throw new IllegalArgumentException("Invalid continuation token [" + token + "]");
+        }
+        if (!sortSignature(orders).equals(urlDecode(segments[1]))) {
+            throw new IllegalArgumentException("Continuation token [" + token + "] was created for a different sort than " + sortSignature(orders));
+        }
+
+        ConversionService conversionService = entity.getMappingContext().getConversionService();
+        List<Object> values = new ArrayList<Object>(segments.length - 2);
+        for (int i = 2; i < segments.length && i - 2 < orders.size(); i++) {
+            String property = orders.get(i - 2).getProperty();
+            values.add(decodeValue(conversionService, propertyType(entity, property), urlDecode(segments[i])));
+        }
+        return new KeysetCursor(orders, values);
+    }
+
+    /**
+     * @return An opaque, URL safe continuation token for this cursor
+     */
+    public String encode() {
+        StringBuilder token = new StringBuilder(VERSION)
+                .append(SEPARATOR)
+                .append(urlEncode(sortSignature(orders)));
+        for (Object value : values) {
+            token.append(SEPARATOR).append(urlEncode(encodeValue(value)));
+        }
+        return Base64Utils.encodeToUrlSafeString(token.toString().getBytes(UTF_8));
+    }
+
+    /**
+     * Builds the criterion that restricts a query to the results positioned after this cursor. For orders
+     * {@code a, b} and values {@code x, y} that is {@code a > x or (a = x and b > y)}, with {@code <} used for
+     * descending orders.
+     *
+     * @return The criterion
+     */
+    public Query.Criterion toCriterion() {
+        Query.Disjunction seek = new Query.Disjunction();
+        for (int i = 0; i < values.size(); i++) {
+            Query.Conjunction position = new Query.Conjunction();
+            for (int j = 0; j < i; j++) {
+                position.add(Restrictions.eq(orders.get(j).getProperty(), values.get(j)));
+            }
+            Query.Order order = orders.get(i);
+            Object value = values.get(i);
+            position.add(order.getDirection() == Query.Order.Direction.DESC ?
+                    Restrictions.lt(order.getProperty(), value) :
+                    Restrictions.gt(order.getProperty(), value));
+            seek.add(position);
+        }
+        return seek;
+    }
+
+    /**
+     * @return The keyset orders
+     */
+    public List<Query.Order> getOrders() {
+        return orders;
+    }
+
+    /**
+     * @return The sort key values
+     */
+    public List<Object> getValues() {
+        return values;
+    }
+
+    private static String sortSignature(List<Query.Order> orders) {
+        StringBuilder signature = new StringBuilder();
+        for (Query.Order order : orders) {
+            if (signature.length() > 0) {
+                signature.append(',');
+            }
+            signature.append(order.getProperty()).append(':').append(order.getDirection());
+        }
+        return signature.toString();
+    }
+
+    private static Class propertyType(PersistentEntity entity, String property) {
+        PersistentProperty persistentProperty = entity.getPropertyByName(property);
+        if (persistentProperty == null && entity.getIdentity() != null && entity.getIdentity().getName().equals(property)) {
+            persistentProperty = entity.getIdentity();
+        }
+        if (persistentProperty == null) {
+            throw new IllegalArgumentException("Keyset pagination requires sort property [" + property + "] to be a property of entity [" + entity.getName() + "]");
+        }
+        return persistentProperty.getType();
+    }
+
+    private static String encodeValue(Object value) {
+        if (value instanceof Timestamp) {
+            // the time of a timestamp only has millisecond precision, the nanos hold the full fraction of a second
+            Timestamp timestamp = (Timestamp) value;
+            return "t" + timestamp.getTime() + "." + timestamp.getNanos();
+        }
+        else if (value instanceof Date) {
+            return "d" + ((Date) value).getTime();
+        }
+        else if (value instanceof Enum) {
+            return "e" + ((Enum) value).name();
+        }
+        return "s" + value;
+    }
+
+    private static Object decodeValue(ConversionService conversionService, Class type, String encoded) {
+        if (encoded.isEmpty()) {
+            throw new IllegalArgumentException("Invalid continuation token value");
+        }
+        String value = encoded.substring(1);
+        switch (encoded.charAt(0)) {
+            case 'd':
+                long time = Long.parseLong(value);
+                return Timestamp.class.isAssignableFrom(type) ? new Timestamp(time) : new Date(time);
+            case 't':
+                int nanosSeparator = value.indexOf('.');
+                if (nanosSeparator < 0) {
+                    throw new IllegalArgumentException("Invalid continuation token value [" + encoded + "]");
+                }
+                Timestamp timestamp = new Timestamp(Long.parseLong(value.substring(0, nanosSeparator)));
+                timestamp.setNanos(Integer.parseInt(value.substring(nanosSeparator + 1)));
+                return timestamp;
+            case 'e':
+            case 's':
+                return conversionService.convert(value, type);
+            default:
+                throw new IllegalArgumentException("Invalid continuation token value [" + encoded + "]");
+        }
+    }
+
+    private static String urlEncode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String urlDecode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.query;
+
+import org.grails.datastore.mapping.model.PersistentProperty;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A {@link ResultStream} that executes a {@link Query} one page at a time, using the fetch size of the query as the
+ * page size. The max and offset of the query are honoured across pages. Since pages are selected by offset, the
+ * pages are ordered by the identifier after any order of the query so that each page is deterministic, without
+ * adding the order to the query itself. Used by datastores that have no native cursor support.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+class PagedResultStream extends AbstractResultStream<Object> {
+
+    private final Query query;
+    private final int pageSize;
+    private final List<Query.Order> pageOrders;
+    private int nextOffset;
+    private int remaining;
+    private Iterator<?> page;
+    private boolean lastPage;
+
+    PagedResultStream(Query query, int pageSize, boolean detach) {
+        super(query.getSession(), query.getEntity(), detach);
+        this.query = query;
+        this.pageSize = pageSize;
+        this.nextOffset = query.offset;
+        this.remaining = query.max;
+
+        // the pages are ordered by a copy of the orders so that the query of the caller is left as it is
+        this.pageOrders = new ArrayList<Query.Order>(query.getOrderBy());
+        PersistentProperty identity = query.getEntity().getIdentity();
+        if (identity != null && !isOrderedBy(query, identity.getName())) {
+            pageOrders.add(Query.Order.asc(identity.getName()));
+        }
+    }
+
+    private static boolean isOrderedBy(Query query, String property) {
+        for (Query.Order order : query.getOrderBy()) {
+            if (property.equals(order.getProperty())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected boolean hasNextResult() {
+        while (page == null || !page.hasNext()) {
+            if (lastPage) {
+                return false;
+            }
+            fetchPage();
+        }
+        return true;
+    }
+
+    @Override
+    protected Object nextResult() {
+        return page.next();
+    }
+
+    @Override
+    protected void closeInternal() {
+        page = null;
+    }
+
+    private void fetchPage() {
+        int size = remaining > -1 ? Math.min(pageSize, remaining) : pageSize;
+        if (size == 0) {
+            lastPage = true;
+            return;
+        }
+        int originalMax = query.max;
+        int originalOffset = query.offset;
+        List<Query.Order> originalOrders = query.orderBy;
+        List<?> results;
+        try {
+            query.max = size;
+            query.offset = nextOffset;
+            query.orderBy = pageOrders;
+            results = query.executeQuery(query.getEntity(), query.getCriteria());
+        } finally {
+            query.max = originalMax;
+            query.offset = originalOffset;
+            query.orderBy = originalOrders;
+        }
+        int count = results.size();
+        nextOffset += count;
+        if (remaining > -1) {
+            remaining -= count;
+        }
+        lastPage = count < size;
+        page = results.iterator();
+    }
+}
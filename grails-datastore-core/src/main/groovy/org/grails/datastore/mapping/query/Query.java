@@ -14,7 +14,12 @@
  */
 package org.grails.datastore.mapping.query;
 
+import org.grails.datastore.mapping.core.AbstractDatastore;
+import org.grails.datastore.mapping.core.Datastore;
 import org.grails.datastore.mapping.core.Session;
+import org.grails.datastore.mapping.engine.EntityPersister;
+import org.grails.datastore.mapping.engine.NativeEntryEntityPersister;
+import org.grails.datastore.mapping.engine.event.ListenerAwareEventPublisher;
 import org.grails.datastore.mapping.model.MappingContext;
 import org.grails.datastore.mapping.model.PersistentEntity;
 import org.grails.datastore.mapping.model.PersistentProperty;
@@ -22,8 +27,11 @@ import org.grails.datastore.mapping.model.types.Association;
 import org.grails.datastore.mapping.model.types.Embedded;
 import org.grails.datastore.mapping.query.api.AssociationCriteria;
 import org.grails.datastore.mapping.query.api.QueryableCriteria;
+import org.grails.datastore.mapping.query.cache.QueryResultCache;
 import org.grails.datastore.mapping.query.event.PostQueryEvent;
 import org.grails.datastore.mapping.query.event.PreQueryEvent;
+import org.grails.datastore.mapping.query.plan.CriteriaShape;
+import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.InvalidDataAccessResourceUsageException;
 import org.springframework.util.Assert;
@@ -59,6 +67,8 @@ public abstract class Query implements Cloneable{
     protected Map<String, JoinType> joinTypes = new HashMap<>();
     protected Boolean queryCache;
     protected LockModeType lockResult;
+    protected int fetchSize = -1;
+    protected boolean detachStreamedResults;
 
     protected Query(Session session, PersistentEntity entity) {
         this.entity = entity;
@@ -118,7 +128,8 @@ public abstract class Query implements Cloneable{
     }
 
     /**
-     * Specifies whether the query results should be cached (if supported by the underlying datastore)
+     * Specifies whether the query results should be cached (if supported by the underlying datastore). Datastores
+     * based on {@link NativeEntryEntityPersister} cache the results in the {@link QueryResultCache} of the datastore, if any.
      *
      * @param cache True if caching should be enabled
      * @return The query
@@ -150,6 +161,30 @@ public abstract class Query implements Cloneable{
         return this;
     }
 
+    /**
+     * Specifies the number of results to fetch from the datastore at a time when streaming results with {@link #stream()}
+     *
+     * @param fetchSize The fetch size
+     * @return The query
+     */
+    public Query fetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * Specifies whether entities returned by {@link #stream()} should be removed from the session once they are returned,
+     * so that iterating over a large result does not grow the first level cache. Changes made to detached entities are
+     * not persisted when the session is flushed.
+     *
+     * @param detach True if streamed entities should be detached
+     * @return The query
+     */
+    public Query detachStreamedResults(boolean detach) {
+        this.detachStreamedResults = detach;
+        return this;
+    }
+
     public ProjectionList projections() {
         return projections;
     }
@@ -578,17 +613,36 @@ public abstract class Query implements Cloneable{
         return results.isEmpty() ? null : results.get(0);
     }
 
+    /**
+     * Executes the query returning a stream that loads results incrementally. The stream must be closed once it is
+     * no longer needed and may only be used whilst the session is open. Note that no {@link PostQueryEvent} is published
+     * for streamed results since they are never materialized.
+     *
+     * @return The result stream
+     */
+    public ResultStream stream() {
+        uniqueResult = false;
+        flushBeforeQuery();
+
+        ApplicationEventPublisher publisher = session.getDatastore().getApplicationEventPublisher();
+        if(hasListeners(publisher, PreQueryEvent.class)) {
+            publisher.publishEvent(new PreQueryEvent(this));
+        }
+
+        return executeStream(entity, criteria);
+    }
+
     private List doList() {
         flushBeforeQuery();
 
         ApplicationEventPublisher publisher = session.getDatastore().getApplicationEventPublisher();
-        if(publisher != null) {
+        if(hasListeners(publisher, PreQueryEvent.class)) {
             publisher.publishEvent(new PreQueryEvent(this));
         }
 
-        List results = executeQuery(entity, criteria);
+        List results = Boolean.TRUE.equals(queryCache) ? executeCachedQuery() : executeQuery(entity, criteria);
 
-        if(publisher != null) {
+        if(hasListeners(publisher, PostQueryEvent.class)) {
             PostQueryEvent postQueryEvent = new PostQueryEvent(this, results);
             publisher.publishEvent(postQueryEvent);
             results = postQueryEvent.getResults();
@@ -598,6 +652,112 @@ public abstract class Query implements Cloneable{
         return results;
     }
 
+    private List executeCachedQuery() {
+        QueryResultCache resultCache = getQueryResultCache();
+        QueryResultCache.Key key = resultCache != null ? createQueryResultKey() : null;
+        if (key == null) {
+            return executeQuery(entity, criteria);
+        }
+
+        boolean entityResults = projections.isEmpty();
+        List cached = resultCache.get(key);
+        if (cached != null) {
+            if (!entityResults) {
+                return new ArrayList(cached);
+            }
+            List instances = session.retrieveAll(entity.getJavaClass(), cached);
+            // an instance that has gone missing was deleted without the cache being notified
+            if (!instances.contains(null)) {
+                return instances;
+            }
+        }
+
+        Set<PersistentEntity> queriedEntities = new HashSet<PersistentEntity>();
+        queriedEntities.add(entity);
+        collectAssociatedEntities(criteria.getCriteria(), queriedEntities);
+        QueryResultCache.Stamp stamp = resultCache.stamp(queriedEntities);
+        List results = executeQuery(entity, criteria);
+        List resultsToCache = entityResults ? getIdentifiers(results) : results;
+        if (resultsToCache != null) {
+            resultCache.put(key, stamp, resultsToCache);
+        }
+        return results;
+    }
+
+    /**
+     * @return The cache used for the results of this query when caching is enabled or null if results cannot be cached
+     */
+    protected QueryResultCache getQueryResultCache() {
+        Datastore datastore = session.getDatastore();
+        if (datastore instanceof AbstractDatastore && session.getPersister(entity) instanceof NativeEntryEntityPersister) {
+            return ((AbstractDatastore) datastore).getQueryResultCache();
+        }
+        return null;
+    }
+
+    private QueryResultCache.Key createQueryResultKey() {
+        if (lockResult != null) {
+            return null;
+        }
+        CriteriaShape shape = CriteriaShape.of(entity, criteria.getCriteria(), projections.getProjectionList(), orderBy, max, offset, uniqueResult);
+        if (!shape.isCacheable()) {
+            return null;
+        }
+        List<Object> parameters = new ArrayList<Object>(shape.getParameters().size());
+        for (Object parameter : shape.getParameters()) {
+            Object value = resolveIdIfEntity(parameter);
+            if (value == null && parameter != null) {
+                // a transient instance has no identity to key on
+                return null;
+            }
+            parameters.add(value);
+        }
+        return new QueryResultCache.Key(shape, parameters);
+    }
+
+    private List getIdentifiers(List results) {
+        EntityPersister persister = (EntityPersister) session.getPersister(entity);
+        Class type = entity.getJavaClass();
+        List<Serializable> identifiers = new ArrayList<Serializable>(results.size());
+        for (Object result : results) {
+            // instances of subclasses cannot be retrieved by the type of the queried entity
+            if (result == null || result.getClass() != type) {
+                return null;
+            }
+            Serializable identifier = persister.getObjectIdentifier(result);
+            if (identifier == null) {
+                return null;
+            }
+            identifiers.add(identifier);
+        }
+        return identifiers;
+    }
+
+    private static void collectAssociatedEntities(List<Criterion> criteria, Set<PersistentEntity> entities) {
+        for (Criterion criterion : criteria) {
+            if (criterion instanceof Junction) {
+                collectAssociatedEntities(((Junction) criterion).getCriteria(), entities);
+            }
+            else if (criterion instanceof AssociationQuery) {
+                AssociationQuery associationQuery = (AssociationQuery) criterion;
+                entities.add(associationQuery.getAssociation().getAssociatedEntity());
+                collectAssociatedEntities(associationQuery.getCriteria().getCriteria(), entities);
+            }
+            else if (criterion instanceof AssociationCriteria) {
+                AssociationCriteria associationCriteria = (AssociationCriteria) criterion;
+                entities.add(associationCriteria.getAssociation().getAssociatedEntity());
+                collectAssociatedEntities(associationCriteria.getCriteria(), entities);
+            }
+        }
+    }
+
+    private boolean hasListeners(ApplicationEventPublisher publisher, Class<? extends ApplicationEvent> eventType) {
+        if (publisher instanceof ListenerAwareEventPublisher) {
+            return ((ListenerAwareEventPublisher) publisher).hasListeners(eventType, session.getDatastore().getClass());
+        }
+        return publisher != null;
+    }
+
     /**
      * Here purely for compatibility
      *
@@ -639,6 +799,21 @@ public abstract class Query implements Cloneable{
      */
     protected abstract List executeQuery(PersistentEntity entity, Junction criteria);
 
+    /**
+     * Subclasses can override this to stream results from a native cursor. The default implementation executes the
+     * query one page at a time if a fetch size has been specified, otherwise it iterates over the full result.
+     *
+     * @param entity The entity
+     * @param criteria The criteria
+     * @return The result stream
+     */
+    protected ResultStream executeStream(PersistentEntity entity, Junction criteria) {
+        if (fetchSize > 0 && projections.isEmpty()) {
+            return new PagedResultStream(this, fetchSize, detachStreamedResults);
+        }
+        return new AbstractResultStream.IteratorResultStream(session, entity, detachStreamedResults, executeQuery(entity, criteria).iterator());
+    }
+
     protected Object resolveIdIfEntity(Object value) {
         // use the object id as the value if its a persistent entity
         MappingContext mappingContext = entity.getMappingContext();
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.query;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * A forward only cursor over the results of a {@link Query} that loads results incrementally rather than materializing
+ * them all into a list. A stream holds resources of the underlying datastore (such as an open cursor) and hence must be
+ * closed once it is no longer needed.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+public interface ResultStream<T> extends Iterator<T>, Closeable {
+
+    /**
+     * Closes the stream releasing any resources held by the underlying datastore
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.query.cache;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.EvictionListener;
+import org.grails.datastore.mapping.model.PersistentEntity;
+import org.grails.datastore.mapping.query.plan.CriteriaShape;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * A bounded cache of query results keyed by the {@link CriteriaShape} of a query together with its parameters. For
+ * queries that return entities the identifiers of the results are cached, for projections the projected values.
+ *
+ * Results are invalidated per entity family: every write to an entity, or any of its subclasses, increments the
+ * generation of the family of its root entity, which discards every cached result of a query that involves the family.
+ * To avoid caching results that were computed whilst a write was in progress the generations are captured with
+ * {@link #stamp(java.util.Collection)} before the query is executed. Results also expire after a configurable time to
+ * live and the least recently used results are evicted once the cache is full.
+ *
+ * Writes made within a transaction are only visible to other sessions once the transaction commits, or never if it
+ * rolls back. {@link #recordWrite(PersistentEntity)} therefore invalidates the family when the write happens and again
+ * when the transaction completes, and no results are stored for the family in the meantime.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class QueryResultCache {
+
+    /**
+     * The default maximum number of cached results
+     */
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    /**
+     * The default time to live of a result in milliseconds
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = 300000L;
+
+    private final ConcurrentLinkedHashMap<Key, Entry> results;
+    private final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentMap<String, AtomicInteger> uncommittedWrites = new ConcurrentHashMap<String, AtomicInteger>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+    private final int maxSize;
+    private final long timeToLive;
+
+    public QueryResultCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * @param maxSize The maximum number of results to hold
+     * @param timeToLive The time in milliseconds after which a result expires or 0 if results never expire
+     */
+    public QueryResultCache(int maxSize, long timeToLive) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The maximum size of a query result cache must be at least 1");
+        }
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.results = new ConcurrentLinkedHashMap.Builder<Key, Entry>()
+                .maximumWeightedCapacity(maxSize)
+                .listener(new EvictionListener<Key, Entry>() {
+                    @Override
+                    public void onEviction(Key key, Entry value) {
+                        evictionCount.incrementAndGet();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Captures the current generations of the families of the given entities. Must be called before the query is executed.
+     *
+     * @param entities The entities the query involves
+     * @return The stamp to pass to {@link #put(Key, Stamp, java.util.List)}
+     */
+    public Stamp stamp(Collection<PersistentEntity> entities) {
+        String[] families = new String[entities.size()];
+        long[] familyGenerations = new long[families.length];
+        int i = 0;
+        for (PersistentEntity entity : entities) {
+            families[i] = getFamily(entity);
+            familyGenerations[i] = getGeneration(families[i]).get();
+            i++;
+        }
+        return new Stamp(families, familyGenerations);
+    }
+
+    /**
+     * Looks up the results for the given key and records a hit or a miss
+     *
+     * @param key The key
+     * @return The cached results or null if there are none or they are stale
+     */
+    public List get(Key key) {
+        Entry entry = results.get(key);
+        if (entry != null) {
+            if (isValid(entry)) {
+                hitCount.incrementAndGet();
+                return entry.results;
+            }
+            results.remove(key, entry);
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores the results for the given key. Results computed whilst any of the involved families changed are ignored.
+     *
+     * @param key The key
+     * @param stamp The stamp obtained before the query was executed
+     * @param queryResults The identifiers or projected values
+     */
+    public void put(Key key, Stamp stamp, List queryResults) {
+        Entry entry = new Entry(Collections.unmodifiableList(new ArrayList(queryResults)), stamp, currentTimeMillis());
+        if (isCurrent(stamp) && !hasUncommittedWrites(stamp)) {
+            results.put(key, entry);
+        }
+    }
+
+    /**
+     * Records a write to the given entity. Outside of a transaction the family of the entity is invalidated
+     * immediately. Within a transaction it is invalidated immediately and once more when the transaction completes,
+     * and until then no results involving the family are stored.
+     *
+     * @param entity The entity that was written to
+     */
+    public void recordWrite(PersistentEntity entity) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(entity);
+            return;
+        }
+        TransactionWrites writes = (TransactionWrites) TransactionSynchronizationManager.getResource(this);
+        if (writes == null) {
+            writes = new TransactionWrites();
+            TransactionSynchronizationManager.bindResource(this, writes);
+            TransactionSynchronizationManager.registerSynchronization(writes);
+        }
+        String family = getFamily(entity);
+        if (writes.families.add(family)) {
+            getUncommittedWrites(family).incrementAndGet();
+        }
+        invalidate(entity);
+    }
+
+    /**
+     * Invalidates all results of queries that involve the family of the given entity
+     *
+     * @param entity The entity that was written to
+     */
+    public void invalidate(PersistentEntity entity) {
+        getGeneration(getFamily(entity)).incrementAndGet();
+        invalidationCount.incrementAndGet();
+    }
+
+    /**
+     * Removes all results. The statistics are retained.
+     */
+    public void clear() {
+        results.clear();
+    }
+
+    /**
+     * @return The number of cached results, including results that are stale but have not yet been discarded
+     */
+    public int size() {
+        return results.size();
+    }
+
+    /**
+     * @return The maximum number of cached results
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The time in milliseconds after which a result expires or 0 if results never expire
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * @return The number of lookups that found valid results
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return The number of lookups that found no valid results
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return The number of results evicted because the cache was full
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return The number of writes that invalidated an entity family
+     */
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    /**
+     * @return The ratio of hits to lookups or 0 if there were no lookups
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0d : (double) hits / total;
+    }
+
+    /**
+     * @return The current time in milliseconds
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private boolean isValid(Entry entry) {
+        if (timeToLive > 0 && currentTimeMillis() - entry.created >= timeToLive) {
+            return false;
+        }
+        return isCurrent(entry.stamp);
+    }
+
+    private boolean hasUncommittedWrites(Stamp stamp) {
+        for (String family : stamp.families) {
+            AtomicInteger writes = uncommittedWrites.get(family);
+            if (writes != null && writes.get() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private AtomicInteger getUncommittedWrites(String family) {
+        AtomicInteger writes = uncommittedWrites.get(family);
+        if (writes == null) {
+            writes = new AtomicInteger();
+            AtomicInteger existing = uncommittedWrites.putIfAbsent(family, writes);
+            if (existing != null) {
+                writes = existing;
+            }
+        }
+        return writes;
+    }
+
+    private boolean isCurrent(Stamp stamp) {
+        for (int i = 0; i < stamp.families.length; i++) {
+            if (getGeneration(stamp.families[i]).get() != stamp.generations[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String getFamily(PersistentEntity entity) {
+        return entity.getRootEntity().getName();
+    }
+
+    private AtomicLong getGeneration(String family) {
+        AtomicLong generation = generations.get(family);
+        if (generation == null) {
+            generation = new AtomicLong();
+            AtomicLong existing = generations.putIfAbsent(family, generation);
+            if (existing != null) {
+                generation = existing;
+            }
+        }
+        return generation;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryResultCache{size=" + size() + ", maxSize=" + maxSize + ", hits=" + getHitCount() +
+                ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + ", invalidations=" + getInvalidationCount() + '}';
+    }
+
+    /**
+     * The key of cached results: the shape of the query and the values of its parameters
+     */
+    public static final class Key {
+        private final CriteriaShape shape;
+        private final List<Object> parameters;
+        private final int hashCode;
+
+        /**
+         * @param shape The shape of the query
+         * @param parameters The parameters of the query. Dates, calendars, arrays, collections and maps are copied, so
+         *                   that modifying them after the query was executed does not change the key. Any other
+         *                   parameter is expected to be immutable
+         */
+        public Key(CriteriaShape shape, List<Object> parameters) {
+            this.shape = shape;
+            this.parameters = (List<Object>) copyParameter(parameters);
+            this.hashCode = 31 * shape.hashCode() + this.parameters.hashCode();
+        }
+
+        private static Object copyParameter(Object parameter) {
+            if (parameter instanceof Date) {
+                return ((Date) parameter).clone();
+            }
+            if (parameter instanceof Calendar) {
+                return ((Calendar) parameter).clone();
+            }
+            if (parameter instanceof Set) {
+                Set<Object> copy = new HashSet<Object>();
+                for (Object element : (Set) parameter) {
+                    copy.add(copyParameter(element));
+                }
+                return Collections.unmodifiableSet(copy);
+            }
+            if (parameter instanceof Collection) {
+                List<Object> copy = new ArrayList<Object>(((Collection) parameter).size());
+                for (Object element : (Collection) parameter) {
+                    copy.add(copyParameter(element));
+                }
+                return Collections.unmodifiableList(copy);
+            }
+            if (parameter instanceof Map) {
+                Map<Object, Object> copy = new LinkedHashMap<Object, Object>();
+                for (Object entry : ((Map) parameter).entrySet()) {
+                    Map.Entry mapEntry = (Map.Entry) entry;
+                    copy.put(copyParameter(mapEntry.getKey()), copyParameter(mapEntry.getValue()));
+                }
+                return Collections.unmodifiableMap(copy);
+            }
+            if (parameter != null && parameter.getClass().isArray()) {
+                // arrays are compared by identity, hence they are keyed by their elements
+                int length = Array.getLength(parameter);
+                List<Object> copy = new ArrayList<Object>(length);
+                for (int i = 0; i < length; i++) {
+                    copy.add(copyParameter(Array.get(parameter, i)));
+                }
+                return Collections.unmodifiableList(copy);
+            }
+            return parameter;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key other = (Key) o;
+            return hashCode == other.hashCode && shape.equals(other.shape) && parameters.equals(other.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public String toString() {
+            return shape + " " + parameters;
+        }
+    }
+
+    /**
+     * The generations of the entity families a query involves, captured before the query was executed
+     */
+    public static final class Stamp {
+        private final String[] families;
+        private final long[] generations;
+
+        private Stamp(String[] families, long[] generations) {
+            this.families = families;
+            this.generations = generations;
+        }
+    }
+
+    /**
+     * The families written to within the current transaction, which are invalidated again once it completes
+     */
+    private final class TransactionWrites extends TransactionSynchronizationAdapter {
+        private final Set<String> families = new HashSet<String>();
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(QueryResultCache.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(QueryResultCache.this, this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(QueryResultCache.this);
+            for (String family : families) {
+                getGeneration(family).incrementAndGet();
+                getUncommittedWrites(family).decrementAndGet();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final List results;
+        private final Stamp stamp;
+        private final long created;
+
+        private Entry(List results, Stamp stamp, long created) {
+            this.results = results;
+            this.stamp = stamp;
+            this.created = created;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.query.cache;
+
+import org.grails.datastore.mapping.core.Datastore;
+import org.grails.datastore.mapping.engine.event.AbstractPersistenceEvent;
+import org.grails.datastore.mapping.engine.event.AbstractPersistenceEventListener;
+import org.grails.datastore.mapping.engine.event.PostDeleteEvent;
+import org.grails.datastore.mapping.engine.event.PostInsertEvent;
+import org.grails.datastore.mapping.engine.event.PostUpdateEvent;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Invalidates the results of a {@link QueryResultCache} that involve the family of an entity once the entity has been
+ * inserted, updated or deleted. Writes within a transaction invalidate the results again once the transaction completes,
+ * see {@link QueryResultCache#recordWrite(org.grails.datastore.mapping.model.PersistentEntity)}
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+public class QueryResultCacheInvalidator extends AbstractPersistenceEventListener {
+
+    private final QueryResultCache queryResultCache;
+
+    public QueryResultCacheInvalidator(Datastore datastore, QueryResultCache queryResultCache) {
+        super(datastore);
+        this.queryResultCache = queryResultCache;
+    }
+
+    @Override
+    protected void onPersistenceEvent(AbstractPersistenceEvent event) {
+        queryResultCache.recordWrite(event.getEntity());
+    }
+
+    @Override
+    public boolean supportsEventType(Class<? extends ApplicationEvent> eventType) {
+        return PostInsertEvent.class.isAssignableFrom(eventType) ||
+                PostUpdateEvent.class.isAssignableFrom(eventType) ||
+                PostDeleteEvent.class.isAssignableFrom(eventType);
+    }
+}
@@ -23,15 +23,20 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
+import org.grails.datastore.mapping.model.AbstractMappingContext;
 import org.grails.datastore.mapping.model.AbstractPersistentEntity;
+import org.grails.datastore.mapping.model.MappingContext;
 import org.grails.datastore.mapping.model.PersistentEntity;
 import org.grails.datastore.mapping.model.PersistentProperty;
 import org.grails.datastore.mapping.model.types.Association;
 import org.grails.datastore.mapping.model.types.ToOne;
 import org.grails.datastore.mapping.query.AssociationQuery;
+import org.grails.datastore.mapping.query.KeysetCursor;
 import org.grails.datastore.mapping.query.Query;
 import org.grails.datastore.mapping.query.api.AssociationCriteria;
 import org.grails.datastore.mapping.query.api.QueryableCriteria;
+import org.grails.datastore.mapping.query.plan.CriteriaShape;
+import org.grails.datastore.mapping.query.plan.QueryPlanCache;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.core.convert.support.GenericConversionService;
 import org.springframework.dao.InvalidDataAccessResourceUsageException;
@@ -72,6 +77,7 @@ public class JpaQueryBuilder {
     private String logicalName;
     private ConversionService conversionService = new GenericConversionService();
     private boolean hibernateCompatible;
+    private QueryPlanCache<JpaQueryPlan> planCache;
 
     public JpaQueryBuilder(QueryableCriteria criteria) {
         this(criteria.getPersistentEntity(), criteria.getCriteria());
@@ -93,6 +99,10 @@ public class JpaQueryBuilder {
         this.entity = entity;
         this.criteria = criteria;
         this.logicalName = entity.getDecapitalizedName();
+        MappingContext mappingContext = entity.getMappingContext();
+        if (mappingContext instanceof AbstractMappingContext) {
+            this.planCache = ((AbstractMappingContext) mappingContext).getQueryPlanCache(JpaQueryPlan.class);
+        }
     }
 
     public JpaQueryBuilder(PersistentEntity entity, Query.Junction criteria, Query.ProjectionList projectionList) {
@@ -113,6 +123,44 @@ public class JpaQueryBuilder {
         this.conversionService = conversionService;
     }
 
+    /**
+     * Sets the cache used to reuse the rendered SELECT statements of queries with the same shape. Defaults to the plan
+     * cache of the mapping context of the entity, null disables caching
+     *
+     * @param planCache The plan cache
+     */
+    public void setPlanCache(QueryPlanCache<JpaQueryPlan> planCache) {
+        this.planCache = planCache;
+    }
+
+    /**
+     * Restricts the SELECT statement to the results positioned after the given keyset cursor and orders it by the
+     * keyset orders of the cursor. The rendered statement has the same shape for every page, so it is reused from the
+     * plan cache when one is set. Case insensitive orders are rejected, since the seek criteria compare case sensitively.
+     *
+     * @param cursor The keyset cursor
+     */
+    public void setKeysetCursor(KeysetCursor cursor) {
+        for (Query.Order order : cursor.getOrders()) {
+            if (order.isIgnoreCase()) {
+                throw new InvalidDataAccessResourceUsageException("Cannot use case insensitive order on property [" +
+                        order.getProperty() + "] of class [" + entity.getName() + "] with keyset pagination");
+            }
+        }
+        Query.Conjunction restricted = new Query.Conjunction();
+        if (criteria instanceof Query.Conjunction) {
+            for (Query.Criterion criterion : criteria.getCriteria()) {
+                restricted.add(criterion);
+            }
+        }
+        else {
+            restricted.add(criteria);
+        }
+        restricted.add(cursor.toCriterion());
+        this.criteria = restricted;
+        this.orders = cursor.getOrders();
+    }
+
     /**
      * Builds an UPDATE statement.
      *
@@ -150,6 +198,25 @@ public class JpaQueryBuilder {
      * @return The JpaQueryInfo
      */
     public JpaQueryInfo buildSelect() {
+        if (planCache != null) {
+            CriteriaShape shape = CriteriaShape.of(entity, criteria.getCriteria(), projectionList.getProjectionList(), orders,
+                    "SELECT", logicalName, criteria.getClass().getSimpleName(), hibernateCompatible);
+            if (shape.isCacheable()) {
+                JpaQueryPlan plan = planCache.get(shape);
+                if (plan != null) {
+                    return plan.bind(shape.getParameters(), conversionService);
+                }
+
+                JpaQueryPlan.RecordingConversionService recording = new JpaQueryPlan.RecordingConversionService(conversionService);
+                JpaQueryInfo queryInfo = buildSelect(recording);
+                planCache.put(shape, JpaQueryPlan.create(queryInfo, recording, shape));
+                return queryInfo;
+            }
+        }
+        return buildSelect(conversionService);
+    }
+
+    private JpaQueryInfo buildSelect(ConversionService conversionService) {
         StringBuilder queryString = new StringBuilder(SELECT_CLAUSE);
 
         buildSelectClause(queryString);
@@ -157,7 +224,7 @@ public class JpaQueryBuilder {
         StringBuilder whereClause= new StringBuilder();
         List parameters = null;
         if (!criteria.isEmpty()) {
-            parameters = buildWhereClause(entity, criteria, queryString, whereClause,logicalName, true);
+            parameters = buildWhereClause(entity, criteria, queryString, whereClause,logicalName, true, new ArrayList(), conversionService);
         }
 
         appendOrder(queryString, logicalName);
@@ -848,6 +915,10 @@ public class JpaQueryBuilder {
     }
 
     private List buildWhereClause(PersistentEntity entity, Query.Junction criteria, StringBuilder q, StringBuilder whereClause, String logicalName, boolean allowJoins, List parameters) {
+        return buildWhereClause(entity, criteria, q, whereClause, logicalName, allowJoins, parameters, this.conversionService);
+    }
+
+    private List buildWhereClause(PersistentEntity entity, Query.Junction criteria, StringBuilder q, StringBuilder whereClause, String logicalName, boolean allowJoins, List parameters, ConversionService conversionService) {
         int position = parameters.size();
         final List<Query.Criterion> criterionList = criteria.getCriteria();
         whereClause.append(WHERE_CLAUSE);
@@ -866,13 +937,17 @@ public class JpaQueryBuilder {
     protected void appendOrder(StringBuilder queryString, String logicalName) {
         if (!orders.isEmpty()) {
             queryString.append( ORDER_BY_CLAUSE);
-            for (Query.Order order : orders) {
+            for (Iterator<Query.Order> i = orders.iterator(); i.hasNext();) {
+                Query.Order order = i.next();
                 queryString.append(logicalName)
                            .append(DOT)
                            .append(order.getProperty())
                            .append(SPACE)
-                           .append(order.getDirection().toString())
-                           .append(SPACE);
+                           .append(order.getDirection().toString());
+                if (i.hasNext()) {
+                    queryString.append(COMMA);
+                }
+                queryString.append(SPACE);
             }
         }
     }
@@ -886,7 +961,9 @@ public class JpaQueryBuilder {
             final String operator = criteria instanceof Query.Conjunction ? LOGICAL_AND : LOGICAL_OR;
             QueryHandler qh = queryHandlers.get(criterion.getClass());
             if (qh != null) {
-
+                if (conversionService instanceof JpaQueryPlan.RecordingConversionService) {
+                    ((JpaQueryPlan.RecordingConversionService) conversionService).setCurrentCriterion(criterion);
+                }
                 position = qh.handle(entity, criterion, q, whereClause, logicalName,
                         position, parameters, conversionService, allowJoins, hibernateCompatible);
             }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.query.jpa;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.grails.datastore.mapping.query.Query;
+import org.grails.datastore.mapping.query.plan.CriteriaShape;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.TypeDescriptor;
+
+/**
+ * A rendered JPA query that can be reused for queries of the same {@link org.grails.datastore.mapping.query.plan.CriteriaShape},
+ * binding only the parameters of each query.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class JpaQueryPlan {
+
+    private final String query;
+    private final Class[] parameterTypes;
+    private final boolean hasParameters;
+
+    JpaQueryPlan(String query, Class[] parameterTypes, boolean hasParameters) {
+        this.query = query;
+        this.parameterTypes = parameterTypes;
+        this.hasParameters = hasParameters;
+    }
+
+    /**
+     * @return The query string
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Binds the parameters of a query with the same shape to this plan
+     *
+     * @param parameters The parameters in the order of the shape
+     * @param conversionService The conversion service used to convert the parameters
+     * @return The query info
+     */
+    public JpaQueryInfo bind(List<Object> parameters, ConversionService conversionService) {
+        if (!hasParameters) {
+            return new JpaQueryInfo(query, null);
+        }
+        List converted = new ArrayList(parameterTypes.length);
+        for (int i = 0; i < parameterTypes.length; i++) {
+            converted.add(conversionService.convert(parameters.get(i), parameterTypes[i]));
+        }
+        return new JpaQueryInfo(query, converted);
+    }
+
+    /**
+     * Creates a plan from a query rendered with the given recording conversion service. Each recorded conversion is
+     * matched to the parameter at the same position of the shape by the criterion it was made for, not by its value,
+     * since equal and even identical values may belong to properties of different types
+     *
+     * @return The plan or null if the converted values do not correspond to the parameters of the shape
+     */
+    static JpaQueryPlan create(JpaQueryInfo info, RecordingConversionService recording, CriteriaShape shape) {
+        List<Query.Criterion> converted = recording.criteria;
+        List<Query.Criterion> shapeCriteria = shape.getParameterCriteria();
+        if (converted.size() != shapeCriteria.size()) {
+            return null;
+        }
+        for (int i = 0; i < converted.size(); i++) {
+            if (converted.get(i) != shapeCriteria.get(i)) {
+                return null;
+            }
+        }
+        Class[] types = recording.targetTypes.toArray(new Class[recording.targetTypes.size()]);
+        return new JpaQueryPlan(info.getQuery(), types, info.getParameters() != null);
+    }
+
+    /**
+     * Records the criterion each value is converted for while a query is rendered and the type it is converted to
+     */
+    static class RecordingConversionService implements ConversionService {
+        private final ConversionService delegate;
+        private final List<Query.Criterion> criteria = new ArrayList<Query.Criterion>();
+        private final List<Class> targetTypes = new ArrayList<Class>();
+        private Query.Criterion currentCriterion;
+
+        RecordingConversionService(ConversionService delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * @param criterion The criterion whose values are converted next
+         */
+        void setCurrentCriterion(Query.Criterion criterion) {
+            this.currentCriterion = criterion;
+        }
+
+        @Override
+        public boolean canConvert(Class<?> sourceType, Class<?> targetType) {
+            return delegate.canConvert(sourceType, targetType);
+        }
+
+        @Override
+        public boolean canConvert(TypeDescriptor sourceType, TypeDescriptor targetType) {
+            return delegate.canConvert(sourceType, targetType);
+        }
+
+        @Override
+        public <T> T convert(Object source, Class<T> targetType) {
+            criteria.add(currentCriterion);
+            targetTypes.add(targetType);
+            return delegate.convert(source, targetType);
+        }
+
+        @Override
+        public Object convert(Object source, TypeDescriptor sourceType, TypeDescriptor targetType) {
+            // conversions by type descriptor cannot be replayed, so don't match them to any criterion of the shape
+            criteria.add(null);
+            targetTypes.add(Object.class);
+            return delegate.convert(source, sourceType, targetType);
+        }
+    }
+}
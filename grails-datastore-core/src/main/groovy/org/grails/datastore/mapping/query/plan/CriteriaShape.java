@@ -0,0 +1,234 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.query.plan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.grails.datastore.mapping.model.PersistentEntity;
+import org.grails.datastore.mapping.query.AssociationQuery;
+import org.grails.datastore.mapping.query.Query;
+import org.grails.datastore.mapping.query.api.AssociationCriteria;
+import org.grails.datastore.mapping.query.api.QueryableCriteria;
+
+/**
+ * The structural shape of a query: the entity, the types of criteria and the properties they apply to, the
+ * projections and the orders, without the values of the criteria. Two queries with the same shape differ only in
+ * their parameters, which are captured in the order in which the criteria are traversed, depth first.
+ *
+ * Shapes are used as keys of a {@link QueryPlanCache}. Criteria whose structure cannot be described without their
+ * values, such as subqueries and function calls, make the shape uncacheable.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+public final class CriteriaShape {
+
+    private static final char SEPARATOR = ';';
+
+    private final String key;
+    private final List<Object> parameters;
+    private final List<Query.Criterion> parameterCriteria;
+    private final boolean cacheable;
+
+    private CriteriaShape(String key, List<Object> parameters, List<Query.Criterion> parameterCriteria, boolean cacheable) {
+        this.key = key;
+        this.parameters = parameters;
+        this.parameterCriteria = parameterCriteria;
+        this.cacheable = cacheable;
+    }
+
+    /**
+     * Computes the shape of a query
+     *
+     * @param entity The entity being queried
+     * @param criteria The criteria
+     * @param projections The projections
+     * @param orders The orders
+     * @param qualifiers Additional values that affect how the query is rendered
+     * @return The shape
+     */
+    public static CriteriaShape of(PersistentEntity entity, List<Query.Criterion> criteria, List<Query.Projection> projections,
+                                   List<Query.Order> orders, Object... qualifiers) {
+        StringBuilder key = new StringBuilder(64).append(entity.getName());
+        for (Object qualifier : qualifiers) {
+            key.append(SEPARATOR).append(qualifier);
+        }
+        List<Object> parameters = new ArrayList<Object>();
+        List<Query.Criterion> parameterCriteria = new ArrayList<Query.Criterion>();
+        boolean cacheable = appendCriteria(key.append("|W("), parameters, parameterCriteria, criteria);
+        key.append(")|P(");
+        if (projections != null) {
+            for (Query.Projection projection : projections) {
+                key.append(projection.getClass().getSimpleName());
+                if (projection instanceof Query.PropertyProjection) {
+                    key.append(':').append(((Query.PropertyProjection) projection).getPropertyName());
+                }
+                key.append(SEPARATOR);
+            }
+        }
+        key.append(")|O(");
+        if (orders != null) {
+            for (Query.Order order : orders) {
+                key.append(order.getProperty())
+                   .append(':')
+                   .append(order.getDirection())
+                   .append(order.isIgnoreCase() ? ":i" : "")
+                   .append(SEPARATOR);
+            }
+        }
+        key.append(')');
+        return new CriteriaShape(key.toString(), Collections.unmodifiableList(parameters),
+                Collections.unmodifiableList(parameterCriteria), cacheable);
+    }
+
+    /**
+     * @return The string form of the shape
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return The values of the criteria in the order the criteria are traversed
+     */
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return The criterion each parameter belongs to, by the position of the parameter
+     */
+    public List<Query.Criterion> getParameterCriteria() {
+        return parameterCriteria;
+    }
+
+    /**
+     * @return Whether the shape fully describes the structure of the query and can be used as a cache key
+     */
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return key.equals(((CriteriaShape) o).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+
+    private static boolean appendCriteria(StringBuilder key, List<Object> parameters, List<Query.Criterion> parameterCriteria,
+                                          List<Query.Criterion> criteria) {
+        boolean cacheable = true;
+        if (criteria == null) {
+            return true;
+        }
+        for (Query.Criterion criterion : criteria) {
+            cacheable &= appendCriterion(key, parameters, parameterCriteria, criterion);
+            key.append(SEPARATOR);
+        }
+        return cacheable;
+    }
+
+    private static boolean appendCriterion(StringBuilder key, List<Object> parameters, List<Query.Criterion> parameterCriteria,
+                                           Query.Criterion criterion) {
+        key.append(criterion.getClass().getSimpleName());
+        if (criterion instanceof Query.Junction) {
+            key.append('(');
+            boolean cacheable = appendCriteria(key, parameters, parameterCriteria, ((Query.Junction) criterion).getCriteria());
+            key.append(')');
+            return cacheable;
+        }
+        if (criterion instanceof AssociationQuery) {
+            AssociationQuery associationQuery = (AssociationQuery) criterion;
+            key.append(':').append(associationQuery.getAssociation().getName()).append('(');
+            boolean cacheable = appendCriteria(key, parameters, parameterCriteria, associationQuery.getCriteria().getCriteria());
+            key.append(')');
+            return cacheable;
+        }
+        if (criterion instanceof AssociationCriteria) {
+            AssociationCriteria associationCriteria = (AssociationCriteria) criterion;
+            key.append(':').append(associationCriteria.getAssociation().getName()).append('(');
+            boolean cacheable = appendCriteria(key, parameters, parameterCriteria, associationCriteria.getCriteria());
+            key.append(')');
+            return cacheable;
+        }
+        if (criterion instanceof Query.PropertyComparisonCriterion) {
+            Query.PropertyComparisonCriterion comparison = (Query.PropertyComparisonCriterion) criterion;
+            key.append(':').append(comparison.getProperty()).append(':').append(comparison.getOtherProperty());
+            return true;
+        }
+        if (criterion instanceof Query.In) {
+            Query.In in = (Query.In) criterion;
+            key.append(':').append(in.getProperty());
+            if (in.getSubquery() != null) {
+                return false;
+            }
+            // each value is a separate parameter, so the number of values is part of the shape
+            key.append('[').append(in.getValues().size()).append(']');
+            for (Object value : in.getValues()) {
+                if (!appendParameter(key, parameters, parameterCriteria, criterion, value)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (criterion instanceof Query.Between) {
+            Query.Between between = (Query.Between) criterion;
+            key.append(':').append(between.getProperty());
+            return appendParameter(key, parameters, parameterCriteria, criterion, between.getFrom()) &&
+                    appendParameter(key, parameters, parameterCriteria, criterion, between.getTo());
+        }
+        if (criterion instanceof Query.SubqueryCriterion) {
+            return false;
+        }
+        if (criterion instanceof Query.PropertyCriterion) {
+            Query.PropertyCriterion propertyCriterion = (Query.PropertyCriterion) criterion;
+            key.append(':').append(propertyCriterion.getProperty());
+            return appendParameter(key, parameters, parameterCriteria, criterion, propertyCriterion.getValue());
+        }
+        if (criterion instanceof Query.PropertyNameCriterion) {
+            key.append(':').append(((Query.PropertyNameCriterion) criterion).getProperty());
+            return true;
+        }
+        // exists queries, function calls and custom criteria
+        return false;
+    }
+
+    private static boolean appendParameter(StringBuilder key, List<Object> parameters, List<Query.Criterion> parameterCriteria,
+                                           Query.Criterion criterion, Object value) {
+        if (value instanceof QueryableCriteria) {
+            return false;
+        }
+        if (value == null) {
+            key.append(":null");
+        }
+        parameters.add(value);
+        parameterCriteria.add(criterion);
+        return true;
+    }
+}
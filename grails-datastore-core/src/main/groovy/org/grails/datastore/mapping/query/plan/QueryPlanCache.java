@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.query.plan;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.EvictionListener;
+
+/**
+ * A bounded cache of query plans keyed by the {@link CriteriaShape} of a query. What constitutes a plan is up to the
+ * implementation that renders the query, for example a JPQL query string together with the types its parameters are
+ * converted to. Once the cache is full the least recently used plan is evicted.
+ *
+ * The cache records the number of hits, misses and evictions so that the hit rate can be monitored.
+ *
+ * @param <P> The type of the plan
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+public class QueryPlanCache<P> {
+
+    /**
+     * The default maximum number of plans
+     */
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    private final ConcurrentLinkedHashMap<CriteriaShape, P> plans;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final int maxSize;
+
+    public QueryPlanCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize The maximum number of plans to hold
+     */
+    public QueryPlanCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The maximum size of a query plan cache must be at least 1");
+        }
+        this.maxSize = maxSize;
+        this.plans = new ConcurrentLinkedHashMap.Builder<CriteriaShape, P>()
+                .maximumWeightedCapacity(maxSize)
+                .listener(new EvictionListener<CriteriaShape, P>() {
+                    @Override
+                    public void onEviction(CriteriaShape key, P value) {
+                        evictionCount.incrementAndGet();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Looks up the plan for the given shape and records a hit or a miss
+     *
+     * @param shape The shape
+     * @return The plan or null if there is none or the shape is not cacheable
+     */
+    public P get(CriteriaShape shape) {
+        if (!shape.isCacheable()) {
+            return null;
+        }
+        P plan = plans.get(shape);
+        if (plan != null) {
+            hitCount.incrementAndGet();
+        }
+        else {
+            missCount.incrementAndGet();
+        }
+        return plan;
+    }
+
+    /**
+     * Stores the plan for the given shape. Plans for shapes that are not cacheable are ignored.
+     *
+     * @param shape The shape
+     * @param plan The plan
+     */
+    public void put(CriteriaShape shape, P plan) {
+        if (shape.isCacheable() && plan != null) {
+            plans.put(shape, plan);
+        }
+    }
+
+    /**
+     * Removes all plans. The statistics are retained.
+     */
+    public void clear() {
+        plans.clear();
+    }
+
+    /**
+     * @return The number of cached plans
+     */
+    public int size() {
+        return plans.size();
+    }
+
+    /**
+     * @return The maximum number of cached plans
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The number of lookups that found a plan
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return The number of lookups that found no plan
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return The number of plans evicted because the cache was full
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return The ratio of hits to lookups or 0 if there were no lookups
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0d : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryPlanCache{size=" + size() + ", maxSize=" + maxSize + ", hits=" + getHitCount() +
+                ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + '}';
+    }
+}
@@ -15,20 +15,23 @@ import java.beans.PropertyDescriptor;
 import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * Uses field reflection or CGlib to improve performance
+ * Uses field reflection or CGlib to improve performance. Where possible the reflective readers and writers are replaced
+ * with ones backed by an {@link IndexedPropertyAccessor} generated by {@link PropertyAccessorGenerator}
  *
  * @author Graeme Rocher
  * @since 5.0
  */
 public class FieldEntityAccess implements EntityAccess {
 
-    private static Map<String, EntityReflector> REFLECTORS  = new ConcurrentHashMap<>();
+    private static ConcurrentMap<String, EntityReflector> REFLECTORS  = new ConcurrentHashMap<>();
 
     private final PersistentEntity persistentEntity;
     private final Object entity;
@@ -51,7 +54,10 @@ public class FieldEntityAccess implements EntityAccess {
         EntityReflector entityReflector = REFLECTORS.get(entityName);
         if(entityReflector == null) {
             entityReflector = new FieldEntityReflector(persistentEntity);
-            REFLECTORS.put(entityName, entityReflector);
+            EntityReflector existing = REFLECTORS.putIfAbsent(entityName, entityReflector);
+            if(existing != null) {
+                entityReflector = existing;
+            }
         }
         return entityReflector;
     }
@@ -159,8 +165,8 @@ public class FieldEntityAccess implements EntityAccess {
         final PersistentEntity entity;
         final PropertyReader[] readers;
         final PropertyWriter[] writers;
-        final PropertyReader identifierReader;
-        final PropertyWriter identifierWriter;
+        PropertyReader identifierReader;
+        PropertyWriter identifierWriter;
         final String identifierName;
         final Class identifierType;
         final Map<String, PropertyReader> readerMap = new HashMap<>();
@@ -222,6 +228,45 @@ public class FieldEntityAccess implements EntityAccess {
                 writers[i] = writer;
                 writerMap.put(propertyName, writer);
             }
+            generateAccessor(properties);
+        }
+
+        /**
+         * Replaces the reflective readers and writers with ones backed by a generated {@link IndexedPropertyAccessor}
+         * where possible. The identifier uses the index after the last persistent property
+         */
+        protected void generateAccessor(List<PersistentProperty> properties) {
+            int identifierIndex = readers.length;
+            PropertyReader[] allReaders = Arrays.copyOf(readers, identifierIndex + 1);
+            PropertyWriter[] allWriters = Arrays.copyOf(writers, identifierIndex + 1);
+            allReaders[identifierIndex] = identifierReader;
+            allWriters[identifierIndex] = identifierWriter;
+
+            PropertyAccessorGenerator generator = new PropertyAccessorGenerator(entity.getJavaClass(), allReaders, allWriters);
+            IndexedPropertyAccessor accessor = generator.generate();
+            if(accessor == null) {
+                return;
+            }
+
+            for (int i = 0; i < identifierIndex; i++) {
+                String propertyName = properties.get(i).getName();
+                if(generator.isReaderGenerated(i)) {
+                    readers[i] = new GeneratedPropertyReader(accessor, i, propertyName, readers[i]);
+                    readerMap.put(propertyName, readers[i]);
+                }
+                if(generator.isWriterGenerated(i)) {
+                    writers[i] = new GeneratedPropertyWriter(accessor, i, propertyName, writers[i]);
+                    writerMap.put(propertyName, writers[i]);
+                }
+            }
+            if(generator.isReaderGenerated(identifierIndex)) {
+                identifierReader = new GeneratedPropertyReader(accessor, identifierIndex, identifierName, identifierReader);
+                readerMap.put(identifierName, identifierReader);
+            }
+            if(generator.isWriterGenerated(identifierIndex)) {
+                identifierWriter = new GeneratedPropertyWriter(accessor, identifierIndex, identifierName, identifierWriter);
+                writerMap.put(identifierName, identifierWriter);
+            }
         }
 
         protected String getTraitFieldName(Traits.TraitBridge traitBridge, String fieldName) {
@@ -464,6 +509,88 @@ public class FieldEntityAccess implements EntityAccess {
             }
         }
 
+        static class GeneratedPropertyReader implements PropertyReader {
+            final IndexedPropertyAccessor accessor;
+            final int index;
+            final String propertyName;
+            final PropertyReader reflectiveReader;
+
+            public GeneratedPropertyReader(IndexedPropertyAccessor accessor, int index, String propertyName, PropertyReader reflectiveReader) {
+                this.accessor = accessor;
+                this.index = index;
+                this.propertyName = propertyName;
+                this.reflectiveReader = reflectiveReader;
+            }
+
+            @Override
+            public Field field() {
+                return reflectiveReader.field();
+            }
+
+            @Override
+            public Method getter() {
+                return reflectiveReader.getter();
+            }
+
+            @Override
+            public Class propertyType() {
+                return reflectiveReader.propertyType();
+            }
+
+            @Override
+            public Object read(Object object) {
+                object = unwrapIfProxy(object);
+                try {
+                    return accessor.read(object, index);
+                } catch (ClassCastException e) {
+                    throw new IllegalArgumentException("Cannot read property ["+propertyName+"] from object ["+object+"] of type ["+object.getClass()+"]", e);
+                }
+            }
+        }
+
+        static class GeneratedPropertyWriter implements PropertyWriter {
+            final IndexedPropertyAccessor accessor;
+            final int index;
+            final String propertyName;
+            final PropertyWriter reflectiveWriter;
+            final boolean primitive;
+
+            public GeneratedPropertyWriter(IndexedPropertyAccessor accessor, int index, String propertyName, PropertyWriter reflectiveWriter) {
+                this.accessor = accessor;
+                this.index = index;
+                this.propertyName = propertyName;
+                this.reflectiveWriter = reflectiveWriter;
+                this.primitive = reflectiveWriter.propertyType().isPrimitive();
+            }
+
+            @Override
+            public Field field() {
+                return reflectiveWriter.field();
+            }
+
+            @Override
+            public Method setter() {
+                return reflectiveWriter.setter();
+            }
+
+            @Override
+            public Class propertyType() {
+                return reflectiveWriter.propertyType();
+            }
+
+            @Override
+            public void write(Object object, Object value) {
+                if(value == null && primitive) {
+                    throw new IllegalArgumentException("Cannot set primitive property ["+propertyName+"] of type ["+propertyType().getName()+"] of object ["+object+"] to null");
+                }
+                try {
+                    accessor.write(object, index, value);
+                } catch (ClassCastException e) {
+                    throw new IllegalArgumentException("Cannot set property ["+propertyName+"] of type ["+propertyType().getName()+"] of object ["+object+"] for value ["+value+"] of type ["+value.getClass().getName()+"]", e);
+                }
+            }
+        }
+
         private class ReaderAndWriterMaker {
             private ClassPropertyFetcher cpf;
             private String propertyName;
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.reflect;
+
+/**
+ * Reads and writes the properties of an entity by index without reflection. Implementations are generated at runtime by
+ * {@link PropertyAccessorGenerator} and invoke fields or accessor methods of the entity directly
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+public interface IndexedPropertyAccessor {
+
+    /**
+     * Reads a property
+     *
+     * @param object The entity, which must not be a proxy
+     * @param index The index of the property
+     * @return The value, boxed if the property is primitive
+     */
+    Object read(Object object, int index);
+
+    /**
+     * Writes a property
+     *
+     * @param object The entity, which must not be a proxy
+     * @param index The index of the property
+     * @param value The value, which must not be null for primitive properties
+     */
+    void write(Object object, int index, Object value);
+}
@@ -0,0 +1,489 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.reflect;
+
+import javassist.*;
+import javassist.bytecode.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates an {@link IndexedPropertyAccessor} for an entity class using Javassist. The generated class is defined in
+ * the package and class loader of the entity and contains a switch over the property index that reads and writes
+ * fields or invokes accessor methods directly.
+ *
+ * A field is accessed directly if it is visible to the generated class. Otherwise a private field is read through its
+ * getter only if the getter does nothing more than read the field, and is written through its setter only if the setter does nothing
+ * more than write the field. Setters with side effects, such as those enhanced for dirty checking, are never invoked
+ * when hydrating an entity. Properties that cannot be handled this way keep using their reflective reader or writer.
+ *
+ * The generated class only depends on the code generated for it, so it is defined once per entity class and shared by
+ * every mapping context that maps the entity the same way.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+class PropertyAccessorGenerator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PropertyAccessorGenerator.class);
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    private static final ClassValue<ConcurrentMap<String, IndexedPropertyAccessor>> ACCESSORS = new ClassValue<ConcurrentMap<String, IndexedPropertyAccessor>>() {
+        @Override
+        protected ConcurrentMap<String, IndexedPropertyAccessor> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<String, IndexedPropertyAccessor>();
+        }
+    };
+    private static final Set<String> FAILED_CLASSES = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private static final String ENTITY_VARIABLE = "entity";
+    private static final Method PRIVATE_LOOKUP_IN;
+    private static final Method LOOKUP_DEFINE_CLASS;
+
+    static {
+        // MethodHandles.privateLookupIn and Lookup.defineClass are only available on Java 9 and above, where defining
+        // the class through ClassLoader.defineClass requires the java.lang package to be opened
+        Method privateLookupIn = null;
+        Method lookupDefineClass = null;
+        try {
+            privateLookupIn = MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+            lookupDefineClass = MethodHandles.Lookup.class.getMethod("defineClass", byte[].class);
+        } catch (NoSuchMethodException e) {
+            privateLookupIn = null;
+            lookupDefineClass = null;
+        }
+        PRIVATE_LOOKUP_IN = privateLookupIn;
+        LOOKUP_DEFINE_CLASS = lookupDefineClass;
+    }
+
+    private final Class javaClass;
+    private final EntityReflector.PropertyReader[] readers;
+    private final EntityReflector.PropertyWriter[] writers;
+    private final boolean[] generatedReaders;
+    private final boolean[] generatedWriters;
+    private ClassPool classPool;
+
+    /**
+     * @param javaClass The entity class
+     * @param readers The readers to generate code for. Null elements are skipped
+     * @param writers The writers to generate code for. Null elements are skipped
+     */
+    PropertyAccessorGenerator(Class javaClass, EntityReflector.PropertyReader[] readers, EntityReflector.PropertyWriter[] writers) {
+        this.javaClass = javaClass;
+        this.readers = readers;
+        this.writers = writers;
+        this.generatedReaders = new boolean[readers.length];
+        this.generatedWriters = new boolean[writers.length];
+    }
+
+    /**
+     * @param index The index
+     * @return Whether the generated accessor can read the property at the given index
+     */
+    boolean isReaderGenerated(int index) {
+        return generatedReaders[index];
+    }
+
+    /**
+     * @param index The index
+     * @return Whether the generated accessor can write the property at the given index
+     */
+    boolean isWriterGenerated(int index) {
+        return generatedWriters[index];
+    }
+
+    /**
+     * Generates the accessor
+     *
+     * @return The accessor or null if no code could be generated for the entity
+     */
+    IndexedPropertyAccessor generate() {
+        ClassLoader classLoader = javaClass.getClassLoader();
+        if (classLoader == null || javaClass.isMemberClass() && Modifier.isPrivate(javaClass.getModifiers())) {
+            return null;
+        }
+        try {
+            classPool = new ClassPool(false);
+            classPool.appendClassPath(new LoaderClassPath(classLoader));
+            classPool.appendSystemPath();
+
+            String readSource = buildReadMethod();
+            String writeSource = buildWriteMethod();
+            if (!hasGeneratedCode()) {
+                return null;
+            }
+
+            ConcurrentMap<String, IndexedPropertyAccessor> accessors = ACCESSORS.get(javaClass);
+            String source = readSource + '\n' + writeSource;
+            synchronized (accessors) {
+                IndexedPropertyAccessor accessor = accessors.get(source);
+                if (accessor == null) {
+                    accessor = defineAccessor(classLoader, readSource, writeSource);
+                    accessors.put(source, accessor);
+                }
+                return accessor;
+            }
+        } catch (Throwable e) {
+            String message = "Unable to generate property accessor for class [" + javaClass.getName() + "], falling back to reflection: " + e.getMessage();
+            if (FAILED_CLASSES.add(javaClass.getName())) {
+                LOG.warn(message, e);
+            }
+            else if (LOG.isDebugEnabled()) {
+                LOG.debug(message, e);
+            }
+            return null;
+        } finally {
+            classPool = null;
+        }
+    }
+
+    private IndexedPropertyAccessor defineAccessor(ClassLoader classLoader, String readSource, String writeSource) throws Exception {
+        CtClass accessorClass = classPool.makeClass(javaClass.getName() + "$$PropertyAccessor$$" + COUNTER.incrementAndGet());
+        accessorClass.addInterface(classPool.get(IndexedPropertyAccessor.class.getName()));
+        accessorClass.addConstructor(CtNewConstructor.defaultConstructor(accessorClass));
+        accessorClass.addMethod(CtNewMethod.make(readSource, accessorClass));
+        accessorClass.addMethod(CtNewMethod.make(writeSource, accessorClass));
+
+        Class generated;
+        if (LOOKUP_DEFINE_CLASS != null) {
+            // the generated class is in the package of the entity, so it can be defined through a lookup on the entity
+            Object lookup = PRIVATE_LOOKUP_IN.invoke(null, javaClass, MethodHandles.lookup());
+            generated = (Class) LOOKUP_DEFINE_CLASS.invoke(lookup, (Object) accessorClass.toBytecode());
+        }
+        else {
+            generated = accessorClass.toClass(classLoader, javaClass.getProtectionDomain());
+        }
+        accessorClass.detach();
+        return (IndexedPropertyAccessor) generated.newInstance();
+    }
+
+    private boolean hasGeneratedCode() {
+        for (boolean generated : generatedReaders) {
+            if (generated) return true;
+        }
+        for (boolean generated : generatedWriters) {
+            if (generated) return true;
+        }
+        return false;
+    }
+
+    private String buildReadMethod() {
+        StringBuilder source = new StringBuilder("public Object read(Object object, int index) {\n");
+        appendEntityVariable(source);
+        source.append("switch (index) {\n");
+        for (int i = 0; i < readers.length; i++) {
+            String expression = readExpression(readers[i]);
+            if (expression != null) {
+                generatedReaders[i] = true;
+                source.append("case ").append(i).append(": return ").append(expression).append(";\n");
+            }
+        }
+        source.append("}\n");
+        appendInvalidIndex(source);
+        return source.append("}").toString();
+    }
+
+    private String buildWriteMethod() {
+        StringBuilder source = new StringBuilder("public void write(Object object, int index, Object value) {\n");
+        appendEntityVariable(source);
+        source.append("switch (index) {\n");
+        for (int i = 0; i < writers.length; i++) {
+            String statement = writeStatement(writers[i]);
+            if (statement != null) {
+                generatedWriters[i] = true;
+                source.append("case ").append(i).append(": ").append(statement).append(" return;\n");
+            }
+        }
+        source.append("}\n");
+        appendInvalidIndex(source);
+        return source.append("}").toString();
+    }
+
+    private void appendEntityVariable(StringBuilder source) {
+        String typeName = typeName(javaClass);
+        source.append(typeName).append(' ').append(ENTITY_VARIABLE).append(" = (").append(typeName).append(") object;\n");
+    }
+
+    private void appendInvalidIndex(StringBuilder source) {
+        source.append("throw new IllegalArgumentException(\"No generated accessor for property index \" + index + \" of class ")
+              .append(javaClass.getName())
+              .append("\");\n");
+    }
+
+    private String readExpression(EntityReflector.PropertyReader reader) {
+        if (reader == null) {
+            return null;
+        }
+        Field field = reader.field();
+        Method getter = reader.getter();
+        if (field != null) {
+            if (isAccessible(field) && isAccessible(field.getType())) {
+                return box(field.getType(), ENTITY_VARIABLE + '.' + field.getName());
+            }
+            if (getter != null && getter.getParameterTypes().length == 0 && getter.getReturnType() == field.getType()
+                    && isAccessible(getter) && isAccessible(getter.getReturnType()) && isTrivialGetter(getter, field)) {
+                return box(getter.getReturnType(), ENTITY_VARIABLE + '.' + getter.getName() + "()");
+            }
+            return null;
+        }
+        if (getter != null && getter.getParameterTypes().length == 0 && isAccessible(getter) && isAccessible(getter.getReturnType())) {
+            return box(getter.getReturnType(), ENTITY_VARIABLE + '.' + getter.getName() + "()");
+        }
+        return null;
+    }
+
+    private String writeStatement(EntityReflector.PropertyWriter writer) {
+        if (writer == null) {
+            return null;
+        }
+        Field field = writer.field();
+        Method setter = writer.setter();
+        if (field != null) {
+            if (Modifier.isFinal(field.getModifiers())) {
+                return null;
+            }
+            if (isAccessible(field) && isAccessible(field.getType())) {
+                return ENTITY_VARIABLE + '.' + field.getName() + " = " + unbox(field.getType(), "value") + ';';
+            }
+            if (setter != null && setter.getParameterTypes().length == 1 && setter.getParameterTypes()[0] == field.getType()
+                    && isAccessible(setter) && isAccessible(field.getType()) && isTrivialSetter(setter, field)) {
+                return ENTITY_VARIABLE + '.' + setter.getName() + '(' + unbox(field.getType(), "value") + ");";
+            }
+            return null;
+        }
+        if (setter != null && setter.getParameterTypes().length == 1) {
+            Class parameterType = setter.getParameterTypes()[0];
+            if (isAccessible(setter) && isAccessible(parameterType)) {
+                return ENTITY_VARIABLE + '.' + setter.getName() + '(' + unbox(parameterType, "value") + ");";
+            }
+        }
+        return null;
+    }
+
+    private boolean isTrivialGetter(Method getter, Field field) {
+        CodeAttribute code = getCode(getter);
+        if (code == null) {
+            return false;
+        }
+        int fieldReads = 0;
+        CodeIterator iterator = code.iterator();
+        ConstPool constPool = code.getConstPool();
+        try {
+            while (iterator.hasNext()) {
+                int position = iterator.next();
+                int opcode = iterator.byteAt(position);
+                if (opcode == Opcode.GETFIELD) {
+                    if (!isFieldReference(constPool, iterator.u16bitAt(position + 1), field)) {
+                        return false;
+                    }
+                    fieldReads++;
+                }
+                else if (opcode != Opcode.ALOAD_0 && opcode != Opcode.NOP && opcode != Opcode.CHECKCAST && !isReturn(opcode)
+                        && !isLocalVariableStore(opcode) && !isCallSiteArrayAccess(iterator, position, constPool)) {
+                    return false;
+                }
+            }
+        } catch (BadBytecode e) {
+            return false;
+        }
+        return fieldReads == 1;
+    }
+
+    /**
+     * A setter is trivial if it does nothing more than store its argument in the field. Loads, stores and stack
+     * manipulation of local variables are allowed since the Groovy compiler emits them for property setters, whereas
+     * any method invocation (for example to mark the property dirty) makes the setter non-trivial
+     */
+    private boolean isTrivialSetter(Method setter, Field field) {
+        CodeAttribute code = getCode(setter);
+        if (code == null) {
+            return false;
+        }
+        int fieldWrites = 0;
+        CodeIterator iterator = code.iterator();
+        ConstPool constPool = code.getConstPool();
+        try {
+            while (iterator.hasNext()) {
+                int position = iterator.next();
+                int opcode = iterator.byteAt(position);
+                if (opcode == Opcode.PUTFIELD) {
+                    if (!isFieldReference(constPool, iterator.u16bitAt(position + 1), field)) {
+                        return false;
+                    }
+                    fieldWrites++;
+                }
+                else if (!isLocalVariableLoad(opcode) && !isLocalVariableStore(opcode) && !isStackManipulation(opcode)
+                        && opcode != Opcode.NOP && opcode != Opcode.CHECKCAST && opcode != Opcode.ACONST_NULL
+                        && opcode != Opcode.RETURN && !isCallSiteArrayAccess(iterator, position, constPool)) {
+                    return false;
+                }
+            }
+        } catch (BadBytecode e) {
+            return false;
+        }
+        return fieldWrites == 1;
+    }
+
+    private static boolean isFieldReference(ConstPool constPool, int index, Field field) {
+        return field.getName().equals(constPool.getFieldrefName(index))
+                && field.getDeclaringClass().getName().equals(constPool.getFieldrefClassName(index));
+    }
+
+    private static boolean isLocalVariableLoad(int opcode) {
+        return opcode >= Opcode.ILOAD && opcode <= Opcode.ALOAD_3;
+    }
+
+    private static boolean isLocalVariableStore(int opcode) {
+        return opcode >= Opcode.ISTORE && opcode <= Opcode.ASTORE_3;
+    }
+
+    private static boolean isStackManipulation(int opcode) {
+        return opcode >= Opcode.POP && opcode <= Opcode.SWAP;
+    }
+
+    /**
+     * Dynamically compiled Groovy methods start by fetching the call site array of the class, which has no side effects
+     */
+    private static boolean isCallSiteArrayAccess(CodeIterator iterator, int position, ConstPool constPool) {
+        return iterator.byteAt(position) == Opcode.INVOKESTATIC
+                && "$getCallSiteArray".equals(constPool.getMethodrefName(iterator.u16bitAt(position + 1)));
+    }
+
+    private CodeAttribute getCode(Method method) {
+        if (Modifier.isAbstract(method.getModifiers()) || Modifier.isNative(method.getModifiers())) {
+            return null;
+        }
+        try {
+            CtClass declaringClass = classPool.get(method.getDeclaringClass().getName());
+            Class[] parameterTypes = method.getParameterTypes();
+            for (CtMethod candidate : declaringClass.getDeclaredMethods()) {
+                if (!candidate.getName().equals(method.getName())) continue;
+                CtClass[] candidateParameters = candidate.getParameterTypes();
+                if (candidateParameters.length != parameterTypes.length) continue;
+                boolean matches = true;
+                for (int i = 0; i < parameterTypes.length; i++) {
+                    if (!candidateParameters[i].getName().equals(typeName(parameterTypes[i]))) {
+                        matches = false;
+                        break;
+                    }
+                }
+                if (matches) {
+                    MethodInfo methodInfo = candidate.getMethodInfo2();
+                    CodeAttribute code = methodInfo.getCodeAttribute();
+                    if (code != null && code.getExceptionTable().size() == 0) {
+                        return code;
+                    }
+                    return null;
+                }
+            }
+        } catch (NotFoundException e) {
+            // fall through
+        }
+        return null;
+    }
+
+    private static boolean isReturn(int opcode) {
+        return opcode >= Opcode.IRETURN && opcode <= Opcode.ARETURN;
+    }
+
+    private boolean isAccessible(Member member) {
+        int modifiers = member.getModifiers();
+        if (Modifier.isStatic(modifiers) || Modifier.isPrivate(modifiers)) {
+            return false;
+        }
+        Class declaringClass = member.getDeclaringClass();
+        if (Modifier.isPublic(modifiers)) {
+            return isAccessible(declaringClass) || isSamePackage(declaringClass);
+        }
+        return isSamePackage(declaringClass);
+    }
+
+    private boolean isAccessible(Class type) {
+        if (type.isPrimitive()) {
+            return true;
+        }
+        if (type.isArray()) {
+            return isAccessible(type.getComponentType());
+        }
+        int modifiers = type.getModifiers();
+        if (Modifier.isPrivate(modifiers)) {
+            return false;
+        }
+        Class enclosingClass = type.getDeclaringClass();
+        if (enclosingClass != null && !isAccessible(enclosingClass)) {
+            return false;
+        }
+        return Modifier.isPublic(modifiers) || isSamePackage(type);
+    }
+
+    private boolean isSamePackage(Class type) {
+        return type.getClassLoader() == javaClass.getClassLoader() && packageName(type).equals(packageName(javaClass));
+    }
+
+    private static String packageName(Class type) {
+        String name = type.getName();
+        int i = name.lastIndexOf('.');
+        return i > -1 ? name.substring(0, i) : "";
+    }
+
+    private static String typeName(Class type) {
+        if (type.isArray()) {
+            return typeName(type.getComponentType()) + "[]";
+        }
+        return type.getName();
+    }
+
+    private static String box(Class type, String expression) {
+        if (!type.isPrimitive()) {
+            return expression;
+        }
+        return wrapperType(type).getName() + ".valueOf(" + expression + ')';
+    }
+
+    private static String unbox(Class type, String expression) {
+        if (!type.isPrimitive()) {
+            return '(' + typeName(type) + ") " + expression;
+        }
+        if (type == boolean.class) {
+            return "((java.lang.Boolean) " + expression + ").booleanValue()";
+        }
+        if (type == char.class) {
+            return "((java.lang.Character) " + expression + ").charValue()";
+        }
+        return "((java.lang.Number) " + expression + ")." + type.getName() + "Value()";
+    }
+
+    static Class wrapperType(Class type) {
+        if (type == int.class) return Integer.class;
+        if (type == long.class) return Long.class;
+        if (type == boolean.class) return Boolean.class;
+        if (type == double.class) return Double.class;
+        if (type == float.class) return Float.class;
+        if (type == short.class) return Short.class;
+        if (type == byte.class) return Byte.class;
+        if (type == char.class) return Character.class;
+        return type;
+    }
+}
@@ -0,0 +1,238 @@
+package org.grails.datastore.mapping.cache.impl
+
+import spock.lang.Specification
+
+/**
+ * Tests for {@link BoundedTPCacheAdapter}
+ */
+class BoundedTPCacheAdapterSpec extends Specification {
+
+    void "test the least recently used entry is evicted when the maximum size is exceeded"() {
+        given:
+        def adapter = BoundedTPCacheAdapter.<Map>builder().maxSize(2).build()
+
+        when:
+        adapter.cacheEntry(1L, [name: "one"])
+        adapter.cacheEntry(2L, [name: "two"])
+        adapter.getCachedEntry(1L)
+        adapter.cacheEntry(3L, [name: "three"])
+
+        then:
+        adapter.size() == 2
+        adapter.getCachedEntry(1L) == [name: "one"]
+        adapter.getCachedEntry(2L) == null
+        adapter.statistics.evictionCount == 1
+    }
+
+    void "test entries are bounded by weight and size together"() {
+        given:
+        def adapter = BoundedTPCacheAdapter.<String>builder()
+                .maxWeight(10)
+                .maxSize(3)
+                .weigher({ String entry -> entry.length() } as BoundedTPCacheAdapter.Weigher)
+                .build()
+
+        when:
+        adapter.cacheEntry(1L, "aaaaaa")
+        adapter.cacheEntry(2L, "bbbbbb")
+
+        then:
+        adapter.size() == 1
+        adapter.getCachedEntry(2L) == "bbbbbb"
+
+        when:
+        adapter.cacheEntry(3L, "c")
+        adapter.cacheEntry(4L, "d")
+        adapter.cacheEntry(5L, "e")
+
+        then:
+        adapter.size() == 3
+        adapter.getCachedEntry(2L) == null
+    }
+
+    void "test entries expire after write and after access"() {
+        given:
+        long now = 0
+        def builder = BoundedTPCacheAdapter.<String>builder().expireAfterWrite(1000).expireAfterAccess(300)
+        def adapter = new BoundedTPCacheAdapter<String>(builder) {
+            @Override
+            protected long currentTimeMillis() {
+                now
+            }
+        }
+        adapter.cacheEntry(1L, "one")
+
+        when:
+        now = 200
+        def first = adapter.getCachedEntry(1L)
+        now = 400
+        def second = adapter.getCachedEntry(1L)
+        now = 1000
+        def third = adapter.getCachedEntry(1L)
+
+        then:
+        first == "one"
+        second == "one"
+        third == null
+        adapter.statistics.expirationCount == 1
+
+        when:
+        adapter.cacheEntry(2L, "two")
+        now = 1300
+
+        then:
+        adapter.getCachedEntry(2L) == null
+    }
+
+    void "test an entry is not replaced by an older version"() {
+        given:
+        def adapter = BoundedTPCacheAdapter.<Map>builder().build()
+
+        when:
+        adapter.cacheEntry(1L, [name: "new"], 2L)
+        adapter.cacheEntry(1L, [name: "old"], 1L)
+
+        then:
+        adapter.getCachedEntry(1L) == [name: "new"]
+        adapter.statistics.staleWriteCount == 1
+
+        when:
+        adapter.cacheEntry(1L, [name: "newer"], 3L)
+        adapter.evictEntry(2L)
+
+        then:
+        adapter.getCachedEntry(1L) == [name: "newer"]
+
+        when:
+        adapter.evictEntry(1L)
+
+        then:
+        adapter.getCachedEntry(1L) == null
+        adapter.statistics.invalidationCount == 1
+    }
+
+    void "test an entry loaded before an eviction is not cached afterwards"() {
+        given:
+        def adapter = BoundedTPCacheAdapter.<Map>builder().build()
+        adapter.cacheEntry(1L, [name: "loaded"], 1L)
+
+        when:"A reader starts loading the entry, which is then evicted"
+        long stamp = adapter.getLoadStamp(1L)
+        adapter.evictEntry(1L)
+        adapter.cacheLoadedEntry(1L, [name: "loaded"], 1L, stamp)
+
+        then:"The outdated entry is refused"
+        adapter.getCachedEntry(1L) == null
+        adapter.statistics.staleWriteCount == 1
+
+        when:"The entry is loaded again after the eviction"
+        stamp = adapter.getLoadStamp(1L)
+        adapter.cacheLoadedEntry(1L, [name: "reloaded"], 1L, stamp)
+
+        then:
+        adapter.getCachedEntry(1L) == [name: "reloaded"]
+    }
+
+    void "test an unversioned entry loaded before an update does not replace the updated entry"() {
+        given:
+        def adapter = BoundedTPCacheAdapter.<Map>builder().build()
+
+        when:"A reader starts loading the entry before it is updated"
+        long stamp = adapter.getLoadStamp(1L)
+        adapter.cacheEntry(1L, [name: "updated"])
+        adapter.cacheLoadedEntry(1L, [name: "loaded"], null, stamp)
+
+        then:"The updated entry is kept"
+        adapter.getCachedEntry(1L) == [name: "updated"]
+        adapter.statistics.staleWriteCount == 1
+
+        when:"Another key is loaded"
+        adapter.cacheLoadedEntry(2L, [name: "two"], null, stamp)
+
+        then:"It is not affected by the update"
+        adapter.getCachedEntry(2L) == [name: "two"]
+    }
+
+    void "test entries loaded before all entries were evicted are refused"() {
+        given:
+        def adapter = BoundedTPCacheAdapter.<Map>builder().build()
+
+        when:
+        long stamp = adapter.getLoadStamp(1L)
+        adapter.evictAll()
+        adapter.cacheLoadedEntry(1L, [name: "loaded"], null, stamp)
+        adapter.cacheLoadedEntry(2L, [name: "reloaded"], null, adapter.getLoadStamp(2L))
+
+        then:
+        adapter.getCachedEntry(1L) == null
+        adapter.getCachedEntry(2L) == [name: "reloaded"]
+    }
+
+    void "test loads are refused conservatively once the stamp of a key is discarded"() {
+        given:
+        def adapter = BoundedTPCacheAdapter.<Map>builder().maxSize(2).build()
+        long stamp = adapter.getLoadStamp(1L)
+
+        when:"More keys are written than stamps are retained"
+        adapter.cacheEntry(1L, [name: "one"])
+        adapter.cacheEntry(2L, [name: "two"])
+        adapter.cacheEntry(3L, [name: "three"])
+        adapter.evictEntry(1L)
+        adapter.cacheLoadedEntry(4L, [name: "four"], null, stamp)
+
+        then:"The write of a key is no longer known, hence older loads are refused"
+        adapter.getCachedEntry(4L) == null
+
+        when:
+        adapter.cacheLoadedEntry(4L, [name: "four"], null, adapter.getLoadStamp(4L))
+
+        then:
+        adapter.getCachedEntry(4L) == [name: "four"]
+    }
+
+    void "test off-heap entries are stored as copies"() {
+        given:
+        def adapter = BoundedTPCacheAdapter.<Map>builder().offHeap(true).build()
+        def entry = [name: "one"]
+
+        when:
+        adapter.cacheEntry(1L, entry)
+        entry.name = "changed"
+        def cached = adapter.getCachedEntry(1L)
+
+        then:
+        adapter.offHeap
+        cached == [name: "one"]
+        !cached.is(adapter.getCachedEntry(1L))
+        adapter.statistics.hitCount == 2
+    }
+
+    void "test the hit rate is zero before the first lookup"() {
+        given:
+        def adapter = BoundedTPCacheAdapter.<Map>builder().build()
+
+        expect:
+        adapter.statistics.hitRate == 0d
+
+        when:
+        adapter.cacheEntry(1L, [name: "one"])
+        adapter.getCachedEntry(1L)
+        adapter.getCachedEntry(2L)
+
+        then:
+        adapter.statistics.hitRate == 0.5d
+    }
+
+    void "test the repository creates an adapter per entity"() {
+        given:
+        def repository = new BoundedTPCacheAdapterRepository<Map>(BoundedTPCacheAdapter.<Map>builder().maxSize(5))
+        def entity = Stub(org.grails.datastore.mapping.model.PersistentEntity) {
+            getJavaClass() >> String
+        }
+
+        expect:
+        repository.getTPCacheAdapter(entity) instanceof BoundedTPCacheAdapter
+        repository.getTPCacheAdapter(entity).is(repository.getTPCacheAdapter(entity))
+        repository.getTPCacheAdapter(entity).maxSize == 5
+    }
+}
@@ -0,0 +1,149 @@
+package org.grails.datastore.mapping.config
+
+import org.codehaus.groovy.control.CompilationUnit
+import org.codehaus.groovy.control.CompilerConfiguration
+import org.grails.datastore.mapping.core.connections.ConnectionSourceSettings
+import org.grails.datastore.mapping.core.exceptions.ConfigurationException
+import org.grails.datastore.mapping.keyvalue.mapping.config.Family
+import org.grails.datastore.mapping.keyvalue.mapping.config.KeyValue
+import org.grails.datastore.mapping.keyvalue.mapping.config.KeyValueMappingContext
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+/**
+ * Tests for {@link MappingSnapshotCache}
+ */
+class MappingSnapshotCacheSpec extends Specification {
+
+    File directory = Files.createTempDirectory("mapping-snapshot").toFile()
+    File file = new File(directory, "mapping.snapshot")
+
+    void cleanup() {
+        directory.deleteDir()
+        SnapshotEntity.evaluations = 0
+    }
+
+    void "test mapped forms are written and only read back when the checksum matches"() {
+        given:
+        def cache = new MappingSnapshotCache(file, getClass().classLoader)
+        def family = new Family(family: "books")
+        def title = new KeyValue(key: "title")
+
+        when:
+        cache.put("book", 10L, new MappingSnapshotCache.MappedForms(family, [title: title]))
+        cache.save()
+        def reloaded = new MappingSnapshotCache(file, getClass().classLoader)
+
+        then:
+        file.exists()
+        reloaded.get("book", 10L).entity.family == "books"
+        reloaded.get("book", 10L).properties.title.key == "title"
+        reloaded.get("book", 11L) == null
+        reloaded.get("other", 10L) == null
+    }
+
+    void "test the checksum changes with the configuration and classes compiled in memory are not cacheable"() {
+        expect:
+        MappingSnapshotCache.checksum(SnapshotEntity, true) == MappingSnapshotCache.checksum(SnapshotEntity, true)
+        MappingSnapshotCache.checksum(SnapshotEntity, true) != MappingSnapshotCache.checksum(SnapshotEntity, false)
+        MappingSnapshotCache.checksum(new GroovyClassLoader().parseClass("class InMemory {}")) == MappingSnapshotCache.UNCACHEABLE
+    }
+
+    void "test the checksum changes when a closure nested in the mapping block changes"() {
+        given:
+        def source = { boolean indexed ->
+            """
+            class Mapped {
+                Long id
+                String name
+                static mapping = {
+                    columns {
+                        name index: $indexed
+                    }
+                }
+            }
+            """
+        }
+
+        expect:
+        checksumOf(source(true)) != checksumOf(source(false))
+    }
+
+    void "test types that are not mapped forms are not read from the snapshot"() {
+        given:
+        def cache = new MappingSnapshotCache(file, getClass().classLoader)
+        def property = new ValueProperty(value: new UnsafeValue())
+
+        when:
+        cache.put("book", 10L, new MappingSnapshotCache.MappedForms(new Family(family: "books"), [title: property]))
+
+        then:
+        cache.get("book", 10L) == null
+
+        when:
+        cache.allowTypes(UnsafeValue)
+        cache.put("book", 10L, new MappingSnapshotCache.MappedForms(new Family(family: "books"), [title: property]))
+
+        then:
+        cache.get("book", 10L).properties.title.value instanceof UnsafeValue
+    }
+
+    void "test enabling the snapshot requires a location"() {
+        when:
+        new KeyValueMappingContext("test", new ConnectionSourceSettings(mappingSnapshot: new ConnectionSourceSettings.MappingSnapshotSettings(enabled: true)))
+
+        then:
+        thrown(ConfigurationException)
+    }
+
+    void "test a mapping context loads evaluated mappings from the snapshot written by a previous start"() {
+        given:
+        def settings = new ConnectionSourceSettings(mappingSnapshot: new ConnectionSourceSettings.MappingSnapshotSettings(enabled: true, location: file.path))
+
+        when:"The entity is mapped for the first time"
+        new KeyValueMappingContext("test", settings).addPersistentEntities(SnapshotEntity)
+
+        then:"The mapping was evaluated and the snapshot written"
+        SnapshotEntity.evaluations == 1
+        file.exists()
+
+        when:"The entity is mapped again by a new context"
+        def context = new KeyValueMappingContext("test", settings)
+        context.addPersistentEntities(SnapshotEntity)
+        def entity = context.getPersistentEntity(SnapshotEntity.name)
+
+        then:"The mapping is read from the snapshot"
+        SnapshotEntity.evaluations == 1
+        entity.mapping.mappedForm.keyspace == "test"
+        entity.getPropertyByName("name").mapping.mappedForm.index
+    }
+
+    private long checksumOf(String source) {
+        File target = Files.createTempDirectory(directory.toPath(), "classes").toFile()
+        def unit = new CompilationUnit(new CompilerConfiguration(targetDirectory: target))
+        unit.addSource("Mapped.groovy", source)
+        unit.compile()
+        def classLoader = new URLClassLoader([target.toURI().toURL()] as URL[], getClass().classLoader)
+        MappingSnapshotCache.checksum(classLoader.loadClass("Mapped"))
+    }
+}
+
+class UnsafeValue implements Serializable {
+}
+
+class ValueProperty extends Property {
+    Object value
+}
+
+class SnapshotEntity {
+    static int evaluations = 0
+
+    Long id
+    String name
+
+    static mapping = {
+        SnapshotEntity.evaluations++
+        name index: true
+    }
+}
@@ -0,0 +1,139 @@
+package org.grails.datastore.mapping.core.cache
+
+import spock.lang.Specification
+
+/**
+ * Tests for {@link BoundedInstanceCache}
+ */
+class BoundedInstanceCacheSpec extends Specification {
+
+    void "test the least recently used instance is evicted when the limit is exceeded"() {
+        given:
+        def statistics = new FirstLevelCacheStatistics()
+        def evicted = []
+        def cache = new BoundedInstanceCache(2, statistics, handler([] as Set, evicted))
+
+        when:
+        cache.put(1L, "one")
+        cache.put(2L, "two")
+        cache.get(1L)
+        cache.put(3L, "three")
+
+        then:
+        cache.size() == 2
+        cache.containsKey(1L)
+        !cache.containsKey(2L)
+        evicted == [2L]
+        statistics.evictionCount == 1
+        statistics.size == 2
+    }
+
+    void "test pinned instances are never evicted"() {
+        given:
+        def statistics = new FirstLevelCacheStatistics()
+        def evicted = []
+        def cache = new BoundedInstanceCache(1, statistics, handler([1L] as Set, evicted))
+
+        when:
+        cache.put(1L, "one")
+        cache.put(2L, "two")
+
+        then:"the instance that was just added is kept even though the limit is exceeded"
+        cache.containsKey(1L)
+        cache.containsKey(2L)
+        evicted.isEmpty()
+
+        when:
+        cache.put(3L, "three")
+
+        then:"the older unpinned instance is evicted"
+        cache.containsKey(1L)
+        !cache.containsKey(2L)
+        cache.containsKey(3L)
+        evicted == [2L]
+    }
+
+    void "test a cache full of pinned instances is not scanned again on every put"() {
+        given:
+        def statistics = new FirstLevelCacheStatistics()
+        def pinned = [1L, 2L, 3L] as Set
+        def checked = []
+        def evicted = []
+        def cache = new BoundedInstanceCache(2, statistics, handler(pinned, evicted, checked))
+
+        when:"every older instance is pinned"
+        (1L..3L).each { cache.put(it, "value $it") }
+
+        then:
+        cache.size() == 3
+        checked == [1L, 2L]
+
+        when:"further pinned instances are added"
+        checked.clear()
+        (4L..10L).each {
+            pinned << it
+            cache.put(it, "value $it")
+        }
+
+        then:"only the instance added before each put is checked"
+        cache.size() == 10
+        checked == (3L..9L).toList()
+        evicted.isEmpty()
+
+        when:"an unpinned instance is added"
+        checked.clear()
+        cache.put(11L, "value 11")
+        cache.put(12L, "value 12")
+
+        then:"it is evicted once it is no longer the instance added last"
+        checked == [10L, 11L]
+        evicted == [11L]
+        !cache.containsKey(11L)
+
+        when:"the pinned instances are released and eviction is reset"
+        pinned.clear()
+        checked.clear()
+        cache.resetEviction()
+        cache.put(13L, "value 13")
+
+        then:"the least recently used instance is evicted again"
+        checked == [1L]
+        evicted == [11L, 1L]
+        !cache.containsKey(1L)
+    }
+
+    void "test clear resets the tracked size"() {
+        given:
+        def statistics = new FirstLevelCacheStatistics()
+        def cache = new BoundedInstanceCache(-1, statistics, handler([] as Set, []))
+
+        when:
+        cache.put(1L, "one")
+        cache.put(2L, "two")
+
+        then:
+        statistics.size == 2
+
+        when:
+        cache.clear()
+
+        then:
+        statistics.size == 0
+        cache.isEmpty()
+    }
+
+    private BoundedInstanceCache.EvictionHandler handler(Set pinned, List evictedKeys, List checkedKeys = []) {
+        new BoundedInstanceCache.EvictionHandler() {
+            @Override
+            boolean isPinned(Serializable key, Object instance) {
+                checkedKeys << key
+                pinned.contains(key)
+            }
+
+            @Override
+            void evicted(Serializable key, Object instance) {
+                evictedKeys << key
+            }
+        }
+    }
+}
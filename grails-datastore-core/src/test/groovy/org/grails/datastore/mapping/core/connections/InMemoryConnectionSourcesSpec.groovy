@@ -0,0 +1,147 @@
+package org.grails.datastore.mapping.core.connections
+
+import org.grails.datastore.mapping.core.DatastoreUtils
+import org.grails.datastore.mapping.keyvalue.mapping.config.GormKeyValueMappingFactory
+import org.grails.datastore.mapping.model.PersistentEntity
+import org.springframework.core.env.PropertyResolver
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Tests for {@link InMemoryConnectionSources}
+ */
+class InMemoryConnectionSourcesSpec extends Specification {
+
+    void "test connection sources are created one after another by default"() {
+        given:
+        def factory = new SlowConnectionSourceFactory()
+        def configuration = configuration([:])
+
+        when:
+        def connectionSources = new InMemoryConnectionSources(factory.create(ConnectionSource.DEFAULT, configuration), factory, configuration)
+
+        then:
+        connectionSources.allConnectionSources*.name as Set == [ConnectionSource.DEFAULT, "one", "two", "three", "four"] as Set
+        factory.maxActive.get() == 1
+    }
+
+    void "test connection sources are created concurrently when configured"() {
+        given:"A factory that waits for all four connection sources to be in creation at once"
+        def factory = new SlowConnectionSourceFactory(allStarted: new CountDownLatch(4))
+        def configuration = configuration(('grails.gorm.connectionSources.initializationConcurrency'): 4)
+
+        when:
+        def connectionSources = new InMemoryConnectionSources(factory.create(ConnectionSource.DEFAULT, configuration), factory, configuration)
+
+        then:"Every creation saw the others running"
+        connectionSources.allConnectionSources*.name as Set == [ConnectionSource.DEFAULT, "one", "two", "three", "four"] as Set
+        factory.allStarted.count == 0
+        factory.waitedForAll.get() == 4
+        factory.maxActive.get() == 4
+        factory.threadNames.every { it.startsWith("gorm-connection-source-") }
+    }
+
+    void "test connection sources created concurrently share the mapped form of an entity"() {
+        given:"A factory that reads the mapped form of an entity while creating each connection source"
+        MappedDomain.EVALUATIONS.set(0)
+        def mappingFactory = new GormKeyValueMappingFactory("test")
+        PersistentEntity entity = Mock(PersistentEntity) {
+            getJavaClass() >> MappedDomain
+            getName() >> MappedDomain.name
+        }
+        def factory = new SlowConnectionSourceFactory(allStarted: new CountDownLatch(4), mappingFactory: mappingFactory, entity: entity)
+        def configuration = configuration(('grails.gorm.connectionSources.initializationConcurrency'): 4)
+
+        when:
+        new InMemoryConnectionSources(factory.create(ConnectionSource.DEFAULT, configuration), factory, configuration)
+
+        then:"The mapping block was evaluated once and every connection source got the same instance"
+        factory.waitedForAll.get() == 4
+        factory.mappedForms.size() == 4
+        factory.mappedForms.every { it.is(factory.mappedForms[0]) }
+        MappedDomain.EVALUATIONS.get() == 1
+    }
+
+    void "test a failure creating a connection source is rethrown"() {
+        given:
+        def factory = new SlowConnectionSourceFactory(failOn: "three")
+        def configuration = configuration(('grails.gorm.connectionSources.initializationConcurrency'): 2)
+
+        when:
+        new InMemoryConnectionSources(factory.create(ConnectionSource.DEFAULT, configuration), factory, configuration)
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message == "Cannot create three"
+    }
+
+    private PropertyResolver configuration(Map<String, Object> settings) {
+        Map<String, Object> config = [
+                'grails.gorm.connections': [one: [:], two: [:], three: [:], four: [:]]
+        ] as Map<String, Object>
+        config.putAll(settings)
+        DatastoreUtils.createPropertyResolver(config)
+    }
+
+    static class MappedDomain {
+        static final AtomicInteger EVALUATIONS = new AtomicInteger()
+
+        static mapping = {
+            MappedDomain.EVALUATIONS.incrementAndGet()
+        }
+    }
+
+    static class SlowConnectionSourceFactory extends AbstractConnectionSourceFactory<Object, ConnectionSourceSettings> {
+        String failOn
+        CountDownLatch allStarted
+        GormKeyValueMappingFactory mappingFactory
+        PersistentEntity entity
+        AtomicInteger active = new AtomicInteger()
+        AtomicInteger maxActive = new AtomicInteger()
+        AtomicInteger waitedForAll = new AtomicInteger()
+        List<String> threadNames = Collections.synchronizedList([])
+        List<Object> mappedForms = Collections.synchronizedList([])
+
+        @Override
+        ConnectionSource<Object, ConnectionSourceSettings> create(String name, ConnectionSourceSettings settings) {
+            if(name == ConnectionSource.DEFAULT) {
+                return new DefaultConnectionSource<Object, ConnectionSourceSettings>(name, new Object(), settings)
+            }
+            threadNames << Thread.currentThread().name
+            int current = active.incrementAndGet()
+            synchronized (maxActive) {
+                maxActive.set(Math.max(maxActive.get(), current))
+            }
+            try {
+                if(allStarted != null) {
+                    allStarted.countDown()
+                    if(allStarted.await(10, TimeUnit.SECONDS)) {
+                        waitedForAll.incrementAndGet()
+                    }
+                }
+                if(mappingFactory != null) {
+                    mappedForms << mappingFactory.createMappedForm(entity)
+                }
+                if(name == failOn) {
+                    throw new IllegalStateException("Cannot create $name")
+                }
+                return new DefaultConnectionSource<Object, ConnectionSourceSettings>(name, new Object(), settings)
+            } finally {
+                active.decrementAndGet()
+            }
+        }
+
+        @Override
+        Serializable getConnectionSourcesConfigurationKey() {
+            return PREFIX + ".connections"
+        }
+
+        @Override
+        protected <F extends ConnectionSourceSettings> ConnectionSourceSettings buildSettings(String name, PropertyResolver configuration, F fallbackSettings, boolean isDefaultDataSource) {
+            return new ConnectionSourceSettingsBuilder(configuration).build()
+        }
+    }
+}
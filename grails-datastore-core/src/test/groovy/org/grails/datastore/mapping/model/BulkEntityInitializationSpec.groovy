@@ -0,0 +1,110 @@
+package org.grails.datastore.mapping.model
+
+import org.grails.datastore.mapping.reflect.FieldEntityAccess
+import spock.lang.Specification
+import spock.lang.Timeout
+
+/**
+ * Tests for adding entities to a mapping context in bulk
+ */
+class BulkEntityInitializationSpec extends Specification {
+
+    GroovyClassLoader classLoader = new GroovyClassLoader()
+
+    void "test entities added in bulk are initialized in parallel"() {
+        given:"A large hierarchy of entities where the children are listed before the parent"
+        Class parent = classLoader.parseClass('''
+import javax.persistence.*
+@Entity
+class BulkParent {
+    @Id Long id
+    String name
+}
+''')
+        List<Class> classes = (1..40).collect { int i ->
+            classLoader.parseClass("""
+import javax.persistence.*
+@Entity
+class BulkChild$i extends BulkParent {
+    String value$i
+}
+""")
+        }
+        classes << parent
+        def context = new TestMappingContext(initializationParallelism: 4)
+
+        when:"The entities are added in bulk"
+        def entities = context.addPersistentEntities(classes as Class[])
+
+        then:"Every entity is initialized and registered once"
+        entities.size() == 41
+        context.persistentEntities.size() == 41
+        entities.every { it.initialized }
+        context.getChildEntities(context.getPersistentEntity("BulkParent")).size() == 40
+        context.getPersistentEntity("BulkChild7").getPropertyByName("value7") != null
+
+        and:"The reflectors were built"
+        entities.every { FieldEntityAccess.getReflector(it.name) != null }
+    }
+
+    @Timeout(30)
+    void "test entities with static initializers referencing each other are added in bulk"() {
+        given:"Entities whose static initializers reference each other"
+        classLoader.parseClass('''
+import javax.persistence.*
+@Entity
+class CrossReferencingFirst {
+    static final String PREFIX = "first"
+    static final String OTHER = CrossReferencingSecond.PREFIX
+    @Id Long id
+}
+@Entity
+class CrossReferencingSecond {
+    static final String PREFIX = "second"
+    static final String OTHER = CrossReferencingFirst.PREFIX
+    @Id Long id
+}
+''')
+        List<Class> classes = [classLoader.loadClass('CrossReferencingFirst'), classLoader.loadClass('CrossReferencingSecond')]
+        classes.addAll((1..40).collect { int i ->
+            classLoader.parseClass("""
+import javax.persistence.*
+@Entity
+class CrossReferencingOther$i {
+    @Id Long id
+    String value = CrossReferencingFirst.OTHER
+}
+""")
+        })
+        def context = new TestMappingContext(initializationParallelism: 4)
+
+        when:"The entities are added in bulk"
+        def entities = context.addPersistentEntities(classes as Class[])
+
+        then:"Every entity is initialized"
+        entities.size() == 42
+        entities.every { it.initialized }
+    }
+
+    void "test overriding an entity replaces the registered entity"() {
+        given:
+        Class entityClass = classLoader.parseClass('''
+import javax.persistence.*
+@Entity
+class OverriddenEntity {
+    @Id Long id
+}
+''')
+        def context = new TestMappingContext()
+        def original = context.addPersistentEntity(entityClass)
+
+        when:
+        def overridden = context.addPersistentEntity(entityClass, true)
+
+        then:
+        context.persistentEntities.size() == 1
+        context.persistentEntities.first().is(overridden)
+        !context.persistentEntities.first().is(original)
+        context.getPersistentEntity(entityClass.name).is(overridden)
+    }
+}
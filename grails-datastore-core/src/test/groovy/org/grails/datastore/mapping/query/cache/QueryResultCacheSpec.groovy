@@ -0,0 +1,136 @@
+package org.grails.datastore.mapping.query.cache
+
+import org.grails.datastore.mapping.model.PersistentEntity
+import org.grails.datastore.mapping.query.plan.CriteriaShape
+import org.springframework.transaction.support.TransactionSynchronization
+import org.springframework.transaction.support.TransactionSynchronizationManager
+import spock.lang.Specification
+
+/**
+ * Tests for {@link QueryResultCache}
+ */
+class QueryResultCacheSpec extends Specification {
+
+    PersistentEntity book = entity("Book")
+    PersistentEntity author = entity("Author")
+
+    void "test results are cached until an involved entity family is written to"() {
+        given:
+        def cache = new QueryResultCache(10, 0)
+        def key = key(book, "Stephen King")
+        cache.put(key, cache.stamp([book, author]), [1L, 2L])
+
+        expect:
+        cache.get(key) == [1L, 2L]
+        cache.get(key(book, "Dan Brown")) == null
+
+        when:
+        cache.invalidate(author)
+
+        then:
+        cache.get(key) == null
+        cache.hitCount == 1
+        cache.missCount == 2
+        cache.invalidationCount == 1
+    }
+
+    void "test results computed during a write are not cached"() {
+        given:
+        def cache = new QueryResultCache(10, 0)
+        def key = key(book, "Stephen King")
+        def stamp = cache.stamp([book])
+
+        when:
+        cache.invalidate(book)
+        cache.put(key, stamp, [1L])
+
+        then:
+        cache.get(key) == null
+    }
+
+    void "test results are not cached whilst a write is uncommitted"() {
+        given:"a transaction that writes to an entity"
+        def cache = new QueryResultCache(10, 0)
+        def key = key(book, "Stephen King")
+        TransactionSynchronizationManager.initSynchronization()
+        cache.recordWrite(book)
+
+        when:"results are computed from the uncommitted data"
+        def stamp = cache.stamp([book])
+        cache.put(key, stamp, [1L])
+
+        then:"they are not cached"
+        cache.get(key) == null
+
+        when:"the transaction rolls back"
+        TransactionSynchronizationManager.synchronizations*.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK)
+        TransactionSynchronizationManager.clearSynchronization()
+        cache.put(key, stamp, [1L])
+
+        then:"results computed before the rollback are still not cached"
+        cache.get(key) == null
+        TransactionSynchronizationManager.getResource(cache) == null
+
+        when:"results are computed after the rollback"
+        cache.put(key, cache.stamp([book]), [2L])
+
+        then:"they are cached"
+        cache.get(key) == [2L]
+
+        cleanup:
+        if (TransactionSynchronizationManager.synchronizationActive) {
+            TransactionSynchronizationManager.clearSynchronization()
+        }
+    }
+
+    void "test results expire after the time to live"() {
+        given:
+        long now = 0
+        def cache = new QueryResultCache(10, 1000) {
+            @Override
+            protected long currentTimeMillis() {
+                now
+            }
+        }
+        def key = key(book, "Stephen King")
+        cache.put(key, cache.stamp([book]), [1L])
+
+        when:
+        now = 999
+
+        then:
+        cache.get(key) == [1L]
+
+        when:
+        now = 1000
+
+        then:
+        cache.get(key) == null
+    }
+
+    void "test the least recently used results are evicted when the cache is full"() {
+        given:
+        def cache = new QueryResultCache(1, 0)
+        cache.put(key(book, "Stephen King"), cache.stamp([book]), [1L])
+
+        when:
+        cache.put(key(book, "Dan Brown"), cache.stamp([book]), [2L])
+
+        then:
+        cache.size() == 1
+        cache.evictionCount == 1
+        cache.get(key(book, "Dan Brown")) == [2L]
+    }
+
+    private QueryResultCache.Key key(PersistentEntity entity, String author) {
+        def shape = CriteriaShape.of(entity, [], [], [])
+        new QueryResultCache.Key(shape, [author])
+    }
+
+    private PersistentEntity entity(String name) {
+        PersistentEntity entity = Stub(PersistentEntity)
+        entity.getName() >> name
+        entity.getRootEntity() >> entity
+        entity
+    }
+}
@@ -18,6 +18,156 @@ class EntityReflectorSpec extends Specification {
         then:"the property from the trait can be reflected"
         entity.reflector.getPropertyReader('bar').read(new Bar(bar: "test")) == 'test'
     }
+
+    void "test properties backed by visible fields are read and written by a generated accessor"() {
+        given:
+        MappingContext mappingContext = new KeyValueMappingContext("test")
+        PersistentEntity entity = mappingContext.addPersistentEntity(Book)
+        EntityReflector reflector = entity.reflector
+        int titleIndex = entity.persistentProperties.findIndexOf { it.name == 'title' }
+        int pagesIndex = entity.persistentProperties.findIndexOf { it.name == 'pages' }
+        Book book = new Book(title: "The Stand", pages: 1153)
+
+        expect:"generated readers and writers are used"
+        reflector.getPropertyReader('title') instanceof FieldEntityAccess.FieldEntityReflector.GeneratedPropertyReader
+        reflector.getPropertyWriter('pages') instanceof FieldEntityAccess.FieldEntityReflector.GeneratedPropertyWriter
+        reflector.getPropertyReader('title').field().name == 'title'
+
+        when:"properties are read and written by index"
+        reflector.setProperty(book, titleIndex, "It")
+        reflector.setProperty(book, pagesIndex, 1138)
+
+        then:"the values are correct"
+        book.title == "It"
+        book.pages == 1138
+        reflector.getProperty(book, titleIndex) == "It"
+        reflector.getProperty(book, pagesIndex) == 1138
+
+        when:"the identifier is set"
+        reflector.setIdentifier(book, 10L)
+
+        then:"the identifier is correct"
+        reflector.getIdentifier(book) == 10L
+
+        when:"a primitive property is set to null"
+        reflector.setProperty(book, pagesIndex, null)
+
+        then:"an error is thrown"
+        thrown(IllegalArgumentException)
+    }
+
+    void "test private fields with trivial accessors are read and written by a generated accessor"() {
+        given:
+        MappingContext mappingContext = new KeyValueMappingContext("test")
+        PersistentEntity entity = mappingContext.addPersistentEntity(Newspaper)
+        EntityReflector reflector = entity.reflector
+        int nameIndex = entity.persistentProperties.findIndexOf { it.name == 'name' }
+        Newspaper newspaper = new Newspaper()
+        PropertyAccessorGenerator generator = new PropertyAccessorGenerator(Newspaper,
+                [reflector.getPropertyReader('name')] as EntityReflector.PropertyReader[],
+                [reflector.getPropertyWriter('name')] as EntityReflector.PropertyWriter[])
+
+        expect:"code is generated for the property"
+        generator.generate() != null
+        generator.isReaderGenerated(0)
+        generator.isWriterGenerated(0)
+
+        and:"generated readers and writers are used"
+        reflector.getPropertyReader('name') instanceof FieldEntityAccess.FieldEntityReflector.GeneratedPropertyReader
+        reflector.getPropertyWriter('name') instanceof FieldEntityAccess.FieldEntityReflector.GeneratedPropertyWriter
+        reflector.getPropertyWriter('edition') instanceof FieldEntityAccess.FieldEntityReflector.GeneratedPropertyWriter
+
+        when:"properties are written"
+        reflector.setProperty(newspaper, nameIndex, "Herald")
+        reflector.getPropertyWriter('edition').write(newspaper, 3)
+
+        then:"the values are correct"
+        newspaper.name == "Herald"
+        newspaper.edition == 3
+        reflector.getProperty(newspaper, nameIndex) == "Herald"
+
+        when:"a value of the wrong type is written"
+        reflector.getPropertyWriter('name').write(newspaper, 10)
+
+        then:"the error names the property"
+        IllegalArgumentException e = thrown()
+        e.message.contains('[name]')
+    }
+
+    void "test setters with side effects are not invoked by the generated accessor"() {
+        given:
+        MappingContext mappingContext = new KeyValueMappingContext("test")
+        PersistentEntity entity = mappingContext.addPersistentEntity(Magazine)
+        EntityReflector reflector = entity.reflector
+        int issueIndex = entity.persistentProperties.findIndexOf { it.name == 'issue' }
+        Magazine magazine = new Magazine()
+
+        expect:"the reflective writers are kept"
+        !(reflector.getPropertyWriter('name') instanceof FieldEntityAccess.FieldEntityReflector.GeneratedPropertyWriter)
+        !(reflector.getPropertyWriter('issue') instanceof FieldEntityAccess.FieldEntityReflector.GeneratedPropertyWriter)
+
+        when:"properties are written"
+        reflector.setProperty(magazine, issueIndex, 12)
+        reflector.getPropertyWriter('name').write(magazine, "Byte")
+
+        then:"the fields were written without calling the setters"
+        magazine.issue == 12
+        magazine.name == "Byte"
+        magazine.setterCalls == 0
+    }
+
+    void "test the generated accessor class is shared by mapping contexts"() {
+        given:
+        PersistentEntity first = new KeyValueMappingContext("test").addPersistentEntity(Book)
+        def firstReader = (FieldEntityAccess.FieldEntityReflector.GeneratedPropertyReader) first.reflector.getPropertyReader('title')
+        FieldEntityAccess.clearReflectors()
+
+        when:
+        PersistentEntity second = new KeyValueMappingContext("test").addPersistentEntity(Book)
+        def secondReader = (FieldEntityAccess.FieldEntityReflector.GeneratedPropertyReader) second.reflector.getPropertyReader('title')
+
+        then:
+        !first.reflector.is(second.reflector)
+        firstReader.accessor.is(secondReader.accessor)
+    }
+}
+
+class Magazine {
+    Long id
+    String name
+    Integer issue
+    int setterCalls
+
+    void setName(String name) {
+        setterCalls++
+        this.name = name
+    }
+
+    void setIssue(Integer issue) {
+        setterCalls++
+        this.issue = issue
+    }
+
+    static transients = ['setterCalls']
+}
+
+class Newspaper {
+    Long id
+    String name
+    int edition
+}
+
+class Book {
+    protected Long id
+    protected String title
+    protected int pages
+
+    Long getId() { id }
+    void setId(Long id) { this.id = id }
+    String getTitle() { title }
+    void setTitle(String title) { this.title = title }
+    int getPages() { pages }
+    void setPages(int pages) { this.pages = pages }
 }
 
 trait Foo {
@@ -15,13 +15,18 @@
 package org.grails.datastore.gorm.async
 
 import grails.async.Promise
+import grails.async.PromiseFactory
 import grails.async.Promises
 import grails.async.decorator.PromiseDecorator
 import grails.async.decorator.PromiseDecoratorProvider
 import grails.gorm.api.GormStaticOperations
 import groovy.transform.CompileStatic
 import org.grails.datastore.gorm.GormStaticApi
+import org.grails.async.factory.future.FutureTaskPromise
 import org.grails.datastore.gorm.async.transform.DelegateAsync
+import org.grails.datastore.gorm.concurrent.TaskExecutors
+
+import java.util.concurrent.Executor
 
 /**
  * Transforms the GormStaticApi into an asynchronous API
@@ -51,13 +56,22 @@ class GormAsyncStaticApi<D> implements PromiseDecoratorProvider{
     }
 
     /**
-     * Used to perform a sequence of operations asynchronously
+     * Used to perform a sequence of operations asynchronously. If a task executor is configured for the datastore via {@link TaskExecutors} the task runs on that executor, otherwise
+     * on the thread pool of the current {@link PromiseFactory}
+     *
      * @param callable The callable
      * @return The promise
      */
     @CompileStatic
     public <T> Promise<T> task(Closure<T> callable) {
         callable.delegate = staticApi.gormPersistentEntity.javaClass
+        Executor executor = staticApi instanceof GormStaticApi ? TaskExecutors.getExecutor(((GormStaticApi) staticApi).datastore) : TaskExecutors.executor
+        if(executor != null) {
+            PromiseFactory promiseFactory = Promises.promiseFactory
+            FutureTaskPromise<T> promise = new FutureTaskPromise<T>(promiseFactory, promiseFactory.applyDecorators(callable, decorators))
+            executor.execute(promise)
+            return promise
+        }
         (Promise<T>)Promises.createPromise(callable, decorators)
     }
 }
\ No newline at end of file
@@ -14,6 +14,8 @@
  */
 package org.grails.orm.hibernate.cfg;
 
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.EvictionListener;
 import groovy.lang.Closure;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -49,6 +51,7 @@ import java.util.*;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handles the binding Grails domain classes and properties to the Hibernate runtime meta model.
@@ -69,7 +72,33 @@ public abstract class AbstractGrailsDomainBinder {
     protected static final String CASCADE_NONE = "none";
     protected static final String BACKTICK = "`";
 
-    protected static final Map<Class<?>, Mapping> MAPPING_CACHE = new HashMap<Class<?>, Mapping>();
+    /**
+     * The default maximum number of mappings held by {@link #MAPPING_CACHE}
+     */
+    public static final int DEFAULT_MAX_CACHED_MAPPINGS = 10000;
+
+    private static final Map<String, Class<?>> MAPPED_CLASSES = new HashMap<String, Class<?>>();
+    private static final Object MAPPING_CACHE_LOCK = new Object();
+
+    /**
+     * The mappings of all binders, read by query code at runtime. Holds one mapping per class name, so that classes
+     * replaced by a reload don't accumulate, and at most {@link #DEFAULT_MAX_CACHED_MAPPINGS} mappings, evicting the
+     * least recently used. Updates are made under MAPPING_CACHE_LOCK so that the cache and the classes it holds stay
+     * consistent, reads don't lock
+     */
+    protected static final ConcurrentLinkedHashMap<Class<?>, Mapping> MAPPING_CACHE = new ConcurrentLinkedHashMap.Builder<Class<?>, Mapping>()
+            .maximumWeightedCapacity(DEFAULT_MAX_CACHED_MAPPINGS)
+            .listener(new EvictionListener<Class<?>, Mapping>() {
+                @Override
+                public void onEviction(Class<?> theClass, Mapping mapping) {
+                    synchronized (MAPPING_CACHE_LOCK) {
+                        if (MAPPED_CLASSES.get(theClass.getName()) == theClass) {
+                            MAPPED_CLASSES.remove(theClass.getName());
+                        }
+                    }
+                }
+            })
+            .build();
     protected static final String ENUM_TYPE_CLASS = "org.hibernate.type.EnumType";
     protected static final String ENUM_CLASS_PROP = "enumClass";
     protected static final String ENUM_TYPE_PROP = "type";
@@ -89,13 +118,21 @@ public abstract class AbstractGrailsDomainBinder {
      * Overrideable naming strategy. Defaults to <code>ImprovedNamingStrategy</code> but can
      * be configured in DataSource.groovy via <code>hibernate.naming_strategy = ...</code>.
      */
-    public static Map<String, NamingStrategy> NAMING_STRATEGIES = new HashMap<String, NamingStrategy>();
+    public static Map<String, NamingStrategy> NAMING_STRATEGIES = new ConcurrentHashMap<String, NamingStrategy>();
     static {
        NAMING_STRATEGIES.put(ConnectionSource.DEFAULT, ImprovedNamingStrategy.INSTANCE);
     }
 
     private PersistentEntityNamingStrategy namingStrategy;
 
+    /**
+     * The mappings evaluated by this binder, which are the mapped forms of the entities of its own mapping context.
+     * Each datastore binds its entities with its own binder, so the binding code never reads a mapping that was
+     * cached by the binder of another datastore. Holds at most one mapping per entity of the mapping context, so it
+     * needs no bound of its own
+     */
+    protected final Map<Class<?>, Mapping> evaluatedMappings = new ConcurrentHashMap<Class<?>, Mapping>();
+
 
     /**
      * The default ORM mapping
@@ -259,7 +296,12 @@ public abstract class AbstractGrailsDomainBinder {
             namingStrategy = (NamingStrategy)namingStrategyClass.newInstance();
         }
 
-        NAMING_STRATEGIES.put(datasourceName, namingStrategy);
+        if (namingStrategy != null) {
+            NAMING_STRATEGIES.put(datasourceName, namingStrategy);
+        }
+        else {
+            NAMING_STRATEGIES.remove(datasourceName);
+        }
     }
 
     protected void bindMapSecondPass(ToMany property, Mappings mappings,
@@ -285,7 +327,7 @@ public abstract class AbstractGrailsDomainBinder {
             SimpleValue elt = new SimpleValue(mappings, map.getCollectionTable());
             map.setElement(elt);
 
-            String typeName = getTypeName(property,getPropertyConfig(property), getMapping(property.getOwner()));
+            String typeName = getTypeName(property,getPropertyConfig(property), lookupMapping(property.getOwner()));
             if (typeName == null ) {
 
                 if(property instanceof Basic) {
@@ -352,7 +394,7 @@ public abstract class AbstractGrailsDomainBinder {
             PersistentClass referenced = mappings.getClass(entityName);
 
             Class<?> mappedClass = referenced.getMappedClass();
-            Mapping m = getMapping(mappedClass);
+            Mapping m = lookupMapping(mappedClass);
 
             boolean compositeIdProperty = isCompositeIdProperty(m, property.getInverseSide());
             if (!compositeIdProperty) {
@@ -679,7 +721,7 @@ public abstract class AbstractGrailsDomainBinder {
             current = superClass;
         }
 
-        return getMapping(current);
+        return lookupMapping(current);
     }
 
     protected boolean isBidirectionalOneToManyMap(Association property) {
@@ -724,7 +766,7 @@ public abstract class AbstractGrailsDomainBinder {
             }
             else {
 
-                String typeName = getTypeName(property, config, getMapping(property.getOwner()));
+                String typeName = getTypeName(property, config, lookupMapping(property.getOwner()));
                 if (typeName == null) {
                     Type type = mappings.getTypeResolver().basic(className);
                     if (type != null) {
@@ -744,7 +786,7 @@ public abstract class AbstractGrailsDomainBinder {
         } else {
             final PersistentEntity domainClass = property.getAssociatedEntity();
 
-            Mapping m = getMapping(domainClass);
+            Mapping m = lookupMapping(domainClass);
             if (hasCompositeIdentifier(m)) {
                 CompositeIdentity ci = (CompositeIdentity) m.getIdentity();
                 bindCompositeIdentifierToManyToOne(property, element, ci, domainClass,
@@ -902,7 +944,7 @@ public abstract class AbstractGrailsDomainBinder {
         }
 
         PersistentEntity refDomainClass = property.getOwner();
-        final Mapping mapping = getMapping(refDomainClass.getJavaClass());
+        final Mapping mapping = lookupMapping(refDomainClass.getJavaClass());
         boolean hasCompositeIdentifier = hasCompositeIdentifier(mapping);
         if ((shouldCollectionBindWithJoinColumn((ToMany) property) && hasCompositeIdentifier) ||
                 (hasCompositeIdentifier && ( property instanceof ManyToMany))) {
@@ -1233,7 +1275,7 @@ public abstract class AbstractGrailsDomainBinder {
      * @return The table name
      */
     protected String getTableName(PersistentEntity domainClass, String sessionFactoryBeanName) {
-        Mapping m = getMapping(domainClass);
+        Mapping m = lookupMapping(domainClass);
         String tableName = null;
         if (m != null && m.getTableName() != null) {
             tableName = m.getTableName();
@@ -1320,7 +1362,9 @@ public abstract class AbstractGrailsDomainBinder {
             final Mapping m = (Mapping) domainClass.getMapping().getMappedForm();
             trackCustomCascadingSaves(m, domainClass.getPersistentProperties());
             if (cache) {
-                MAPPING_CACHE.put(domainClass.getJavaClass(), m);
+                // the mapping is only published once it is fully evaluated
+                evaluatedMappings.put(domainClass.getJavaClass(), m);
+                cacheMapping(domainClass.getJavaClass(), m);
             }
             return m;
         } catch (Exception e) {
@@ -1331,16 +1375,25 @@ public abstract class AbstractGrailsDomainBinder {
 
     /**
      * Checks for any custom cascading saves set up via the mapping DSL and records them within the persistent property.
+     * The mapping can be evaluated by binders running concurrently, so the cascades are only recorded once, whilst
+     * holding the lock of the mapping.
+     *
      * @param mapping The Mapping.
      * @param persistentProperties The persistent properties of the domain class.
      */
     protected void trackCustomCascadingSaves(Mapping mapping, Iterable<PersistentProperty> persistentProperties) {
-        for (PersistentProperty property : persistentProperties) {
-            PropertyConfig propConf = mapping.getPropertyConfig(property.getName());
+        synchronized (mapping) {
+            if (mapping.customCascadesTracked) {
+                return;
+            }
+            for (PersistentProperty property : persistentProperties) {
+                PropertyConfig propConf = mapping.getPropertyConfig(property.getName());
 
-            if (propConf != null && propConf.getCascade() != null) {
-                propConf.setExplicitSaveUpdateCascade(isSaveUpdateCascade(propConf.getCascade()));
+                if (propConf != null && propConf.getCascade() != null) {
+                    propConf.setExplicitSaveUpdateCascade(isSaveUpdateCascade(propConf.getCascade()));
+                }
             }
+            mapping.customCascadesTracked = true;
         }
     }
 
@@ -1380,7 +1433,17 @@ public abstract class AbstractGrailsDomainBinder {
      * @return A Mapping object or null
      */
     static void cacheMapping(Class<?> theClass, Mapping mapping) {
-        MAPPING_CACHE.put(theClass, mapping);
+        if (mapping == null) {
+            clearMappingCache(theClass);
+            return;
+        }
+        synchronized (MAPPING_CACHE_LOCK) {
+            Class<?> previous = MAPPED_CLASSES.put(theClass.getName(), theClass);
+            if (previous != null && previous != theClass) {
+                MAPPING_CACHE.remove(previous);
+            }
+            MAPPING_CACHE.put(theClass, mapping);
+        }
     }
 
     /**
@@ -1390,23 +1453,72 @@ public abstract class AbstractGrailsDomainBinder {
      * @return A Mapping object or null
      */
     public static Mapping getMapping(PersistentEntity domainClass) {
-        return domainClass == null ? null : MAPPING_CACHE.get(domainClass.getJavaClass());
+        if (domainClass == null) {
+            return null;
+        }
+        Mapping mapping = MAPPING_CACHE.get(domainClass.getJavaClass());
+        if (mapping == null) {
+            // the mapping may have been evicted, the entity still holds it
+            ClassMapping classMapping = domainClass.getMapping();
+            Object mappedForm = classMapping != null ? classMapping.getMappedForm() : null;
+            if (mappedForm instanceof Mapping) {
+                mapping = (Mapping) mappedForm;
+            }
+        }
+        return mapping;
+    }
+
+    /**
+     * Sets the maximum number of mappings held by the mapping cache, evicting the least recently used mappings
+     * if there are more
+     *
+     * @param maxCachedMappings The maximum number of mappings
+     */
+    public static void setMaxCachedMappings(int maxCachedMappings) {
+        MAPPING_CACHE.setCapacity(maxCachedMappings);
     }
 
     public static void clearMappingCache() {
-        MAPPING_CACHE.clear();
+        synchronized (MAPPING_CACHE_LOCK) {
+            MAPPING_CACHE.clear();
+            MAPPED_CLASSES.clear();
+        }
     }
 
     public static void clearMappingCache(Class<?> theClass) {
-        String className = theClass.getName();
-        for(Iterator<Map.Entry<Class<?>, Mapping>> it = MAPPING_CACHE.entrySet().iterator(); it.hasNext();) {
-            Map.Entry<Class<?>, Mapping> entry = it.next();
-            if (className.equals(entry.getKey().getName())) {
-                it.remove();
+        synchronized (MAPPING_CACHE_LOCK) {
+            Class<?> mappedClass = MAPPED_CLASSES.remove(theClass.getName());
+            if (mappedClass != null) {
+                MAPPING_CACHE.remove(mappedClass);
             }
+            MAPPING_CACHE.remove(theClass);
         }
     }
 
+    /**
+     * Obtains the mapping of the given class evaluated by this binder, falling back to the mappings of all binders
+     *
+     * @param theClass The domain class in question
+     * @return A Mapping object or null
+     */
+    protected Mapping lookupMapping(Class<?> theClass) {
+        if (theClass == null) {
+            return null;
+        }
+        Mapping mapping = evaluatedMappings.get(theClass);
+        return mapping != null ? mapping : MAPPING_CACHE.get(theClass);
+    }
+
+    /**
+     * Obtains the mapping of the given entity evaluated by this binder, falling back to the mappings of all binders
+     *
+     * @param domainClass The domain class in question
+     * @return A Mapping object or null
+     */
+    protected Mapping lookupMapping(PersistentEntity domainClass) {
+        return domainClass == null ? null : lookupMapping(domainClass.getJavaClass());
+    }
+
     /**
      * Binds the specified persistant class to the runtime model based on the
      * properties defined in the domain class
@@ -1461,7 +1573,7 @@ public abstract class AbstractGrailsDomainBinder {
         }
         bindClass(entity, root, mappings);
 
-        Mapping m = getMapping(entity);
+        Mapping m = lookupMapping(entity);
 
         bindRootPersistentClassCommonValues(entity, root, mappings, sessionFactoryBeanName);
 
@@ -1538,7 +1650,7 @@ public abstract class AbstractGrailsDomainBinder {
     protected void bindSubClass(HibernatePersistentEntity sub, PersistentClass parent,
             Mappings mappings, String sessionFactoryBeanName) {
         evaluateMapping(sub, defaultMapping);
-        Mapping m = getMapping(parent.getMappedClass());
+        Mapping m = lookupMapping(parent.getMappedClass());
         Subclass subClass;
         boolean tablePerSubclass = m != null && !m.getTablePerHierarchy() && !m.isTablePerConcreteClass();
         boolean tablePerConcreteClass = m != null && m.isTablePerConcreteClass();
@@ -1554,7 +1666,7 @@ public abstract class AbstractGrailsDomainBinder {
             // set the descriminator value as the name of the class. This is the
             // value used by Hibernate to decide what the type of the class is
             // to perform polymorphic queries
-            Mapping subMapping = getMapping(sub);
+            Mapping subMapping = lookupMapping(sub);
             DiscriminatorConfig discriminatorConfig = subMapping != null ? subMapping.getDiscriminator() : null;
 
             subClass.setDiscriminatorValue(discriminatorConfig != null && discriminatorConfig.getValue() != null ? discriminatorConfig.getValue() : fullName);
@@ -1591,7 +1703,7 @@ public abstract class AbstractGrailsDomainBinder {
                                          Mappings mappings, String sessionFactoryBeanName) throws MappingException {
 
 
-        Mapping subMapping = getMapping(subClass.getJavaClass());
+        Mapping subMapping = lookupMapping(subClass.getJavaClass());
 
         if ( unionSubclass.getEntityPersisterClass() == null ) {
             unionSubclass.getRootClass().setEntityPersisterClass(
@@ -1705,7 +1817,7 @@ public abstract class AbstractGrailsDomainBinder {
      * @param mappings The mappings instance
      */
     protected void bindDiscriminatorProperty(Table table, RootClass entity, Mappings mappings) {
-        Mapping m = getMapping(entity.getMappedClass());
+        Mapping m = lookupMapping(entity.getMappedClass());
         SimpleValue d = new SimpleValue(mappings, table);
         entity.setDiscriminator(d);
         DiscriminatorConfig discriminatorConfig = m != null ? m.getDiscriminator() : null;
@@ -1766,7 +1878,7 @@ public abstract class AbstractGrailsDomainBinder {
             RootClass root, Mappings mappings, String sessionFactoryBeanName) {
 
         // get the schema and catalog names from the configuration
-        Mapping m = getMapping(domainClass.getJavaClass());
+        Mapping m = lookupMapping(domainClass.getJavaClass());
         String schema = mappings.getSchemaName();
         String catalog = mappings.getCatalogName();
 
@@ -2122,7 +2234,7 @@ public abstract class AbstractGrailsDomainBinder {
 
         PropertyConfig pc = getPropertyConfig(property);
         final PersistentEntity owner = property.getOwner();
-        String typeName = getTypeName(property, getPropertyConfig(property), getMapping(owner));
+        String typeName = getTypeName(property, getPropertyConfig(property), lookupMapping(owner));
         if (typeName == null) {
             Properties enumProperties = new Properties();
             enumProperties.put(ENUM_CLASS_PROP, propertyType.getName());
@@ -2153,7 +2265,7 @@ public abstract class AbstractGrailsDomainBinder {
         if (owner.isRoot()) {
             column.setNullable(property.isNullable());
         } else {
-            Mapping mapping = getMapping(owner);
+            Mapping mapping = lookupMapping(owner);
             if (mapping == null || mapping.getTablePerHierarchy()) {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("[GrailsDomainBinder] Sub class property [" + property.getName() +
@@ -2324,7 +2436,7 @@ public abstract class AbstractGrailsDomainBinder {
     protected boolean isComponentPropertyNullable(PersistentProperty componentProperty) {
         if (componentProperty == null) return false;
         final PersistentEntity domainClass = componentProperty.getOwner();
-        final Mapping mapping = getMapping(domainClass.getJavaClass());
+        final Mapping mapping = lookupMapping(domainClass.getJavaClass());
         return !domainClass.isRoot() && (mapping == null || mapping.isTablePerHierarchy()) || componentProperty.isNullable();
     }
 
@@ -2362,7 +2474,7 @@ public abstract class AbstractGrailsDomainBinder {
 
         bindManyToOneValues(property, manyToOne);
         PersistentEntity refDomainClass = property instanceof ManyToMany ? property.getOwner() : property.getAssociatedEntity();
-        Mapping mapping = getMapping(refDomainClass);
+        Mapping mapping = lookupMapping(refDomainClass);
         boolean isComposite = hasCompositeIdentifier(mapping);
         if (isComposite) {
             CompositeIdentity ci = (CompositeIdentity) mapping.getIdentity();
@@ -2585,7 +2697,7 @@ public abstract class AbstractGrailsDomainBinder {
     protected void bindSimpleId(PersistentProperty identifier, RootClass entity,
             Mappings mappings, Identity mappedId, String sessionFactoryBeanName) {
 
-        Mapping mapping = getMapping(identifier.getOwner());
+        Mapping mapping = lookupMapping(identifier.getOwner());
         boolean useSequence = mapping != null && mapping.isTablePerConcreteClass();
 
         // create the id value
@@ -2888,7 +3000,7 @@ public abstract class AbstractGrailsDomainBinder {
     }
 
     protected void setTypeForPropertyConfig(PersistentProperty grailsProp, SimpleValue simpleValue, PropertyConfig config) {
-        final String typeName = getTypeName(grailsProp, getPropertyConfig(grailsProp), getMapping(grailsProp.getOwner()));
+        final String typeName = getTypeName(grailsProp, getPropertyConfig(grailsProp), lookupMapping(grailsProp.getOwner()));
         if (typeName == null) {
             simpleValue.setTypeName(grailsProp.getType().getName());
         }
@@ -2990,7 +3102,7 @@ public abstract class AbstractGrailsDomainBinder {
 
         final PersistentEntity owner = property.getOwner();
         if (!owner.isRoot()) {
-            Mapping mapping = getMapping(owner);
+            Mapping mapping = lookupMapping(owner);
             if (mapping == null || mapping.getTablePerHierarchy()) {
                 if (LOG.isDebugEnabled())
                     LOG.debug("[GrailsDomainBinder] Sub class property [" + property.getName() + "] for column name ["+column.getName()+"] set to nullable");
@@ -3070,7 +3182,7 @@ public abstract class AbstractGrailsDomainBinder {
         if (cc == null) {
             // No column config given, so try to fetch it from the mapping
             PersistentEntity domainClass = grailsProp.getOwner();
-            Mapping m = getMapping(domainClass);
+            Mapping m = lookupMapping(domainClass);
             if (m != null) {
                 PropertyConfig c = m.getPropertyConfig(grailsProp.getName());
 
@@ -3171,7 +3283,7 @@ public abstract class AbstractGrailsDomainBinder {
     protected String getIndexColumnType(PersistentProperty property, String defaultType) {
         PropertyConfig pc = getPropertyConfig(property);
         if (pc != null && pc.getIndexColumn() != null && pc.getIndexColumn().getType() != null) {
-            return getTypeName(property, pc.getIndexColumn(), getMapping(property.getOwner()));
+            return getTypeName(property, pc.getIndexColumn(), lookupMapping(property.getOwner()));
         }
         return defaultType;
     }
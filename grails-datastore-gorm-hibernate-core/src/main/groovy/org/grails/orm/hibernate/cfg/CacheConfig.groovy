@@ -31,7 +31,7 @@ import org.springframework.validation.DataBinder
 @AutoClone
 @CompileStatic
 @Builder(builderStrategy = SimpleStrategy, prefix = '')
-class CacheConfig implements Cloneable {
+class CacheConfig implements Cloneable, Serializable {
     static final List USAGE_OPTIONS = ['read-only', 'read-write','nonstrict-read-write','transactional']
     static final List INCLUDE_OPTIONS = ['all', 'non-lazy']
 
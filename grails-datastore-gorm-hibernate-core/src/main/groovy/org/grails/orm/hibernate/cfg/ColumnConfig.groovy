@@ -31,7 +31,7 @@ import org.springframework.validation.DataBinder
 @AutoClone
 @CompileStatic
 @Builder(builderStrategy = SimpleStrategy, prefix = '')
-class ColumnConfig {
+class ColumnConfig implements Serializable {
     /**
      * The column name
      */
@@ -12,7 +12,7 @@ import groovy.transform.builder.SimpleStrategy
  */
 @CompileStatic
 @Builder(builderStrategy = SimpleStrategy, prefix = '')
-class DiscriminatorConfig {
+class DiscriminatorConfig implements Serializable {
     /**
      * The discriminator value
      */
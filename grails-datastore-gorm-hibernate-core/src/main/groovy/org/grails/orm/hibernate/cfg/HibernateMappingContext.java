@@ -61,6 +61,7 @@ public class HibernateMappingContext extends AbstractMappingContext {
         if(settings != null) {
             this.mappingFactory.setDefaultMapping(settings.getDefault().getMapping());
             this.mappingFactory.setDefaultConstraints(settings.getDefault().getConstraints());
+            configureMappingSnapshot(settings);
         }
         this.mappingFactory.setContextObject(contextObject);
         this.syntaxStrategy = new JpaMappingConfigurationStrategy(mappingFactory) {
@@ -256,6 +257,12 @@ public class HibernateMappingContext extends AbstractMappingContext {
             return new HibernateMappingBuilder(mapping, entity.getName(), defaultConstraints);
         }
 
+        @Override
+        protected Class[] getMappedFormValueTypes() {
+            return new Class[] { Table.class, JoinTable.class, ColumnConfig.class, CacheConfig.class, SortConfig.class,
+                    DiscriminatorConfig.class, NaturalId.class };
+        }
+
         @Override
         public IdentityMapping createIdentityMapping(final ClassMapping classMapping) {
             final Mapping mappedForm = createMappedForm(classMapping.getEntity());
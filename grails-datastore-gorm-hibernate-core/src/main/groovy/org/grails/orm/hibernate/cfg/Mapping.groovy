@@ -17,6 +17,7 @@ package org.grails.orm.hibernate.cfg
 
 import groovy.transform.CompileDynamic
 import groovy.transform.CompileStatic
+import groovy.transform.PackageScope
 import groovy.transform.builder.Builder
 import groovy.transform.builder.SimpleStrategy
 import org.grails.datastore.mapping.config.Entity
@@ -92,6 +93,12 @@ class Mapping extends Entity<PropertyConfig> {
      */
     Map<String, PropertyConfig> columns = [:]
 
+    /**
+     * Whether the custom cascading saves of the property configurations have been recorded by a domain binder
+     */
+    @PackageScope
+    transient boolean customCascadesTracked = false
+
     /**
      * The identity definition
      */
@@ -118,11 +125,6 @@ class Mapping extends Entity<PropertyConfig> {
     @Override
     PropertyConfig getPropertyConfig(String name) { columns[name] }
 
-    /**
-     * The batch size to use for lazy loading
-     */
-    Integer batchSize
-
     /**
      * Whether to use dynamically created update queries, at the cost of some performance
      */
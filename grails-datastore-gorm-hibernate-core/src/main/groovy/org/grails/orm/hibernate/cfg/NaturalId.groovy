@@ -25,7 +25,7 @@ import groovy.transform.builder.SimpleStrategy
  */
 @CompileStatic
 @Builder(builderStrategy = SimpleStrategy, prefix = '')
-class NaturalId {
+class NaturalId implements Serializable {
     /**
      * The property names that make up the natural id
      */
@@ -70,11 +70,6 @@ class PropertyConfig extends Property {
      */
     String order
 
-    /**
-     * The batch size used for lazy loading
-     */
-    Integer batchSize
-
 
     /**
      * Whether to ignore ObjectNotFoundException
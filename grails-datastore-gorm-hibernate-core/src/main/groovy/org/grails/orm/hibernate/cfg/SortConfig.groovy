@@ -24,7 +24,7 @@ import groovy.transform.builder.SimpleStrategy
  */
 @CompileStatic
 @Builder(builderStrategy = SimpleStrategy, prefix = '')
-class SortConfig {
+class SortConfig implements Serializable {
     /**
      * The property to sort bu
      */
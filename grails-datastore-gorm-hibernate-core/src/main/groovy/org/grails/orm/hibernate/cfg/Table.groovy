@@ -29,7 +29,7 @@ import org.springframework.validation.DataBinder
  */
 @Builder(builderStrategy = SimpleStrategy, prefix = '')
 @CompileStatic
-class Table {
+class Table implements Serializable {
     /**
      * The table name
      */
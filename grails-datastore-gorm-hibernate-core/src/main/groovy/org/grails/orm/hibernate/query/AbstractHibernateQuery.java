@@ -36,8 +36,10 @@ import org.grails.datastore.mapping.model.PersistentEntity;
 import org.grails.datastore.mapping.model.PersistentProperty;
 import org.grails.datastore.mapping.model.types.Association;
 import org.grails.datastore.mapping.model.types.Embedded;
+import org.grails.datastore.mapping.query.AbstractResultStream;
 import org.grails.datastore.mapping.query.AssociationQuery;
 import org.grails.datastore.mapping.query.Query;
+import org.grails.datastore.mapping.query.ResultStream;
 import org.grails.datastore.mapping.query.api.QueryableCriteria;
 import org.grails.datastore.mapping.query.criteria.FunctionCallingCriterion;
 import org.hibernate.*;
@@ -687,6 +689,36 @@ public abstract class AbstractHibernateQuery extends Query {
     public List list() {
         if(criteria == null) throw new IllegalStateException("Cannot execute query using a detached criteria instance");
 
+        applyProjectionsAndResultTransformer();
+        applyDefaultSortOrderAndCaching();
+        applyFetchStrategies();
+
+        return listForCriteria();
+    }
+
+    @Override
+    protected ResultStream executeStream(PersistentEntity entity, Junction junction) {
+        if(criteria == null) throw new IllegalStateException("Cannot execute query using a detached criteria instance");
+
+        boolean hasProjections = hibernateProjectionList != null && !hibernateProjectionList.isEmpty();
+        if(hasJoins || hasProjections || fetchStrategies.containsValue(FetchType.EAGER)) {
+            // scrolled results are not passed through result transformers, so projections and
+            // fetch joins that produce duplicate root entities have to be loaded up front
+            applyProjectionsAndResultTransformer();
+            applyDefaultSortOrderAndCaching();
+            applyFetchStrategies();
+            return new AbstractResultStream.IteratorResultStream(session, entity, detachStreamedResults, criteria.list().iterator());
+        }
+
+        applyDefaultSortOrderAndCaching();
+        applyFetchStrategies();
+        if(fetchSize > 0) {
+            criteria.setFetchSize(fetchSize);
+        }
+        return new ScrollableResultStream(criteria.scroll(ScrollMode.FORWARD_ONLY));
+    }
+
+    private void applyProjectionsAndResultTransformer() {
         int projectionLength = 0;
         if (hibernateProjectionList != null) {
             org.hibernate.criterion.ProjectionList projectionList = hibernateProjectionList.getHibernateProjectionList();
@@ -699,11 +731,6 @@ public abstract class AbstractHibernateQuery extends Query {
         if (projectionLength < 2) {
             criteria.setResultTransformer(CriteriaSpecification.DISTINCT_ROOT_ENTITY);
         }
-
-        applyDefaultSortOrderAndCaching();
-        applyFetchStrategies();
-
-        return listForCriteria();
     }
 
     public List listForCriteria() {
@@ -811,6 +838,38 @@ public abstract class AbstractHibernateQuery extends Query {
         return list();
     }
 
+    /**
+     * Streams root entities from a forward only Hibernate cursor
+     */
+    private class ScrollableResultStream extends AbstractResultStream<Object> {
+        private final ScrollableResults results;
+        private Boolean hasNextRow;
+
+        ScrollableResultStream(ScrollableResults results) {
+            super(AbstractHibernateQuery.this.session, AbstractHibernateQuery.this.entity, detachStreamedResults);
+            this.results = results;
+        }
+
+        @Override
+        protected boolean hasNextResult() {
+            if(hasNextRow == null) {
+                hasNextRow = results.next();
+            }
+            return hasNextRow;
+        }
+
+        @Override
+        protected Object nextResult() {
+            hasNextRow = null;
+            return proxyHandler.unwrap(results.get(0));
+        }
+
+        @Override
+        protected void closeInternal() {
+            results.close();
+        }
+    }
+
     String handleAssociationQuery(Association<?> association, List<Criterion> criteriaList) {
         return getCriteriaAndAlias(association).alias;
     }
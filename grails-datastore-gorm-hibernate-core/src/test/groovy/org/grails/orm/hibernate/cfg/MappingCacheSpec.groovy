@@ -0,0 +1,134 @@
+package org.grails.orm.hibernate.cfg
+
+import org.grails.datastore.mapping.model.ClassMapping
+import org.grails.datastore.mapping.model.PersistentEntity
+import org.grails.datastore.mapping.model.PersistentProperty
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+/**
+ * Tests for the mapping cache of {@link AbstractGrailsDomainBinder}
+ */
+class MappingCacheSpec extends Specification {
+
+    void cleanup() {
+        AbstractGrailsDomainBinder.setMaxCachedMappings(AbstractGrailsDomainBinder.DEFAULT_MAX_CACHED_MAPPINGS)
+        AbstractGrailsDomainBinder.clearMappingCache()
+    }
+
+    void "test caching the mapping of a reloaded class replaces the mapping of the stale class"() {
+        given:"Two versions of the same class"
+        Class original = new GroovyClassLoader().parseClass("class ReloadedDomain {}")
+        Class reloaded = new GroovyClassLoader().parseClass("class ReloadedDomain {}")
+        def originalMapping = new Mapping()
+        def reloadedMapping = new Mapping()
+
+        when:
+        AbstractGrailsDomainBinder.cacheMapping(original, originalMapping)
+        AbstractGrailsDomainBinder.cacheMapping(reloaded, reloadedMapping)
+
+        then:
+        AbstractGrailsDomainBinder.getMapping(original) == null
+        AbstractGrailsDomainBinder.getMapping(reloaded).is(reloadedMapping)
+        AbstractGrailsDomainBinder.MAPPING_CACHE.size() == 1
+
+        when:
+        AbstractGrailsDomainBinder.clearMappingCache(original)
+
+        then:
+        AbstractGrailsDomainBinder.getMapping(reloaded) == null
+        AbstractGrailsDomainBinder.MAPPING_CACHE.isEmpty()
+    }
+
+    void "test the mapping cache evicts the least recently used mappings"() {
+        given:"A mapping cache bounded to two mappings"
+        AbstractGrailsDomainBinder.setMaxCachedMappings(2)
+        List<Class> classes = (1..3).collect { int i -> new GroovyClassLoader().parseClass("class BoundedDomain$i {}") }
+
+        when:"Three mappings are cached"
+        classes.each { Class c -> AbstractGrailsDomainBinder.cacheMapping(c, new Mapping()) }
+
+        then:"The first one was evicted"
+        AbstractGrailsDomainBinder.MAPPING_CACHE.size() == 2
+        AbstractGrailsDomainBinder.getMapping(classes[0]) == null
+        AbstractGrailsDomainBinder.getMapping(classes[2]) != null
+
+        when:"The evicted class is cached again"
+        def mapping = new Mapping()
+        AbstractGrailsDomainBinder.cacheMapping(classes[0], mapping)
+
+        then:
+        AbstractGrailsDomainBinder.getMapping(classes[0]).is(mapping)
+        AbstractGrailsDomainBinder.MAPPING_CACHE.size() == 2
+    }
+
+    void "test the mapping of an entity is read from the entity once evicted"() {
+        given:
+        Class domainClass = new GroovyClassLoader().parseClass("class EvictedDomain {}")
+        def mapping = new Mapping()
+        def classMapping = Mock(ClassMapping) {
+            getMappedForm() >> mapping
+        }
+        def entity = Mock(PersistentEntity) {
+            getJavaClass() >> domainClass
+            getMapping() >> classMapping
+        }
+
+        expect:
+        AbstractGrailsDomainBinder.getMapping(domainClass) == null
+        AbstractGrailsDomainBinder.getMapping(entity).is(mapping)
+    }
+
+    void "test mappings can be cached and read concurrently"() {
+        given:
+        List<Class> classes = (1..50).collect { int i -> new GroovyClassLoader().parseClass("class ConcurrentDomain$i {}") }
+        def executor = Executors.newFixedThreadPool(8)
+
+        when:
+        List<Callable<Boolean>> tasks = classes.collect { Class c ->
+            ({ ->
+                def mapping = new Mapping()
+                AbstractGrailsDomainBinder.cacheMapping(c, mapping)
+                AbstractGrailsDomainBinder.getMapping(c).is(mapping)
+            } as Callable<Boolean>)
+        }
+        def results = executor.invokeAll(tasks)*.get()
+
+        then:
+        results.every()
+        AbstractGrailsDomainBinder.MAPPING_CACHE.size() == 50
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    void "test custom cascading saves are recorded once for a mapping evaluated by concurrent binders"() {
+        given:"A mapping with a custom cascade"
+        def mapping = new Mapping()
+        def config = new PropertyConfig(cascade: 'save-update')
+        mapping.columns.put('books', config)
+        def property = Mock(PersistentProperty) {
+            getName() >> 'books'
+        }
+        def binder = [:] as AbstractGrailsDomainBinder
+        def executor = Executors.newFixedThreadPool(8)
+
+        when:"The cascades are tracked by several threads"
+        List<Callable<Boolean>> tasks = (1..20).collect {
+            ({ ->
+                binder.trackCustomCascadingSaves(mapping, [property])
+                config.explicitSaveUpdateCascade
+            } as Callable<Boolean>)
+        }
+        def results = executor.invokeAll(tasks)*.get()
+
+        then:"Every thread sees the recorded cascade"
+        results.every()
+        mapping.customCascadesTracked
+
+        cleanup:
+        executor.shutdown()
+    }
+}
@@ -233,7 +233,9 @@ interface RxGormStaticOperations<D> {
     Observable<D> findAll()
 
     /**
-     * List all entities and return an observable
+     * List all entities and return an observable. Passing <code>stream: true</code> emits the entities as they are
+     * requested by the subscriber, fetching at most <code>prefetch</code> results from the datastore at a time and
+     * without holding on to entities once they have been emitted
      *
      * @return An observable with all results
      */
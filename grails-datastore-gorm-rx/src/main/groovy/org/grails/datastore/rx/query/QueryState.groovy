@@ -1,8 +1,13 @@
 package org.grails.datastore.rx.query
 
 import groovy.transform.CompileStatic
+import groovy.transform.EqualsAndHashCode
 
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ConcurrentMap
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 
 /**
  *
@@ -15,11 +20,50 @@ import java.util.concurrent.ConcurrentHashMap
 class QueryState {
 
     private final Map<Class, Map<Serializable, Object>> loadedEntities = new ConcurrentHashMap<>()
+    private final ConcurrentMap<Class, Set<Serializable>> sharedEntities = new ConcurrentHashMap<>()
+    private final Queue<EmittedEntity> emittedWindow = new ConcurrentLinkedQueue<>()
+    private final AtomicInteger emittedWindowCount = new AtomicInteger()
+    private final Queue<LoadedEntity> loadOrder = new ConcurrentLinkedQueue<>()
+    private final AtomicLong loadCount = new AtomicLong()
+    private final AtomicInteger emittedInBatch = new AtomicInteger()
+    private volatile long releaseBefore
+    private final boolean retainEmittedEntities
+    private final int emittedWindowSize
 
     QueryState() {
+        this(true)
+    }
+
+    /**
+     * @param retainEmittedEntities Whether loaded entities are held for the life of the query. Streaming queries pass false
+     * so that each entity can be garbage collected once it has been emitted
+     */
+    QueryState(boolean retainEmittedEntities) {
+        this(retainEmittedEntities, RxQuery.DEFAULT_PREFETCH)
+    }
+
+    /**
+     * @param retainEmittedEntities Whether loaded entities are held for the life of the query
+     * @param emittedWindowSize When emitted entities are not retained, the number of emitted entities that were resolved
+     * for an association which are held to preserve their identity for the entities emitted after them. This is also the
+     * size of the batches after which entities that were loaded but not emitted, such as associated entities, are released
+     */
+    QueryState(boolean retainEmittedEntities, int emittedWindowSize) {
+        this.retainEmittedEntities = retainEmittedEntities
+        this.emittedWindowSize = Math.max(0, emittedWindowSize)
+    }
+
+    /**
+     * @return Whether loaded entities are held for the life of the query
+     */
+    boolean isRetainEmittedEntities() {
+        return retainEmittedEntities
     }
 
     void addLoadedEntity(Class type, Serializable id, Object object) {
+        if(!retainEmittedEntities) {
+            loadOrder.add(new LoadedEntity(type, id, loadCount.getAndIncrement()))
+        }
         def loadedByType = loadedEntities.get(type)
         if(loadedByType == null) {
             loadedByType = new ConcurrentHashMap<Serializable, Object>()
@@ -37,7 +81,123 @@ class QueryState {
             return null
         }
         else {
-            return (T) loadedByType.get(id)
+            T loaded = (T) loadedByType.get(id)
+            if(loaded != null && !retainEmittedEntities) {
+                // the instance is now shared by an association, so it is retained for a while to preserve identity
+                markShared(type, id)
+            }
+            return loaded
+        }
+    }
+
+    /**
+     * Notifies the state that an entity has been emitted to the subscriber. Unless emitted entities are retained, the
+     * reference to it is dropped. An entity that was resolved for an association is held until it leaves the window
+     * of the most recently emitted entities. Each time a batch of entities has been emitted, the entities that were
+     * loaded before the previous batch completed and are not within the window are released as well, including those
+     * that are never emitted themselves
+     *
+     * @param type The type
+     * @param id The id
+     */
+    void entityEmitted(Class type, Serializable id) {
+        if(retainEmittedEntities || id == null) {
+            return
+        }
+        Set<Serializable> shared = sharedEntities.get(type)
+        if(shared != null && shared.contains(id)) {
+            emittedWindow.add(new EmittedEntity(type, id))
+            if(emittedWindowCount.incrementAndGet() > emittedWindowSize) {
+                EmittedEntity oldest = emittedWindow.poll()
+                if(oldest != null) {
+                    emittedWindowCount.decrementAndGet()
+                    // the same entity may have been emitted again since
+                    if(!emittedWindow.contains(oldest)) {
+                        release(oldest.type, oldest.id)
+                    }
+                }
+            }
+        }
+        else {
+            release(type, id)
+        }
+        if(emittedInBatch.incrementAndGet() >= Math.max(1, emittedWindowSize)) {
+            emittedInBatch.set(0)
+            batchEmitted()
+        }
+    }
+
+    /**
+     * @return The number of entities currently held
+     */
+    int getLoadedEntityCount() {
+        int count = 0
+        for(Map<Serializable, Object> loadedByType in loadedEntities.values()) {
+            count += loadedByType.size()
+        }
+        return count
+    }
+
+    /**
+     * Releases the entities loaded before the previous batch was emitted, so that the entities loaded for the current
+     * batch remain available to it
+     */
+    private void batchEmitted() {
+        long before = releaseBefore
+        releaseBefore = loadCount.get()
+        LoadedEntity loaded = loadOrder.peek()
+        while(loaded != null && loaded.sequence < before) {
+            loadOrder.poll()
+            if(!emittedWindow.contains(new EmittedEntity(loaded.type, loaded.id))) {
+                release(loaded.type, loaded.id)
+            }
+            loaded = loadOrder.peek()
+        }
+    }
+
+    private void release(Class type, Serializable id) {
+        Set<Serializable> shared = sharedEntities.get(type)
+        if(shared != null) {
+            shared.remove(id)
+        }
+        def loadedByType = loadedEntities.get(type)
+        if(loadedByType != null) {
+            loadedByType.remove(id)
+        }
+    }
+
+    private void markShared(Class type, Serializable id) {
+        Set<Serializable> shared = sharedEntities.get(type)
+        if(shared == null) {
+            shared = Collections.newSetFromMap(new ConcurrentHashMap<Serializable, Boolean>())
+            Set<Serializable> existing = sharedEntities.putIfAbsent(type, shared)
+            if(existing != null) {
+                shared = existing
+            }
+        }
+        shared.add(id)
+    }
+
+    private static class LoadedEntity {
+        final Class type
+        final Serializable id
+        final long sequence
+
+        LoadedEntity(Class type, Serializable id, long sequence) {
+            this.type = type
+            this.id = id
+            this.sequence = sequence
+        }
+    }
+
+    @EqualsAndHashCode
+    private static class EmittedEntity {
+        final Class type
+        final Serializable id
+
+        EmittedEntity(Class type, Serializable id) {
+            this.type = type
+            this.id = id
         }
     }
 }
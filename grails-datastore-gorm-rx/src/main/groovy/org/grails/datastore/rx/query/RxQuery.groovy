@@ -12,6 +12,22 @@ import rx.Observable
 @CompileStatic
 interface RxQuery<T> {
 
+    /**
+     * The argument to {@link #findAll(java.util.Map)} that enables streaming. When streaming, results are requested
+     * from the datastore in batches of at most {@link #ARGUMENT_PREFETCH} as the subscriber requests them, and the
+     * {@link QueryState} drops each entity once it has been emitted
+     */
+    static final String ARGUMENT_STREAM = "stream"
+
+    /**
+     * The argument that controls how many results are requested from the datastore at a time when streaming
+     */
+    static final String ARGUMENT_PREFETCH = "prefetch"
+
+    /**
+     * The default number of results requested at a time when streaming
+     */
+    static final int DEFAULT_PREFETCH = 128
 
     /**
      * @return All results matching this query as an observable
@@ -14,6 +14,7 @@ import org.grails.datastore.mapping.model.types.ToOne
 import org.grails.datastore.mapping.reflect.EntityReflector
 import org.grails.datastore.rx.internal.RxDatastoreClientImplementor
 import rx.Observable
+import rx.functions.Action1
 import rx.functions.FuncN
 
 import javax.persistence.FetchType
@@ -26,6 +27,58 @@ import javax.persistence.FetchType
 @CompileStatic
 class RxQueryUtils {
 
+    /**
+     * @param queryArguments The query arguments
+     * @return Whether the arguments request a streaming query
+     */
+    static boolean isStreaming(Map queryArguments) {
+        if(queryArguments == null) {
+            return false
+        }
+        def stream = queryArguments.get(RxQuery.ARGUMENT_STREAM)
+        return stream instanceof Boolean ? (Boolean)stream : Boolean.valueOf(stream?.toString())
+    }
+
+    /**
+     * @param queryArguments The query arguments
+     * @return The number of results to request at a time when streaming
+     */
+    static int getPrefetch(Map queryArguments) {
+        def prefetch = queryArguments?.get(RxQuery.ARGUMENT_PREFETCH)
+        if(prefetch instanceof Number) {
+            return Math.max(1, ((Number)prefetch).intValue())
+        }
+        else if(prefetch != null) {
+            return Math.max(1, Integer.parseInt(prefetch.toString()))
+        }
+        return RxQuery.DEFAULT_PREFETCH
+    }
+
+    /**
+     * Applies streaming to a query observable. Requests to the source are bounded by the given prefetch window regardless
+     * of how many results the subscriber requests, and each entity is released from the query state once it is emitted.
+     * Entities loaded for earlier batches, such as associated entities, are released as further batches are emitted
+     *
+     * @param observable The observable returned by the query
+     * @param entity The entity being queried
+     * @param queryState The query state, which should not retain emitted entities
+     * @param prefetch The maximum number of results to request from the source at a time
+     *
+     * @return The streaming observable
+     */
+    static <T> Observable<T> stream(Observable<T> observable, PersistentEntity entity, QueryState queryState, int prefetch) {
+        EntityReflector entityReflector = entity.mappingContext.getEntityReflector(entity)
+        Class type = entity.javaClass
+        return observable.rebatchRequests(prefetch).doOnNext(new Action1<T>() {
+            @Override
+            void call(T o) {
+                if(entity.isInstance(o)) {
+                    queryState.entityEmitted(type, entityReflector.getIdentifier(o))
+                }
+            }
+        })
+    }
+
     /**
      * Process fetch strategies for a query
      *
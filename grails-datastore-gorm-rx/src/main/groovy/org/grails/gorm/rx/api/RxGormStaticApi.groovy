@@ -6,10 +6,10 @@ import grails.gorm.rx.RxEntity
 import grails.gorm.rx.api.RxGormAllOperations
 import grails.gorm.rx.multitenancy.Tenants
 import grails.gorm.rx.proxy.ObservableProxy
-import groovy.transform.CompileDynamic
 import groovy.transform.CompileStatic
 import org.grails.datastore.gorm.GormValidateable
 import org.grails.datastore.gorm.finders.DynamicFinder
+import org.grails.datastore.gorm.finders.DynamicFinderDispatcher
 import org.grails.datastore.gorm.finders.FinderMethod
 import org.grails.datastore.mapping.core.connections.ConnectionSource
 import org.grails.datastore.mapping.core.connections.ConnectionSources
@@ -18,7 +18,10 @@ import org.grails.datastore.mapping.multitenancy.MultiTenancySettings
 import org.grails.datastore.mapping.query.api.Criteria
 import org.grails.datastore.mapping.validation.ValidationException
 import org.grails.datastore.rx.RxDatastoreClient
+import org.grails.datastore.rx.internal.RxDatastoreClientImplementor
+import org.grails.datastore.rx.query.QueryState
 import org.grails.datastore.rx.query.RxQuery
+import org.grails.datastore.rx.query.RxQueryUtils
 import org.grails.gorm.rx.api.multitenancy.TenantDelegatingRxGormOperations
 import org.grails.gorm.rx.finders.*
 import org.springframework.beans.PropertyAccessorFactory
@@ -39,6 +42,8 @@ class RxGormStaticApi<D> implements RxGormAllOperations<D> {
 
     final List<FinderMethod> gormDynamicFinders
 
+    protected final DynamicFinderDispatcher finderDispatcher
+
     protected final MultiTenancySettings.MultiTenancyMode multiTenancyMode
     protected final ConnectionSources connectionSources
 
@@ -47,6 +52,7 @@ class RxGormStaticApi<D> implements RxGormAllOperations<D> {
         this.persistentClass = entity.getJavaClass()
         this.datastoreClient = datastoreClient
         this.gormDynamicFinders = createDynamicFinders()
+        this.finderDispatcher = new DynamicFinderDispatcher(persistentClass, gormDynamicFinders)
         this.connectionSources = datastoreClient.connectionSources
         this.multiTenancyMode = connectionSources.defaultConnectionSource.settings.multiTenancy.mode
     }
@@ -224,6 +230,13 @@ class RxGormStaticApi<D> implements RxGormAllOperations<D> {
     }
 
     Observable<D> findAll(Map params = Collections.emptyMap()) {
+        if(RxQueryUtils.isStreaming(params) && datastoreClient instanceof RxDatastoreClientImplementor) {
+            int prefetch = RxQueryUtils.getPrefetch(params)
+            QueryState queryState = new QueryState(false, prefetch)
+            def query = ((RxDatastoreClientImplementor)datastoreClient).createQuery(entity.javaClass, queryState, params)
+            DynamicFinder.populateArgumentsForCriteria(entity.javaClass, query, params)
+            return RxQueryUtils.stream(((RxQuery<D>) query).findAll(params), entity, queryState, prefetch)
+        }
         def query = datastoreClient.createQuery(entity.javaClass, params)
         DynamicFinder.populateArgumentsForCriteria(entity.javaClass, query, params)
         return ((RxQuery<D>) query).findAll(params)
@@ -429,41 +442,9 @@ class RxGormStaticApi<D> implements RxGormAllOperations<D> {
         return propertyMissing(property)
     }
 
-    @CompileDynamic
     Observable<D> methodMissing(String methodName, args) {
-        FinderMethod method = gormDynamicFinders.find { FinderMethod f -> f.isMethodMatch(methodName) }
-        if (!method) {
-            throw new MissingMethodException(methodName, persistentClass, args)
-        }
-
-        def mc = persistentClass.getMetaClass()
-
-        // register the method invocation for next time
-        mc.static."$methodName" = { Object[] varArgs ->
-            // FYI... This is relevant to http://jira.grails.org/browse/GRAILS-3463 and may
-            // become problematic if http://jira.codehaus.org/browse/GROOVY-5876 is addressed...
-            final argumentsForMethod
-            if(varArgs == null) {
-                argumentsForMethod = [null] as Object[]
-            }
-            // if the argument component type is not an Object then we have an array passed that is the actual argument
-            else if(varArgs.getClass().componentType != Object) {
-                // so we wrap it in an object array
-                argumentsForMethod = [varArgs] as Object[]
-            }
-            else {
-
-                if(varArgs.length == 1 && varArgs[0].getClass().isArray()) {
-                    argumentsForMethod = varArgs[0]
-                } else {
-
-                    argumentsForMethod = varArgs
-                }
-            }
-            method.invoke(delegate, methodName, argumentsForMethod)
-        }
-
-        return method.invoke(persistentClass, methodName, args)
+        Object[] arguments = DynamicFinderDispatcher.resolveArguments(args)
+        return (Observable<D>) finderDispatcher.invoke(methodName, arguments)
     }
 
 
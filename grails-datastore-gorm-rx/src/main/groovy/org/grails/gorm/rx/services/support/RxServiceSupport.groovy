@@ -1,6 +1,7 @@
 package org.grails.gorm.rx.services.support
 
 import groovy.transform.CompileStatic
+import org.grails.datastore.gorm.concurrent.TaskExecutors
 import rx.Observable
 import rx.Observer
 import rx.Scheduler
@@ -11,9 +12,10 @@ import rx.observables.SyncOnSubscribe
 import rx.schedulers.Schedulers
 
 import java.util.concurrent.Callable
+import java.util.concurrent.Executor
 
 /**
- * Helper class for creating observables that run of the IO scheduler for blocking GORM operations
+ * Helper class for creating observables that run blocking GORM operations on the IO scheduler or, if one is configured, on the executor provided by {@link TaskExecutors}
  *
  * @author Graeme Rocher
  * @since 6.1
@@ -28,7 +30,7 @@ class RxServiceSupport {
      * @return The {@link Observable}
      */
     static <T> Observable<T> create(Callable<T> callable) {
-        Scheduler scheduler = Schedulers.io()
+        Scheduler scheduler = getDefaultScheduler()
         create(scheduler, callable)
     }
 
@@ -71,7 +73,7 @@ class RxServiceSupport {
                 return state
             }
 
-        }).observeOn(scheduler)
+        }).subscribeOn(scheduler)
     }
 
     /**
@@ -81,7 +83,7 @@ class RxServiceSupport {
      * @return The {@link Observable}
      */
     static <T> Single<T> createSingle(Callable<T> callable) {
-        Scheduler scheduler = Schedulers.io()
+        Scheduler scheduler = getDefaultScheduler()
         createSingle(scheduler, callable)
     }
 
@@ -99,6 +101,17 @@ class RxServiceSupport {
             } catch (Throwable e) {
                 singleSubscriber.onError(e)
             }
-        } as Single.OnSubscribe).observeOn(scheduler)
+        } as Single.OnSubscribe).subscribeOn(scheduler)
+    }
+
+    /**
+     * @return The scheduler blocking operations run on when no scheduler is specified
+     */
+    static Scheduler getDefaultScheduler() {
+        Executor executor = TaskExecutors.executor
+        if(executor != null) {
+            return Schedulers.from(executor)
+        }
+        return Schedulers.io()
     }
 }
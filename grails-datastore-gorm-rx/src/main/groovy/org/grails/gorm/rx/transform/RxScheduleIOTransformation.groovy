@@ -32,7 +32,8 @@ import rx.Scheduler
 import static org.grails.datastore.mapping.reflect.AstUtils.ZERO_PARAMETERS
 import static org.codehaus.groovy.ast.tools.GeneralUtils.*
 /**
- * A transformation that will convert a blocking GORM operation into an Observable that runs on the RxJava {@link rx.schedulers.Schedulers#io()} scheduler
+ * A transformation that will convert a blocking GORM operation into an Observable that runs on the RxJava {@link rx.schedulers.Schedulers#io()} scheduler or on the
+ * executor configured via {@link org.grails.datastore.gorm.concurrent.TaskExecutors}, for example virtual threads
  *
  * @see {@link rx.schedulers.Schedulers#io()}
  *
@@ -0,0 +1,143 @@
+package org.grails.datastore.rx.query
+
+import org.grails.datastore.mapping.model.MappingContext
+import org.grails.datastore.mapping.model.PersistentEntity
+import org.grails.datastore.mapping.reflect.EntityReflector
+import rx.Observable
+import rx.functions.Action1
+import rx.observers.TestSubscriber
+import spock.lang.Specification
+
+/**
+ * Tests for {@link QueryState}
+ */
+class QueryStateSpec extends Specification {
+
+    void "test emitted entities are retained by default"() {
+        given:
+        def state = new QueryState()
+        state.addLoadedEntity(String, 1L, "one")
+
+        when:
+        state.entityEmitted(String, 1L)
+
+        then:
+        state.getLoadedEntity(String, 1L) == "one"
+        state.loadedEntityCount == 1
+    }
+
+    void "test streaming state drops emitted entities unless shared by an association"() {
+        given:
+        def state = new QueryState(false)
+        state.addLoadedEntity(String, 1L, "one")
+        state.addLoadedEntity(String, 2L, "two")
+
+        when:"one entity is resolved for an association before both are emitted"
+        state.getLoadedEntity(String, 2L)
+        state.entityEmitted(String, 1L)
+        state.entityEmitted(String, 2L)
+
+        then:
+        state.getLoadedEntity(String, 1L) == null
+        state.getLoadedEntity(String, 2L) == "two"
+        state.loadedEntityCount == 1
+    }
+
+    void "test shared entities are released once they leave the emitted window"() {
+        given:"A streaming state with a window of two emitted entities"
+        def state = new QueryState(false, 2)
+        (1L..4L).each { Long id -> state.addLoadedEntity(String, id, "entity$id".toString()) }
+
+        when:"every entity is resolved for an association and emitted"
+        (1L..3L).each { Long id ->
+            state.getLoadedEntity(String, id)
+            state.entityEmitted(String, id)
+        }
+
+        then:"only the last two are still held"
+        state.getLoadedEntity(String, 1L) == null
+        state.getLoadedEntity(String, 2L) == "entity2"
+        state.getLoadedEntity(String, 3L) == "entity3"
+
+        when:"the next entity is emitted"
+        state.getLoadedEntity(String, 4L)
+        state.entityEmitted(String, 4L)
+
+        then:
+        state.getLoadedEntity(String, 2L) == null
+        state.loadedEntityCount == 2
+    }
+
+    void "test entities that are loaded but not emitted are released as batches are emitted"() {
+        given:"A streaming state with batches of two entities"
+        def state = new QueryState(false, 2)
+        List<Integer> counts = []
+
+        when:"each emitted entity resolves an associated entity of another type"
+        (0L..9L).each { Long batch ->
+            [batch * 2, batch * 2 + 1].each { Long id ->
+                state.addLoadedEntity(String, id, "entity$id".toString())
+                state.addLoadedEntity(Integer, id, id.intValue())
+                state.getLoadedEntity(Integer, id)
+            }
+            [batch * 2, batch * 2 + 1].each { Long id -> state.entityEmitted(String, id) }
+            counts << state.loadedEntityCount
+        }
+
+        then:"only the associated entities of the current batch are held"
+        counts.every { int count -> count <= 2 }
+        state.getLoadedEntity(Integer, 17L) == null
+        state.getLoadedEntity(Integer, 19L) == 19
+    }
+
+    void "test streaming requests at most the prefetch window from the source and releases emitted entities"() {
+        given:"A source of ten entities that records the requests made to it"
+        List<Long> requests = []
+        def source = Observable.range(1, 10).doOnRequest({ Long n -> requests.add(n) } as Action1<Long>)
+        def state = new QueryState(false, 3)
+        (1..10).each { int id -> state.addLoadedEntity(Integer, id, id) }
+        def reflector = Mock(EntityReflector) {
+            getIdentifier(_) >> { args -> args[0] }
+        }
+        def mappingContext = Mock(MappingContext) {
+            getEntityReflector(_) >> reflector
+        }
+        def entity = Mock(PersistentEntity) {
+            getJavaClass() >> Integer
+            isInstance(_) >> true
+            getMappingContext() >> mappingContext
+        }
+        def subscriber = new TestSubscriber<Integer>(0)
+
+        when:"the subscriber requests more results than the prefetch window"
+        RxQueryUtils.stream(source, entity, state, 3).subscribe(subscriber)
+        subscriber.requestMore(5)
+
+        then:"the source is asked for at most three results at a time"
+        subscriber.onNextEvents == [1, 2, 3, 4, 5]
+        requests.every { Long n -> n <= 3 }
+
+        and:"the emitted entities are no longer held"
+        (1..5).every { int id -> state.getLoadedEntity(Integer, id) == null }
+        state.loadedEntityCount == 5
+
+        when:"the rest is requested"
+        subscriber.requestMore(Long.MAX_VALUE)
+
+        then:
+        subscriber.onNextEvents == (1..10).toList()
+        subscriber.assertCompleted()
+        requests.every { Long n -> n <= 3 }
+        state.loadedEntityCount == 0
+    }
+
+    void "test streaming arguments are parsed"() {
+        expect:
+        RxQueryUtils.isStreaming([stream: true])
+        RxQueryUtils.isStreaming([stream: 'true'])
+        !RxQueryUtils.isStreaming([:])
+        RxQueryUtils.getPrefetch([:]) == RxQuery.DEFAULT_PREFETCH
+        RxQueryUtils.getPrefetch([prefetch: 10]) == 10
+        RxQueryUtils.getPrefetch([prefetch: '0']) == 1
+    }
+}
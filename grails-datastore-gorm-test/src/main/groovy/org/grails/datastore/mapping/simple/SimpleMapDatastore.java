@@ -47,6 +47,7 @@ import org.grails.datastore.mapping.simple.connections.SimpleMapConnectionSource
 import org.grails.datastore.mapping.transactions.DatastoreTransactionManager;
 import org.grails.datastore.mapping.transactions.TransactionCapableDatastore;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.core.env.PropertyResolver;
 import org.springframework.transaction.PlatformTransactionManager;
@@ -103,6 +104,7 @@ public class SimpleMapDatastore extends AbstractDatastore implements Closeable,
             }
         }
         this.eventPublisher = eventPublisher;
+        initializeQueryResultCache(defaultConnectionSource.getSettings());
         this.gormEnhancer = initialize(defaultConnectionSource.getSettings());
     }
 
@@ -260,7 +262,9 @@ public class SimpleMapDatastore extends AbstractDatastore implements Closeable,
 
     @Override
     protected Session createSession(PropertyResolver connectionDetails) {
-        return new SimpleMapSession(this, getMappingContext(), eventPublisher);
+        SimpleMapSession session = new SimpleMapSession(this, getMappingContext(), eventPublisher);
+        session.configure(connectionSources.getDefaultConnectionSource().getSettings().getSession());
+        return session;
     }
 
     @Override
@@ -268,6 +272,12 @@ public class SimpleMapDatastore extends AbstractDatastore implements Closeable,
         return this.eventPublisher;
     }
 
+    @Override
+    protected boolean registerApplicationListener(ApplicationListener<?> listener) {
+        eventPublisher.addApplicationListener(listener);
+        return true;
+    }
+
     public Map<String, Map> getBackingMap() {
         return inmemoryData;
     }
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.simple.engine
+
+import groovy.transform.CompileStatic
+import org.codehaus.groovy.runtime.InvokerHelper
+import org.codehaus.groovy.runtime.typehandling.DefaultTypeTransformation
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.regex.Pattern
+
+/**
+ * A secondary index for a single property of an entity hierarchy stored in a {@link org.grails.datastore.mapping.simple.SimpleMapDatastore}.
+ *
+ * Keys are held in a hash index keyed by the string form of the property value, which gives the same equality semantics
+ * as the previous string keyed indices, and in a sorted index keyed by the value itself that is used for range queries.
+ * The sorted index is dropped if a value that cannot be compared with the other values is indexed.
+ *
+ * Each key is mapped to at most one value, so indexing a new value for a key replaces the previous value.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@CompileStatic
+class PropertyIndex {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong()
+    private static final Comparator<Object> VALUE_COMPARATOR = new Comparator<Object>() {
+        @Override
+        int compare(Object o1, Object o2) {
+            return DefaultTypeTransformation.compareTo(o1, o2)
+        }
+    }
+
+    final String name
+
+    private final Map<String, Set<Object>> hashIndex = new HashMap<>()
+    private TreeMap<Object, Set<Object>> sortedIndex = new TreeMap<>(VALUE_COMPARATOR)
+    private final Map<Object, Object> valuesByKey = new HashMap<>()
+    private final Map<Object, Long> sequenceByKey = new HashMap<>()
+
+    PropertyIndex(String name) {
+        this.name = name
+    }
+
+    /**
+     * Indexes the value of the property for the given key, replacing any previously indexed value
+     *
+     * @param value The value
+     * @param key The key of the entry
+     */
+    synchronized void index(Object value, Object key) {
+        if (!sequenceByKey.containsKey(key)) {
+            sequenceByKey.put(key, SEQUENCE.incrementAndGet())
+        }
+        else if (valuesByKey.containsKey(key)) {
+            removeFromValueIndices(valuesByKey.get(key), key)
+        }
+        valuesByKey.put(key, value)
+        if (value == null) {
+            return
+        }
+
+        Set<Object> keys = hashIndex.get(normalize(value))
+        if (keys == null) {
+            keys = new LinkedHashSet<Object>()
+            hashIndex.put(normalize(value), keys)
+        }
+        keys.add(key)
+
+        if (sortedIndex != null) {
+            if (value instanceof Comparable) {
+                try {
+                    Set<Object> sortedKeys = sortedIndex.get(value)
+                    if (sortedKeys == null) {
+                        sortedKeys = new LinkedHashSet<Object>()
+                        sortedIndex.put(value, sortedKeys)
+                    }
+                    sortedKeys.add(key)
+                } catch (RuntimeException ignored) {
+                    // values of this property are not mutually comparable
+                    sortedIndex = null
+                }
+            }
+            else {
+                sortedIndex = null
+            }
+        }
+    }
+
+    /**
+     * Removes the given key if it is currently indexed under the given value
+     *
+     * @param value The value
+     * @param key The key
+     */
+    synchronized void deindex(Object value, Object key) {
+        if (valuesByKey.containsKey(key) && Objects.equals(valuesByKey.get(key), value)) {
+            removeFromValueIndices(value, key)
+            valuesByKey.put(key, null)
+        }
+    }
+
+    /**
+     * Removes the given key from the index
+     *
+     * @param key The key
+     */
+    synchronized void remove(Object key) {
+        if (valuesByKey.containsKey(key)) {
+            removeFromValueIndices(valuesByKey.remove(key), key)
+        }
+        sequenceByKey.remove(key)
+    }
+
+    /**
+     * @param value The value
+     * @return The keys indexed under the given value in the order they were indexed
+     */
+    synchronized List<Object> query(Object value) {
+        Set<Object> keys = hashIndex.get(normalize(value))
+        return keys != null ? new ArrayList<Object>(keys) : Collections.emptyList()
+    }
+
+    /**
+     * @param value The value
+     * @return The number of keys indexed under the given value
+     */
+    synchronized int count(Object value) {
+        Set<Object> keys = hashIndex.get(normalize(value))
+        return keys != null ? keys.size() : 0
+    }
+
+    /**
+     * Finds the keys whose value lies in the given range. Keys with a null value are never included
+     *
+     * @param from The lower bound or null if there is none
+     * @param fromInclusive Whether the lower bound is inclusive
+     * @param to The upper bound or null if there is none
+     * @param toInclusive Whether the upper bound is inclusive
+     * @return The keys in the order of their values or null if the index does not support range queries for the bounds
+     */
+    synchronized List<Object> range(Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+        if (sortedIndex == null) {
+            return null
+        }
+        try {
+            NavigableMap<Object, Set<Object>> matching = sortedIndex
+            if (from != null && to != null) {
+                if (VALUE_COMPARATOR.compare(from, to) > 0) {
+                    return Collections.emptyList()
+                }
+                matching = sortedIndex.subMap(from, fromInclusive, to, toInclusive)
+            }
+            else if (from != null) {
+                matching = sortedIndex.tailMap(from, fromInclusive)
+            }
+            else if (to != null) {
+                matching = sortedIndex.headMap(to, toInclusive)
+            }
+            List<Object> keys = []
+            for (Set<Object> valueKeys in matching.values()) {
+                keys.addAll(valueKeys)
+            }
+            return keys
+        } catch (RuntimeException ignored) {
+            // the bounds cannot be compared with the indexed values
+            return null
+        }
+    }
+
+    /**
+     * @param pattern The pattern
+     * @return The keys whose value, in string form, matches the given pattern
+     */
+    synchronized List<Object> match(Pattern pattern) {
+        Set<Object> keys = new LinkedHashSet<>()
+        for (Map.Entry<String, Set<Object>> entry in hashIndex.entrySet()) {
+            if (pattern.matcher(entry.key).matches()) {
+                keys.addAll(entry.value)
+            }
+        }
+        return new ArrayList<Object>(keys)
+    }
+
+    /**
+     * @return Whether range queries are supported
+     */
+    synchronized boolean isSorted() {
+        return sortedIndex != null
+    }
+
+    /**
+     * @return The number of indexed keys
+     */
+    synchronized int size() {
+        return valuesByKey.size()
+    }
+
+    /**
+     * @param key The key
+     * @return The position of the key in the order keys were first indexed
+     */
+    synchronized long sequenceOf(Object key) {
+        Long sequence = sequenceByKey.get(key)
+        return sequence != null ? sequence.longValue() : Long.MAX_VALUE
+    }
+
+    /**
+     * Sorts keys into the order in which they were first indexed
+     *
+     * @param keys The keys
+     * @return The sorted keys
+     */
+    synchronized List<Object> sortBySequence(List<Object> keys) {
+        Collections.sort(keys, new Comparator<Object>() {
+            @Override
+            int compare(Object o1, Object o2) {
+                return Long.compare(sequenceOf(o1), sequenceOf(o2))
+            }
+        })
+        return keys
+    }
+
+    /**
+     * The string form of a value used as the key in the hash index
+     *
+     * @param value The value
+     * @return The string form
+     */
+    static String normalize(Object value) {
+        return value == null ? null : InvokerHelper.toString(value)
+    }
+
+    private void removeFromValueIndices(Object value, Object key) {
+        if (value == null) {
+            return
+        }
+        String normalized = normalize(value)
+        Set<Object> keys = hashIndex.get(normalized)
+        if (keys != null) {
+            keys.remove(key)
+            if (keys.isEmpty()) {
+                hashIndex.remove(normalized)
+            }
+        }
+        if (sortedIndex != null && value instanceof Comparable) {
+            try {
+                Set<Object> sortedKeys = sortedIndex.get(value)
+                if (sortedKeys != null) {
+                    sortedKeys.remove(key)
+                    if (sortedKeys.isEmpty()) {
+                        sortedIndex.remove(value)
+                    }
+                }
+            } catch (RuntimeException ignored) {
+                sortedIndex = null
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@ import org.grails.datastore.mapping.core.IdentityGenerationException
 import org.grails.datastore.mapping.core.OptimisticLockingException
 import org.grails.datastore.mapping.core.Session
 import org.grails.datastore.mapping.engine.AssociationIndexer
+import org.grails.datastore.mapping.engine.BulkOperationCapable
 import org.grails.datastore.mapping.engine.EntityAccess
 import org.grails.datastore.mapping.engine.EntityPersister
 import org.grails.datastore.mapping.engine.PropertyValueIndexer
@@ -27,8 +28,13 @@ import org.grails.datastore.mapping.model.MappingContext
 import org.grails.datastore.mapping.model.PersistentEntity
 import org.grails.datastore.mapping.model.PersistentProperty
 import org.grails.datastore.mapping.model.types.Association
+import org.grails.datastore.mapping.model.types.Embedded
 import org.grails.datastore.mapping.model.types.ManyToMany
+import org.grails.datastore.mapping.model.types.OneToMany
+import org.grails.datastore.mapping.model.types.Simple
+import org.grails.datastore.mapping.model.types.ToOne
 import org.grails.datastore.mapping.query.Query
+import org.grails.datastore.mapping.query.api.QueryableCriteria
 import org.grails.datastore.mapping.simple.SimpleMapDatastore
 import org.grails.datastore.mapping.simple.query.SimpleMapQuery
 import org.springframework.context.ApplicationEventPublisher
@@ -40,7 +46,7 @@ import org.springframework.context.ApplicationEventPublisher
  * @author Graeme Rocher
  * @since 1.0
  */
-class SimpleMapEntityPersister extends AbstractKeyValueEntityPersister<Map, Object> {
+class SimpleMapEntityPersister extends AbstractKeyValueEntityPersister<Map, Object> implements BulkOperationCapable {
 
     Map<String, Map> datastore
     Map indices
@@ -86,6 +92,7 @@ class SimpleMapEntityPersister extends AbstractKeyValueEntityPersister<Map, Obje
             datastore[f].remove(key)
             parent = parent.parentEntity
         }
+        removeFromPropertyIndices(key)
     }
 
     @Override
@@ -93,32 +100,42 @@ class SimpleMapEntityPersister extends AbstractKeyValueEntityPersister<Map, Obje
         return true // index all
     }
 
+    /**
+     * Obtains the secondary index for the given property, creating it if necessary. Indices are shared by all the
+     * entities of an inheritance hierarchy
+     *
+     * @param property The property
+     * @return The index
+     */
+    PropertyIndex getPropertyIndex(PersistentProperty property) {
+        String indexRoot = "~${property.owner.rootEntity.name}:${property.name}"
+        PropertyIndex index = (PropertyIndex) indices[indexRoot]
+        if (index == null) {
+            synchronized (indices) {
+                index = (PropertyIndex) indices[indexRoot]
+                if (index == null) {
+                    index = new PropertyIndex(indexRoot)
+                    indices[indexRoot] = index
+                }
+            }
+        }
+        return index
+    }
+
     PropertyValueIndexer getPropertyIndexer(PersistentProperty property) {
+        final PropertyIndex propertyIndex = getPropertyIndex(property)
         return new PropertyValueIndexer() {
 
             String getIndexRoot() {
-                return "~${property.owner.rootEntity.name}:${property.name}"
+                return propertyIndex.name
             }
 
             void deindex(value, primaryKey) {
-                def index = getIndexName(value)
-                List indexed = indices[index]
-                if (indexed) {
-                    indexed.removeElement(primaryKey)
-                }
+                propertyIndex.deindex(value, primaryKey)
             }
 
             void index(value, primaryKey) {
-
-                def index = getIndexName(value)
-                def indexed = indices[index]
-                if (indexed == null) {
-                    indexed = []
-                    indices[index] = indexed
-                }
-                if (!indexed.contains(primaryKey)) {
-                    indexed << primaryKey
-                }
+                propertyIndex.index(value, primaryKey)
             }
 
             List query(value) {
@@ -126,9 +143,7 @@ class SimpleMapEntityPersister extends AbstractKeyValueEntityPersister<Map, Obje
             }
 
             List query(value, int offset, int max) {
-                def index = getIndexName(value)
-
-                def indexed = indices[index]
+                List indexed = propertyIndex.query(value)
                 if (!indexed) {
                     return Collections.emptyList()
                 }
@@ -141,6 +156,21 @@ class SimpleMapEntityPersister extends AbstractKeyValueEntityPersister<Map, Obje
         }
     }
 
+    protected void removeFromPropertyIndices(key) {
+        PersistentEntity root = persistentEntity.rootEntity
+        List<PersistentProperty> properties = new ArrayList<>(root.persistentProperties)
+        if (root.identity != null) {
+            properties << root.identity
+        }
+        for (PersistentEntity child in mappingContext.getChildEntities(root)) {
+            properties.addAll(child.persistentProperties)
+        }
+        for (PersistentProperty property in properties) {
+            PropertyIndex index = (PropertyIndex) indices["~${root.name}:${property.name}".toString()]
+            index?.remove(key)
+        }
+    }
+
     AssociationIndexer getAssociationIndexer(Map nativeEntry, Association association) {
         if(association?.associatedEntity == null) {
             return null
@@ -357,4 +387,87 @@ class SimpleMapEntityPersister extends AbstractKeyValueEntityPersister<Map, Obje
             deleteEntry(family, it, null)
         }
     }
+
+    @Override
+    long deleteAll(QueryableCriteria criteria) {
+        List keys = queryKeys(criteria)
+        deleteEntries(family, keys)
+        return keys.size()
+    }
+
+    @Override
+    long updateAll(QueryableCriteria criteria, Map<String, Object> properties) {
+        def conversionService = mappingContext.conversionService
+        Map<PersistentProperty, Object> toUpdate = [:]
+        for (String name in properties.keySet()) {
+            PersistentProperty property = persistentEntity.getPropertyByName(name)
+            def value = properties.get(name)
+            if (property instanceof Simple) {
+                toUpdate.put(property, value != null ? conversionService.convert(value, property.type) : null)
+            }
+            else if (property instanceof ToOne && isBulkUpdatable((ToOne) property)) {
+                if (value == null) {
+                    toUpdate.put(property, null)
+                    continue
+                }
+                Serializable associationId = resolveAssociationId((ToOne) property, value)
+                if (associationId == null) {
+                    // unsaved instances need to be cascaded by the full persistence logic
+                    return -1
+                }
+                toUpdate.put(property, formulateDatabaseReference(persistentEntity, (Association) property, associationId))
+            }
+            else {
+                // embedded values, collections, custom types and associations that keep an inverse index need the full persistence logic
+                return -1
+            }
+        }
+
+        List keys = queryKeys(criteria)
+        for (key in keys) {
+            Map entry = datastore[family].get(key)
+            if (entry == null) continue
+
+            for (Map.Entry<PersistentProperty, Object> update in toUpdate.entrySet()) {
+                PersistentProperty property = update.key
+                String propertyKey = getPropertyKey(property)
+                PropertyValueIndexer indexer = getPropertyIndexer(property)
+                indexer.deindex(entry[propertyKey], key)
+                setEntryValue(entry, propertyKey, update.value)
+                indexer.index(entry[propertyKey], key)
+            }
+        }
+        return keys.size()
+    }
+
+    /**
+     * Only the owning side of a to-one association is stored in the entry itself. A hasOne stores the key in the child
+     * and a many-to-one with a one-to-many inverse side updates the index of the inverse collection
+     */
+    protected boolean isBulkUpdatable(ToOne association) {
+        if (association instanceof Embedded || association.associatedEntity == null || association.isForeignKeyInChild()) {
+            return false
+        }
+        return !(association.isBidirectional() && association.inverseSide instanceof OneToMany)
+    }
+
+    protected Serializable resolveAssociationId(ToOne association, value) {
+        PersistentEntity associatedEntity = association.associatedEntity
+        if (proxyFactory.isProxy(value) || associatedEntity.javaClass.isInstance(value)) {
+            return getObjectIdentifier(value)
+        }
+        if (associatedEntity.identity == null) {
+            return null
+        }
+        return (Serializable) mappingContext.conversionService.convert(value, associatedEntity.identity.type)
+    }
+
+    protected List queryKeys(QueryableCriteria criteria) {
+        Query query = createQuery()
+        for (Query.Criterion criterion in criteria.criteria) {
+            query.add(criterion)
+        }
+        query.projections().id()
+        return query.list()
+    }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.simple.query
+
+import groovy.transform.CompileStatic
+import org.codehaus.groovy.runtime.InvokerHelper
+import org.codehaus.groovy.runtime.ScriptBytecodeAdapter
+import org.grails.datastore.mapping.model.MappingContext
+import org.grails.datastore.mapping.model.PersistentEntity
+import org.grails.datastore.mapping.query.Query
+import org.grails.datastore.mapping.reflect.EntityReflector
+
+/**
+ * Compares the entries of a query result by the entities they hold according to a list of {@link Query.Order}, where
+ * the first order takes precedence. Property values are read through the {@link EntityReflector} of each entity
+ * and compared using Groovy semantics, so entries with equal values keep their relative order.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@CompileStatic
+class EntityOrderComparator implements Comparator<Map.Entry> {
+
+    private final MappingContext mappingContext
+    private final List<Query.Order> orders
+    private final Map<String, EntityReflector.PropertyReader> readers = [:]
+
+    EntityOrderComparator(MappingContext mappingContext, List<Query.Order> orders) {
+        this.mappingContext = mappingContext
+        this.orders = orders
+    }
+
+    @Override
+    int compare(Map.Entry a, Map.Entry b) {
+        for (Query.Order order in orders) {
+            int cmp = ScriptBytecodeAdapter.compareTo(read(a.value, order.property), read(b.value, order.property))
+            if (cmp != 0) {
+                return order.direction == Query.Order.Direction.DESC ? -cmp : cmp
+            }
+        }
+        return 0
+    }
+
+    protected Object read(Object instance, String property) {
+        if (instance == null) {
+            return null
+        }
+        EntityReflector.PropertyReader reader = readerFor(instance.getClass(), property)
+        if (reader != null) {
+            return reader.read(instance)
+        }
+        return InvokerHelper.getProperty(instance, property)
+    }
+
+    private EntityReflector.PropertyReader readerFor(Class type, String property) {
+        String key = "${type.name}:${property}".toString()
+        if (readers.containsKey(key)) {
+            return readers.get(key)
+        }
+        EntityReflector.PropertyReader reader = null
+        PersistentEntity entity = mappingContext.getPersistentEntity(type.name)
+        if (entity != null) {
+            boolean isIdentity = entity.identity != null && entity.identity.name == property
+            if (isIdentity || entity.getPropertyByName(property) != null) {
+                reader = entity.reflector.getPropertyReader(property)
+            }
+        }
+        readers.put(key, reader)
+        return reader
+    }
+}
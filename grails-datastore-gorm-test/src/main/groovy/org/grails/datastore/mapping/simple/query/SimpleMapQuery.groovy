@@ -14,8 +14,11 @@
  */
 package org.grails.datastore.mapping.simple.query
 
+import groovy.transform.CompileStatic
+
 import java.util.regex.Pattern
 
+import org.grails.datastore.mapping.core.Session
 import org.grails.datastore.mapping.engine.types.CustomTypeMarshaller
 import org.grails.datastore.mapping.keyvalue.mapping.config.KeyValue
 import org.grails.datastore.mapping.model.PersistentEntity
@@ -23,12 +26,15 @@ import org.grails.datastore.mapping.model.PersistentProperty
 import org.grails.datastore.mapping.model.types.Association
 import org.grails.datastore.mapping.model.types.Custom
 import org.grails.datastore.mapping.model.types.ToOne
+import org.grails.datastore.mapping.query.AbstractResultStream
 import org.grails.datastore.mapping.query.AssociationQuery
 import org.grails.datastore.mapping.query.Query
 import org.grails.datastore.mapping.query.Restrictions
+import org.grails.datastore.mapping.query.ResultStream
 import org.grails.datastore.mapping.query.api.QueryableCriteria
 import org.grails.datastore.mapping.query.criteria.FunctionCallingCriterion
 import org.grails.datastore.mapping.simple.SimpleMapSession
+import org.grails.datastore.mapping.simple.engine.PropertyIndex
 import org.grails.datastore.mapping.simple.engine.SimpleMapEntityPersister
 import org.springframework.dao.InvalidDataAccessResourceUsageException
 import org.springframework.util.Assert
@@ -71,13 +77,7 @@ class SimpleMapQuery extends Query {
         entityMap.keySet().removeAll(nullEntries.collect { it.key })
 
         if (orderBy) {
-            orderBy.reverseEach { Query.Order order ->
-                boolean desc = order.direction == Query.Order.Direction.DESC
-                entityMap = entityMap.sort { a, b ->
-                    int cmp = (a.value."${order.property}" <=> b.value."${order.property}")
-                    return desc ? -cmp : cmp
-                }
-            }
+            entityMap = sortResults(entityMap)
         }
         if (projections.isEmpty()) {
             results = entityMap.values() as List
@@ -160,6 +160,97 @@ class SimpleMapQuery extends Query {
         return Collections.emptyList()
     }
 
+    @CompileStatic
+    protected Map sortResults(Map entityMap) {
+        List<Map.Entry> entries = new ArrayList<Map.Entry>(entityMap.entrySet())
+        Collections.sort(entries, new EntityOrderComparator(entity.mappingContext, orderBy))
+        Map sorted = new LinkedHashMap()
+        for (Map.Entry entry in entries) {
+            sorted.put(entry.key, entry.value)
+        }
+        return sorted
+    }
+
+    /**
+     * Streams entities by retrieving them one key at a time, unless the query sorts or projects in which case the
+     * full result is required up front
+     */
+    @Override
+    @CompileStatic
+    protected ResultStream executeStream(PersistentEntity entity, Query.Junction criteria) {
+        if (orderBy || !projections.isEmpty()) {
+            return super.executeStream(entity, criteria)
+        }
+
+        Collection keys
+        if (criteria.isEmpty()) {
+            keys = new ArrayList(datastore[family].keySet())
+        }
+        else {
+            keys = executeSubQueryInternal(criteria, criteria.getCriteria())
+            if (!entity.isRoot()) {
+                Set childKeys = datastore[family].keySet()
+                keys = keys.findAll { childKeys.contains(it) }
+            }
+        }
+        return new AbstractResultStream.IteratorResultStream(session, entity, detachStreamedResults,
+                new EntityRetrievingIterator(session, entity.javaClass, keys.iterator(), offset, max, detachStreamedResults))
+    }
+
+    /**
+     * Retrieves entities lazily for a sequence of keys, skipping those that no longer exist
+     */
+    @CompileStatic
+    private static class EntityRetrievingIterator implements Iterator {
+        private final Session session
+        private final Class type
+        private final Iterator keys
+        private final boolean detach
+        private int skip
+        private int remaining
+        private Object nextEntity
+
+        EntityRetrievingIterator(Session session, Class type, Iterator keys, int offset, int max, boolean detach) {
+            this.session = session
+            this.type = type
+            this.keys = keys
+            this.skip = offset
+            this.remaining = max
+            this.detach = detach
+        }
+
+        @Override
+        boolean hasNext() {
+            while (nextEntity == null && remaining != 0 && keys.hasNext()) {
+                Object candidate = session.retrieve(type, (Serializable) keys.next())
+                if (candidate == null) continue
+                if (skip > 0) {
+                    skip--
+                    if (detach) session.clear(candidate)
+                    continue
+                }
+                nextEntity = candidate
+                if (remaining > 0) remaining--
+            }
+            return nextEntity != null
+        }
+
+        @Override
+        Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException()
+            }
+            Object result = nextEntity
+            nextEntity = null
+            return result
+        }
+
+        @Override
+        void remove() {
+            throw new UnsupportedOperationException("Method remove() not supported by ${getClass().name}")
+        }
+    }
+
     private List applyMaxAndOffset(List sortedResults) {
         final def total = sortedResults.size()
         if (offset > total) return Collections.emptyList()
@@ -468,21 +559,8 @@ class SimpleMapQuery extends Query {
             return negateResults(indexed)
         },
         (Query.Like): { Query.Like like, PersistentProperty property ->
-            def indexer = entityPersister.getPropertyIndexer(property)
-
-            def root = indexer.indexRoot
             def regexFormat = like.pattern.replaceAll('%', '.*?')
-            def pattern = "${root}:${regexFormat}"
-            def matchingIndices = entityPersister.indices.findAll { key, value ->
-                key ==~ pattern
-            }
-
-            Set result = []
-            for (indexed in matchingIndices) {
-                result.addAll(indexed.value)
-            }
-
-            return result.toList()
+            return entityPersister.getPropertyIndex(property).match(Pattern.compile(regexFormat))
         },
         (Query.ILike): { Query.ILike like, PersistentProperty property ->
             def regexFormat = like.pattern.replaceAll('%', '.*?')
@@ -510,6 +588,10 @@ class SimpleMapQuery extends Query {
                 allEntities.findAll { function(resolveIfEmbedded(name, it.value)) >= from && function(resolveIfEmbedded(name, it.value)) <= to }.collect { it.key }
             }
             else {
+                def indexed = from != null && to != null ? queryRange(property, name, from, true, to, true) : null
+                if (indexed != null) {
+                    return indexed
+                }
                 allEntities.findAll { resolveIfEmbedded(name, it.value) >= from && resolveIfEmbedded(name, it.value) <= to }.collect { it.key }
             }
         },
@@ -518,6 +600,11 @@ class SimpleMapQuery extends Query {
             final value = subqueryIfNecessary(gt)
             def allEntities = datastore[family]
 
+            def indexed = function == null && value != null ? queryRange(property, name, value, false, null, false) : null
+            if (indexed != null) {
+                return indexed
+            }
+
             allEntities.findAll { (function != null ? function(resolveIfEmbedded(name, it.value)) : resolveIfEmbedded(name, it.value)) > value }.collect { it.key }
         },
         (Query.GreaterThanProperty): { Query.GreaterThanProperty gt, PersistentProperty property, Closure function = null, boolean onValue = false ->
@@ -597,6 +684,11 @@ class SimpleMapQuery extends Query {
             final value = subqueryIfNecessary(gt)
             def allEntities = datastore[family]
 
+            def indexed = value != null ? queryRange(property, name, value, true, null, false) : null
+            if (indexed != null) {
+                return indexed
+            }
+
             allEntities.findAll { resolveIfEmbedded(name, it.value) >= value }.collect { it.key }
         },
         (Query.LessThan): { Query.LessThan lt, PersistentProperty property ->
@@ -604,6 +696,11 @@ class SimpleMapQuery extends Query {
             final value = subqueryIfNecessary(lt)
             def allEntities = datastore[family]
 
+            def indexed = value != null ? queryRange(property, name, null, false, value, false) : null
+            if (indexed != null) {
+                return indexed
+            }
+
             allEntities.findAll { resolveIfEmbedded(name, it.value) < value }.collect { it.key }
         },
         (Query.LessThanEquals): { Query.LessThanEquals lte, PersistentProperty property ->
@@ -611,6 +708,11 @@ class SimpleMapQuery extends Query {
             final value = subqueryIfNecessary(lte)
             def allEntities = datastore[family]
 
+            def indexed = value != null ? queryRange(property, name, null, false, value, true) : null
+            if (indexed != null) {
+                return indexed
+            }
+
             allEntities.findAll { resolveIfEmbedded(name, it.value) <= value }.collect { it.key }
         }
     ]
@@ -648,20 +750,26 @@ class SimpleMapQuery extends Query {
     }
 
     protected List executeLikeWithRegex(SimpleMapEntityPersister entityPersister, PersistentProperty property, regexFormat) {
-        def indexer = entityPersister.getPropertyIndexer(property)
+        def pattern = Pattern.compile(regexFormat.toString(), Pattern.CASE_INSENSITIVE)
+        return entityPersister.getPropertyIndex(property).match(pattern)
+    }
 
-        def root = indexer.indexRoot
-        def pattern = Pattern.compile("${root}:${regexFormat}", Pattern.CASE_INSENSITIVE)
-        def matchingIndices = entityPersister.indices.findAll { key, value ->
-            pattern.matcher(key).matches()
+    /**
+     * Executes a range query using the sorted index of the property
+     *
+     * @return The matching keys in the order of the entries or null if the index cannot be used
+     */
+    protected List queryRange(PersistentProperty property, String name, from, boolean fromInclusive, to, boolean toInclusive) {
+        if (name.contains('.') || property == null || property instanceof ToOne || property instanceof Custom ||
+                from instanceof QueryableCriteria || to instanceof QueryableCriteria) {
+            return null
         }
-
-        Set result = []
-        for (indexed in matchingIndices) {
-            result.addAll(indexed.value)
+        PropertyIndex index = entityPersister.getPropertyIndex(property)
+        List keys = index.range(from, fromInclusive, to, toInclusive)
+        if (keys == null) {
+            return null
         }
-
-        return result.toList()
+        return entityPersister.getPropertyIndex(entity.identity).sortBySequence(keys)
     }
 
     private ArrayList negateResults(List results) {
@@ -682,6 +790,14 @@ class SimpleMapQuery extends Query {
 
     Collection executeSubQueryInternal(criteria, criteriaList) {
         SimpleMapResultList resultList = new SimpleMapResultList(this)
+        if (criteria instanceof Query.Conjunction) {
+            // use the indices and compiled matchers for the criteria that support them
+            SimpleMapQueryPlanner.Plan plan = new SimpleMapQueryPlanner(entity, entityPersister, datastore[family]).plan(criteriaList)
+            if (plan != null) {
+                resultList.results << plan.execute()
+                criteriaList = plan.unplannedCriteria
+            }
+        }
         for (Query.Criterion criterion in criteriaList) {
             if (criterion instanceof Query.Junction) {
                 resultList.results << executeSubQueryInternal(criterion, criterion.criteria)
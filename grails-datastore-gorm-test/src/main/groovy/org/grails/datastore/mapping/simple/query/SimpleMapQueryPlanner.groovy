@@ -0,0 +1,514 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.mapping.simple.query
+
+import groovy.transform.CompileStatic
+import org.codehaus.groovy.runtime.ScriptBytecodeAdapter
+import org.grails.datastore.mapping.model.PersistentEntity
+import org.grails.datastore.mapping.model.PersistentProperty
+import org.grails.datastore.mapping.model.types.Simple
+import org.grails.datastore.mapping.model.types.ToOne
+import org.grails.datastore.mapping.query.Query
+import org.grails.datastore.mapping.query.api.QueryableCriteria
+import org.grails.datastore.mapping.simple.engine.PropertyIndex
+import org.grails.datastore.mapping.simple.engine.SimpleMapEntityPersister
+
+import java.util.regex.Pattern
+
+/**
+ * Plans the execution of a conjunction of criteria against a {@link org.grails.datastore.mapping.simple.SimpleMapDatastore}.
+ *
+ * Each criterion on a simple property, a to-one association or the identifier is compiled into an {@link EntryMatcher}.
+ * The planner then estimates the cost of every access path, namely a hash index lookup for {@link Query.Equals},
+ * {@link Query.IdEquals} and {@link Query.In}, a sorted index range for {@link Query.Between}, {@link Query.GreaterThan},
+ * {@link Query.GreaterThanEquals}, {@link Query.LessThan} and {@link Query.LessThanEquals}, or a full scan of the
+ * entries, and picks the cheapest. The remaining matchers are evaluated against the candidate entries only.
+ *
+ * Criteria that cannot be compiled, such as subqueries, function calls, embedded properties and association queries,
+ * are left for {@link SimpleMapQuery} to evaluate.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@CompileStatic
+class SimpleMapQueryPlanner {
+
+    /**
+     * The estimated fraction of entries matched by an open range
+     */
+    static final double RANGE_SELECTIVITY = 1d / 3d
+    /**
+     * The estimated fraction of entries matched by a closed range
+     */
+    static final double BETWEEN_SELECTIVITY = 1d / 4d
+
+    final PersistentEntity entity
+    final SimpleMapEntityPersister persister
+    final Map<Object, Map> entries
+
+    SimpleMapQueryPlanner(PersistentEntity entity, SimpleMapEntityPersister persister, Map<Object, Map> entries) {
+        this.entity = entity
+        this.persister = persister
+        this.entries = entries
+    }
+
+    /**
+     * Plans the given conjunction of criteria
+     *
+     * @param criteria The criteria
+     * @return The plan or null if none of the criteria can be planned
+     */
+    Plan plan(List<Query.Criterion> criteria) {
+        if (entity.identity == null || entries == null) {
+            return null
+        }
+
+        List<EntryMatcher> matchers = []
+        List<Query.Criterion> unplanned = []
+        AccessPath best = null
+        for (Query.Criterion criterion in criteria) {
+            PersistentProperty property = resolveProperty(criterion)
+            EntryMatcher matcher = property != null ? createMatcher(criterion, property) : null
+            if (matcher == null) {
+                unplanned.add(criterion)
+                continue
+            }
+            AccessPath path = createAccessPath(criterion, property, matcher)
+            if (path != null && (best == null || path.cost < best.cost)) {
+                best = path
+            }
+            matchers.add(matcher)
+        }
+        if (matchers.isEmpty()) {
+            return null
+        }
+        if (best != null && best.cost < entries.size()) {
+            // the index lookup is exact so the matcher of the indexed criterion does not need to be evaluated again
+            matchers.remove(best.matcher)
+        }
+        else {
+            best = null
+        }
+        return new Plan(best, matchers, unplanned, entries, persister.getPropertyIndex(entity.identity))
+    }
+
+    protected PersistentProperty resolveProperty(Query.Criterion criterion) {
+        if (!(criterion instanceof Query.PropertyNameCriterion)) {
+            return null
+        }
+        String name = ((Query.PropertyNameCriterion) criterion).property
+        if (name == null || name.contains('.')) {
+            return null
+        }
+        PersistentProperty property = entity.getPropertyByName(name)
+        if (property == null) {
+            PersistentProperty identity = entity.identity
+            return identity.name == name ? identity : null
+        }
+        if (property instanceof Simple || property instanceof ToOne) {
+            return property
+        }
+        return null
+    }
+
+    protected EntryMatcher createMatcher(Query.Criterion criterion, PersistentProperty property) {
+        boolean identity = property == entity.identity
+        String name = property.name
+        Class type = criterion.getClass()
+
+        if (type == Query.IsNull) {
+            return new NullMatcher(name, identity, true)
+        }
+        if (type == Query.IsNotNull) {
+            return new NullMatcher(name, identity, false)
+        }
+        if (type == Query.In) {
+            Query.In inList = (Query.In) criterion
+            if (inList.subquery != null) {
+                return null
+            }
+            List<Object> values = []
+            for (Object value in inList.values) {
+                values.add(toIndexedValue(property, value))
+            }
+            return new InMatcher(name, identity, values)
+        }
+        if (type == Query.Between) {
+            Query.Between between = (Query.Between) criterion
+            if (property instanceof ToOne || between.from == null || between.to == null) {
+                return null
+            }
+            return new RangeMatcher(name, identity, between.from, true, between.to, true)
+        }
+
+        Object value = ((Query.PropertyCriterion) criterion).value
+        if (value instanceof QueryableCriteria) {
+            return null
+        }
+        if (type == Query.Equals || type == Query.IdEquals) {
+            return new EqualsMatcher(name, identity, toIndexedValue(property, value), false)
+        }
+        if (type == Query.NotEquals) {
+            return new EqualsMatcher(name, identity, toIndexedValue(property, value), true)
+        }
+        if (value == null) {
+            return null
+        }
+        if (type == Query.Like) {
+            return new PatternMatcher(name, identity, Pattern.compile(likeToRegex(value.toString())))
+        }
+        if (type == Query.ILike) {
+            return new PatternMatcher(name, identity, Pattern.compile(likeToRegex(value.toString()), Pattern.CASE_INSENSITIVE))
+        }
+        if (type == Query.RLike) {
+            return new PatternMatcher(name, identity, Pattern.compile(value.toString(), Pattern.CASE_INSENSITIVE))
+        }
+        if (property instanceof ToOne) {
+            return null
+        }
+        if (type == Query.GreaterThan) {
+            return new RangeMatcher(name, identity, value, false, null, false)
+        }
+        if (type == Query.GreaterThanEquals) {
+            return new RangeMatcher(name, identity, value, true, null, false)
+        }
+        if (type == Query.LessThan) {
+            return new RangeMatcher(name, identity, null, false, value, false)
+        }
+        if (type == Query.LessThanEquals) {
+            return new RangeMatcher(name, identity, null, false, value, true)
+        }
+        return null
+    }
+
+    protected AccessPath createAccessPath(Query.Criterion criterion, PersistentProperty property, EntryMatcher matcher) {
+        PropertyIndex index = persister.getPropertyIndex(property)
+        if (matcher instanceof EqualsMatcher) {
+            EqualsMatcher equals = (EqualsMatcher) matcher
+            if (equals.negated || equals.value == null) {
+                return null
+            }
+            return new HashAccessPath(matcher, index, [equals.value])
+        }
+        if (matcher instanceof InMatcher) {
+            List<Object> values = ((InMatcher) matcher).values
+            if (values.contains(null)) {
+                return null
+            }
+            return new HashAccessPath(matcher, index, values)
+        }
+        if (matcher instanceof RangeMatcher && index.isSorted()) {
+            RangeMatcher range = (RangeMatcher) matcher
+            double selectivity = range.from != null && range.to != null ? BETWEEN_SELECTIVITY : RANGE_SELECTIVITY
+            return new RangeAccessPath(matcher, index, range, index.size() * selectivity)
+        }
+        return null
+    }
+
+    protected Object toIndexedValue(PersistentProperty property, Object value) {
+        if (value != null && property instanceof ToOne && property.type.isInstance(value)) {
+            return persister.getObjectIdentifier(value)
+        }
+        return value
+    }
+
+    protected static String likeToRegex(String pattern) {
+        return pattern.replaceAll('%', '.*?')
+    }
+
+    /**
+     * The result of planning a conjunction
+     */
+    @CompileStatic
+    static class Plan {
+        final AccessPath accessPath
+        final List<EntryMatcher> matchers
+        final List<Query.Criterion> unplannedCriteria
+        private final Map<Object, Map> entries
+        private final PropertyIndex identityIndex
+
+        Plan(AccessPath accessPath, List<EntryMatcher> matchers, List<Query.Criterion> unplannedCriteria, Map<Object, Map> entries, PropertyIndex identityIndex) {
+            this.accessPath = accessPath
+            this.matchers = matchers
+            this.unplannedCriteria = unplannedCriteria
+            this.entries = entries
+            this.identityIndex = identityIndex
+        }
+
+        /**
+         * @return The keys of the matching entries
+         */
+        List<Object> execute() {
+            List<Object> candidates = accessPath?.keys()
+            List<Object> results = []
+            if (candidates == null) {
+                List<EntryMatcher> toApply = matchers
+                if (accessPath != null) {
+                    // the index could not be used for these values, fall back to evaluating the criterion
+                    toApply = new ArrayList<>(matchers)
+                    toApply.add(accessPath.matcher)
+                }
+                for (Map.Entry<Object, Map> entry in entries.entrySet()) {
+                    if (matchesAll(toApply, entry.key, entry.value)) {
+                        results.add(entry.key)
+                    }
+                }
+                return results
+            }
+
+            for (Object key in candidates) {
+                Map entry = entries.get(key)
+                if (entry != null && matchesAll(matchers, key, entry)) {
+                    results.add(key)
+                }
+            }
+            if (accessPath.orderedByValue) {
+                // keep the order of a full scan
+                identityIndex.sortBySequence(results)
+            }
+            return results
+        }
+
+        private static boolean matchesAll(List<EntryMatcher> matchers, Object key, Map entry) {
+            for (EntryMatcher matcher in matchers) {
+                if (!matcher.matches(key, entry)) {
+                    return false
+                }
+            }
+            return true
+        }
+
+        @Override
+        String toString() {
+            return "Plan{accessPath=${accessPath ?: 'full scan'}, matchers=${matchers.size()}, unplanned=${unplannedCriteria.size()}}"
+        }
+    }
+
+    /**
+     * A way of obtaining candidate keys from an index
+     */
+    @CompileStatic
+    static abstract class AccessPath {
+        final EntryMatcher matcher
+        final PropertyIndex index
+        final double cost
+
+        AccessPath(EntryMatcher matcher, PropertyIndex index, double cost) {
+            this.matcher = matcher
+            this.index = index
+            this.cost = cost
+        }
+
+        /**
+         * @return The candidate keys or null if the index cannot be used
+         */
+        abstract List<Object> keys()
+
+        /**
+         * @return Whether the keys are in the order of the indexed values rather than the order of the entries
+         */
+        abstract boolean isOrderedByValue()
+    }
+
+    @CompileStatic
+    static class HashAccessPath extends AccessPath {
+        final List<Object> values
+
+        HashAccessPath(EntryMatcher matcher, PropertyIndex index, List<Object> values) {
+            super(matcher, index, estimate(index, values))
+            this.values = values
+        }
+
+        private static double estimate(PropertyIndex index, List<Object> values) {
+            long total = 0
+            for (Object value in values) {
+                total += index.count(value)
+            }
+            return total
+        }
+
+        @Override
+        List<Object> keys() {
+            if (values.size() == 1) {
+                return index.query(values.get(0))
+            }
+            Set<Object> keys = new LinkedHashSet<>()
+            for (Object value in values) {
+                keys.addAll(index.query(value))
+            }
+            return new ArrayList<Object>(keys)
+        }
+
+        @Override
+        boolean isOrderedByValue() {
+            // the keys of several values are grouped by value
+            return values.size() > 1
+        }
+
+        @Override
+        String toString() {
+            return "hash index ${index.name} for ${values}"
+        }
+    }
+
+    @CompileStatic
+    static class RangeAccessPath extends AccessPath {
+        final RangeMatcher range
+
+        RangeAccessPath(EntryMatcher matcher, PropertyIndex index, RangeMatcher range, double cost) {
+            super(matcher, index, cost)
+            this.range = range
+        }
+
+        @Override
+        List<Object> keys() {
+            return index.range(range.from, range.fromInclusive, range.to, range.toInclusive)
+        }
+
+        @Override
+        boolean isOrderedByValue() {
+            return true
+        }
+
+        @Override
+        String toString() {
+            return "sorted index ${index.name} for range ${range.from}..${range.to}"
+        }
+    }
+
+    /**
+     * Base class for matchers that read a single property from the entry
+     */
+    @CompileStatic
+    static abstract class PropertyMatcher implements EntryMatcher {
+        final String propertyName
+        final boolean identity
+
+        PropertyMatcher(String propertyName, boolean identity) {
+            this.propertyName = propertyName
+            this.identity = identity
+        }
+
+        protected Object read(Object key, Map entry) {
+            return identity ? key : entry.get(propertyName)
+        }
+    }
+
+    @CompileStatic
+    static class EqualsMatcher extends PropertyMatcher {
+        final Object value
+        final boolean negated
+        private final String normalized
+
+        EqualsMatcher(String propertyName, boolean identity, Object value, boolean negated) {
+            super(propertyName, identity)
+            this.value = value
+            this.negated = negated
+            this.normalized = PropertyIndex.normalize(value)
+        }
+
+        @Override
+        boolean matches(Object key, Map entry) {
+            Object current = read(key, entry)
+            boolean equal = normalized == null ? current == null : normalized.equals(PropertyIndex.normalize(current))
+            return negated ? !equal : equal
+        }
+    }
+
+    @CompileStatic
+    static class InMatcher extends PropertyMatcher {
+        final List<Object> values
+        private final Set<String> normalized = new HashSet<>()
+
+        InMatcher(String propertyName, boolean identity, List<Object> values) {
+            super(propertyName, identity)
+            this.values = values
+            for (Object value in values) {
+                normalized.add(PropertyIndex.normalize(value))
+            }
+        }
+
+        @Override
+        boolean matches(Object key, Map entry) {
+            return normalized.contains(PropertyIndex.normalize(read(key, entry)))
+        }
+    }
+
+    @CompileStatic
+    static class NullMatcher extends PropertyMatcher {
+        final boolean isNull
+
+        NullMatcher(String propertyName, boolean identity, boolean isNull) {
+            super(propertyName, identity)
+            this.isNull = isNull
+        }
+
+        @Override
+        boolean matches(Object key, Map entry) {
+            return (read(key, entry) == null) == isNull
+        }
+    }
+
+    @CompileStatic
+    static class RangeMatcher extends PropertyMatcher {
+        final Object from
+        final boolean fromInclusive
+        final Object to
+        final boolean toInclusive
+
+        RangeMatcher(String propertyName, boolean identity, Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+            super(propertyName, identity)
+            this.from = from
+            this.fromInclusive = fromInclusive
+            this.to = to
+            this.toInclusive = toInclusive
+        }
+
+        @Override
+        boolean matches(Object key, Map entry) {
+            Object current = read(key, entry)
+            if (current == null) {
+                return false
+            }
+            if (from != null) {
+                boolean matchesFrom = fromInclusive ? ScriptBytecodeAdapter.compareGreaterThanEqual(current, from) : ScriptBytecodeAdapter.compareGreaterThan(current, from)
+                if (!matchesFrom) {
+                    return false
+                }
+            }
+            if (to != null) {
+                return toInclusive ? ScriptBytecodeAdapter.compareLessThanEqual(current, to) : ScriptBytecodeAdapter.compareLessThan(current, to)
+            }
+            return true
+        }
+    }
+
+    @CompileStatic
+    static class PatternMatcher extends PropertyMatcher {
+        final Pattern pattern
+
+        PatternMatcher(String propertyName, boolean identity, Pattern pattern) {
+            super(propertyName, identity)
+            this.pattern = pattern
+        }
+
+        @Override
+        boolean matches(Object key, Map entry) {
+            Object current = read(key, entry)
+            return current != null && pattern.matcher(PropertyIndex.normalize(current)).matches()
+        }
+    }
+}
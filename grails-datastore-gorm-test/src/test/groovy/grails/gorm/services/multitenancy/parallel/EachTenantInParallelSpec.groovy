@@ -0,0 +1,135 @@
+package grails.gorm.services.multitenancy.parallel
+
+import grails.gorm.MultiTenant
+import grails.gorm.annotation.Entity
+import grails.gorm.multitenancy.Tenants
+import org.grails.datastore.gorm.concurrent.TaskExecutors
+import org.grails.datastore.mapping.config.Settings
+import org.grails.datastore.mapping.core.Session
+import org.grails.datastore.mapping.core.connections.ConnectionSource
+import org.grails.datastore.mapping.multitenancy.MultiTenancySettings
+import org.grails.datastore.mapping.multitenancy.resolvers.SystemPropertyTenantResolver
+import org.grails.datastore.mapping.simple.SimpleMapDatastore
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class EachTenantInParallelSpec extends Specification {
+
+    @Shared @AutoCleanup SimpleMapDatastore datastore = new SimpleMapDatastore(
+            [(Settings.SETTING_MULTI_TENANCY_MODE)   : MultiTenancySettings.MultiTenancyMode.DATABASE,
+             (Settings.SETTING_MULTI_TENANT_RESOLVER): new SystemPropertyTenantResolver(),
+             (Settings.SETTING_DB_CREATE)            : "create-drop"],
+            [ConnectionSource.DEFAULT, "foo", "bar", "baz"],
+            getClass().getPackage()
+    )
+
+    void "Test each tenant is processed with its own session and tenant id"() {
+        when:"Each tenant is processed in parallel"
+        def tenantResults = Tenants.eachTenantInParallel(datastore, 2, 1) { String tenantId, Session session ->
+            new Note(text: tenantId).save(flush: true)
+            return [Tenants.currentId(datastore), session.datastore.is(datastore), Note.count()]
+        }
+
+        then:"Every tenant was processed against its own connection"
+        !tenantResults.hasErrors()
+        tenantResults.results.keySet() == ["foo", "bar", "baz"] as Set
+        tenantResults.results.every { tenantId, result -> result[0] == tenantId && result[2] == 1 }
+    }
+
+    void "Test errors are aggregated and do not stop the remaining tenants"() {
+        when:"Processing fails for one tenant"
+        def tenantResults = Tenants.eachTenantInParallel(datastore, 3, 3) { String tenantId ->
+            if (tenantId == "bar") {
+                throw new IllegalStateException("Bad tenant")
+            }
+            return tenantId.toUpperCase()
+        }
+
+        then:"The error is recorded and the other tenants succeed"
+        tenantResults.hasErrors()
+        tenantResults.size() == 3
+        tenantResults.errors.keySet() == ["bar"] as Set
+        tenantResults.errors.bar.message == "Bad tenant"
+        tenantResults.results == [foo: "FOO", baz: "BAZ"]
+    }
+
+    void "Test the concurrency is bounded"() {
+        given:
+        def running = new AtomicInteger()
+        def maxRunning = new AtomicInteger()
+
+        when:"Tenants are processed with a concurrency of one"
+        def tenantResults = Tenants.eachTenantInParallel(datastore, 1, 1) { String tenantId ->
+            int current = running.incrementAndGet()
+            maxRunning.set(Math.max(maxRunning.get(), current))
+            Thread.sleep(20)
+            running.decrementAndGet()
+            return tenantId
+        }
+
+        then:"Only one tenant ran at a time"
+        !tenantResults.hasErrors()
+        maxRunning.get() == 1
+    }
+
+    void "Test a long running tenant does not hold up the remaining tenants"() {
+        given:
+        def othersDone = new CountDownLatch(2)
+
+        when:"One tenant waits for the others to finish while holding one of two slots"
+        def tenantResults = Tenants.eachTenantInParallel(datastore, 2, 1) { String tenantId ->
+            if (tenantId == "foo") {
+                return othersDone.await(5, TimeUnit.SECONDS)
+            }
+            othersDone.countDown()
+            return true
+        }
+
+        then:"The remaining tenants ran in the other slot"
+        !tenantResults.hasErrors()
+        tenantResults.results == [foo: true, bar: true, baz: true]
+    }
+
+    @Timeout(10)
+    void "Test a tenant rejected by the executor is reported and releases its slot"() {
+        given:"An executor that rejects every other task"
+        def submitted = new AtomicInteger()
+        TaskExecutors.setExecutor(new Executor() {
+            @Override
+            void execute(Runnable command) {
+                if (submitted.incrementAndGet() % 2 == 0) {
+                    throw new RejectedExecutionException("Executor saturated")
+                }
+                Thread.start(command)
+            }
+        })
+
+        when:"Tenants are processed one at a time"
+        def tenantResults = Tenants.eachTenantInParallel(datastore, 1, 1) { String tenantId ->
+            return tenantId
+        }
+
+        then:"The rejected tenant is recorded as an error and the remaining tenants still ran"
+        tenantResults.size() == 3
+        tenantResults.errors.size() == 1
+        tenantResults.errors.values().first() instanceof RejectedExecutionException
+        tenantResults.results.size() == 2
+        tenantResults.results.every { tenantId, result -> result == tenantId }
+
+        cleanup:
+        TaskExecutors.reset()
+    }
+}
+
+@Entity
+class Note implements MultiTenant<Note> {
+    String text
+}
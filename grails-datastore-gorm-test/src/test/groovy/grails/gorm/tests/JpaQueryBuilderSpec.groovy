@@ -1,8 +1,15 @@
 package grails.gorm.tests
 
 import grails.gorm.DetachedCriteria
+import grails.persistence.Entity
 
+import org.grails.datastore.mapping.query.KeysetCursor
+import org.grails.datastore.mapping.query.Query
 import org.grails.datastore.mapping.query.jpa.JpaQueryBuilder
+import org.grails.datastore.mapping.query.jpa.JpaQueryInfo
+import org.grails.datastore.mapping.query.jpa.JpaQueryPlan
+import org.grails.datastore.mapping.query.plan.CriteriaShape
+import org.grails.datastore.mapping.query.plan.QueryPlanCache
 import org.springframework.dao.InvalidDataAccessResourceUsageException
 
 /**
@@ -177,4 +184,186 @@ class JpaQueryBuilderSpec extends GormDatastoreSpec{
             queryInfo.parameters == ['Bob', 'Fred']
 
     }
+
+    void "Test select queries with the same shape reuse the cached plan"() {
+        given:"A plan cache and a query shape"
+            def cache = new QueryPlanCache<JpaQueryPlan>(10)
+            def entity = session.mappingContext.getPersistentEntity(Person.name)
+            def select = { String name, List ages ->
+                DetachedCriteria criteria = new DetachedCriteria(Person).build {
+                    eq 'firstName', name
+                    inList 'age', ages
+                }
+                def builder = new JpaQueryBuilder(entity, criteria.criteria)
+                builder.planCache = cache
+                builder.buildSelect()
+            }
+
+        when:"The same shape is built twice with different values"
+            def first = select('Bob', [1, 2])
+            def second = select('Fred', [3, 4])
+
+        then:"The query is rendered once and the parameters are rebound"
+            first.query == 'SELECT DISTINCT person FROM grails.gorm.tests.Person AS person WHERE (person.firstName=:p1 AND person.age IN (:p2,:p3))'
+            second.query == first.query
+            first.parameters == ['Bob', 1, 2]
+            second.parameters == ['Fred', 3, 4]
+            cache.size() == 1
+            cache.hitCount == 1
+            cache.missCount == 1
+            cache.hitRate == 0.5d
+
+        when:"A different number of values is used"
+            def third = select('Bob', [1, 2, 3])
+
+        then:"The shape differs and a new plan is created"
+            third.query.endsWith('IN (:p2,:p3,:p4))')
+            cache.size() == 2
+    }
+
+    void "Test cached plans match parameters by position when the values are identical"() {
+        given:"A query with the same cached Integer on properties of different types"
+            def cache = new QueryPlanCache<JpaQueryPlan>(10)
+            def entity = session.mappingContext.getPersistentEntity(Person.name)
+            def select = { id, age ->
+                DetachedCriteria criteria = new DetachedCriteria(Person).build {
+                    eq 'id', id
+                    eq 'age', age
+                }
+                def builder = new JpaQueryBuilder(entity, criteria.criteria)
+                builder.planCache = cache
+                builder.buildSelect()
+            }
+
+        when:"The plan is created with identical values and reused with different ones"
+            def first = select(5, 5)
+            def second = select(7, 9)
+
+        then:"Each parameter is converted to the type of its own property"
+            first.parameters == [5L, 5]
+            second.parameters == [7L, 9]
+            second.parameters[0] instanceof Long
+            second.parameters[1] instanceof Integer
+            cache.hitCount == 1
+    }
+
+    void "Test a plan is not created when the conversions are made in a different order than the shape"() {
+        given:"A shape with two criteria on the same identical value"
+            def entity = session.mappingContext.getPersistentEntity(Person.name)
+            def id = new Query.Equals('id', 5)
+            def age = new Query.Equals('age', 5)
+            def shape = CriteriaShape.of(entity, [id, age], [], [])
+            def recording = new JpaQueryPlan.RecordingConversionService(session.mappingContext.conversionService)
+
+        when:"The values are converted for the criteria in reverse order"
+            recording.currentCriterion = age
+            def convertedAge = recording.convert(5, Integer)
+            recording.currentCriterion = id
+            def convertedId = recording.convert(5, Long)
+
+        then:"The conversions don't line up with the shape, even though the values are identical"
+            JpaQueryPlan.create(new JpaQueryInfo('query', [convertedAge, convertedId]), recording, shape) == null
+    }
+
+    void "Test builders use the plan cache of the mapping context by default"() {
+        given:"The plan cache of the mapping context"
+            def cache = session.mappingContext.getQueryPlanCache(JpaQueryPlan)
+            def entity = session.mappingContext.getPersistentEntity(Person.name)
+            def select = { String name ->
+                DetachedCriteria criteria = new DetachedCriteria(Person).build {
+                    eq 'lastName', name
+                    gt 'age', 5
+                }
+                new JpaQueryBuilder(entity, criteria.criteria).buildSelect()
+            }
+            def hits = cache.hitCount
+
+        when:"The same shape is built twice without setting a plan cache"
+            def first = select('Simpson')
+            def second = select('Flintstone')
+
+        then:"The second build is served from the shared cache"
+            cache.hitCount == hits + 1
+            second.query == first.query
+            second.parameters == ['Flintstone', 5]
+    }
+
+    void "Test queries with subqueries are not cached"() {
+        given:"A plan cache and a query with a subquery"
+            def cache = new QueryPlanCache<JpaQueryPlan>(10)
+            DetachedCriteria criteria = new DetachedCriteria(Person).build {
+                notIn("age", new DetachedCriteria(Person).build {
+                    eq('lastName', 'Simpson')
+                }.distinct('age'))
+            }
+
+        when:"The query is built"
+            def builder = new JpaQueryBuilder(session.mappingContext.getPersistentEntity(Person.name), criteria.criteria)
+            builder.planCache = cache
+            builder.buildSelect()
+
+        then:"No plan is cached"
+            cache.size() == 0
+            cache.missCount == 0
+    }
+
+    void "Test select restricted by a keyset cursor"() {
+        given:"Some criteria and a cursor positioned after a result"
+            def entity = session.mappingContext.getPersistentEntity(Person.name)
+            DetachedCriteria criteria = new DetachedCriteria(Person).build {
+                eq 'lastName', 'Simpson'
+            }
+            def orders = KeysetCursor.keysetOrders(entity, [Query.Order.desc('age')])
+            def cursor = new KeysetCursor(orders, [10, 5L])
+
+        when:"A jpa query is built"
+            def builder = new JpaQueryBuilder(entity, criteria.criteria)
+            builder.keysetCursor = cursor
+            def queryInfo = builder.buildSelect()
+
+        then:"The query seeks past the cursor and orders by the keyset"
+            queryInfo.query == 'SELECT DISTINCT person FROM grails.gorm.tests.Person AS person WHERE (person.lastName=:p1 AND ((person.age<:p2) OR (person.age=:p3 AND person.id>:p4))) ORDER BY person.age DESC, person.id ASC '
+            queryInfo.parameters == ['Simpson', 10, 10, 5L]
+    }
+
+    void "Test a keyset cursor with a case insensitive order is rejected"() {
+        given:"A cursor for a case insensitive order"
+            def entity = session.mappingContext.getPersistentEntity(Person.name)
+            def orders = KeysetCursor.keysetOrders(entity, [Query.Order.asc('firstName').ignoreCase()])
+            def cursor = new KeysetCursor(orders, ['Bart', 5L])
+
+        when:"The cursor is applied to a builder"
+            def builder = new JpaQueryBuilder(entity, new DetachedCriteria(Person).criteria)
+            builder.keysetCursor = cursor
+
+        then:"The order is rejected"
+            thrown(InvalidDataAccessResourceUsageException)
+    }
+
+    void "Test a keyset cursor keeps the nanoseconds of a timestamp"() {
+        given:"A cursor positioned at a timestamp with sub-millisecond precision"
+            def timestamp = new java.sql.Timestamp(1500000000123L)
+            timestamp.nanos = 123456789
+            def cursor = new KeysetCursor([Query.Order.asc('lastUpdated'), Query.Order.asc('id')], [timestamp, 5L])
+
+        when:"The cursor is encoded and decoded"
+            def decoded = KeysetCursor.decode(session.mappingContext.getPersistentEntity(KeysetEvent.name), cursor.orders, cursor.encode())
+
+        then:"The timestamp is restored with its nanoseconds"
+            decoded.values[0] instanceof java.sql.Timestamp
+            decoded.values[0] == timestamp
+            decoded.values[0].nanos == 123456789
+            decoded.values[1] == 5L
+    }
+
+    @Override
+    List getDomainClasses() {
+        [KeysetEvent]
+    }
+}
+
+@Entity
+class KeysetEvent {
+    Long id
+    Date lastUpdated
 }
@@ -0,0 +1,224 @@
+package org.grails.datastore.gorm
+
+import grails.gorm.tests.GormDatastoreSpec
+import grails.persistence.Entity
+import org.grails.datastore.mapping.core.AbstractSession
+import org.grails.datastore.mapping.proxy.EntityProxy
+
+import javax.persistence.FlushModeType
+
+class BatchFetchSpec extends GormDatastoreSpec {
+
+    void "Test lazy collections of sibling owners are loaded in a single batch"() {
+        given:"Some authors with books"
+        def authors = (1..3).collect { i ->
+            def author = new BatchAuthor(name: "Author $i")
+            (1..2).each { j -> author.addToBooks(new BatchBook(title: "Book $i-$j")) }
+            author.save()
+        }
+        session.flush()
+        session.clear()
+
+        when:"The collection of the first author is initialized"
+        def loaded = BatchAuthor.list(sort: 'name')
+        def firstBooks = loaded[0].books*.title.sort()
+
+        then:"The books of the sibling authors were loaded too"
+        firstBooks == ['Book 1-1', 'Book 1-2']
+        authors[1].books.every { session.isCached(BatchBook, it.id) }
+        authors[2].books.every { session.isCached(BatchBook, it.id) }
+
+        and:"The sibling collections have the correct contents"
+        loaded[1].books*.title.sort() == ['Book 2-1', 'Book 2-2']
+        loaded[2].books*.title.sort() == ['Book 3-1', 'Book 3-2']
+    }
+
+    void "Test lazy collections are loaded one at a time without a batch size"() {
+        given:"Some publishers with editions"
+        def publishers = (1..2).collect { i ->
+            new BatchPublisher(name: "Publisher $i").addToEditions(new BatchEdition(number: i)).save()
+        }
+        session.flush()
+        session.clear()
+
+        when:"The collection of the first publisher is initialized"
+        def loaded = BatchPublisher.list(sort: 'name')
+        loaded[0].editions.size()
+
+        then:"The editions of the other publisher are not loaded"
+        !session.isCached(BatchEdition, publishers[1].editions.first().id)
+        loaded[1].editions*.number == [2]
+    }
+
+    void "Test proxies of the same type are initialized in a single batch"() {
+        given:"Some books with authors"
+        def authors = (1..3).collect { i ->
+            def author = new BatchAuthor(name: "Author $i")
+            author.addToBooks(new BatchBook(title: "Book $i"))
+            author.save()
+        }
+        session.flush()
+        session.clear()
+
+        when:"The books are loaded"
+        def books = BatchBook.list(sort: 'title')
+
+        then:"The authors are uninitialized proxies"
+        books.every { it.author instanceof EntityProxy }
+        !authors.any { session.isCached(BatchAuthor, it.id) }
+
+        when:"The first proxy is initialized"
+        def name = books[0].author.name
+
+        then:"The sibling proxies were loaded with it"
+        name == 'Author 1'
+        authors.every { session.isCached(BatchAuthor, it.id) }
+        books*.author*.name == ['Author 1', 'Author 2', 'Author 3']
+    }
+
+    void "Test retrieving an instance does not load pending proxies of the same type"() {
+        given:"Some books with authors"
+        def authors = (1..3).collect { i ->
+            def author = new BatchAuthor(name: "Author $i")
+            author.addToBooks(new BatchBook(title: "Book $i"))
+            author.save()
+        }
+        session.flush()
+        session.clear()
+
+        when:"The books are loaded and one of the authors is retrieved directly"
+        def books = BatchBook.list(sort: 'title')
+        def author = BatchAuthor.get(authors[0].id)
+
+        then:"Only that author is loaded"
+        author.name == 'Author 1'
+        !session.isCached(BatchAuthor, authors[1].id)
+        !session.isCached(BatchAuthor, authors[2].id)
+
+        when:"Another proxy is initialized"
+        def name = books[1].author.name
+
+        then:"The remaining proxies are loaded with it"
+        name == 'Author 2'
+        session.isCached(BatchAuthor, authors[2].id)
+    }
+
+    void "Test initializing a proxy does not flush pending changes"() {
+        given:"Some books with authors"
+        (1..3).each { i ->
+            new BatchAuthor(name: "Author $i").addToBooks(new BatchBook(title: "Book $i")).save()
+        }
+        session.flush()
+        session.clear()
+        AbstractSession abstractSession = (AbstractSession) session
+
+        when:"A change is pending and a proxy is initialized"
+        def books = BatchBook.list(sort: 'title')
+        new BatchPublisher(name: "Pending").save()
+        def name = books[0].author.name
+
+        then:"The batch was loaded without flushing the pending change"
+        name == 'Author 1'
+        !abstractSession.pendingInserts.isEmpty()
+        abstractSession.flushMode == FlushModeType.AUTO
+    }
+
+    void "Test evicted proxies are not batch loaded"() {
+        given:"Some books with authors"
+        def authors = (1..3).collect { i ->
+            new BatchAuthor(name: "Author $i").addToBooks(new BatchBook(title: "Book $i")).save()
+        }
+        session.flush()
+        session.clear()
+
+        when:"A proxy is evicted and another one is initialized"
+        def books = BatchBook.list(sort: 'title')
+        session.clear(books[1].author)
+        def name = books[0].author.name
+
+        then:"The evicted proxy was not loaded with the batch"
+        name == 'Author 1'
+        !session.isCached(BatchAuthor, authors[1].id)
+        session.isCached(BatchAuthor, authors[2].id)
+    }
+
+    void "Test lists are not batch loaded"() {
+        given:"Some shelves with volumes"
+        def shelves = (1..2).collect { i ->
+            def shelf = new BatchShelf(name: "Shelf $i")
+            (1..2).each { j -> shelf.addToVolumes(new BatchVolume(title: "Volume $i-$j")) }
+            shelf.save()
+        }
+        session.flush()
+        session.clear()
+
+        when:"The list of the first shelf is initialized"
+        def loaded = BatchShelf.list(sort: 'name')
+        def titles = loaded[0].volumes*.title
+
+        then:"The volumes of the other shelf are not loaded"
+        titles == ['Volume 1-1', 'Volume 1-2']
+        !shelves[1].volumes.any { session.isCached(BatchVolume, it.id) }
+        loaded[1].volumes*.title == ['Volume 2-1', 'Volume 2-2']
+    }
+
+    @Override
+    List getDomainClasses() {
+        [BatchAuthor, BatchBook, BatchPublisher, BatchEdition, BatchShelf, BatchVolume]
+    }
+}
+
+@Entity
+class BatchAuthor {
+    Long id
+    String name
+    Set books
+    static hasMany = [books: BatchBook]
+    static mapping = {
+        batchSize 10
+        books batchSize: 10
+    }
+}
+
+@Entity
+class BatchBook {
+    Long id
+    String title
+    BatchAuthor author
+    static belongsTo = [author: BatchAuthor]
+}
+
+@Entity
+class BatchPublisher {
+    Long id
+    String name
+    Set editions
+    static hasMany = [editions: BatchEdition]
+}
+
+@Entity
+class BatchEdition {
+    Long id
+    Integer number
+    BatchPublisher publisher
+    static belongsTo = [publisher: BatchPublisher]
+}
+
+@Entity
+class BatchShelf {
+    Long id
+    String name
+    List volumes
+    static hasMany = [volumes: BatchVolume]
+    static mapping = {
+        volumes batchSize: 10
+    }
+}
+
+@Entity
+class BatchVolume {
+    Long id
+    String title
+    BatchShelf shelf
+    static belongsTo = [shelf: BatchShelf]
+}
@@ -0,0 +1,108 @@
+package org.grails.datastore.gorm
+
+import grails.gorm.tests.GormDatastoreSpec
+import grails.gorm.tests.Highway
+import grails.gorm.tests.Person
+import grails.persistence.Entity
+import org.grails.datastore.mapping.core.AbstractSession
+
+import javax.persistence.FlushModeType
+
+class BoundedSessionSpec extends GormDatastoreSpec {
+
+    void "Test that pending inserts are flushed once the auto flush threshold is reached"() {
+        given:"A session with an auto flush threshold"
+        AbstractSession session = (AbstractSession) this.session
+        session.autoFlushThreshold = 10
+
+        when:"More entities than the threshold are persisted"
+        def people = (1..25).collect { new Person(firstName: "Fred$it", lastName: "Flintstone") }
+        session.persist(people)
+
+        then:"Only the last partial batch is still pending"
+        session.pendingInserts.values()*.size().sum() == 5
+
+        when:"The session is flushed"
+        session.flush()
+
+        then:"All entities were saved"
+        session.pendingInserts.isEmpty()
+        Person.count() == 25
+    }
+
+    void "Test that the whole session is flushed when one entity reaches the threshold"() {
+        given:"A session with an auto flush threshold"
+        AbstractSession session = (AbstractSession) this.session
+        session.autoFlushThreshold = 3
+
+        when:"Entities of two types are saved and only one type reaches the threshold"
+        def highways = (1..2).collect { new Highway(name: "Highway $it", bypassed: false).save() }
+        def people = (1..3).collect { new Person(firstName: "Fred$it", lastName: "Flintstone").save() }
+
+        then:"The pending operations of both types were flushed"
+        session.pendingInserts.isEmpty()
+        !people.any { session.isPendingAlready(it) }
+        !highways.any { session.isPendingAlready(it) }
+        Person.count() == 3
+        Highway.count() == 2
+    }
+
+    void "Test that a parent saved before the threshold is reached is flushed with its children"() {
+        given:"A session with an auto flush threshold"
+        AbstractSession session = (AbstractSession) this.session
+        session.autoFlushThreshold = 3
+
+        when:"A parent and enough children referencing it to reach the threshold are saved"
+        def parent = new BoundedParent(name: "Parent").save()
+        (1..3).each { new BoundedChild(name: "Child $it", parent: parent).save() }
+
+        then:"The parent was written in the same flush as its children"
+        session.pendingInserts.isEmpty()
+        !session.isPendingAlready(parent)
+
+        when:"The children are read back"
+        session.clear()
+
+        then:"Each child references the persisted parent"
+        BoundedChild.count() == 3
+        BoundedChild.list().every { it.parent.id == parent.id && it.parent.name == "Parent" }
+    }
+
+    void "Test that the threshold does not flush a session in commit flush mode"() {
+        given:"A session with an auto flush threshold in commit flush mode"
+        AbstractSession session = (AbstractSession) this.session
+        session.autoFlushThreshold = 3
+        session.flushMode = FlushModeType.COMMIT
+
+        when:"More entities than the threshold are saved"
+        (1..5).each { new Person(firstName: "Fred$it", lastName: "Flintstone").save() }
+
+        then:"Nothing was flushed"
+        session.pendingInserts.values()*.size().sum() == 5
+
+        when:"The session is flushed"
+        session.flush()
+
+        then:"All entities were saved"
+        session.pendingInserts.isEmpty()
+        Person.count() == 5
+    }
+
+    @Override
+    List getDomainClasses() {
+        [BoundedParent, BoundedChild]
+    }
+}
+
+@Entity
+class BoundedParent {
+    Long id
+    String name
+}
+
+@Entity
+class BoundedChild {
+    Long id
+    String name
+    BoundedParent parent
+}
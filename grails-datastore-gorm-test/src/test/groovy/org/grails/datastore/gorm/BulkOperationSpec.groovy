@@ -0,0 +1,157 @@
+package org.grails.datastore.gorm
+
+import grails.gorm.DetachedCriteria
+import grails.gorm.tests.GormDatastoreSpec
+import grails.gorm.tests.Person
+import grails.gorm.tests.Pet
+import grails.persistence.Entity
+
+import javax.persistence.FlushModeType
+
+class BulkOperationSpec extends GormDatastoreSpec {
+
+    void "Test updateAll updates matching entities without loading them into the session"() {
+        given:"Some people"
+        (1..5).each { new Person(firstName: "Bart$it", lastName: "Simpson").save() }
+        new Person(firstName: "Fred", lastName: "Flintstone").save(flush: true)
+        session.clear()
+
+        when:"The matching entities are updated in bulk"
+        def total = new DetachedCriteria(Person).build {
+            eq 'lastName', 'Simpson'
+        }.updateAll(lastName: "Bloggs", age: "10")
+
+        then:"The entities were updated without being loaded"
+        total == 5
+        session.firstLevelCacheStatistics.missCount == 0
+        Person.countByLastName("Bloggs") == 5
+        Person.countByLastName("Simpson") == 0
+        Person.findAllByLastName("Bloggs").every { it.age == 10 }
+    }
+
+    void "Test deleteAll removes matching entities and evicts cached instances"() {
+        given:"Some people"
+        def bart = new Person(firstName: "Bart", lastName: "Simpson").save()
+        new Person(firstName: "Lisa", lastName: "Simpson").save()
+        new Person(firstName: "Fred", lastName: "Flintstone").save(flush: true)
+
+        when:"The matching entities are deleted in bulk"
+        def total = new DetachedCriteria(Person).build {
+            eq 'lastName', 'Simpson'
+        }.deleteAll()
+
+        then:"The entities are gone"
+        total == 2
+        !session.contains(bart)
+        Person.get(bart.id) == null
+        Person.count() == 1
+    }
+
+    void "Test pending updates are flushed before a bulk update in commit flush mode"() {
+        given:"A pending update"
+        def bart = new Person(firstName: "Bart", lastName: "Simpson", age: 10).save(flush: true)
+        session.flushMode = FlushModeType.COMMIT
+        bart.age = 11
+        bart.save()
+
+        when:"The entities are updated in bulk and the session is flushed"
+        new DetachedCriteria(Person).build {
+            eq 'lastName', 'Simpson'
+        }.updateAll(age: 12)
+        session.flush()
+        session.clear()
+
+        then:"The pending update does not overwrite the bulk update"
+        Person.get(bart.id).age == 12
+    }
+
+    void "Test matching identifiers are queried in batches"() {
+        given:"Some people"
+        def ids = (1..5).collect { new Person(firstName: "Bart$it", lastName: "Simpson").save(flush: true).id }
+        def criteria = new DetachedCriteria(Person).build {
+            eq 'lastName', 'Simpson'
+        }
+
+        when:"The identifiers are queried in batches of 2"
+        def first = session.listIdentifiers(criteria, null, 2)
+        def second = session.listIdentifiers(criteria, first.last(), 2)
+        def third = session.listIdentifiers(criteria, second.last(), 2)
+
+        then:"Each batch continues after the previous one"
+        first + second + third == ids.sort()
+        third.size() == 1
+    }
+
+    void "Test updateAll stores the identifier of a to-one association"() {
+        given:"Some books and a new author"
+        def author = new BulkAuthor(name: "Stephen King").save()
+        def other = new BulkAuthor(name: "Richard Bachman").save()
+        new BulkBook(title: "It", author: author).save()
+        new BulkBook(title: "Carrie", author: author).save(flush: true)
+        session.clear()
+
+        when:"The association is updated in bulk"
+        def total = new DetachedCriteria(BulkBook).build {
+            eq 'title', 'It'
+        }.updateAll(author: other)
+        def persister = session.getPersister(BulkBook)
+
+        then:"The entry references the author by identifier"
+        total == 1
+        session.firstLevelCacheStatistics.missCount == 0
+        persister.datastore[persister.family].values().find { it.title == "It" }.author == other.id
+
+        when:"The books are read again"
+        session.clear()
+
+        then:"The association resolves to the new author"
+        BulkBook.findByTitle("It").author.name == "Richard Bachman"
+        BulkBook.findByTitle("Carrie").author.name == "Stephen King"
+        BulkBook.findAllByAuthor(BulkAuthor.load(other.id))*.title == ["It"]
+    }
+
+    void "Test updateAll falls back to loading the entities when the association has an inverse collection"() {
+        given:"Some pets and two owners"
+        def homer = new Person(firstName: "Homer", lastName: "Simpson").save()
+        def marge = new Person(firstName: "Marge", lastName: "Simpson").save()
+        def pet = new Pet(name: "Santa's Little Helper", owner: homer).save()
+        homer.addToPets(pet)
+        homer.save(flush: true)
+        session.clear()
+
+        when:"The owner is updated in bulk"
+        def total = new DetachedCriteria(Pet).build {
+            eq 'name', "Santa's Little Helper"
+        }.updateAll(owner: Person.get(marge.id))
+        session.clear()
+
+        then:"The entities were updated through the regular persistence logic"
+        total == 1
+        Pet.get(pet.id).owner.id == marge.id
+        Pet.findAllByOwner(Person.load(marge.id))*.id == [pet.id]
+        Pet.findAllByOwner(Person.load(homer.id)).isEmpty()
+    }
+
+    @Override
+    List getDomainClasses() {
+        [BulkAuthor, BulkBook]
+    }
+}
+
+@Entity
+class BulkAuthor {
+    Long id
+    String name
+}
+
+@Entity
+class BulkBook {
+    Long id
+    String title
+    BulkAuthor author
+
+    static mapping = {
+        title index: true
+        author index: true
+    }
+}
@@ -3,6 +3,7 @@ package org.grails.datastore.gorm
 import grails.gorm.tests.GormDatastoreSpec
 
 import grails.gorm.tests.Person
+import grails.persistence.Entity
 import org.grails.datastore.mapping.dirty.checking.DirtyCheckable
 
 /**
@@ -53,4 +54,44 @@ class DirtyCheckingSpec extends GormDatastoreSpec {
 
 
     }
+
+    void "Test that loading or refreshing an entity does not invoke setters with side effects"() {
+        given:"An entity with a side effecting setter"
+            def album = new AccessorAlbum(title: "Abbey Road").save(flush:true)
+            session.clear()
+
+        when:"The entity is loaded"
+            album = AccessorAlbum.get(album.id)
+
+        then:"The setter was not invoked and the entity has not changed"
+            album instanceof DirtyCheckable
+            album.titleChanges == 0
+            !((DirtyCheckable) album).hasChanged()
+
+        when:"The entity is refreshed"
+            album.refresh()
+
+        then:"The entity has still not changed"
+            album.titleChanges == 0
+            !((DirtyCheckable) album).hasChanged()
+            album.title == "Abbey Road"
+    }
+
+    @Override
+    List getDomainClasses() {
+        [AccessorAlbum]
+    }
+}
+
+@Entity
+class AccessorAlbum {
+    String title
+    int titleChanges
+
+    void setTitle(String title) {
+        titleChanges++
+        this.title = title
+    }
+
+    static transients = ['titleChanges']
 }
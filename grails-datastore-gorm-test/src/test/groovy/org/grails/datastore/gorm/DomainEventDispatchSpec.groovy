@@ -0,0 +1,108 @@
+package org.grails.datastore.gorm
+
+import grails.gorm.tests.GormDatastoreSpec
+import grails.persistence.Entity
+
+/**
+ * Tests that domain event methods are dispatched through the method handles resolved by the domain event listener
+ */
+class DomainEventDispatchSpec extends GormDatastoreSpec {
+
+    void setup() {
+        EventDispatchBook.beforeInsertCalls = 0
+        EventDispatchBook.afterLoadCalls = 0
+    }
+
+    void "Test beforeInsert and afterLoad are dispatched to the entity"() {
+        when:"An entity is saved"
+            def book = new EventDispatchBook(title: "The Stand")
+            book.save(flush:true)
+            session.clear()
+
+        then:"beforeInsert was invoked on the instance"
+            book.id != null
+            book.insertedBy == "beforeInsert"
+            EventDispatchBook.beforeInsertCalls == 1
+
+        when:"The entity is loaded"
+            book = EventDispatchBook.get(book.id)
+
+        then:"afterLoad was invoked on the loaded instance"
+            book.title == "The Stand"
+            book.loaded
+            EventDispatchBook.afterLoadCalls == 1
+    }
+
+    void "Test returning false from a before event handler vetoes the operation"() {
+        when:"beforeInsert returns false"
+            def book = new EventDispatchBook(title: "veto")
+            try {
+                book.save()
+                session.flush()
+            } catch (e) {
+                // the cancelled insert may be reported on flush
+            }
+            session.clear()
+
+        then:"The handler ran and the entity was never saved"
+            EventDispatchBook.beforeInsertCalls == 1
+            !EventDispatchBook.get(book.id)
+            EventDispatchBook.count() == 0
+    }
+
+    void "Test event methods that return nothing do not veto the operation"() {
+        when:"An entity with a void beforeInsert is saved"
+            def review = new EventDispatchReview(text: "Great")
+            review.save(flush:true)
+            session.clear()
+
+        then:"The entity was saved"
+            review.stamped
+            EventDispatchReview.get(review.id).text == "Great"
+    }
+
+    @Override
+    List getDomainClasses() {
+        [EventDispatchBook, EventDispatchReview]
+    }
+}
+
+@Entity
+class EventDispatchBook {
+    static int beforeInsertCalls
+    static int afterLoadCalls
+
+    Long id
+    String title
+    String insertedBy
+    boolean loaded
+
+    static transients = ['loaded']
+
+    def beforeInsert() {
+        beforeInsertCalls++
+        if (title == "veto") {
+            return false
+        }
+        insertedBy = "beforeInsert"
+        return true
+    }
+
+    void afterLoad() {
+        afterLoadCalls++
+        loaded = true
+    }
+}
+
+@Entity
+class EventDispatchReview {
+    Long id
+    String text
+    boolean stamped
+
+    static transients = ['stamped']
+
+    void beforeInsert() {
+        stamped = true
+    }
+}
@@ -0,0 +1,98 @@
+package org.grails.datastore.gorm
+
+import grails.gorm.tests.GormDatastoreSpec
+import grails.gorm.tests.Person
+import org.grails.datastore.gorm.finders.DynamicFinderDispatcher
+import org.grails.datastore.gorm.finders.FinderMethod
+
+class DynamicFinderDispatchSpec extends GormDatastoreSpec {
+
+    void "Test dynamic finders are dispatched through the cache without registering metaclass methods"() {
+        given:"Some people"
+        new Person(firstName: "Bart", lastName: "Simpson", age: 10).save()
+        new Person(firstName: "Lisa", lastName: "Simpson", age: 8).save()
+        new Person(firstName: "Fred", lastName: "Flintstone", age: 40).save(flush: true)
+        session.clear()
+        def dispatcher = GormEnhancer.findStaticApi(Person).finderDispatcher
+
+        when:"The same finder is invoked with different arguments"
+        def bart = Person.findByFirstNameAndLastName("Bart", "Simpson")
+        def lisa = Person.findByFirstNameAndLastName("Lisa", "Simpson")
+        def none = Person.findByFirstNameAndLastName("Fred", "Simpson")
+
+        then:"Each invocation uses its own arguments"
+        bart.firstName == "Bart"
+        lisa.firstName == "Lisa"
+        none == null
+
+        and:"The method is parsed once and not registered on the metaclass"
+        dispatcher.isFinderMethod("findByFirstNameAndLastName")
+        Person.metaClass.getStaticMetaMethod("findByFirstNameAndLastName", [String, String] as Class[]) == null
+
+        when:"A finder is called with a null argument or with query arguments"
+        def nullNames = Person.findAllByFirstName(null)
+        def ordered = Person.findAllByLastName("Simpson", [sort: "age"])
+
+        then:"The template creates a fresh invocation for every call"
+        nullNames.isEmpty()
+        ordered*.firstName == ["Lisa", "Bart"]
+
+        when:"A finder is called with too few arguments"
+        Person.findByFirstNameAndLastName("Bart")
+
+        then:"A missing method exception is thrown"
+        thrown MissingMethodException
+    }
+
+    void "Test a finder called with an Object array receives the elements of the array as its arguments"() {
+        given:"Some people"
+        new Person(firstName: "Bart", lastName: "Simpson", age: 10).save()
+        new Person(firstName: "Lisa", lastName: "Simpson", age: 8).save(flush: true)
+        session.clear()
+
+        when:"A finder is called with the arguments in an Object array"
+        Object[] arguments = ["Bart", "Simpson"] as Object[]
+        def first = Person.findByFirstNameAndLastName(arguments)
+        def second = Person.findByFirstNameAndLastName(arguments)
+
+        then:"The elements are used as the arguments of each call"
+        first.firstName == "Bart"
+        second.firstName == "Bart"
+
+        when:"A finder is called with an array of another type"
+        def people = Person.findAllByFirstNameInList(["Bart", "Lisa"] as String[])
+
+        then:"The array is a single argument"
+        people*.firstName.sort() == ["Bart", "Lisa"]
+    }
+
+    void "Test calls are handed to the finder so that datastore specific finders can override the invocation"() {
+        given:"A dispatcher with a finder that overrides invoke"
+        FinderMethod finder = Mock(FinderMethod)
+        def dispatcher = new DynamicFinderDispatcher(Person, [finder])
+
+        when:"The finder is invoked twice"
+        def first = dispatcher.invoke("findByCustom", ["a"] as Object[])
+        def second = dispatcher.invoke("findByCustom", ["b"] as Object[])
+
+        then:"The finder is matched once and each call is handed to its invoke method"
+        1 * finder.isMethodMatch("findByCustom") >> true
+        1 * finder.invoke(Person, "findByCustom", ["a"] as Object[]) >> "first"
+        1 * finder.invoke(Person, "findByCustom", ["b"] as Object[]) >> "second"
+        first == "first"
+        second == "second"
+        dispatcher.size() == 1
+    }
+
+    void "Test the arguments passed to methodMissing are resolved like the finder methods registered on the metaclass"() {
+        expect:
+        DynamicFinderDispatcher.resolveArguments(null) == [null] as Object[]
+        DynamicFinderDispatcher.resolveArguments(["a", "b"] as Object[]) == ["a", "b"] as Object[]
+        DynamicFinderDispatcher.resolveArguments([["a", "b"] as Object[]] as Object[]) == ["a", "b"] as Object[]
+        DynamicFinderDispatcher.resolveArguments([[["a", "b"] as String[]] as Object[]] as Object[]) == ["a", "b"] as Object[]
+
+        and:"Arrays of other types stay a single argument"
+        def typed = ["a", "b"] as String[]
+        DynamicFinderDispatcher.resolveArguments([typed] as Object[])[0].is(typed)
+    }
+}
@@ -0,0 +1,82 @@
+package org.grails.datastore.gorm
+
+import grails.gorm.tests.GormDatastoreSpec
+import grails.gorm.tests.Highway
+import grails.gorm.tests.Person
+import org.grails.datastore.mapping.core.AbstractSession
+import org.grails.datastore.mapping.core.DatastoreUtils
+
+class FirstLevelCacheSpec extends GormDatastoreSpec {
+
+    AbstractSession boundedSession
+
+    void "Test that the first level cache is bounded when a limit is configured"() {
+        given:"A session opened with a bounded first level cache"
+        AbstractSession session = openBoundedSession(10, -1)
+
+        when:"More entities than the limit are saved and flushed"
+        (1..25).each { new Person(firstName: "Fred$it", lastName: "Flintstone").save(flush: true) }
+
+        then:"The cache stays within the limit"
+        session.firstLevelCacheStatistics.size <= 10
+        session.firstLevelCacheStatistics.evictionCount >= 15
+
+        when:"An evicted entity is retrieved"
+        session.clear()
+        def fred = Person.findByFirstName("Fred1")
+
+        then:"It is loaded from the datastore"
+        fred != null
+        fred.lastName == "Flintstone"
+    }
+
+    void "Test that instances pending an update are not evicted"() {
+        given:"A session opened with a bounded first level cache and a saved entity"
+        AbstractSession session = openBoundedSession(2, -1)
+        def fred = new Person(firstName: "Fred", lastName: "Flintstone").save(flush: true)
+
+        when:"The entity is updated and more entities than the limit are saved without flushing"
+        fred.lastName = "Rubble"
+        fred.save()
+        (1..5).each { new Person(firstName: "Barney$it", lastName: "Rubble").save() }
+
+        then:"The entity pending an update is still cached"
+        session.isCached(Person, fred.id)
+    }
+
+    void "Test that instances of other types are evicted when the largest cache is pinned"() {
+        given:"A session with a limit across all types and some saved highways"
+        AbstractSession session = openBoundedSession(-1, 4)
+        def highways = (1..3).collect { new Highway(name: "Highway $it", bypassed: false).save(flush: true) }
+
+        when:"More people than the limit are saved without flushing"
+        (1..4).each { new Person(firstName: "Fred$it", lastName: "Flintstone").save() }
+
+        then:"The highways were evicted since the pending people cannot be"
+        !highways.any { session.isCached(Highway, it.id) }
+        session.firstLevelCacheStatistics.size == 4
+        session.firstLevelCacheStatistics.evictionCount == 3
+    }
+
+    void "Test the hit rate is zero before any lookup"() {
+        expect:
+        openBoundedSession(10, -1).firstLevelCacheStatistics.hitRate == 0d
+    }
+
+    def cleanup() {
+        if (boundedSession != null) {
+            DatastoreUtils.unbindSession(boundedSession)
+            boundedSession.disconnect()
+            DatastoreUtils.bindSession(session)
+        }
+    }
+
+    private AbstractSession openBoundedSession(int maxCachedInstancesPerEntity, int maxCachedInstances) {
+        DatastoreUtils.unbindSession(session)
+        boundedSession = (AbstractSession) session.datastore.connect()
+        boundedSession.maxCachedInstancesPerEntity = maxCachedInstancesPerEntity
+        boundedSession.maxCachedInstances = maxCachedInstances
+        DatastoreUtils.bindSession(boundedSession)
+        return boundedSession
+    }
+}
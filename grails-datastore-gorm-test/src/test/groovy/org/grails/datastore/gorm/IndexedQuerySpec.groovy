@@ -0,0 +1,85 @@
+package org.grails.datastore.gorm
+
+import grails.gorm.DetachedCriteria
+import grails.gorm.tests.GormDatastoreSpec
+import grails.gorm.tests.Person
+import org.grails.datastore.mapping.query.Query
+import org.grails.datastore.mapping.query.Restrictions
+import org.grails.datastore.mapping.simple.engine.SimpleMapEntityPersister
+import org.grails.datastore.mapping.simple.query.SimpleMapQueryPlanner
+
+class IndexedQuerySpec extends GormDatastoreSpec {
+
+    void "Test the planner uses the hash index for equality and the sorted index for ranges"() {
+        given:"Some people"
+        createPeople()
+        def entity = session.mappingContext.getPersistentEntity(Person.name)
+        SimpleMapEntityPersister persister = (SimpleMapEntityPersister) session.getPersister(Person)
+        def planner = new SimpleMapQueryPlanner(entity, persister, session.backingMap[Person.name])
+
+        when:"An equality criterion is planned"
+        def plan = planner.plan([Restrictions.eq('lastName', 'Flintstone'), Restrictions.gt('age', 5)])
+
+        then:"The hash index is used and the range is matched"
+        plan.toString().contains('hash index')
+        plan.unplannedCriteria.isEmpty()
+        plan.execute().size() == 1
+
+        when:"A range criterion is planned"
+        plan = planner.plan([new Query.Between('age', 8, 10)])
+
+        then:"The sorted index is used"
+        plan.toString().contains('range')
+        plan.execute().size() == 2
+    }
+
+    void "Test range, in and like queries return entities in insertion order"() {
+        given:"Some people"
+        createPeople()
+
+        expect:
+        Person.findAllByAgeGreaterThan(7)*.firstName == ['Bart', 'Lisa', 'Fred']
+        Person.findAllByAgeBetween(8, 10)*.firstName == ['Bart', 'Lisa']
+        Person.findAllByAgeLessThanEquals(8)*.firstName == ['Lisa', 'Maggie']
+        Person.findAllByFirstNameInList(['Fred', 'Bart'])*.firstName == ['Bart', 'Fred']
+        Person.findAllByFirstNameLike('%a%')*.firstName == ['Bart', 'Lisa', 'Maggie']
+        Person.findAllByFirstNameIlike('b%')*.firstName == ['Bart']
+        Person.findAllByLastNameAndAgeGreaterThan('Simpson', 1)*.firstName == ['Bart', 'Lisa']
+    }
+
+    void "Test ordering by several properties"() {
+        given:"Some people"
+        createPeople()
+
+        when:
+        def people = new DetachedCriteria(Person).build {
+            order 'lastName', 'desc'
+            order 'age', 'asc'
+        }.list()
+
+        then:
+        people*.firstName == ['Maggie', 'Lisa', 'Bart', 'Fred']
+    }
+
+    void "Test deleted entities are removed from the indices"() {
+        given:"Some people"
+        createPeople()
+
+        when:"A person is deleted"
+        Person.findByFirstName('Bart').delete(flush: true)
+        session.clear()
+
+        then:"The person is no longer found through the indices"
+        Person.findAllByAgeGreaterThan(7)*.firstName == ['Lisa', 'Fred']
+        Person.findByFirstName('Bart') == null
+        Person.countByLastName('Simpson') == 2
+    }
+
+    private void createPeople() {
+        new Person(firstName: "Bart", lastName: "Simpson", age: 10).save()
+        new Person(firstName: "Lisa", lastName: "Simpson", age: 8).save()
+        new Person(firstName: "Maggie", lastName: "Simpson", age: 1).save()
+        new Person(firstName: "Fred", lastName: "Flintstone", age: 40).save(flush: true)
+        session.clear()
+    }
+}
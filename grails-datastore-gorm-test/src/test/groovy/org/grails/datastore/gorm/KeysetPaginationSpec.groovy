@@ -0,0 +1,81 @@
+package org.grails.datastore.gorm
+
+import grails.gorm.DetachedCriteria
+import grails.gorm.KeysetPagedResultList
+import grails.gorm.tests.GormDatastoreSpec
+import grails.gorm.tests.Person
+
+class KeysetPaginationSpec extends GormDatastoreSpec {
+
+    void "Test keyset pagination walks every page using continuation tokens"() {
+        given:"Some people with duplicate sort keys"
+        [3, 1, 2, 2, 5, 4, 2].eachWithIndex { age, i -> new Person(firstName: "Bart$i", lastName: "Simpson", age: age).save() }
+        session.flush()
+        session.clear()
+
+        when:"The pages are listed one after another"
+        def ages = []
+        def pages = 0
+        KeysetPagedResultList page = Person.list(max: 3, sort: 'age', keyset: true)
+        while (true) {
+            pages++
+            ages.addAll(page*.age)
+            if (!page.hasNextPage()) break
+            page = Person.list(max: 3, sort: 'age', after: page.continuationToken)
+        }
+
+        then:"Every result is returned exactly once in order"
+        ages == [1, 2, 2, 2, 3, 4, 5]
+        pages == 3
+    }
+
+    void "Test keyset pagination with a descending sort and criteria"() {
+        given:"Some people"
+        (1..5).each { new Person(firstName: "Bart$it", lastName: "Simpson", age: it).save() }
+        new Person(firstName: "Fred", lastName: "Flintstone", age: 10).save(flush: true)
+        session.clear()
+
+        when:"The first page is listed"
+        def criteria = new DetachedCriteria(Person).build { eq 'lastName', 'Simpson' }
+        KeysetPagedResultList first = criteria.list(max: 2, sort: 'age', order: 'desc', keyset: true)
+
+        then:"The first page is returned with a token"
+        first*.age == [5, 4]
+        first.hasNextPage()
+        first.totalCount == 5
+
+        when:"The next page is listed"
+        KeysetPagedResultList second = criteria.list(max: 2, sort: 'age', order: 'desc', after: first.continuationToken)
+
+        then:"The page continues after the last seen result"
+        second*.age == [3, 2]
+    }
+
+    void "Test keyset pagination from raw sort key values"() {
+        given:"Some people"
+        (1..5).each { new Person(firstName: "Bart$it", lastName: "Simpson", age: it).save() }
+        session.flush()
+        session.clear()
+
+        when:"The page after a known sort key is listed"
+        KeysetPagedResultList page = Person.list(max: 10, sort: 'age', after: [2])
+
+        then:"Only later results are returned and there is no further page"
+        page*.age == [3, 4, 5]
+        !page.hasNextPage()
+        page.continuationToken == null
+    }
+
+    void "Test a continuation token cannot be used with a different sort"() {
+        given:"Some people"
+        (1..3).each { new Person(firstName: "Bart$it", lastName: "Simpson", age: it).save() }
+        session.flush()
+
+        when:"A token is used with another sort"
+        KeysetPagedResultList page = Person.list(max: 1, sort: 'age', keyset: true)
+        Person.list(max: 1, sort: 'firstName', after: page.continuationToken)
+
+        then:"An exception is thrown"
+        thrown(IllegalArgumentException)
+    }
+}
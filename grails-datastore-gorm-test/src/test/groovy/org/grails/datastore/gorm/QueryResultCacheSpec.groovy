@@ -0,0 +1,116 @@
+package org.grails.datastore.gorm
+
+import grails.gorm.tests.GormDatastoreSpec
+import grails.gorm.tests.Person
+import grails.gorm.tests.Pet
+import org.grails.datastore.mapping.core.connections.ConnectionSourceSettings
+import org.grails.datastore.mapping.query.cache.QueryResultCache
+
+class QueryResultCacheSpec extends GormDatastoreSpec {
+
+    void setup() {
+        def settings = new ConnectionSourceSettings()
+        settings.queryCache.enabled = true
+        session.datastore.initializeQueryResultCache(settings)
+    }
+
+    QueryResultCache getQueryResultCache() {
+        session.datastore.queryResultCache
+    }
+
+    void "Test the query result cache is disabled by default"() {
+        expect:
+        !new ConnectionSourceSettings().queryCache.enabled
+    }
+
+    void "Test modifying a date parameter after a cached query does not change its cached key"() {
+        given:"A date parameter"
+        def date = new Date(0)
+        def hits = queryResultCache.hitCount
+
+        when:"A cached query is executed and the date is modified afterwards"
+        Pet.createCriteria().list { gt 'birthDate', date; cache true }
+        date.time = 1000
+        Pet.createCriteria().list { gt 'birthDate', new Date(1000); cache true }
+
+        then:"A query with the modified date is not served from the cached result"
+        queryResultCache.hitCount == hits
+
+        when:"The query with the original date is executed again"
+        Pet.createCriteria().list { gt 'birthDate', new Date(0); cache true }
+
+        then:"It is served from the cache"
+        queryResultCache.hitCount == hits + 1
+    }
+
+    void "Test cached queries are served from the query result cache"() {
+        given:"Some people"
+        new Person(firstName: "Bart", lastName: "Simpson").save()
+        new Person(firstName: "Lisa", lastName: "Simpson").save()
+        new Person(firstName: "Fred", lastName: "Flintstone").save(flush: true)
+        session.clear()
+        def hits = queryResultCache.hitCount
+
+        when:"The same query is executed twice"
+        def first = Person.findAllByLastName("Simpson", [cache: true, sort: 'firstName'])
+        def second = Person.findAllByLastName("Simpson", [cache: true, sort: 'firstName'])
+
+        then:"The second query is a cache hit returning the same instances"
+        first*.firstName == ["Bart", "Lisa"]
+        second*.firstName == ["Bart", "Lisa"]
+        second[0].is(first[0])
+        queryResultCache.hitCount == hits + 1
+    }
+
+    void "Test cached projections are served from the query result cache"() {
+        given:"Some people"
+        new Person(firstName: "Bart", lastName: "Simpson").save()
+        new Person(firstName: "Lisa", lastName: "Simpson").save(flush: true)
+        def hits = queryResultCache.hitCount
+
+        when:"The same projection is executed twice"
+        def query = { Person.createCriteria().get { eq 'lastName', 'Simpson'; projections { count() }; cache true } }
+        def first = query()
+        def second = query()
+
+        then:"The second query is a cache hit"
+        first == 2
+        second == 2
+        queryResultCache.hitCount == hits + 1
+    }
+
+    void "Test writes to an entity invalidate the cached results"() {
+        given:"A cached query"
+        new Person(firstName: "Bart", lastName: "Simpson").save(flush: true)
+        Person.findAllByLastName("Simpson", [cache: true])
+        def hits = queryResultCache.hitCount
+
+        when:"An instance is inserted"
+        new Person(firstName: "Lisa", lastName: "Simpson").save(flush: true)
+        def results = Person.findAllByLastName("Simpson", [cache: true])
+
+        then:"The query is executed again"
+        results.size() == 2
+        queryResultCache.hitCount == hits
+
+        when:"An instance is deleted"
+        results[0].delete(flush: true)
+        results = Person.findAllByLastName("Simpson", [cache: true])
+
+        then:"The query is executed again"
+        results.size() == 1
+        queryResultCache.hitCount == hits
+    }
+
+    void "Test queries that do not enable caching bypass the cache"() {
+        given:"Some people"
+        new Person(firstName: "Bart", lastName: "Simpson").save(flush: true)
+        def misses = queryResultCache.missCount
+
+        when:"A query is executed without caching"
+        Person.findAllByLastName("Simpson")
+
+        then:"The cache was not consulted"
+        queryResultCache.missCount == misses
+    }
+}
@@ -0,0 +1,140 @@
+package org.grails.datastore.gorm
+
+import grails.gorm.DetachedCriteria
+import grails.gorm.tests.GormDatastoreSpec
+import grails.gorm.tests.Person
+import org.grails.datastore.mapping.core.DatastoreUtils
+import org.grails.datastore.mapping.query.PagedResultStream
+import org.grails.datastore.mapping.query.Query
+import org.grails.datastore.mapping.query.ResultStream
+
+class StreamingQuerySpec extends GormDatastoreSpec {
+
+    void "Test stream returns matching entities incrementally"() {
+        given:"Some people"
+        def ids = (1..5).collect { new Person(firstName: "Bart$it", lastName: "Simpson", age: it).save().id }
+        new Person(firstName: "Fred", lastName: "Flintstone").save(flush: true)
+        session.clear()
+
+        when:"The matching entities are streamed"
+        ResultStream stream = new DetachedCriteria(Person).build {
+            eq 'lastName', 'Simpson'
+        }.stream()
+
+        then:"Nothing is loaded until the stream is consumed"
+        !ids.any { session.isCached(Person, it) }
+
+        when:"The first result is read"
+        def first = stream.next()
+
+        then:"Only that entity is loaded"
+        ids.findAll { session.isCached(Person, it) } == [first.id]
+
+        when:"The rest of the stream is consumed"
+        def names = [first.firstName] + stream.collect { it.firstName }
+
+        then:"All matching entities are returned"
+        names.sort() == (1..5).collect { "Bart$it" }
+        stream.isClosed()
+    }
+
+    void "Test a stream created without a session owns a session until it is closed"() {
+        given:"Some people"
+        (1..3).each { new Person(firstName: "Bart$it", lastName: "Simpson").save() }
+        session.flush()
+        DatastoreUtils.unbindSession(session)
+
+        when:"The entities are streamed outside of a session"
+        ResultStream stream = new DetachedCriteria(Person).build {
+            eq 'lastName', 'Simpson'
+        }.stream()
+        def results = stream.collect()
+
+        then:"The stream can be consumed after it has been returned"
+        results.size() == 3
+        stream.isClosed()
+
+        cleanup:
+        DatastoreUtils.bindSession(session)
+    }
+
+    void "Test paged streaming without an order returns every entity once"() {
+        given:"Some people"
+        def ids = (1..5).collect { new Person(firstName: "Bart$it", lastName: "Simpson").save().id }
+        session.flush()
+        session.clear()
+
+        when:"The entities are streamed in pages"
+        def stream = session.createQuery(Person).eq('lastName', 'Simpson').fetchSize(2).stream()
+
+        then:"No entity is skipped or repeated across pages"
+        stream.collect { it.id }.sort() == ids.sort()
+    }
+
+    void "Test stream honours max and offset"() {
+        given:"Some people"
+        (1..5).each { new Person(firstName: "Bart$it", lastName: "Simpson").save() }
+        session.flush()
+        session.clear()
+
+        when:"A range of entities is streamed"
+        def stream = session.createQuery(Person).eq('lastName', 'Simpson').offset(1).max(3).stream()
+        def results = stream.collect()
+
+        then:"Only the range is returned"
+        results.size() == 3
+    }
+
+    void "Test detached streaming does not grow the session"() {
+        given:"Some people"
+        (1..5).each { new Person(firstName: "Bart$it", lastName: "Simpson").save() }
+        session.flush()
+        session.clear()
+
+        when:"The entities are streamed in detached mode"
+        def stream = new DetachedCriteria(Person).build {
+            eq 'lastName', 'Simpson'
+        }.stream(detach: true, fetchSize: 2)
+        def results = stream.collect()
+
+        then:"The entities are not kept in the session"
+        results.size() == 5
+        results.every { !session.contains(it) }
+    }
+
+    void "Test paged streaming with a fetch size honours max"() {
+        given:"Some people"
+        (1..5).each { new Person(firstName: "Bart$it", lastName: "Simpson", age: it).save() }
+        session.flush()
+        session.clear()
+
+        when:"A sorted query is streamed in pages"
+        def stream = session.createQuery(Person)
+                            .eq('lastName', 'Simpson')
+                            .order(org.grails.datastore.mapping.query.Query.Order.asc('age'))
+                            .max(3)
+                            .fetchSize(2)
+                            .stream()
+
+        then:"The pages are stitched together in order"
+        stream.collect { it.age } == [1, 2, 3]
+    }
+
+    void "Test paged streaming does not add an order to the query"() {
+        given:"Some people and a query ordered by age"
+        (1..5).each { new Person(firstName: "Bart$it", lastName: "Simpson", age: 6 - it).save() }
+        session.flush()
+        session.clear()
+        def query = session.createQuery(Person)
+                           .eq('lastName', 'Simpson')
+                           .order(Query.Order.asc('age'))
+
+        when:"The query is streamed in pages"
+        def stream = new PagedResultStream(query, 2, false)
+        def ages = stream.collect { it.age }
+
+        then:"The pages are ordered and the query keeps its own orders"
+        ages == [1, 2, 3, 4, 5]
+        query.orderBy*.property == ['age']
+    }
+}
@@ -2,7 +2,10 @@ package grails.gorm.validation
 
 import groovy.transform.CompileDynamic
 import groovy.transform.CompileStatic
+import org.grails.datastore.gorm.validation.constraints.AbstractConstraint
 import org.grails.datastore.gorm.validation.constraints.eval.ConstraintsEvaluator
+import org.grails.datastore.mapping.dirty.checking.DirtyCheckable
+import org.grails.datastore.mapping.dirty.checking.DirtyCheckingSupport
 import org.grails.datastore.mapping.model.MappingContext
 import org.grails.datastore.mapping.model.PersistentEntity
 import org.grails.datastore.mapping.model.PersistentProperty
@@ -39,6 +42,8 @@ class PersistentEntityValidator implements CascadingValidator, ConstrainedEntity
 
     protected final ProxyHandler proxyHandler
 
+    private volatile ValidationStep[] validationPlan
+
     PersistentEntityValidator(PersistentEntity entity, MessageSource messageSource, ConstraintsEvaluator constraintsEvaluator) {
         this.entity = entity
         this.messageSource = messageSource
@@ -60,36 +65,65 @@ class PersistentEntityValidator implements CascadingValidator, ConstrainedEntity
             throw new IllegalArgumentException("Argument [$obj] is not an instance of [$targetClass] which this validator is configured for")
         }
 
+        ValidationStep[] plan = getValidationPlan()
+        for(int i = 0; i < plan.length; i++) {
+            ValidationStep step = plan[i]
+            if(step.constrainedProperty != null) {
+                validateStep(obj, errors, step)
+            }
 
-        Map<String, ConstrainedProperty> constrainedProperties = this.constrainedProperties
-        Set<String> constrainedPropertyNames = new HashSet<>(constrainedProperties.keySet())
-
-        for(PersistentProperty pp in entity.persistentProperties) {
-            def propertyName = pp.name
-
-            ConstrainedProperty constrainedProperty = constrainedProperties.get(propertyName)
-
-            if(constrainedProperty != null) {
-                validatePropertyWithConstraint(obj, propertyName, entityReflector, errors, constrainedProperty, pp)
+            if(cascade && step.association != null) {
+                cascadeToAssociativeProperty(obj, errors, entityReflector, step.association, new HashSet())
             }
+        }
+    }
 
-            if(pp instanceof Association) {
-                Association association = (Association)pp
-                if(cascade) {
-                    cascadeToAssociativeProperty(obj, errors, entityReflector, association, new HashSet())
+    /**
+     * @return The validation plan, built on first use from the persistent properties followed by any remaining constrained properties
+     */
+    protected ValidationStep[] getValidationPlan() {
+        ValidationStep[] plan = this.validationPlan
+        if(plan == null) {
+            List<ValidationStep> steps = []
+            Set<String> constrainedPropertyNames = new LinkedHashSet<>(constrainedProperties.keySet())
+            for(PersistentProperty pp in entity.persistentProperties) {
+                String propertyName = pp.name
+                ConstrainedProperty constrainedProperty = constrainedProperties.get(propertyName)
+                Association association = pp instanceof Association ? (Association) pp : null
+                if(constrainedProperty != null || association != null) {
+                    steps.add(new ValidationStep(propertyName, entityReflector.getPropertyReader(propertyName), constrainedProperty, association))
                 }
+                constrainedPropertyNames.remove(propertyName)
             }
+            for(String remainingProperty in constrainedPropertyNames) {
+                steps.add(new ValidationStep(remainingProperty, null, constrainedProperties.get(remainingProperty), null))
+            }
+            plan = steps.toArray(new ValidationStep[steps.size()])
+            this.validationPlan = plan
+        }
+        return plan
+    }
 
-            constrainedPropertyNames.remove(propertyName)
+    private void validateStep(Object obj, Errors errors, ValidationStep step) {
+        if(errors.getFieldError(step.propertyName) != null) {
+            return
         }
 
-        for(String remainingProperty in constrainedPropertyNames) {
-            ConstrainedProperty constrainedProperty = constrainedProperties.get(remainingProperty)
-            if(remainingProperty != null) {
-                validatePropertyWithConstraint(obj, remainingProperty, entityReflector, errors, constrainedProperty, null)
-            }
+        Object value
+        if(step.reader != null) {
+            value = step.reader.read(obj)
+        }
+        else if(obj instanceof GroovyObject) {
+            value = ((GroovyObject)obj).getProperty(step.propertyName)
+        }
+        else {
+            return
         }
 
+        if(value == null && step.acceptsNull) {
+            return
+        }
+        step.constrainedProperty.validate(obj, value, errors)
     }
 
     /**
@@ -196,6 +230,9 @@ class PersistentEntityValidator implements CascadingValidator, ConstrainedEntity
             return
         }
 
+        // the constraints of an unchanged instance were already validated, but its associations may have changed deeper in the graph
+        boolean unchanged = isUnchanged(associatedEntity, associatedObject)
+
         MappingContext mappingContext = associatedEntity.getMappingContext()
         EntityReflector associatedReflector = mappingContext.getEntityReflector(associatedEntity)
 
@@ -231,7 +268,7 @@ class PersistentEntityValidator implements CascadingValidator, ConstrainedEntity
 
 
                 String associatedPropertyName = associatedPersistentProperty.getName()
-                if (associatedConstrainedProperties.containsKey(associatedPropertyName)) {
+                if (!unchanged && associatedConstrainedProperties.containsKey(associatedPropertyName)) {
 
                     ConstrainedProperty associatedConstrainedProperty = associatedConstrainedProperties.get(associatedPropertyName)
                     validatePropertyWithConstraint(associatedObject, errors.getNestedPath() + associatedPropertyName, associatedReflector, errors, associatedConstrainedProperty, associatedPersistentProperty)
@@ -263,6 +300,18 @@ class PersistentEntityValidator implements CascadingValidator, ConstrainedEntity
         }
     }
 
+    /**
+     * Whether the given associated instance is a previously validated, persisted instance with no changes, in which case
+     * its own constraints do not need to be validated again. Validation is still cascaded to its associations
+     */
+    protected boolean isUnchanged(PersistentEntity associatedEntity, Object associatedObject) {
+        if(associatedObject instanceof DirtyCheckable) {
+            return !((DirtyCheckable)associatedObject).hasChanged() &&
+                    !DirtyCheckingSupport.areAssociationsDirty(associatedEntity, associatedObject)
+        }
+        return false
+    }
+
     private String buildNestedPath(String nestedPath, String componentName, Object indexOrKey) {
         if (indexOrKey == null) {
             // Component is neither part of a Collection nor Map.
@@ -306,4 +355,36 @@ class PersistentEntityValidator implements CascadingValidator, ConstrainedEntity
     boolean supports(Class<?> clazz) {
         return targetClass.is(clazz)
     }
+
+    /**
+     * A single property to validate and/or cascade validation to
+     */
+    @CompileStatic
+    protected static class ValidationStep {
+        final String propertyName
+        final EntityReflector.PropertyReader reader
+        final ConstrainedProperty constrainedProperty
+        final Association association
+        /**
+         * Whether every applied constraint accepts a null value, in which case null values are not validated
+         */
+        final boolean acceptsNull
+
+        ValidationStep(String propertyName, EntityReflector.PropertyReader reader, ConstrainedProperty constrainedProperty, Association association) {
+            this.propertyName = propertyName
+            this.reader = reader
+            this.constrainedProperty = constrainedProperty
+            this.association = association
+            this.acceptsNull = constrainedProperty != null && acceptsNullValues(constrainedProperty)
+        }
+
+        private static boolean acceptsNullValues(ConstrainedProperty constrainedProperty) {
+            for(Constraint constraint in constrainedProperty.appliedConstraints) {
+                if(!(constraint instanceof AbstractConstraint) || !((AbstractConstraint)constraint).acceptsNullValues()) {
+                    return false
+                }
+            }
+            return true
+        }
+    }
 }
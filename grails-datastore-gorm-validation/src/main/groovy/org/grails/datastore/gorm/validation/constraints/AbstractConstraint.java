@@ -93,6 +93,13 @@ public abstract class AbstractConstraint implements Constraint {
         return true;
     }
 
+    /**
+     * @return Whether this constraint can never reject a null value, allowing validation of null values to be skipped
+     */
+    public boolean acceptsNullValues() {
+        return skipNullValues();
+    }
+
     protected boolean skipBlankValues() {
         // Most constraints ignore blank values, leaving it to the explicit "blank" constraint.
         return true;
@@ -52,6 +52,11 @@ public class NullableConstraint extends AbstractVetoingConstraint {
         return false;
     }
 
+    @Override
+    public boolean acceptsNullValues() {
+        return nullable;
+    }
+
     @Override
     protected boolean processValidateWithVetoing(Object target, Object propertyValue, Errors errors) {
         if (propertyValue == null) {
@@ -0,0 +1,122 @@
+package grails.gorm.validation
+
+import org.grails.datastore.gorm.validation.constraints.registry.DefaultValidatorRegistry
+import org.grails.datastore.mapping.core.connections.ConnectionSourceSettings
+import org.grails.datastore.mapping.dirty.checking.DirtyCheckable
+import org.grails.datastore.mapping.keyvalue.mapping.config.KeyValueMappingContext
+import org.grails.datastore.mapping.model.MappingContext
+import org.grails.datastore.mapping.validation.ValidationErrors
+import spock.lang.Specification
+
+import javax.persistence.Entity
+
+/**
+ * Tests for {@link PersistentEntityValidator}
+ */
+class PersistentEntityValidatorSpec extends Specification {
+
+    PersistentEntityValidator validator
+
+    void setup() {
+        MappingContext mappingContext = new KeyValueMappingContext("test")
+        def entity = mappingContext.addPersistentEntity(Person)
+        validator = (PersistentEntityValidator) new DefaultValidatorRegistry(mappingContext, new ConnectionSourceSettings()).getValidator(entity)
+    }
+
+    void "test the validation plan contains the persistent and remaining constrained properties"() {
+        when:
+        def plan = validator.validationPlan
+
+        then:
+        plan.length == validator.constrainedProperties.size()
+        plan*.propertyName as Set == validator.constrainedProperties.keySet()
+        validator.validationPlan.is(plan)
+    }
+
+    void "test null values are only skipped when every constraint accepts them"() {
+        when:
+        def plan = validator.validationPlan.collectEntries { [(it.propertyName): it.acceptsNull] }
+
+        then:
+        plan.description
+        plan.country
+        !plan.town
+        !plan.age
+    }
+
+    void "test validation results are unchanged for null values"() {
+        given:
+        def person = new Person(town: "London", age: 10)
+        def errors = new ValidationErrors(person, Person.simpleName)
+
+        when:
+        validator.validate(person, errors)
+
+        then:
+        !errors.hasErrors()
+
+        when:
+        person = new Person(description: "not a url")
+        errors = new ValidationErrors(person, Person.simpleName)
+        validator.validate(person, errors)
+
+        then:
+        errors.getFieldError('town')
+        errors.getFieldError('age')
+        errors.getFieldError('description')
+        !errors.getFieldError('country')
+    }
+
+    void "test validation cascades through unchanged instances to changed instances deeper in the graph"() {
+        given:
+        MappingContext mappingContext = new KeyValueMappingContext("test")
+        def entity = mappingContext.addPersistentEntity(GraphRoot)
+        mappingContext.addPersistentEntity(GraphParent)
+        mappingContext.addPersistentEntity(GraphChild)
+        mappingContext.addPersistentEntity(GraphLeaf)
+        def registry = new DefaultValidatorRegistry(mappingContext, new ConnectionSourceSettings())
+        mappingContext.validatorRegistry = registry
+
+        def leaf = new GraphLeaf(name: "leaf")
+        def child = new GraphChild(leaf: leaf)
+        def parent = new GraphParent(child: child)
+        def root = new GraphRoot(parent: parent)
+        [leaf, child, parent]*.trackChanges()
+
+        when:"an instance two levels below unchanged instances is made invalid"
+        leaf.name = null
+        leaf.markDirty('name')
+        def errors = new ValidationErrors(root, GraphRoot.simpleName)
+        registry.getValidator(entity).validate(root, errors)
+
+        then:"the error is reported"
+        errors.getFieldError('parent.child.leaf.name')
+    }
+}
+
+@Entity
+class GraphRoot implements DirtyCheckable {
+    Long id
+    GraphParent parent
+}
+
+@Entity
+class GraphParent implements DirtyCheckable {
+    Long id
+    GraphChild child
+    static belongsTo = [GraphRoot]
+}
+
+@Entity
+class GraphChild implements DirtyCheckable {
+    Long id
+    GraphLeaf leaf
+    static belongsTo = [GraphParent]
+}
+
+@Entity
+class GraphLeaf implements DirtyCheckable {
+    Long id
+    String name
+    static belongsTo = [GraphChild]
+}
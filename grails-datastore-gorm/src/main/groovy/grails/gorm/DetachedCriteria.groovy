@@ -21,8 +21,12 @@ import org.grails.datastore.gorm.GormEnhancer
 import org.grails.datastore.gorm.finders.DynamicFinder
 import org.grails.datastore.gorm.query.GormOperations
 import org.grails.datastore.gorm.query.criteria.AbstractDetachedCriteria
+import org.grails.datastore.mapping.core.Datastore
+import org.grails.datastore.mapping.core.DatastoreUtils
 import org.grails.datastore.mapping.core.Session
+import org.grails.datastore.mapping.query.AbstractResultStream
 import org.grails.datastore.mapping.query.Query
+import org.grails.datastore.mapping.query.ResultStream
 import org.grails.datastore.mapping.query.api.Criteria
 import org.grails.datastore.mapping.query.api.ProjectionList
 import org.grails.datastore.mapping.query.api.QueryAliasAwareSession
@@ -132,6 +136,9 @@ class DetachedCriteria<T> extends AbstractDetachedCriteria<T> implements GormOpe
      */
     List<T> list(Map args = Collections.emptyMap(), @DelegatesTo(DetachedCriteria) Closure additionalCriteria = null) {
         (List)withPopulatedQuery(args, additionalCriteria) { Query query ->
+            if (DynamicFinder.isKeysetPaginated(args)) {
+                return new KeysetPagedResultList(query, args)
+            }
             if (args?.max) {
                 return new PagedResultList(query)
             }
@@ -148,6 +155,44 @@ class DetachedCriteria<T> extends AbstractDetachedCriteria<T> implements GormOpe
         list(Collections.emptyMap(), additionalCriteria)
     }
 
+    /**
+     * Streams the records matching the criterion contained within this DetachedCriteria instance, loading them
+     * incrementally rather than all at once. The returned stream must be closed. If a session is bound to the current
+     * thread the stream may only be used whilst that session is open, otherwise a new session is opened that is closed
+     * together with the stream. Supports the "fetchSize" argument and the "detach" argument, which removes each
+     * entity from the session once it has been returned.
+     *
+     * @param args The arguments
+     * @return A stream of matching instances
+     */
+    ResultStream<T> stream(Map args = Collections.emptyMap(), @DelegatesTo(DetachedCriteria) Closure additionalCriteria = null) {
+        // resolve the datastore through the session lookup used by list(), which applies the tenant and connection source
+        Datastore datastore = (Datastore)GormEnhancer.findStaticApi(targetClass, connectionName).withDatastoreSession { Session session ->
+            session.datastore
+        }
+        if (datastore.hasCurrentSession()) {
+            return createStream(populateQuery(datastore.currentSession, args, additionalCriteria), args)
+        }
+
+        // the stream outlives this method so it owns the session it is loaded with
+        Session session = datastore.connect()
+        try {
+            return new AbstractResultStream.SessionClosingResultStream<T>(session, createStream(populateQuery(session, args, additionalCriteria), args))
+        } catch (Throwable e) {
+            DatastoreUtils.closeSession(session)
+            throw e
+        }
+    }
+
+    /**
+     * Streams the records matching the criterion contained within this DetachedCriteria instance
+     *
+     * @return A stream of matching instances
+     */
+    ResultStream<T> stream(@DelegatesTo(DetachedCriteria) Closure additionalCriteria) {
+        stream(Collections.emptyMap(), additionalCriteria)
+    }
+
     @Override
     Iterator<T> iterator() {
         return list().iterator()
@@ -733,38 +778,48 @@ class DetachedCriteria<T> extends AbstractDetachedCriteria<T> implements GormOpe
         return new DetachedCriteria(targetClass).build(queryClosure)
     }
 
+    private ResultStream<T> createStream(Query query, Map args) {
+        if (args?.detach) {
+            query.detachStreamedResults(true)
+        }
+        return (ResultStream<T>)query.stream()
+    }
+
     private withPopulatedQuery(Map args, Closure additionalCriteria, Closure callable)  {
         GormEnhancer.findStaticApi(targetClass, connectionName).withDatastoreSession { Session session ->
-            applyLazyCriteria()
-            Query query
-            if(alias && (session instanceof QueryAliasAwareSession)) {
-                query = session.createQuery(targetClass, alias)
-            }
-            else {
-                query = session.createQuery(targetClass)
-            }
-
-            if (defaultMax != null) {
-                query.max(defaultMax)
-            }
-            if (defaultOffset != null) {
-                query.offset(defaultOffset)
-            }
-            DynamicFinder.applyDetachedCriteria(query, this)
+            callable.call(populateQuery(session, args, additionalCriteria))
+        }
+    }
 
-            if(query instanceof QueryArgumentsAware) {
-                ((QueryArgumentsAware)query).arguments = args
-            }
+    private Query populateQuery(Session session, Map args, Closure additionalCriteria) {
+        applyLazyCriteria()
+        Query query
+        if(alias && (session instanceof QueryAliasAwareSession)) {
+            query = session.createQuery(targetClass, alias)
+        }
+        else {
+            query = session.createQuery(targetClass)
+        }
 
-            if (additionalCriteria != null) {
-                def additionalDetached = new DetachedCriteria(targetClass).build(additionalCriteria)
-                DynamicFinder.applyDetachedCriteria(query, additionalDetached)
-            }
+        if (defaultMax != null) {
+            query.max(defaultMax)
+        }
+        if (defaultOffset != null) {
+            query.offset(defaultOffset)
+        }
+        DynamicFinder.applyDetachedCriteria(query, this)
 
-            DynamicFinder.populateArgumentsForCriteria(targetClass, query, args)
+        if(query instanceof QueryArgumentsAware) {
+            ((QueryArgumentsAware)query).arguments = args
+        }
 
-            callable.call(query)
+        if (additionalCriteria != null) {
+            def additionalDetached = new DetachedCriteria(targetClass).build(additionalCriteria)
+            DynamicFinder.applyDetachedCriteria(query, additionalDetached)
         }
+
+        DynamicFinder.populateArgumentsForCriteria(targetClass, query, args)
+        return query
     }
 
     protected void applyLazyCriteria() {
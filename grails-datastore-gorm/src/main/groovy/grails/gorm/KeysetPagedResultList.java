@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grails.gorm;
+
+import org.grails.datastore.gorm.finders.DynamicFinder;
+import org.grails.datastore.mapping.query.KeysetCursor;
+import org.grails.datastore.mapping.query.Query;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * A result list for keyset (seek) pagination. Instead of skipping an offset the page is obtained by restricting the
+ * query to the results that sort after the last result of the previous page, identified by an opaque continuation
+ * token, so the cost of fetching a page does not grow with its depth.
+ *
+ * <p>The total count is only calculated if {@link #getTotalCount()} is called, since it requires an additional
+ * query.</p>
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class KeysetPagedResultList<E> extends AbstractList<E> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Query countQuery;
+    private final List<E> resultList;
+    private final String continuationToken;
+    private int totalCount = Integer.MIN_VALUE;
+
+    /**
+     * Executes the given query for the page defined by the "max" and "after" arguments
+     *
+     * @param query The query, populated with the given arguments
+     * @param args The query arguments
+     */
+    public KeysetPagedResultList(Query query, Map args) {
+        this(query, maxFromArguments(query, args), args.get(DynamicFinder.ARGUMENT_AFTER));
+    }
+
+    /**
+     * Executes the given query for a single page. The orders of the query define the page, with the identity
+     * appended as a tie breaker if it is not already sorted on.
+     *
+     * @param query The query
+     * @param max The maximum number of results of the page or -1 for a single page with all results
+     * @param after Either a continuation token or a list of the sort key values of the last seen result. Null for the first page
+     */
+    public KeysetPagedResultList(Query query, int max, Object after) {
+        List<Query.Order> orders = KeysetCursor.keysetOrders(query.getEntity(), query.getOrderBy());
+        for (Query.Order order : orders.subList(query.getOrderBy().size(), orders.size())) {
+            query.order(order);
+        }
+        this.countQuery = (Query) query.clone();
+
+        if (after instanceof CharSequence) {
+            query.add(KeysetCursor.decode(query.getEntity(), orders, after.toString()).toCriterion());
+        }
+        else if (after instanceof List) {
+            query.add(new KeysetCursor(orders, (List<Object>) after).toCriterion());
+        }
+        else if (after != null) {
+            throw new IllegalArgumentException("Keyset pagination requires a continuation token or a list of sort key values, got: " + after);
+        }
+
+        query.offset(0);
+        if (max > -1) {
+            query.max(max + 1);
+        }
+        List<E> results = query.list();
+        if (max > -1 && results.size() > max) {
+            this.resultList = new ArrayList<E>(results.subList(0, max));
+            this.continuationToken = KeysetCursor.forInstance(query.getEntity(), orders, resultList.get(max - 1)).encode();
+        }
+        else {
+            this.resultList = results;
+            this.continuationToken = null;
+        }
+    }
+
+    /**
+     * @return The token to pass to obtain the next page or null if this is the last page
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    /**
+     * @return Whether there is a further page
+     */
+    public boolean hasNextPage() {
+        return continuationToken != null;
+    }
+
+    /**
+     * @return The total number of records for this query, which requires an additional count query
+     */
+    public int getTotalCount() {
+        if (totalCount == Integer.MIN_VALUE) {
+            if (countQuery == null) {
+                throw new IllegalStateException("Total count was not calculated before this result list was serialized");
+            }
+            countQuery.projections().count();
+            Number result = (Number) countQuery.singleResult();
+            totalCount = result == null ? 0 : result.intValue();
+        }
+        return totalCount;
+    }
+
+    private static int maxFromArguments(Query query, Map args) {
+        Object max = args.get(DynamicFinder.ARGUMENT_MAX);
+        if (max == null) {
+            return -1;
+        }
+        Integer converted = query.getEntity().getMappingContext().getConversionService().convert(max, Integer.class);
+        return converted == null ? -1 : converted;
+    }
+
+    @Override
+    public E get(int index) {
+        return resultList.get(index);
+    }
+
+    @Override
+    public int size() {
+        return resultList.size();
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grails.gorm.dirty.checking
+
+import java.lang.annotation.ElementType
+import java.lang.annotation.Retention
+import java.lang.annotation.RetentionPolicy
+import java.lang.annotation.Target
+
+/**
+ * Apply to a dirty checked entity to record changes in a bitset indexed by property rather than a map. Setters
+ * generated for the entity pass the current value of the property when marking it dirty, so no dynamic property read
+ * is required. Reduces the cost of setting many properties on many instances, such as in bulk updates.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target([ElementType.TYPE])
+@interface CompactChangeTracking {
+}
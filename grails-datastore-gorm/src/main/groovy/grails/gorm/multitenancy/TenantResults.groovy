@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package grails.gorm.multitenancy
+
+import groovy.transform.CompileStatic
+
+/**
+ * The outcome of processing every tenant with {@link Tenants#eachTenantInParallel(org.grails.datastore.mapping.multitenancy.MultiTenantCapableDatastore, int, int, groovy.lang.Closure)}:
+ * the result of the closure for each tenant that succeeded and the error for each tenant that failed, both in the order the tenants were resolved
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@CompileStatic
+class TenantResults {
+
+    private final Map<Serializable, Object> results = new LinkedHashMap<Serializable, Object>()
+    private final Map<Serializable, Throwable> errors = new LinkedHashMap<Serializable, Throwable>()
+
+    /**
+     * @return The result of the closure for each tenant that was processed successfully
+     */
+    Map<Serializable, Object> getResults() {
+        return Collections.unmodifiableMap(results)
+    }
+
+    /**
+     * @return The error for each tenant that failed
+     */
+    Map<Serializable, Throwable> getErrors() {
+        return Collections.unmodifiableMap(errors)
+    }
+
+    /**
+     * @return Whether processing failed for any tenant
+     */
+    boolean hasErrors() {
+        return !errors.isEmpty()
+    }
+
+    /**
+     * @return The number of tenants that were processed, successfully or not
+     */
+    int size() {
+        return results.size() + errors.size()
+    }
+
+    protected void addResult(Serializable tenantId, Object result) {
+        results.put(tenantId, result)
+    }
+
+    protected void addError(Serializable tenantId, Throwable error) {
+        errors.put(tenantId, error)
+    }
+
+    @Override
+    String toString() {
+        return "TenantResults{results=${results.size()}, errors=${errors.keySet()}}"
+    }
+}
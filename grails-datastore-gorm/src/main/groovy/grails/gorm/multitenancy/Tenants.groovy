@@ -3,7 +3,9 @@ package grails.gorm.multitenancy
 import groovy.transform.CompileStatic
 import groovy.util.logging.Slf4j
 import org.grails.datastore.gorm.GormEnhancer
+import org.grails.datastore.gorm.concurrent.TaskExecutors
 import org.grails.datastore.mapping.core.Datastore
+import org.grails.datastore.mapping.core.Session
 import org.grails.datastore.mapping.core.connections.ConnectionSource
 import org.grails.datastore.mapping.core.connections.ConnectionSources
 import org.grails.datastore.mapping.multitenancy.AllTenantsResolver
@@ -11,6 +13,14 @@ import org.grails.datastore.mapping.multitenancy.MultiTenancySettings
 import org.grails.datastore.mapping.multitenancy.MultiTenantCapableDatastore
 import org.grails.datastore.mapping.multitenancy.TenantResolver
 
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.FutureTask
+import java.util.concurrent.RejectedExecutionException
+
 /**
  * Helper methods for working with multi tenancy
  *
@@ -245,19 +255,121 @@ class Tenants {
      * @return The result of the closure
      */
     static void eachTenant(MultiTenantCapableDatastore multiTenantCapableDatastore, Closure callable) {
+        for (tenantId in resolveTenantIds(multiTenantCapableDatastore)) {
+            withId(multiTenantCapableDatastore, tenantId, callable)
+        }
+    }
+
+    /**
+     * Execute the given closure for each tenant in parallel, running at most the given number of tenants at once
+     *
+     * @param maxConcurrency The maximum number of tenants to process at once
+     * @param callable The closure
+     * @return The results and errors for each tenant
+     */
+    static TenantResults eachTenantInParallel(int maxConcurrency, Closure callable) {
+        Datastore datastore = GormEnhancer.findSingleDatastore()
+        if (datastore instanceof MultiTenantCapableDatastore) {
+            return eachTenantInParallel((MultiTenantCapableDatastore) datastore, maxConcurrency, maxConcurrency, callable)
+        }
+        else {
+            throw new UnsupportedOperationException("Datastore implementation does not support multi-tenancy")
+        }
+    }
+
+    /**
+     * Execute the given closure for each tenant of the given datastore type in parallel, running at most the given number of tenants at once
+     *
+     * @param datastoreClass The datastore class
+     * @param maxConcurrency The maximum number of tenants to process at once
+     * @param callable The closure
+     * @return The results and errors for each tenant
+     */
+    static TenantResults eachTenantInParallel(Class<? extends Datastore> datastoreClass, int maxConcurrency, Closure callable) {
+        Datastore datastore = GormEnhancer.findDatastoreByType(datastoreClass)
+        if (datastore instanceof MultiTenantCapableDatastore) {
+            return eachTenantInParallel((MultiTenantCapableDatastore) datastore, maxConcurrency, maxConcurrency, callable)
+        }
+        else {
+            throw new UnsupportedOperationException("Datastore implementation does not support multi-tenancy")
+        }
+    }
+
+    /**
+     * Execute the given closure for each tenant of the given datastore in parallel. Each tenant is processed on its own thread with its own session and tenant id binding.
+     * Tenants run on the executor configured for the datastore via {@link TaskExecutors} or, if there is none, on a thread pool that is created for the duration of the call.
+     *
+     * <p>Tenants that share a connection source, for example schemas of the same database, count towards the same per connection source limit so that a single database is not overwhelmed.
+     * Tenants are queued per connection source and the calling thread only hands a tenant to the executor once both limits permit it to run, so a busy connection source never occupies threads
+     * that tenants of idle connection sources could use.
+     * A failure for one tenant does not prevent the remaining tenants from being processed, instead the error is recorded in the returned {@link TenantResults}.
+     * The same applies to tenants the executor rejects, which are recorded with the {@link java.util.concurrent.RejectedExecutionException}.</p>
+     *
+     * @param multiTenantCapableDatastore The datastore
+     * @param maxConcurrency The maximum number of tenants to process at once
+     * @param maxConcurrencyPerConnectionSource The maximum number of tenants to process at once for each connection source
+     * @param callable The closure
+     * @return The results and errors for each tenant
+     */
+    static TenantResults eachTenantInParallel(MultiTenantCapableDatastore multiTenantCapableDatastore, int maxConcurrency, int maxConcurrencyPerConnectionSource, Closure callable) {
+        if (maxConcurrency < 1 || maxConcurrencyPerConnectionSource < 1) {
+            throw new IllegalArgumentException("The maximum concurrency must be at least 1")
+        }
+        List<Serializable> tenantIds = resolveTenantIds(multiTenantCapableDatastore)
+        TenantResults tenantResults = new TenantResults()
+        if (tenantIds.isEmpty()) {
+            return tenantResults
+        }
+
+        MultiTenancySettings.MultiTenancyMode multiTenancyMode = multiTenantCapableDatastore.multiTenancyMode
+        TenantDispatcher dispatcher = new TenantDispatcher(maxConcurrency, maxConcurrencyPerConnectionSource)
+        Map<Serializable, TenantFutureTask> tasks = new LinkedHashMap<Serializable, TenantFutureTask>()
+        for (Serializable tenantId in tenantIds) {
+            String connectionSourceName = MultiTenancySettings.resolveConnectionForTenantId(multiTenancyMode, tenantId)
+            TenantFutureTask task = new TenantFutureTask(new TenantTask(multiTenantCapableDatastore, tenantId, (Closure) callable.clone(), dispatcher, connectionSourceName), connectionSourceName)
+            tasks.put(tenantId, task)
+            dispatcher.add(task)
+        }
+
+        Executor executor = TaskExecutors.getExecutor(multiTenantCapableDatastore)
+        ExecutorService threadPool = null
+        if (executor == null) {
+            threadPool = Executors.newFixedThreadPool(Math.min(maxConcurrency, tenantIds.size()))
+            executor = threadPool
+        }
+        try {
+            dispatcher.dispatch(executor)
+            for (Map.Entry<Serializable, TenantFutureTask> entry in tasks.entrySet()) {
+                try {
+                    tenantResults.addResult(entry.key, entry.value.get())
+                } catch (ExecutionException e) {
+                    log.error("Error processing tenant [${entry.key}]: ${e.cause?.message}", e.cause)
+                    tenantResults.addError(entry.key, e.cause ?: e)
+                }
+            }
+        } finally {
+            for (TenantFutureTask task in tasks.values()) {
+                task.cancel(true)
+            }
+            threadPool?.shutdownNow()
+        }
+        return tenantResults
+    }
+
+    private static List<Serializable> resolveTenantIds(MultiTenantCapableDatastore multiTenantCapableDatastore) {
+        List<Serializable> tenantIds = new ArrayList<Serializable>()
         MultiTenancySettings.MultiTenancyMode multiTenancyMode = multiTenantCapableDatastore.multiTenancyMode
         if (multiTenancyMode == MultiTenancySettings.MultiTenancyMode.DATABASE) {
             if (multiTenantCapableDatastore.tenantResolver instanceof AllTenantsResolver) {
-                def tenantIds = ((AllTenantsResolver) multiTenantCapableDatastore.tenantResolver).resolveTenantIds()
-                for (tenantId in tenantIds) {
-                    withId(multiTenantCapableDatastore, tenantId, callable)
+                for (tenantId in ((AllTenantsResolver) multiTenantCapableDatastore.tenantResolver).resolveTenantIds()) {
+                    tenantIds.add(tenantId)
                 }
             } else {
                 ConnectionSources connectionSources = multiTenantCapableDatastore.connectionSources
                 for (ConnectionSource connectionSource in connectionSources.allConnectionSources) {
                     def tenantId = connectionSource.name
                     if (tenantId != ConnectionSource.DEFAULT) {
-                        withId(multiTenantCapableDatastore, tenantId, callable)
+                        tenantIds.add(tenantId)
                     }
                 }
             }
@@ -265,7 +377,7 @@ class Tenants {
             TenantResolver tenantResolver = multiTenantCapableDatastore.tenantResolver
             if (tenantResolver instanceof AllTenantsResolver) {
                 for (tenantId in ((AllTenantsResolver) tenantResolver).resolveTenantIds()) {
-                    withId(multiTenantCapableDatastore, tenantId, callable)
+                    tenantIds.add(tenantId)
                 }
             } else {
                 throw new UnsupportedOperationException("Multi tenancy mode $multiTenancyMode is configured, but the configured TenantResolver does not implement the [org.grails.datastore.mapping.multitenancy.AllTenantsResolver] interface")
@@ -273,6 +385,7 @@ class Tenants {
         } else {
             throw new UnsupportedOperationException("Method not supported in multi tenancy mode $multiTenancyMode")
         }
+        return tenantIds
     }
 
     private static void eachTenantInternal(Datastore datastore, Closure callable) {
@@ -284,6 +397,165 @@ class Tenants {
         }
     }
 
+    /**
+     * Wraps the given runnable such that it executes with the tenant id that is bound to the calling thread, if any. Used to carry the current tenant over to tasks that execute on another thread
+     *
+     * @param runnable The runnable
+     * @return The wrapped runnable
+     */
+    static Runnable propagateCurrentTenant(Runnable runnable) {
+        Serializable tenantId = CurrentTenant.get()
+        if(tenantId == null) {
+            return runnable
+        }
+        return new Runnable() {
+            @Override
+            void run() {
+                CurrentTenant.withTenant(tenantId) {
+                    runnable.run()
+                }
+            }
+        }
+    }
+
+    /**
+     * Processes a single tenant with its own session once permits for its connection source and the overall concurrency have been acquired
+     */
+    @CompileStatic
+    private static class TenantTask implements Callable<Object> {
+        private final MultiTenantCapableDatastore datastore
+        private final Serializable tenantId
+        private final Closure callable
+        private final TenantDispatcher dispatcher
+        private final String connectionSourceName
+
+        TenantTask(MultiTenantCapableDatastore datastore, Serializable tenantId, Closure callable, TenantDispatcher dispatcher, String connectionSourceName) {
+            this.datastore = datastore
+            this.tenantId = tenantId
+            this.callable = callable
+            this.dispatcher = dispatcher
+            this.connectionSourceName = connectionSourceName
+        }
+
+        @Override
+        Object call() throws Exception {
+            try {
+                return CurrentTenant.withTenant(tenantId) {
+                    datastore.withNewSession(tenantId) { Session session ->
+                        switch (callable.parameterTypes.length) {
+                            case 0:
+                                return callable.call()
+                            case 1:
+                                return callable.call(tenantId)
+                            case 2:
+                                return callable.call(tenantId, session)
+                            default:
+                                throw new IllegalArgumentException("Provided closure accepts too many arguments")
+                        }
+                    }
+                }
+            } finally {
+                dispatcher.finished(connectionSourceName)
+            }
+        }
+    }
+
+    /**
+     * The future of a {@link TenantTask} that remembers its connection source and can be failed if the executor rejects it
+     */
+    private static class TenantFutureTask extends FutureTask<Object> {
+        final String connectionSourceName
+
+        TenantFutureTask(Callable<Object> callable, String connectionSourceName) {
+            super(callable)
+            this.connectionSourceName = connectionSourceName
+        }
+
+        void reject(Throwable error) {
+            setException(error)
+        }
+    }
+
+    /**
+     * Queues the tasks of each connection source and hands them to an executor once both the overall and the per connection source limit permit them to run
+     */
+    private static class TenantDispatcher {
+        private final int maxConcurrency
+        private final int maxConcurrencyPerConnectionSource
+        private final Map<String, Queue<TenantFutureTask>> pending = new LinkedHashMap<String, Queue<TenantFutureTask>>()
+        private final Map<String, Integer> running = new HashMap<String, Integer>()
+        private int runningTotal
+
+        TenantDispatcher(int maxConcurrency, int maxConcurrencyPerConnectionSource) {
+            this.maxConcurrency = maxConcurrency
+            this.maxConcurrencyPerConnectionSource = maxConcurrencyPerConnectionSource
+        }
+
+        synchronized void add(TenantFutureTask task) {
+            Queue<TenantFutureTask> queue = pending.get(task.connectionSourceName)
+            if (queue == null) {
+                queue = new LinkedList<TenantFutureTask>()
+                pending.put(task.connectionSourceName, queue)
+            }
+            queue.add(task)
+        }
+
+        /**
+         * Hands every queued task to the executor, waiting for running tasks to finish whenever the limits are reached.
+         * Tasks are submitted without holding the lock so that an executor that runs or blocks on the calling thread cannot stall running tasks,
+         * and a task the executor rejects releases its slot and fails with the rejection instead of being lost
+         */
+        void dispatch(Executor executor) {
+            TenantFutureTask next
+            while ((next = awaitNext()) != null) {
+                try {
+                    executor.execute(next)
+                } catch (RejectedExecutionException e) {
+                    finished(next.connectionSourceName)
+                    next.reject(e)
+                }
+            }
+        }
+
+        synchronized void finished(String connectionSourceName) {
+            running.put(connectionSourceName, running.get(connectionSourceName) - 1)
+            runningTotal--
+            notifyAll()
+        }
+
+        private synchronized TenantFutureTask awaitNext() {
+            while (!pending.isEmpty()) {
+                TenantFutureTask next = runningTotal < maxConcurrency ? takeNext() : null
+                if (next != null) {
+                    return next
+                }
+                wait()
+            }
+            return null
+        }
+
+        private TenantFutureTask takeNext() {
+            for (Map.Entry<String, Queue<TenantFutureTask>> entry in pending.entrySet()) {
+                String connectionSourceName = entry.key
+                Integer current = running.get(connectionSourceName)
+                int count = current != null ? current.intValue() : 0
+                if (count < maxConcurrencyPerConnectionSource) {
+                    Queue<TenantFutureTask> queue = entry.value
+                    TenantFutureTask task = queue.poll()
+                    // move the connection source to the back so that connection sources take turns
+                    pending.remove(connectionSourceName)
+                    if (!queue.isEmpty()) {
+                        pending.put(connectionSourceName, queue)
+                    }
+                    running.put(connectionSourceName, count + 1)
+                    runningTotal++
+                    return task
+                }
+            }
+            return null
+        }
+    }
+
     @CompileStatic
     protected static class CurrentTenant  {
 
@@ -1,5 +1,6 @@
 package org.grails.compiler.gorm
 
+import grails.gorm.dirty.checking.CompactChangeTracking
 import grails.gorm.dirty.checking.DirtyCheck
 import grails.gorm.dirty.checking.DirtyCheckedProperty
 import groovy.transform.CompilationUnitAware
@@ -8,11 +9,14 @@ import org.codehaus.groovy.ast.*
 import org.codehaus.groovy.ast.expr.*
 import org.codehaus.groovy.ast.stmt.*
 import org.codehaus.groovy.ast.tools.GeneralUtils
+import org.codehaus.groovy.ast.tools.GenericsUtils
 import org.codehaus.groovy.classgen.GeneratorContext
 import org.codehaus.groovy.control.CompilationUnit
 import org.codehaus.groovy.control.SourceUnit
 import org.codehaus.groovy.transform.sc.StaticCompilationVisitor
 import org.grails.datastore.mapping.dirty.checking.DirtyCheckable
+import org.grails.datastore.mapping.dirty.checking.DirtyCheckedPropertyIndex
+import org.grails.datastore.mapping.dirty.checking.IndexedChangedProperties
 import org.grails.datastore.mapping.model.config.GormProperties
 import org.grails.datastore.mapping.reflect.AstUtils
 import org.grails.datastore.mapping.reflect.ClassUtils
@@ -46,6 +50,9 @@ class DirtyCheckingTransformer implements CompilationUnitAware {
     public static final ClassNode DIRTY_CHECKED_PROPERTY_CLASS_NODE = ClassHelper.make(DirtyCheckedProperty)
     public static final ClassNode DIRTY_CHECK_CLASS_NODE = ClassHelper.make(DirtyCheck)
     public static final AnnotationNode DIRTY_CHECKED_PROPERTY_ANNOTATION_NODE = new AnnotationNode(DIRTY_CHECKED_PROPERTY_CLASS_NODE)
+    public static final ClassNode COMPACT_CHANGE_TRACKING_CLASS_NODE = ClassHelper.make(CompactChangeTracking)
+    public static final String FIELD_DIRTY_CHECKED_PROPERTY_INDEX = '$dirtyCheckedPropertyIndex'
+    public static final String METHOD_NAME_CREATE_DIRTY_CHECKING_STATE = "createDirtyCheckingState"
 
     static {
         if(ClassUtils.isPresent("javax.validation.Constraint")) {
@@ -72,6 +79,7 @@ class DirtyCheckingTransformer implements CompilationUnitAware {
         // the field is only added to root clauses that extend from java.lang.Object
         final ClassNode changeTrackableClassNode = new ClassNode(DirtyCheckable).getPlainNodeReference()
         final MethodNode markDirtyMethodNode = changeTrackableClassNode.getMethod(METHOD_NAME_MARK_DIRTY, new Parameter(ClassHelper.STRING_TYPE, "propertyName"), new Parameter(ClassHelper.OBJECT_TYPE, "newValue"))
+        final MethodNode indexedMarkDirtyMethodNode = changeTrackableClassNode.getMethod(METHOD_NAME_MARK_DIRTY, new Parameter(ClassHelper.int_TYPE, "propertyIndex"), new Parameter(ClassHelper.STRING_TYPE, "propertyName"), new Parameter(ClassHelper.OBJECT_TYPE, "newValue"), new Parameter(ClassHelper.OBJECT_TYPE, "oldValue"))
 
 
         ClassNode superClass = classNode.getSuperClass()
@@ -90,6 +98,14 @@ class DirtyCheckingTransformer implements CompilationUnitAware {
             }
         }
 
+        // compact change tracking indexes the properties of the class that the trait is woven into. Properties of
+        // subclasses are recorded by name
+        CompactTracking compactTracking = null
+        if(shouldWeave && !classNode.getAnnotations(COMPACT_CHANGE_TRACKING_CLASS_NODE).isEmpty()) {
+            // the state factory has to exist before the trait is applied so that it overrides the trait method
+            compactTracking = new CompactTracking(classNode, indexedMarkDirtyMethodNode)
+        }
+
         if(shouldWeave ) {
 
             classNode.addInterface(dirtyCheckableTrait)
@@ -103,6 +119,9 @@ class DirtyCheckingTransformer implements CompilationUnitAware {
         // code that will mark the property as dirty. Note that if the property has no getter we have to add one, since only adding the setter results in a read-only property
         final propertyNodes = classNode.getProperties()
         def staticCompilationVisitor = new StaticCompilationVisitor(source, classNode)
+        if(compactTracking != null) {
+            staticCompilationVisitor.visitMethod(compactTracking.createStateMethod)
+        }
         Map<String, GetterAndSetter> gettersAndSetters = [:]
         boolean isJavaValidateable = false
 
@@ -222,23 +241,25 @@ class DirtyCheckingTransformer implements CompilationUnitAware {
 
                     // now add the setter that tracks changes. Each setters becomes:
                     // void setFoo(String foo) { markDirty("foo", foo); this.foo = foo }
-                    addDirtyCheckingSetter(classNode, propertyName, fieldName, returnType, markDirtyMethodNode, staticCompilationVisitor)
+                    // or with compact change tracking:
+                    // void setFoo(String foo) { markDirty(0, "foo", foo, this.foo); this.foo = foo }
+                    addDirtyCheckingSetter(classNode, propertyName, fieldName, returnType, markDirtyMethodNode, staticCompilationVisitor, compactTracking, fieldX(propertyField))
                 }
                 else if(getterAndSetter.hasBoth()) {
                     // if both a setter and getter are present, we get hold of the setter and weave the markDirty method call into it
-                    weaveIntoExistingSetter(propertyName, getterAndSetter, markDirtyMethodNode)
+                    weaveIntoExistingSetter(propertyName, getterAndSetter, markDirtyMethodNode, compactTracking)
                     gettersAndSetters.remove(propertyName)
                 }
                 else {
                     if(getterAndSetter.setter != null) {
-                        weaveIntoExistingSetter(propertyName, getterAndSetter, markDirtyMethodNode)
+                        weaveIntoExistingSetter(propertyName, getterAndSetter, markDirtyMethodNode, compactTracking)
                         // there isn't both a getter and a setter then this is not a candidate for persistence, so we eliminate it from change tracking
                         gettersAndSetters.remove(propertyName)
                     }
                     else if(getterAndSetter.getter != null) {
                         String fieldName = propertyField.getName()
                         ClassNode returnType = resolvePropertyReturnType(pn, classNode)
-                        addDirtyCheckingSetter(classNode, propertyName, fieldName, returnType, markDirtyMethodNode, staticCompilationVisitor)
+                        addDirtyCheckingSetter(classNode, propertyName, fieldName, returnType, markDirtyMethodNode, staticCompilationVisitor, compactTracking, callThisX(getterAndSetter.getter.name))
                     }
                     else {
                         gettersAndSetters.remove(propertyName)
@@ -264,9 +285,11 @@ class DirtyCheckingTransformer implements CompilationUnitAware {
         // We also need to search properties that are represented as getters with setters. This requires going through all the methods and finding getter/setter pairs that are public
         gettersAndSetters.each { String propertyName, GetterAndSetter getterAndSetter ->
             if(!NameUtils.isConfigurational(propertyName) && getterAndSetter.hasBoth()) {
-                weaveIntoExistingSetter(propertyName, getterAndSetter, markDirtyMethodNode)
+                weaveIntoExistingSetter(propertyName, getterAndSetter, markDirtyMethodNode, compactTracking)
             }
         }
+
+        compactTracking?.initializePropertyIndex()
     }
 
     private ClassNode resolvePropertyReturnType(PropertyNode pn, ClassNode classNode) {
@@ -284,13 +307,15 @@ class DirtyCheckingTransformer implements CompilationUnitAware {
         returnType
     }
 
-    private void addDirtyCheckingSetter(ClassNode classNode, String propertyName, String fieldName, ClassNode returnType, MethodNode markDirtyMethodNode, StaticCompilationVisitor staticCompilationVisitor) {
+    private void addDirtyCheckingSetter(ClassNode classNode, String propertyName, String fieldName, ClassNode returnType, MethodNode markDirtyMethodNode, StaticCompilationVisitor staticCompilationVisitor, CompactTracking compactTracking, Expression currentValue) {
         final String setterName = NameUtils.getSetterName(propertyName)
         final Parameter setterParameter = param(returnType, propertyName)
         MethodNode setter = classNode.getMethod(setterName, setterParameter)
         if (setter == null) {
             final BlockStatement setterBody = new BlockStatement()
-            MethodCallExpression markDirtyMethodCall = createMarkDirtyMethodCall(markDirtyMethodNode, propertyName, setterParameter)
+            MethodCallExpression markDirtyMethodCall = compactTracking != null ?
+                    compactTracking.createMarkDirtyMethodCall(propertyName, setterParameter, currentValue) :
+                    createMarkDirtyMethodCall(markDirtyMethodNode, propertyName, setterParameter)
             setterBody.addStatement(stmt(markDirtyMethodCall))
             setterBody.addStatement(assignS(propX(varX("this"), fieldName), varX(setterParameter)))
 
@@ -351,7 +376,7 @@ class DirtyCheckingTransformer implements CompilationUnitAware {
         }
         return copiedReturnType
     }
-    protected void weaveIntoExistingSetter(String propertyName, GetterAndSetter getterAndSetter, MethodNode markDirtyMethodNode) {
+    protected void weaveIntoExistingSetter(String propertyName, GetterAndSetter getterAndSetter, MethodNode markDirtyMethodNode, CompactTracking compactTracking = null) {
         final MethodNode setterMethod = getterAndSetter.setter
         if(setterMethod.annotations.any { AnnotationNode an -> an.classNode.name == 'grails.persistence.PersistenceMethod'} ) return
 
@@ -368,7 +393,9 @@ class DirtyCheckingTransformer implements CompilationUnitAware {
         }
         final currentBody = setterMethod.code
         final setterParameter = setterMethod.getParameters()[0]
-        MethodCallExpression markDirtyMethodCall = createMarkDirtyMethodCall(markDirtyMethodNode, propertyName, setterParameter)
+        MethodCallExpression markDirtyMethodCall = compactTracking != null && getter != null ?
+                compactTracking.createMarkDirtyMethodCall(propertyName, setterParameter, callThisX(getter.name)) :
+                createMarkDirtyMethodCall(markDirtyMethodNode, propertyName, setterParameter)
         final newBody = block(
             stmt( markDirtyMethodCall ),
             currentBody
@@ -406,6 +433,45 @@ class DirtyCheckingTransformer implements CompilationUnitAware {
         return ["Domain"] as String[];
     }
 
+    /**
+     * Generates the property index of a class that uses compact change tracking and the markDirty calls that refer to it
+     */
+    @CompileStatic
+    static class CompactTracking {
+        final ClassNode classNode
+        final MethodNode indexedMarkDirtyMethodNode
+        final FieldNode propertyIndexField
+        final MethodNode createStateMethod
+        final List<String> propertyNames = []
+
+        CompactTracking(ClassNode classNode, MethodNode indexedMarkDirtyMethodNode) {
+            this.classNode = classNode
+            this.indexedMarkDirtyMethodNode = indexedMarkDirtyMethodNode
+            ClassNode indexClassNode = ClassHelper.make(DirtyCheckedPropertyIndex)
+            this.propertyIndexField = classNode.addField(FIELD_DIRTY_CHECKED_PROPERTY_INDEX, PRIVATE | STATIC | FINAL, indexClassNode, null)
+            ClassNode mapType = GenericsUtils.makeClassSafeWithGenerics(ClassHelper.MAP_TYPE, new GenericsType(ClassHelper.STRING_TYPE), new GenericsType(ClassHelper.OBJECT_TYPE))
+            this.createStateMethod = classNode.addMethod(METHOD_NAME_CREATE_DIRTY_CHECKING_STATE, PUBLIC, mapType, ZERO_PARAMETERS, null,
+                    returnS(ctorX(ClassHelper.make(IndexedChangedProperties), args(fieldX(propertyIndexField)))))
+        }
+
+        MethodCallExpression createMarkDirtyMethodCall(String propertyName, Variable value, Expression currentValue) {
+            int propertyIndex = propertyNames.indexOf(propertyName)
+            if(propertyIndex == -1) {
+                propertyNames << propertyName
+                propertyIndex = propertyNames.size() - 1
+            }
+            def args = args(new ConstantExpression(propertyIndex, true), constX(propertyName), varX(value), currentValue)
+            final markDirtyMethodCall = callX(varX("this"), indexedMarkDirtyMethodNode.name, args)
+            markDirtyMethodCall.methodTarget = indexedMarkDirtyMethodNode
+            return markDirtyMethodCall
+        }
+
+        void initializePropertyIndex() {
+            List<Expression> names = propertyNames.collect { String name -> (Expression) constX(name) }
+            propertyIndexField.initialValueExpression = ctorX(propertyIndexField.type, args(new ArrayExpression(ClassHelper.STRING_TYPE, names)))
+        }
+    }
+
     @CompileStatic
     class GetterAndSetter {
         MethodNode getter
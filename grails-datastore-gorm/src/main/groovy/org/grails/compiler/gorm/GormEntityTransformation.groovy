@@ -48,8 +48,10 @@ import org.codehaus.groovy.ast.stmt.ExpressionStatement
 import org.codehaus.groovy.ast.stmt.ReturnStatement
 import org.codehaus.groovy.ast.stmt.Statement
 import org.codehaus.groovy.ast.tools.GeneralUtils
+import org.codehaus.groovy.control.CompilationFailedException
 import org.codehaus.groovy.control.CompilationUnit
 import org.codehaus.groovy.control.CompilePhase
+import org.codehaus.groovy.control.Phases
 import org.codehaus.groovy.control.SourceUnit
 import org.codehaus.groovy.transform.ASTTransformation
 import org.codehaus.groovy.transform.AbstractASTTransformation
@@ -57,6 +59,7 @@ import org.codehaus.groovy.transform.GroovyASTTransformation
 import org.grails.datastore.gorm.GormEnhancer
 import org.grails.datastore.gorm.GormEntity
 import org.grails.datastore.gorm.query.GormQueryOperations
+import org.grails.datastore.gorm.utils.EntityIndex
 import org.grails.datastore.mapping.model.config.GormProperties
 import org.grails.datastore.mapping.reflect.AstUtils
 import org.grails.datastore.mapping.reflect.ClassUtils
@@ -103,6 +106,7 @@ class GormEntityTransformation extends AbstractASTTransformation implements Comp
     public static final Parameter[] ADD_TO_PARAMETERS = [new Parameter(AstUtils.OBJECT_CLASS_NODE, "obj")] as Parameter[]
     public static final ClassNode SERIALIZABLE_CLASS_NODE = ClassHelper.make(Serializable).getPlainNodeReference()
     private static final Object APPLIED_MARKER = new Object();
+    protected static final Map<CompilationUnit, Map<File, Map<String, EntityIndex.Entry>>> PENDING_INDEX_ENTRIES = new WeakHashMap<CompilationUnit, Map<File, Map<String, EntityIndex.Entry>>>()
     private static final ListExpression IGNORED_PROPERTIES = new ListExpression();
 
     static {
@@ -160,6 +164,7 @@ class GormEntityTransformation extends AbstractASTTransformation implements Comp
         final boolean isJpaEntity = hasAnnotation(classNode, JPA_ENTITY_CLASS_NODE)
 
         AstUtils.addTransformedEntityName(classNode.name)
+        indexEntity(classNode, sourceUnit)
         // Add the entity annotation and enable generic replacement
         classNode.setUsingGenerics(true)
 
@@ -373,6 +378,111 @@ class GormEntityTransformation extends AbstractASTTransformation implements Comp
         classNode.putNodeMetaData(AstUtils.TRANSFORM_APPLIED_MARKER, APPLIED_MARKER)
     }
 
+    /**
+     * Adds the entity to the index of the module being compiled so that it can be found at runtime without scanning the classpath
+     *
+     * @param classNode The entity
+     * @param sourceUnit The source unit
+     */
+    protected void indexEntity(ClassNode classNode, SourceUnit sourceUnit) {
+        File targetDirectory = sourceUnit?.configuration?.targetDirectory
+        if(targetDirectory == null) {
+            // not compiling to disk, for example when parsing a script
+            return
+        }
+
+        def entry = new EntityIndex.Entry(classNode.name, findDatastoreQualifier(classNode), findConnectionQualifiers(classNode))
+        if(compilationUnit == null) {
+            writeEntityIndex(targetDirectory, [entry])
+            return
+        }
+        synchronized (PENDING_INDEX_ENTRIES) {
+            Map<File, Map<String, EntityIndex.Entry>> pending = PENDING_INDEX_ENTRIES.get(compilationUnit)
+            if(pending == null) {
+                pending = new LinkedHashMap<File, Map<String, EntityIndex.Entry>>()
+                PENDING_INDEX_ENTRIES.put(compilationUnit, pending)
+                // the index is written once, after the entities of every source of the compilation have been transformed
+                compilationUnit.addPhaseOperation(new EntityIndexWriter(compilationUnit), Phases.CLASS_GENERATION)
+            }
+            Map<String, EntityIndex.Entry> entries = pending.get(targetDirectory)
+            if(entries == null) {
+                entries = new LinkedHashMap<String, EntityIndex.Entry>()
+                pending.put(targetDirectory, entries)
+            }
+            entries.put(entry.className, entry)
+        }
+    }
+
+    protected static void writeEntityIndex(File targetDirectory, Collection<EntityIndex.Entry> entries) {
+        try {
+            EntityIndex.addEntries(targetDirectory, entries)
+        } catch (IOException e) {
+            System.err.println("WARNING: Unable to write the entity index to [$targetDirectory]: ${e.message}. Entities may not be found at runtime.")
+        }
+    }
+
+    /**
+     * Writes the index entries collected for a compilation unit the first time it is invoked
+     */
+    private static class EntityIndexWriter extends CompilationUnit.SourceUnitOperation {
+        private final CompilationUnit compilationUnit
+
+        EntityIndexWriter(CompilationUnit compilationUnit) {
+            this.compilationUnit = compilationUnit
+        }
+
+        @Override
+        void call(SourceUnit source) throws CompilationFailedException {
+            Map<File, Map<String, EntityIndex.Entry>> pending
+            synchronized (PENDING_INDEX_ENTRIES) {
+                pending = PENDING_INDEX_ENTRIES.remove(compilationUnit)
+            }
+            if(pending != null) {
+                for(Map.Entry<File, Map<String, EntityIndex.Entry>> entry in pending.entrySet()) {
+                    writeEntityIndex(entry.key, entry.value.values())
+                }
+            }
+        }
+    }
+
+    private String findDatastoreQualifier(ClassNode classNode) {
+        def mapWith = AstUtils.getPropertyFromHierarchy(classNode, GormProperties.MAPPING_STRATEGY)
+        Expression value = mapWith?.initialExpression
+        return value instanceof ConstantExpression ? value.text : null
+    }
+
+    private List<String> findConnectionQualifiers(ClassNode classNode) {
+        List<String> connections = []
+        def mapping = AstUtils.getPropertyFromHierarchy(classNode, GormProperties.MAPPING)
+        Expression value = mapping?.initialExpression
+        if(!(value instanceof ClosureExpression)) {
+            return connections
+        }
+
+        Statement code = ((ClosureExpression) value).code
+        List<Statement> statements = code instanceof BlockStatement ? ((BlockStatement) code).statements : [code]
+        for(Statement statement in statements) {
+            if(!(statement instanceof ExpressionStatement)) continue
+
+            Expression expression = ((ExpressionStatement) statement).expression
+            if(!(expression instanceof MethodCallExpression)) continue
+
+            MethodCallExpression call = (MethodCallExpression) expression
+            if(!(call.methodAsString in ['datasource', 'datasources', 'connection', 'connections'])) continue
+
+            List<Expression> arguments = call.arguments instanceof ArgumentListExpression ? ((ArgumentListExpression) call.arguments).expressions : Collections.<Expression>emptyList()
+            for(Expression argument in arguments) {
+                List<Expression> names = argument instanceof ListExpression ? ((ListExpression) argument).expressions : [argument]
+                for(Expression name in names) {
+                    if(name instanceof ConstantExpression && !connections.contains(name.text)) {
+                        connections.add(name.text)
+                    }
+                }
+            }
+        }
+        return connections
+    }
+
     protected Class pickGormEntityTrait(ClassNode classNode, SourceUnit source) {
         def classLoader = getClass().classLoader
 
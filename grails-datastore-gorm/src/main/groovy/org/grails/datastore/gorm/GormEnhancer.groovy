@@ -22,6 +22,7 @@ import groovy.util.logging.Slf4j
 import org.codehaus.groovy.reflection.CachedMethod
 import org.codehaus.groovy.runtime.metaclass.ClosureStaticMetaMethod
 import org.codehaus.groovy.runtime.metaclass.MethodSelectionException
+import org.grails.datastore.gorm.concurrent.TaskExecutors
 import org.grails.datastore.gorm.finders.*
 import org.grails.datastore.gorm.internal.InstanceMethodInvokingClosure
 import org.grails.datastore.gorm.internal.StaticMethodInvokingClosure
@@ -116,6 +117,9 @@ class GormEnhancer implements Closeable {
         if(datastore != null) {
             registerConstraints(datastore)
         }
+        if(datastore instanceof ConnectionSourcesProvider) {
+            TaskExecutors.configure(datastore, ((ConnectionSourcesProvider)datastore).connectionSources.baseConfiguration)
+        }
         NAMED_QUERIES.clear()
         DATASTORES_BY_TYPE.put(datastore.getClass(), datastore)
 
@@ -435,6 +439,7 @@ class GormEnhancer implements Closeable {
     @CompileStatic
     void close() throws IOException {
         removeConstraints()
+        TaskExecutors.remove(datastore)
         DATASTORES_BY_TYPE.clear()
         def registry = GroovySystem.metaClassRegistry
         for(entity in datastore.mappingContext.persistentEntities) {
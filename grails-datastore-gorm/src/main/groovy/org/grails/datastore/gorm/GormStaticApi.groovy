@@ -16,17 +16,17 @@ package org.grails.datastore.gorm
 
 import grails.gorm.CriteriaBuilder
 import grails.gorm.DetachedCriteria
-import grails.gorm.MultiTenant
+import grails.gorm.KeysetPagedResultList
 import grails.gorm.PagedResultList
 import grails.gorm.api.GormAllOperations
 import grails.gorm.multitenancy.Tenants
 import grails.gorm.transactions.GrailsTransactionTemplate
-import groovy.transform.CompileDynamic
 import groovy.transform.CompileStatic
 import groovy.transform.TypeCheckingMode
 
 import org.codehaus.groovy.runtime.InvokerHelper
 import org.grails.datastore.gorm.finders.DynamicFinder
+import org.grails.datastore.gorm.finders.DynamicFinderDispatcher
 import org.grails.datastore.gorm.finders.FinderMethod
 import org.grails.datastore.gorm.multitenancy.TenantDelegatingGormOperations
 import org.grails.datastore.gorm.query.NamedCriteriaProxy
@@ -62,6 +62,7 @@ import org.springframework.util.Assert
 class GormStaticApi<D> extends AbstractGormApi<D> implements GormAllOperations<D> {
 
     protected final List<FinderMethod> gormDynamicFinders
+    protected final DynamicFinderDispatcher finderDispatcher
 
     protected final PlatformTransactionManager transactionManager
     protected final String defaultQualifier
@@ -75,6 +76,7 @@ class GormStaticApi<D> extends AbstractGormApi<D> implements GormAllOperations<D
     GormStaticApi(Class<D> persistentClass, Datastore datastore, List<FinderMethod> finders, PlatformTransactionManager transactionManager) {
         super(persistentClass, datastore)
         gormDynamicFinders = finders
+        finderDispatcher = new DynamicFinderDispatcher(persistentClass, finders)
         this.transactionManager = transactionManager
         String qualifier = ConnectionSource.DEFAULT
         if(datastore instanceof ConnectionSourcesProvider) {
@@ -132,57 +134,19 @@ class GormStaticApi<D> extends AbstractGormApi<D> implements GormAllOperations<D
      * @param args The arguments
      * @return The result of the method call
      */
-    @CompileDynamic
     def methodMissing(String methodName, Object args) {
-        FinderMethod method = gormDynamicFinders.find { FinderMethod f -> f.isMethodMatch(methodName) }
-        if (!method) {
-            if(args && args[-1] instanceof Closure) {
+        Object[] arguments = DynamicFinderDispatcher.resolveArguments(args)
+        if (!finderDispatcher.isFinderMethod(methodName)) {
+            if(arguments && arguments[arguments.length - 1] instanceof Closure) {
                 NamedCriteriaProxy proxy = GormEnhancer.createNamedQuery(persistentClass, methodName)
                 if(proxy != null) {
-                    return proxy.call(args)
+                    return proxy.call(arguments)
                 }
-                else {
-                    throw new MissingMethodException(methodName, persistentClass, args)
-                }
-            }
-            else {
-                throw new MissingMethodException(methodName, persistentClass, args)
-            }
-        }
-
-        // if the class is multi tenant, don't cache the method because the tenant will need to be resolved
-        // for each method call
-        if(!MultiTenant.isAssignableFrom(persistentClass)) {
-
-            def mc = persistentClass.getMetaClass()
-
-            // register the method invocation for next time
-            mc.static."$methodName" = { Object[] varArgs ->
-                // FYI... This is relevant to http://jira.grails.org/browse/GRAILS-3463 and may
-                // become problematic if http://jira.codehaus.org/browse/GROOVY-5876 is addressed...
-                final argumentsForMethod
-                if(varArgs == null) {
-                    argumentsForMethod = [null] as Object[]
-                }
-                // if the argument component type is not an Object then we have an array passed that is the actual argument
-                else if(varArgs.getClass().componentType != Object) {
-                    // so we wrap it in an object array
-                    argumentsForMethod = [varArgs] as Object[]
-                }
-                else {
-
-                    if(varArgs.length == 1 && varArgs[0].getClass().isArray()) {
-                        argumentsForMethod = varArgs[0]
-                    } else {
-
-                        argumentsForMethod = varArgs
-                    }
-                }
-                method.invoke(delegate, methodName, argumentsForMethod)
             }
+            throw new MissingMethodException(methodName, persistentClass, arguments)
         }
 
-        return method.invoke(persistentClass, methodName, args)
+        return finderDispatcher.invoke(methodName, arguments)
     }
 
     /**
@@ -558,6 +522,9 @@ class GormStaticApi<D> extends AbstractGormApi<D> implements GormAllOperations<D
     /**
      * Lists objects in the datastore. eg. Book.list(max:10)
      *
+     * Keyset pagination is used if the "keyset" argument is true or the continuation token of a previous page is
+     * passed as the "after" argument. eg. Book.list(max:10, sort:'title', after: token)
+     *
      * @param params Any parameters such as offset, max etc.
      * @return A list of results
      */
@@ -565,6 +532,9 @@ class GormStaticApi<D> extends AbstractGormApi<D> implements GormAllOperations<D
         (List<D>)execute ({ Session session ->
             Query q = session.createQuery(persistentClass)
             DynamicFinder.populateArgumentsForCriteria(persistentClass, q, params)
+            if (DynamicFinder.isKeysetPaginated(params)) {
+                return new KeysetPagedResultList(q, params)
+            }
             if (params?.max) {
                 return new PagedResultList(q)
             }
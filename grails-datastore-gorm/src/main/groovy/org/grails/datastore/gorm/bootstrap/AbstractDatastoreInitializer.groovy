@@ -8,6 +8,8 @@ import org.grails.datastore.gorm.events.ConfigurableApplicationContextEventPubli
 import org.grails.datastore.gorm.events.DefaultApplicationEventPublisher
 import org.grails.datastore.gorm.plugin.support.PersistenceContextInterceptorAggregator
 import org.grails.datastore.gorm.support.AbstractDatastorePersistenceContextInterceptor
+import org.grails.datastore.gorm.utils.EntityIndex
+import org.grails.datastore.mapping.config.Settings
 import org.grails.datastore.mapping.core.DatastoreUtils
 import org.grails.datastore.mapping.core.grailsversion.GrailsVersion
 import org.grails.datastore.mapping.model.config.GormProperties
@@ -171,13 +173,17 @@ abstract class AbstractDatastoreInitializer implements ResourceLoaderAware{
 
     @CompileStatic
     protected void scanForPersistentClasses() {
+        // the entity indexes written at compile time replace scanning the classpath roots that contain one
+        EntityIndex entityIndex = isEntityIndexEnabled() ? EntityIndex.load(classLoader) : new EntityIndex(Collections.<EntityIndex.Entry>emptyList())
+
         // scan defined packages
         def readerFactory = new CachingMetadataReaderFactory(resourcePatternResolver)
         for (pkg in packages) {
+            loadIndexedEntities(entityIndex.getEntries(pkg))
             String pattern = ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX +
                     ClassUtils.convertClassNameToResourcePath(pkg) + ENTITY_CLASS_RESOURCE_PATTERN;
 
-            scanUsingPattern(pattern, readerFactory)
+            scanUsingPattern(pattern, readerFactory, entityIndex)
         }
 
 
@@ -193,20 +199,49 @@ abstract class AbstractDatastoreInitializer implements ResourceLoaderAware{
             }
         }
         else {
+            loadIndexedEntities(entityIndex.entries.findAll { EntityIndex.Entry entry -> entry.packageName.isEmpty() })
             // try the default package in case of a script without recursing into subpackages
             String pattern = ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX +  "*.class"
-            scanUsingPattern(pattern, readerFactory)
+            scanUsingPattern(pattern, readerFactory, entityIndex)
+        }
+    }
+
+    /**
+     * @return Whether the entity indexes written at compile time should be used to locate entities
+     */
+    protected boolean isEntityIndexEnabled() {
+        return configuration.getProperty(Settings.SETTING_ENTITY_INDEX_ENABLED, Boolean, false)
+    }
+
+    @CompileStatic
+    private void loadIndexedEntities(Collection<EntityIndex.Entry> entries) {
+        for(entry in entries) {
+            try {
+                Class entityClass = classLoader.loadClass(entry.className)
+                if(EntityIndex.isEntity(entityClass) && !persistentClasses.contains(entityClass)) {
+                    persistentClasses << entityClass
+                }
+            } catch (ClassNotFoundException e) {
+                // stale entry, the class has been removed since the index was written
+            }
         }
     }
 
     @CompileStatic
-    private void scanUsingPattern(String pattern, CachingMetadataReaderFactory readerFactory) {
+    private void scanUsingPattern(String pattern, CachingMetadataReaderFactory readerFactory, EntityIndex entityIndex) {
         def resources = this.resourcePatternResolver.getResources(pattern)
         for (Resource res in resources) {
+            if(entityIndex.isIndexed(res.URL)) {
+                // the entities of the root were loaded from its index
+                continue
+            }
             def reader = readerFactory.getMetadataReader(res)
             def annotationMetadata = reader.annotationMetadata
             if (annotationMetadata.hasAnnotation("grails.persistence.Entity") || annotationMetadata.hasAnnotation(Entity.name) || annotationMetadata.hasAnnotation(javax.persistence.Entity.name)) {
-                persistentClasses << classLoader.loadClass(reader.classMetadata.className)
+                Class entityClass = classLoader.loadClass(reader.classMetadata.className)
+                if(!persistentClasses.contains(entityClass)) {
+                    persistentClasses << entityClass
+                }
             }
         }
     }
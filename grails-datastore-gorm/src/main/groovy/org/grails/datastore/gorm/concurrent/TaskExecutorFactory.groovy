@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.gorm.concurrent
+
+import java.util.concurrent.Executor
+
+/**
+ * A factory for the {@link Executor} used to run blocking GORM operations asynchronously, such as {@link grails.async.Promise} tasks and blocking RxGORM service methods.
+ * Implementations can be registered via the {@link java.util.ServiceLoader} mechanism or configured with the {@link org.grails.datastore.mapping.config.Settings#SETTING_TASK_EXECUTOR} setting
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+interface TaskExecutorFactory {
+
+    /**
+     * @return Whether the executor can be created in the current runtime
+     */
+    boolean isAvailable()
+
+    /**
+     * @return Creates the executor
+     */
+    Executor createExecutor()
+}
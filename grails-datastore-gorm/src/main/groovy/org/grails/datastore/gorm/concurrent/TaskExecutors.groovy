@@ -0,0 +1,214 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.gorm.concurrent
+
+import grails.gorm.multitenancy.Tenants
+import groovy.transform.CompileStatic
+import groovy.util.logging.Slf4j
+import org.grails.datastore.mapping.config.Settings
+import org.grails.datastore.mapping.core.Datastore
+import org.springframework.core.env.PropertyResolver
+import org.springframework.util.ClassUtils
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executor
+
+/**
+ * Holds the {@link Executor} used to run blocking GORM operations asynchronously. The executor is resolved from, in order of precedence:
+ *
+ * <ul>
+ *     <li>An executor registered with {@link #setExecutor(java.util.concurrent.Executor)}</li>
+ *     <li>For the operations of a datastore, the {@link Settings#SETTING_TASK_EXECUTOR} setting of the datastore configuration registered with
+ *     {@link #configure(org.grails.datastore.mapping.core.Datastore, org.springframework.core.env.PropertyResolver)}, which is either "virtual",
+ *     "default" or the class name of a {@link TaskExecutorFactory}</li>
+ *     <li>The {@link Settings#SETTING_TASK_EXECUTOR} system property, which accepts the same values</li>
+ *     <li>The first available {@link TaskExecutorFactory} registered via {@link ServiceLoader}</li>
+ * </ul>
+ *
+ * <p>The executor configured for a datastore only applies to the operations of that datastore, so that datastores configured differently in the same
+ * JVM don't replace each other's executor. If no executor is configured {@link #getExecutor()} returns null and callers use their own default thread pools.</p>
+ *
+ * <p>Tasks submitted to the executor run with the tenant id of the submitting thread. The datastore session of the submitting thread is never shared,
+ * since sessions are not thread safe, hence tasks should bind their own session, for example with {@link grails.gorm.api.GormStaticOperations#withNewSession(groovy.lang.Closure)}</p>
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@CompileStatic
+@Slf4j
+class TaskExecutors {
+
+    /**
+     * The value of the {@link Settings#SETTING_TASK_EXECUTOR} setting that enables virtual threads
+     */
+    public static final String VIRTUAL = "virtual"
+
+    /**
+     * The value of the {@link Settings#SETTING_TASK_EXECUTOR} setting that uses the default thread pools
+     */
+    public static final String DEFAULT = "default"
+
+    private static final Map<Datastore, ConfiguredExecutor> DATASTORE_EXECUTORS = new ConcurrentHashMap<Datastore, ConfiguredExecutor>()
+
+    private static volatile Executor executor
+    private static volatile boolean resolved
+    private static volatile boolean registered
+
+    /**
+     * @return The configured executor or null if the default thread pools should be used
+     */
+    static Executor getExecutor() {
+        if(!resolved) {
+            synchronized (TaskExecutors) {
+                if(!resolved) {
+                    executor = propagateTenant(resolveExecutor(System.getProperty(Settings.SETTING_TASK_EXECUTOR)))
+                    resolved = true
+                }
+            }
+        }
+        return executor
+    }
+
+    /**
+     * Obtains the executor for the operations of the given datastore
+     *
+     * @param datastore The datastore
+     * @return The executor configured for the datastore, or else the executor returned by {@link #getExecutor()}
+     */
+    static Executor getExecutor(Datastore datastore) {
+        if(!registered && datastore != null) {
+            ConfiguredExecutor configured = DATASTORE_EXECUTORS.get(datastore)
+            if(configured != null) {
+                return configured.executor
+            }
+        }
+        return getExecutor()
+    }
+
+    /**
+     * Registers the executor to use for blocking GORM operations
+     *
+     * @param taskExecutor The executor or null to use the default thread pools
+     */
+    static synchronized void setExecutor(Executor taskExecutor) {
+        if(taskExecutor instanceof TenantPropagatingExecutor || taskExecutor == null) {
+            executor = taskExecutor
+        }
+        else {
+            executor = new TenantPropagatingExecutor(taskExecutor)
+        }
+        resolved = true
+        registered = true
+    }
+
+    /**
+     * Configures the executor of the given datastore from the {@link Settings#SETTING_TASK_EXECUTOR} setting of its configuration. Configurations that do not
+     * specify the setting are ignored, leaving the datastore to use the executor returned by {@link #getExecutor()}
+     *
+     * @param datastore The datastore
+     * @param taskExecutorConfiguration The datastore configuration
+     */
+    static void configure(Datastore datastore, PropertyResolver taskExecutorConfiguration) {
+        if(datastore == null || taskExecutorConfiguration == null || !taskExecutorConfiguration.containsProperty(Settings.SETTING_TASK_EXECUTOR)) {
+            return
+        }
+        Executor datastoreExecutor = propagateTenant(resolveExecutor(taskExecutorConfiguration.getProperty(Settings.SETTING_TASK_EXECUTOR, String, null)))
+        DATASTORE_EXECUTORS.put(datastore, new ConfiguredExecutor(datastoreExecutor))
+    }
+
+    /**
+     * Discards the executor configured for the given datastore
+     *
+     * @param datastore The datastore
+     */
+    static void remove(Datastore datastore) {
+        if(datastore != null) {
+            DATASTORE_EXECUTORS.remove(datastore)
+        }
+    }
+
+    /**
+     * Discards the configured executors such that they are resolved again on next use
+     */
+    static synchronized void reset() {
+        executor = null
+        resolved = false
+        registered = false
+        DATASTORE_EXECUTORS.clear()
+    }
+
+    private static Executor propagateTenant(Executor target) {
+        return target != null ? new TenantPropagatingExecutor(target) : null
+    }
+
+    private static Executor resolveExecutor(String setting) {
+        if(setting != null && setting.trim().length() > 0) {
+            setting = setting.trim()
+            if(DEFAULT.equalsIgnoreCase(setting)) {
+                return null
+            }
+            TaskExecutorFactory factory
+            if(VIRTUAL.equalsIgnoreCase(setting)) {
+                factory = new VirtualThreadTaskExecutorFactory()
+            }
+            else {
+                Class factoryClass = ClassUtils.resolveClassName(setting, TaskExecutors.classLoader)
+                factory = (TaskExecutorFactory) factoryClass.newInstance()
+            }
+            if(factory.isAvailable()) {
+                return factory.createExecutor()
+            }
+            else {
+                log.warn("Task executor [$setting] is not available in the current runtime, falling back to the default thread pools")
+                return null
+            }
+        }
+
+        for(TaskExecutorFactory factory in ServiceLoader.load(TaskExecutorFactory, TaskExecutors.classLoader)) {
+            if(factory.isAvailable()) {
+                return factory.createExecutor()
+            }
+        }
+        return null
+    }
+
+    /**
+     * The executor configured for a datastore, which is null if the datastore is configured to use the default thread pools
+     */
+    private static class ConfiguredExecutor {
+        final Executor executor
+
+        ConfiguredExecutor(Executor executor) {
+            this.executor = executor
+        }
+    }
+
+    /**
+     * Runs tasks on a target executor with the tenant id of the submitting thread
+     */
+    private static class TenantPropagatingExecutor implements Executor {
+        private final Executor target
+
+        TenantPropagatingExecutor(Executor target) {
+            this.target = target
+        }
+
+        @Override
+        void execute(Runnable command) {
+            target.execute(Tenants.propagateCurrentTenant(command))
+        }
+    }
+}
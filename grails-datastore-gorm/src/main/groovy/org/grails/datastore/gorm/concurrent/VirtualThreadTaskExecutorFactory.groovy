@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.gorm.concurrent
+
+import groovy.transform.CompileStatic
+import groovy.util.logging.Slf4j
+
+import java.lang.reflect.Method
+import java.util.concurrent.Executor
+import java.util.concurrent.ThreadFactory
+
+/**
+ * A {@link TaskExecutorFactory} that runs each task on a new virtual thread. Virtual threads are cheap to create and block without holding on to a platform thread,
+ * hence there is no pool to size and tens of thousands of blocking datastore calls can be in flight at once.
+ *
+ * <p>Virtual threads require Java 21 or above. Since GORM is compiled for earlier versions of Java the virtual thread builder is obtained reflectively and {@link #isAvailable()}
+ * returns false on older runtimes.</p>
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@CompileStatic
+@Slf4j
+class VirtualThreadTaskExecutorFactory implements TaskExecutorFactory {
+
+    /**
+     * The prefix of the names of the virtual threads
+     */
+    public static final String THREAD_NAME_PREFIX = "gorm-task-"
+
+    private static final ThreadFactory THREAD_FACTORY = createThreadFactory()
+
+    @Override
+    boolean isAvailable() {
+        return THREAD_FACTORY != null
+    }
+
+    @Override
+    Executor createExecutor() {
+        if(THREAD_FACTORY == null) {
+            throw new IllegalStateException("Virtual threads are not supported by the current Java runtime")
+        }
+        return new VirtualThreadPerTaskExecutor(THREAD_FACTORY)
+    }
+
+    private static ThreadFactory createThreadFactory() {
+        try {
+            Method ofVirtual = Thread.getMethod("ofVirtual")
+            Object builder = ofVirtual.invoke(null)
+            Class builderType = Class.forName('java.lang.Thread$Builder')
+            builder = builderType.getMethod("name", String, long).invoke(builder, THREAD_NAME_PREFIX, 0L)
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder)
+        } catch (NoSuchMethodException ignored) {
+            return null
+        } catch (ClassNotFoundException ignored) {
+            return null
+        } catch (Throwable e) {
+            log.debug("Virtual threads are not available: ${e.message}", e)
+            return null
+        }
+    }
+
+    /**
+     * Starts a new thread for every task
+     */
+    private static class VirtualThreadPerTaskExecutor implements Executor {
+        private final ThreadFactory threadFactory
+
+        VirtualThreadPerTaskExecutor(ThreadFactory threadFactory) {
+            this.threadFactory = threadFactory
+        }
+
+        @Override
+        void execute(Runnable command) {
+            threadFactory.newThread(command).start()
+        }
+    }
+}
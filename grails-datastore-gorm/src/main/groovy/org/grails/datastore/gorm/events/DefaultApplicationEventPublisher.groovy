@@ -1,57 +1,105 @@
 package org.grails.datastore.gorm.events
 
 import groovy.transform.CompileStatic
+import org.grails.datastore.mapping.engine.event.ListenerAwareEventPublisher
 import org.springframework.context.ApplicationEvent
 import org.springframework.context.ApplicationListener
 import org.springframework.context.PayloadApplicationEvent
 import org.springframework.context.event.SmartApplicationListener
 
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentMap
+
 /**
- * Simple implementation that just iterates over a sequence of listeners
+ * Simple implementation that dispatches events to a sequence of listeners. The listeners that support a given event
+ * and source type are computed once and cached in a dispatch table that is replaced whenever a listener is added.
  *
  * @author Graeme Rocher
  * @since 6.0
  */
 @CompileStatic
-class DefaultApplicationEventPublisher implements ConfigurableApplicationEventPublisher {
+class DefaultApplicationEventPublisher implements ConfigurableApplicationEventPublisher, ListenerAwareEventPublisher {
+
+    private volatile DispatchTable dispatchTable = new DispatchTable(new ApplicationListener[0])
 
-    private List<ApplicationListener> applicationListeners = []
     @Override
     void publishEvent(ApplicationEvent event) {
-        for(listener in applicationListeners) {
-            if(listener instanceof SmartApplicationListener) {
-                SmartApplicationListener smartApplicationListener = (SmartApplicationListener) listener
-                if( !smartApplicationListener.supportsEventType((Class<ApplicationEvent>)event.getClass()) ) {
-                    continue
-                }
-                else if(!smartApplicationListener.supportsSourceType(event.source.getClass())) {
-                    continue
-                }
-            }
-            listener.onApplicationEvent(event)
+        ApplicationListener[] listeners = dispatchTable.getListeners(event.getClass(), event.source.getClass())
+        for(int i = 0; i < listeners.length; i++) {
+            listeners[i].onApplicationEvent(event)
         }
     }
 
     @Override
     void publishEvent(Object event) {
-        for(listener in applicationListeners) {
-            def eventObject = new PayloadApplicationEvent<Object>(this, event)
-            if(listener instanceof SmartApplicationListener) {
-                SmartApplicationListener smartApplicationListener = (SmartApplicationListener) listener
-                if( !smartApplicationListener.supportsEventType((Class<ApplicationEvent>)eventObject.getClass()) ) {
-                    continue
-                }
-                else if(!smartApplicationListener.supportsSourceType(eventObject.source.getClass())) {
-                    continue
-                }
-            }
+        ApplicationListener[] listeners = dispatchTable.getListeners(PayloadApplicationEvent, getClass())
+        if(listeners.length == 0) {
+            return
+        }
 
-            listener.onApplicationEvent(eventObject)
+        def eventObject = new PayloadApplicationEvent<Object>(this, event)
+        for(int i = 0; i < listeners.length; i++) {
+            listeners[i].onApplicationEvent(eventObject)
         }
     }
 
     @Override
-    void addApplicationListener(ApplicationListener<?> listener) {
-        applicationListeners.add(listener)
+    boolean hasListeners(Class<? extends ApplicationEvent> eventType, Class<?> sourceType) {
+        return dispatchTable.getListeners(eventType, sourceType).length > 0
+    }
+
+    @Override
+    synchronized void addApplicationListener(ApplicationListener<?> listener) {
+        ApplicationListener[] current = dispatchTable.listeners
+        ApplicationListener[] listeners = Arrays.copyOf(current, current.length + 1)
+        listeners[current.length] = listener
+        dispatchTable = new DispatchTable(listeners)
+    }
+
+    /**
+     * An immutable list of listeners together with a lazily populated cache of the listeners supporting each event and
+     * source type
+     */
+    private static class DispatchTable {
+        final ApplicationListener[] listeners
+        private final ConcurrentMap<Class, ConcurrentMap<Class, ApplicationListener[]>> listenersByEventType = new ConcurrentHashMap<Class, ConcurrentMap<Class, ApplicationListener[]>>()
+
+        DispatchTable(ApplicationListener[] listeners) {
+            this.listeners = listeners
+        }
+
+        ApplicationListener[] getListeners(Class eventType, Class sourceType) {
+            ConcurrentMap<Class, ApplicationListener[]> listenersBySourceType = listenersByEventType.get(eventType)
+            if(listenersBySourceType == null) {
+                listenersBySourceType = new ConcurrentHashMap<Class, ApplicationListener[]>()
+                ConcurrentMap<Class, ApplicationListener[]> existing = listenersByEventType.putIfAbsent(eventType, listenersBySourceType)
+                if(existing != null) {
+                    listenersBySourceType = existing
+                }
+            }
+            ApplicationListener[] supporting = listenersBySourceType.get(sourceType)
+            if(supporting == null) {
+                supporting = resolveListeners(eventType, sourceType)
+                listenersBySourceType.put(sourceType, supporting)
+            }
+            return supporting
+        }
+
+        private ApplicationListener[] resolveListeners(Class eventType, Class sourceType) {
+            List<ApplicationListener> supporting = new ArrayList<ApplicationListener>(listeners.length)
+            for(listener in listeners) {
+                if(listener instanceof SmartApplicationListener) {
+                    SmartApplicationListener smartApplicationListener = (SmartApplicationListener) listener
+                    if( !smartApplicationListener.supportsEventType((Class<ApplicationEvent>)eventType) ) {
+                        continue
+                    }
+                    else if(!smartApplicationListener.supportsSourceType(sourceType)) {
+                        continue
+                    }
+                }
+                supporting.add(listener)
+            }
+            return supporting.toArray(new ApplicationListener[supporting.size()])
+        }
     }
 }
@@ -14,11 +14,13 @@
  */
 package org.grails.datastore.gorm.events;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
 import java.sql.Timestamp;
-import java.util.Arrays;
 import java.util.Date;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -44,7 +46,12 @@ import org.springframework.util.ReflectionUtils;
 public class DomainEventListener extends AbstractPersistenceEventListener
        implements MappingContext.Listener {
 
-    private Map<PersistentEntity, Map<String, Method>> entityEvents = new ConcurrentHashMap<PersistentEntity, Map<String, Method>>();
+    private static final MethodType EVENT_METHOD_TYPE = MethodType.methodType(Object.class, Object.class, ApplicationEvent.class);
+
+    /**
+     * The event methods of each entity indexed by {@link EventType#ordinal()}. Entities without any event methods are absent.
+     */
+    private Map<PersistentEntity, MethodHandle[]> entityEvents = new ConcurrentHashMap<PersistentEntity, MethodHandle[]>();
 
     @SuppressWarnings("rawtypes")
     public static final Class[] ZERO_PARAMS = {};
@@ -57,9 +64,6 @@ public class DomainEventListener extends AbstractPersistenceEventListener
     private static final String EVENT_AFTER_DELETE  = "afterDelete";
     private static final String EVENT_AFTER_LOAD    = "afterLoad";
 
-    private static final List<String> REFRESH_EVENTS = Arrays.asList(
-            EVENT_BEFORE_INSERT, EVENT_BEFORE_UPDATE, EVENT_BEFORE_DELETE);
-
     private final boolean autowireEntities;
 
     public DomainEventListener(final Datastore datastore) {
@@ -150,7 +154,7 @@ public class DomainEventListener extends AbstractPersistenceEventListener
             }
         }
 
-        return invokeEvent(EVENT_BEFORE_INSERT, entity, ea, event);
+        return invokeEvent(EventType.PreInsert, entity, ea, event);
     }    
 
     protected void setVersion(final EntityAccess ea) {
@@ -167,19 +171,19 @@ public class DomainEventListener extends AbstractPersistenceEventListener
     }
 
     public boolean beforeUpdate(final PersistentEntity entity, final EntityAccess ea) {
-        return invokeEvent(EVENT_BEFORE_UPDATE, entity, ea, null);
+        return invokeEvent(EventType.PreUpdate, entity, ea, null);
     }
 
     public boolean beforeUpdate(final PersistentEntity entity, final EntityAccess ea, PreUpdateEvent event) {
-        return invokeEvent(EVENT_BEFORE_UPDATE, entity, ea, event);
+        return invokeEvent(EventType.PreUpdate, entity, ea, event);
     }    
 
     public boolean beforeDelete(final PersistentEntity entity, final EntityAccess ea) {
-        return invokeEvent(EVENT_BEFORE_DELETE, entity, ea, null);
+        return invokeEvent(EventType.PreDelete, entity, ea, null);
     }
 
     public boolean beforeDelete(final PersistentEntity entity, final EntityAccess ea, PreDeleteEvent event) {
-        return invokeEvent(EVENT_BEFORE_DELETE, entity, ea, event);
+        return invokeEvent(EventType.PreDelete, entity, ea, event);
     }    
 
     public void beforeLoad(final PersistentEntity entity, final EntityAccess ea) {
@@ -187,7 +191,7 @@ public class DomainEventListener extends AbstractPersistenceEventListener
     }
 
     public void beforeLoad(final PersistentEntity entity, final EntityAccess ea, PreLoadEvent event) {
-        invokeEvent(EVENT_BEFORE_LOAD, entity, ea, event);
+        invokeEvent(EventType.PreLoad, entity, ea, event);
     }
 
     public void afterDelete(final PersistentEntity entity, final EntityAccess ea) {
@@ -195,7 +199,7 @@ public class DomainEventListener extends AbstractPersistenceEventListener
     }
 
     public void afterDelete(final PersistentEntity entity, final EntityAccess ea, PostDeleteEvent event) {
-        invokeEvent(EVENT_AFTER_DELETE, entity, ea, event);
+        invokeEvent(EventType.PostDelete, entity, ea, event);
     }    
 
     public void afterInsert(final PersistentEntity entity, final EntityAccess ea) {
@@ -204,7 +208,7 @@ public class DomainEventListener extends AbstractPersistenceEventListener
 
     public void afterInsert(final PersistentEntity entity, final EntityAccess ea, PostInsertEvent event) {
         activateDirtyChecking(ea);
-        invokeEvent(EVENT_AFTER_INSERT, entity, ea, event);
+        invokeEvent(EventType.PostInsert, entity, ea, event);
     }
 
     private void activateDirtyChecking(EntityAccess ea) {
@@ -220,7 +224,7 @@ public class DomainEventListener extends AbstractPersistenceEventListener
 
     public void afterUpdate(final PersistentEntity entity, final EntityAccess ea, PostUpdateEvent event) {
         activateDirtyChecking(ea); // reset dirty checking
-        invokeEvent(EVENT_AFTER_UPDATE, entity, ea, event);
+        invokeEvent(EventType.PostUpdate, entity, ea, event);
     }
 
     public void afterLoad(final PersistentEntity entity, final EntityAccess ea) {
@@ -232,7 +236,7 @@ public class DomainEventListener extends AbstractPersistenceEventListener
         if (autowireEntities || ( entity != null &&  entity.getMapping().getMappedForm().isAutowire() )) {
             autowireBeanProperties(ea.getEntity());
         }
-        invokeEvent(EVENT_AFTER_LOAD, entity, ea, event);
+        invokeEvent(EventType.PostLoad, entity, ea, event);
     }
 
     protected void autowireBeanProperties(final Object entity) {
@@ -261,27 +265,30 @@ public class DomainEventListener extends AbstractPersistenceEventListener
         return AbstractPersistenceEvent.class.isAssignableFrom(eventType);
     }
 
-    private boolean invokeEvent(String eventName, PersistentEntity entity, EntityAccess ea, ApplicationEvent event) {
-        final Map<String, Method> events = entityEvents.get(entity);
+    private boolean invokeEvent(EventType eventType, PersistentEntity entity, EntityAccess ea, ApplicationEvent event) {
+        if (entity == null) {
+            return true;
+        }
+        final MethodHandle[] events = entityEvents.get(entity);
         if (events == null) {
             return true;
         }
 
-        final Method eventMethod = events.get(eventName);
+        final MethodHandle eventMethod = events[eventType.ordinal()];
         if (eventMethod == null) {
             return true;
         }
 
-        
         final Object result;
         if(ea != null) {
-            final Object o = ea.getEntity();
-
-            if (eventMethod.getParameterTypes().length == 1) {
-                result = ReflectionUtils.invokeMethod(eventMethod, o, event);
-            }
-            else {
-                result = ReflectionUtils.invokeMethod(eventMethod, o);
+            try {
+                result = eventMethod.invokeExact(ea.getEntity(), event);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new UndeclaredThrowableException(e);
             }
         }
         else {
@@ -289,31 +296,61 @@ public class DomainEventListener extends AbstractPersistenceEventListener
         }
 
         boolean booleanResult = (result instanceof Boolean) ? (Boolean)result : true;
-        if (booleanResult && REFRESH_EVENTS.contains(eventName)) {
+        if (booleanResult && isRefreshEvent(eventType)) {
             ea.refresh();
         }
         return booleanResult;
     }
 
+    private static boolean isRefreshEvent(EventType eventType) {
+        return eventType == EventType.PreInsert || eventType == EventType.PreUpdate || eventType == EventType.PreDelete;
+    }
+
     private void createEventCaches(PersistentEntity entity) {
         Class<?> javaClass = entity.getJavaClass();
-        final ConcurrentHashMap<String, Method> events = new ConcurrentHashMap<String, Method>();
-        entityEvents.put(entity, events);
-
-        findAndCacheEvent(EVENT_BEFORE_INSERT, javaClass, events);
-        findAndCacheEvent(EVENT_BEFORE_UPDATE, javaClass, events);
-        findAndCacheEvent(EVENT_BEFORE_DELETE, javaClass, events);
-        findAndCacheEvent(EVENT_BEFORE_LOAD,   javaClass, events);
-        findAndCacheEvent(EVENT_AFTER_INSERT,  javaClass, events);
-        findAndCacheEvent(EVENT_AFTER_UPDATE,  javaClass, events);
-        findAndCacheEvent(EVENT_AFTER_DELETE,  javaClass, events);
-        findAndCacheEvent(EVENT_AFTER_LOAD,    javaClass, events);
+        final MethodHandle[] events = new MethodHandle[EventType.values().length];
+
+        boolean found = findAndCacheEvent(EVENT_BEFORE_INSERT, EventType.PreInsert, javaClass, events);
+        found |= findAndCacheEvent(EVENT_BEFORE_UPDATE, EventType.PreUpdate,  javaClass, events);
+        found |= findAndCacheEvent(EVENT_BEFORE_DELETE, EventType.PreDelete,  javaClass, events);
+        found |= findAndCacheEvent(EVENT_BEFORE_LOAD,   EventType.PreLoad,    javaClass, events);
+        found |= findAndCacheEvent(EVENT_AFTER_INSERT,  EventType.PostInsert, javaClass, events);
+        found |= findAndCacheEvent(EVENT_AFTER_UPDATE,  EventType.PostUpdate, javaClass, events);
+        found |= findAndCacheEvent(EVENT_AFTER_DELETE,  EventType.PostDelete, javaClass, events);
+        found |= findAndCacheEvent(EVENT_AFTER_LOAD,    EventType.PostLoad,   javaClass, events);
+
+        if (found) {
+            entityEvents.put(entity, events);
+        }
+        else {
+            entityEvents.remove(entity);
+        }
     }
 
-    private void findAndCacheEvent(String event, Class<?> javaClass, Map<String, Method> events) {
+    private boolean findAndCacheEvent(String event, EventType eventType, Class<?> javaClass, MethodHandle[] events) {
         final Method method = ReflectionUtils.findMethod(javaClass, event);
-        if (method != null) {
-            events.put(event, method);
+        if (method == null) {
+            return false;
+        }
+        events[eventType.ordinal()] = toEventHandle(method);
+        return true;
+    }
+
+    /**
+     * Adapts the given event method to a handle of type (Object, ApplicationEvent)Object. The event is dropped for
+     * methods that take no arguments.
+     */
+    private static MethodHandle toEventHandle(Method method) {
+        ReflectionUtils.makeAccessible(method);
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access event method [" + method + "]: " + e.getMessage(), e);
+        }
+        if (method.getParameterTypes().length == 0) {
+            handle = MethodHandles.dropArguments(handle, 1, ApplicationEvent.class);
         }
+        return handle.asType(EVENT_METHOD_TYPE);
     }
 }
@@ -16,10 +16,11 @@ package org.grails.datastore.gorm.finders;
 
 import grails.gorm.DetachedCriteria;
 import groovy.lang.Closure;
-import groovy.lang.MissingMethodException;
 
 import java.lang.reflect.Constructor;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -48,12 +49,10 @@ import org.grails.datastore.gorm.query.criteria.AbstractDetachedCriteria;
 import org.grails.datastore.mapping.core.Datastore;
 import org.grails.datastore.mapping.model.MappingContext;
 import org.grails.datastore.mapping.model.PersistentEntity;
-import org.grails.datastore.mapping.model.types.Basic;
 import org.grails.datastore.mapping.query.Query;
 import org.grails.datastore.mapping.query.api.BuildableCriteria;
 import org.grails.datastore.mapping.query.api.QueryArgumentsAware;
 import org.grails.datastore.mapping.reflect.ClassUtils;
-import org.springframework.core.convert.ConversionException;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
@@ -80,6 +79,8 @@ public abstract class DynamicFinder extends AbstractFinder implements QueryBuild
     public static final String ARGUMENT_IGNORE_CASE = "ignoreCase";
     public static final String ARGUMENT_CACHE = "cache";
     public static final String ARGUMENT_LOCK = "lock";
+    public static final String ARGUMENT_AFTER = "after";
+    public static final String ARGUMENT_KEYSET = "keyset";
     protected Pattern pattern;
 
     private static final String OPERATOR_OR = "Or";
@@ -91,11 +92,11 @@ public abstract class DynamicFinder extends AbstractFinder implements QueryBuild
     private static Pattern methodExpressinPattern;
 
     private static final Pattern[] defaultOperationPatterns;
-    private static final Object[] EMPTY_OBJECT_ARRAY = {};
 
     private static final String NOT = "Not";
     private static final Map<String, Constructor> methodExpressions = new LinkedHashMap<String, Constructor>();
     protected final MappingContext mappingContext;
+    private final ConcurrentMap<Class, ConcurrentMap<String, DynamicFinderInvocationTemplate>> invocationTemplates = new ConcurrentHashMap<Class, ConcurrentMap<String, DynamicFinderInvocationTemplate>>();
 
     static {
         defaultOperationPatterns = new Pattern[2];
@@ -235,6 +236,7 @@ public abstract class DynamicFinder extends AbstractFinder implements QueryBuild
      */
     public void setPattern(String pattern) {
         this.pattern = Pattern.compile(pattern);
+        invocationTemplates.clear();
     }
 
     /**
@@ -262,20 +264,53 @@ public abstract class DynamicFinder extends AbstractFinder implements QueryBuild
 
     public DynamicFinderInvocation createFinderInvocation(Class clazz, String methodName,
             Closure additionalCriteria, Object[] arguments) {
+        return getFinderInvocationTemplate(clazz, methodName).createInvocation(additionalCriteria, arguments);
+    }
 
-        List expressions = new ArrayList();
-        if (arguments == null) arguments = EMPTY_OBJECT_ARRAY;
-        else {
-            Object[] tmp = new Object[arguments.length];
-            System.arraycopy(arguments,0,tmp, 0, arguments.length);
-            arguments = tmp;
+    /**
+     * Obtains the template for the given method, parsing the method name with {@link #createFinderInvocationTemplate(Class, String)}
+     * on the first call only
+     *
+     * @param clazz The class
+     * @param methodName The method name
+     * @return The template
+     */
+    protected DynamicFinderInvocationTemplate getFinderInvocationTemplate(Class clazz, String methodName) {
+        ConcurrentMap<String, DynamicFinderInvocationTemplate> templates = invocationTemplates.get(clazz);
+        if (templates == null) {
+            templates = new ConcurrentHashMap<String, DynamicFinderInvocationTemplate>();
+            ConcurrentMap<String, DynamicFinderInvocationTemplate> existing = invocationTemplates.putIfAbsent(clazz, templates);
+            if (existing != null) {
+                templates = existing;
+            }
+        }
+        DynamicFinderInvocationTemplate template = templates.get(methodName);
+        if (template == null) {
+            template = createFinderInvocationTemplate(clazz, methodName);
+            DynamicFinderInvocationTemplate existing = templates.putIfAbsent(methodName, template);
+            if (existing != null) {
+                template = existing;
+            }
         }
+        return template;
+    }
+
+    /**
+     * Parses the given method name into a template that can be used to create invocations of the finder without
+     * parsing the method name again
+     *
+     * @param clazz The class
+     * @param methodName The method name
+     * @return The template
+     */
+    public DynamicFinderInvocationTemplate createFinderInvocationTemplate(Class clazz, String methodName) {
+        List<MethodExpression> expressions = new ArrayList<MethodExpression>();
         Matcher match = pattern.matcher(methodName);
         // find match
         match.find();
 
-        String[] queryParameters;
-        int totalRequiredArguments = 0;
+        MethodExpression booleanExpression = null;
+        Boolean booleanArgument = null;
         // get the sequence clauses
         final String querySequence;
         int groupCount = match.groupCount();
@@ -288,14 +323,12 @@ public abstract class DynamicFinder extends AbstractFinder implements QueryBuild
             else {
                 querySequence = match.group(5);
             }
-            Boolean arg = Boolean.TRUE;
+            booleanArgument = Boolean.TRUE;
             if (booleanProperty.matches("Not[A-Z].*")) {
                 booleanProperty = booleanProperty.substring(3);
-                arg = Boolean.FALSE;
+                booleanArgument = Boolean.FALSE;
             }
-            MethodExpression booleanExpression = findMethodExpression(clazz, booleanProperty);
-            booleanExpression.setArguments(new Object[]{arg});
-            expressions.add(booleanExpression);
+            booleanExpression = findMethodExpression(clazz, booleanProperty);
         }
         else {
             querySequence = match.group(2);
@@ -310,35 +343,9 @@ public abstract class DynamicFinder extends AbstractFinder implements QueryBuild
                     containsOperator = true;
                     operatorInUse = operators[i];
 
-                    queryParameters = querySequence.split(operatorInUse);
-
-                    // loop through query parameters and create expressions
-                    // calculating the number of arguments required for the expression
-                    int argumentCursor = 0;
-                    for (String queryParameter : queryParameters) {
-                        MethodExpression currentExpression = findMethodExpression(clazz, queryParameter);
-                        final int requiredArgs = currentExpression.getArgumentsRequired();
-                        // populate the arguments into the GrailsExpression from the argument list
-                        Object[] currentArguments = new Object[requiredArgs];
-                        if ((argumentCursor + requiredArgs) > arguments.length) {
-                            throw new MissingMethodException(methodName, clazz, arguments);
-                        }
-
-                        for (int k = 0; k < requiredArgs; k++, argumentCursor++) {
-                            currentArguments[k] = arguments[argumentCursor];
-                        }
-                        currentExpression = getInitializedExpression(currentExpression, currentArguments);
-                        PersistentEntity persistentEntity = mappingContext.getPersistentEntity(clazz.getName());
-
-                        try {
-                            currentExpression.convertArguments(persistentEntity);
-                        } catch (ConversionException e) {
-                            throw new MissingMethodException(methodName, clazz, arguments);
-                        }
-
-                        // add to list of expressions
-                        totalRequiredArguments += currentExpression.argumentsRequired;
-                        expressions.add(currentExpression);
+                    // create an expression for each query parameter
+                    for (String queryParameter : querySequence.split(operatorInUse)) {
+                        expressions.add(findMethodExpression(clazz, queryParameter));
                     }
                     break;
                 }
@@ -346,44 +353,12 @@ public abstract class DynamicFinder extends AbstractFinder implements QueryBuild
         }
         // otherwise there is only one expression
         if (!containsOperator && querySequence != null) {
-            MethodExpression solo =findMethodExpression(clazz,querySequence);
-
-            final int requiredArguments = solo.getArgumentsRequired();
-            if (requiredArguments  > arguments.length) {
-                throw new MissingMethodException(methodName,clazz,arguments);
-            }
-
-            totalRequiredArguments += requiredArguments;
-            Object[] soloArgs = new Object[requiredArguments];
-            System.arraycopy(arguments, 0, soloArgs, 0, requiredArguments);
-            solo = getInitializedExpression(solo, arguments);
-            PersistentEntity persistentEntity = mappingContext.getPersistentEntity(clazz.getName());
-            try {
-                solo.convertArguments(persistentEntity);
-            } catch (ConversionException e) {
-                if (!(persistentEntity.getPropertyByName(solo.propertyName) instanceof Basic)) {
-                    throw new MissingMethodException(methodName, clazz, arguments);
-                }
-            }
-            expressions.add(solo);
-        }
-
-        // if the total of all the arguments necessary does not equal the number of arguments
-        // throw exception
-        if (totalRequiredArguments > arguments.length) {
-            throw new MissingMethodException(methodName,clazz,arguments);
-        }
-
-        // calculate the remaining arguments
-        Object[] remainingArguments = new Object[arguments.length - totalRequiredArguments];
-        if (remainingArguments.length > 0) {
-            for (int i = 0, j = totalRequiredArguments; i < remainingArguments.length; i++,j++) {
-                remainingArguments[i] = arguments[j];
-            }
+            expressions.add(findMethodExpression(clazz, querySequence));
         }
 
-        return new DynamicFinderInvocation(clazz, methodName, remainingArguments,
-                expressions, additionalCriteria, operatorInUse);
+        PersistentEntity persistentEntity = mappingContext.getPersistentEntity(clazz.getName());
+        return new DynamicFinderInvocationTemplate(clazz, methodName, persistentEntity,
+                booleanExpression, booleanArgument, expressions, operatorInUse);
     }
 
     public Object invoke(final Class clazz, String methodName, Object[] arguments) {
@@ -506,9 +481,16 @@ public abstract class DynamicFinder extends AbstractFinder implements QueryBuild
         if(argMap.containsKey(ARGUMENT_LOCK)) {
             query.lock(ClassUtils.getBooleanFromMap(ARGUMENT_LOCK, argMap));
         }
+        if (argMap.containsKey(ARGUMENT_FETCH_SIZE)) {
+            Integer fetchSize = conversionService.convert(argMap.get(ARGUMENT_FETCH_SIZE), Integer.class);
+            if (fetchSize != null) {
+                query.fetchSize(fetchSize);
+            }
+        }
 
+        final boolean keyset = isKeysetPaginated(argMap);
         final int max = maxParam == null ? -1 : maxParam;
-        final int offset = offsetParam == null ? -1 : offsetParam;
+        final int offset = offsetParam == null || keyset ? -1 : offsetParam;
         if (max > -1) {
             query.max(max);
         }
@@ -516,7 +498,8 @@ public abstract class DynamicFinder extends AbstractFinder implements QueryBuild
             query.offset(offset);
         }
         Object sortObject = argMap.get(ARGUMENT_SORT);
-        boolean ignoreCase = !argMap.containsKey(ARGUMENT_IGNORE_CASE) || ClassUtils.getBooleanFromMap(ARGUMENT_IGNORE_CASE, argMap);
+        // keyset pagination compares sort keys case sensitively, so the sort has to be case sensitive too
+        boolean ignoreCase = !keyset && (!argMap.containsKey(ARGUMENT_IGNORE_CASE) || ClassUtils.getBooleanFromMap(ARGUMENT_IGNORE_CASE, argMap));
 
         if (sortObject != null) {
             if(sortObject instanceof CharSequence) {
@@ -536,6 +519,17 @@ public abstract class DynamicFinder extends AbstractFinder implements QueryBuild
         }
     }
 
+    /**
+     * Whether the given arguments request keyset pagination, either with the "keyset" argument or by passing the
+     * continuation token of a previous page with the "after" argument
+     *
+     * @param argMap The query arguments
+     * @return True if keyset pagination is requested
+     */
+    public static boolean isKeysetPaginated(Map argMap) {
+        return argMap != null && (argMap.get(ARGUMENT_AFTER) != null || ClassUtils.getBooleanFromMap(ARGUMENT_KEYSET, argMap));
+    }
+
     /**
      * Applies sorting logic to the given query from the given map
      * @param query The query
@@ -730,23 +724,5 @@ public abstract class DynamicFinder extends AbstractFinder implements QueryBuild
         return propName.substring(0,1).toLowerCase(Locale.ENGLISH) + propName.substring(1);
     }
 
-    /**
-     * Initializes the arguments of the specified expression with the specified arguments.  If the
-     * expression is an Equal expression and the argument is null then a new expression is created
-     * and returned of type IsNull.
-     *
-     * @param expression expression to initialize
-     * @param arguments arguments to the expression
-     * @return the initialized expression
-     */
-    private MethodExpression getInitializedExpression(MethodExpression expression, Object[] arguments) {
-        if (expression instanceof Equal && arguments.length == 1 && arguments[0] == null) {
-            expression = new IsNull(expression.propertyName);
-        } else {
-            expression.setArguments(arguments);
-        }
-        return expression;
-    }
-
 
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.gorm.finders;
+
+import groovy.lang.MissingMethodException;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Dispatches dynamic finder calls for a single entity. The finder that matches a method name is resolved on the first
+ * call and cached, so that subsequent calls do not search the finders again. Calls are handed to
+ * {@link FinderMethod#invoke(Class, String, Object[])} so that datastore specific finders can still override how
+ * invocations are created and executed, while {@link DynamicFinder} caches the parsed form of each method name.
+ *
+ * Neither the finder nor the parsed method name hold any tenant or session state, since those are resolved when the
+ * query is executed, so the dispatcher can be used for multi tenant entities.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@SuppressWarnings("rawtypes")
+public class DynamicFinderDispatcher {
+
+    private final Class persistentClass;
+    private final List<FinderMethod> finders;
+    private final ConcurrentMap<String, FinderMethod> dispatchCache = new ConcurrentHashMap<String, FinderMethod>();
+
+    /**
+     * @param persistentClass The entity class
+     * @param finders The finders to dispatch to
+     */
+    public DynamicFinderDispatcher(Class persistentClass, List<FinderMethod> finders) {
+        this.persistentClass = persistentClass;
+        this.finders = finders != null ? finders : Collections.<FinderMethod>emptyList();
+    }
+
+    /**
+     * Resolves the arguments of a finder from the arguments passed to methodMissing, in the same way as the finder
+     * methods that used to be registered on the metaclass. A single Object[] argument holds the arguments of the
+     * finder itself, whereas an array of any other type is a single argument, for example for an InList expression
+     *
+     * @param args The arguments passed to methodMissing
+     * @return The arguments of the finder
+     */
+    public static Object[] resolveArguments(Object args) {
+        if (args == null) {
+            return new Object[]{null};
+        }
+        if (!(args instanceof Object[])) {
+            return new Object[]{args};
+        }
+        Object[] arguments = (Object[]) args;
+        if (arguments.length == 1 && arguments[0] != null && arguments[0].getClass() == Object[].class) {
+            Object[] spread = (Object[]) arguments[0];
+            if (spread.length == 1 && spread[0] instanceof Object[]) {
+                return (Object[]) spread[0];
+            }
+            return spread;
+        }
+        return arguments;
+    }
+
+    /**
+     * @param methodName The method name
+     * @return True if one of the finders handles the given method
+     */
+    public boolean isFinderMethod(String methodName) {
+        return resolve(methodName) != null;
+    }
+
+    /**
+     * Invokes the finder for the given method
+     *
+     * @param methodName The method name
+     * @param arguments The arguments
+     * @return The result of the finder
+     * @throws MissingMethodException If no finder handles the method or the arguments do not match it
+     */
+    public Object invoke(String methodName, Object[] arguments) {
+        FinderMethod finder = resolve(methodName);
+        if (finder == null) {
+            throw new MissingMethodException(methodName, persistentClass, arguments);
+        }
+        return finder.invoke(persistentClass, methodName, arguments);
+    }
+
+    /**
+     * @return The number of cached method names
+     */
+    public int size() {
+        return dispatchCache.size();
+    }
+
+    private FinderMethod resolve(String methodName) {
+        FinderMethod finder = dispatchCache.get(methodName);
+        if (finder != null) {
+            return finder;
+        }
+        for (FinderMethod candidate : finders) {
+            if (candidate.isMethodMatch(methodName)) {
+                FinderMethod existing = dispatchCache.putIfAbsent(methodName, candidate);
+                return existing != null ? existing : candidate;
+            }
+        }
+        return null;
+    }
+}
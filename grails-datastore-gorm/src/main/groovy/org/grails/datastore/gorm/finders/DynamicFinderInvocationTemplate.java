@@ -0,0 +1,248 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.gorm.finders;
+
+import groovy.lang.Closure;
+import groovy.lang.MissingMethodException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.grails.datastore.gorm.finders.MethodExpression.Equal;
+import org.grails.datastore.gorm.finders.MethodExpression.IsNull;
+import org.grails.datastore.mapping.model.PersistentEntity;
+import org.grails.datastore.mapping.model.types.Basic;
+import org.springframework.core.convert.ConversionException;
+
+/**
+ * The parsed form of a dynamic finder method name. Parsing the method name requires several regular expressions to be
+ * evaluated, so a template is created once per method and then used to create a {@link DynamicFinderInvocation} for
+ * each call, which only requires the method expressions to be instantiated with the arguments of the call.
+ *
+ * A template holds no state relating to the current tenant or session and can therefore be shared across threads.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class DynamicFinderInvocationTemplate {
+
+    private static final Object[] EMPTY_OBJECT_ARRAY = {};
+
+    private final Class javaClass;
+    private final String methodName;
+    private final PersistentEntity persistentEntity;
+    private final ExpressionTemplate booleanExpression;
+    private final Object booleanArgument;
+    private final ExpressionTemplate[] expressions;
+    private final String operator;
+    private final int requiredArguments;
+
+    DynamicFinderInvocationTemplate(Class javaClass, String methodName, PersistentEntity persistentEntity,
+                                    MethodExpression booleanExpression, Object booleanArgument,
+                                    List<MethodExpression> expressions, String operator) {
+        this.javaClass = javaClass;
+        this.methodName = methodName;
+        this.persistentEntity = persistentEntity;
+        this.booleanExpression = booleanExpression != null ? new ExpressionTemplate(booleanExpression) : null;
+        this.booleanArgument = booleanArgument;
+        this.expressions = new ExpressionTemplate[expressions.size()];
+        int required = 0;
+        for (int i = 0; i < this.expressions.length; i++) {
+            MethodExpression expression = expressions.get(i);
+            this.expressions[i] = new ExpressionTemplate(expression);
+            required += expression.getArgumentsRequired();
+        }
+        this.operator = operator;
+        this.requiredArguments = required;
+    }
+
+    /**
+     * @return The class the finder is invoked on
+     */
+    public Class getJavaClass() {
+        return javaClass;
+    }
+
+    /**
+     * @return The finder method name
+     */
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * @return The logical operator between the expressions or null if there is a single expression
+     */
+    public String getOperator() {
+        return operator;
+    }
+
+    /**
+     * @return The number of arguments required by the expressions of the method
+     */
+    public int getRequiredArguments() {
+        return requiredArguments;
+    }
+
+    /**
+     * Creates an invocation of the finder for the given arguments
+     *
+     * @param additionalCriteria Additional criteria to apply or null
+     * @param arguments The arguments of the call
+     * @return The invocation
+     * @throws MissingMethodException If the arguments do not satisfy the expressions of the method
+     */
+    public DynamicFinderInvocation createInvocation(Closure additionalCriteria, Object[] arguments) {
+        if (arguments == null) arguments = EMPTY_OBJECT_ARRAY;
+        else {
+            Object[] tmp = new Object[arguments.length];
+            System.arraycopy(arguments, 0, tmp, 0, arguments.length);
+            arguments = tmp;
+        }
+
+        List<MethodExpression> methodExpressions = new ArrayList<MethodExpression>(expressions.length + 1);
+        if (booleanExpression != null) {
+            MethodExpression expression = booleanExpression.newExpression();
+            expression.setArguments(new Object[]{booleanArgument});
+            methodExpressions.add(expression);
+        }
+
+        int totalRequiredArguments = 0;
+        if (operator != null) {
+            // populate the arguments of each expression from the argument list
+            int argumentCursor = 0;
+            for (ExpressionTemplate template : expressions) {
+                MethodExpression currentExpression = template.newExpression();
+                final int requiredArgs = currentExpression.getArgumentsRequired();
+                Object[] currentArguments = new Object[requiredArgs];
+                if ((argumentCursor + requiredArgs) > arguments.length) {
+                    throw new MissingMethodException(methodName, javaClass, arguments);
+                }
+
+                for (int k = 0; k < requiredArgs; k++, argumentCursor++) {
+                    currentArguments[k] = arguments[argumentCursor];
+                }
+                currentExpression = getInitializedExpression(currentExpression, currentArguments);
+
+                try {
+                    currentExpression.convertArguments(persistentEntity);
+                } catch (ConversionException e) {
+                    throw new MissingMethodException(methodName, javaClass, arguments);
+                }
+
+                totalRequiredArguments += currentExpression.argumentsRequired;
+                methodExpressions.add(currentExpression);
+            }
+        }
+        else if (expressions.length == 1) {
+            MethodExpression solo = expressions[0].newExpression();
+
+            final int requiredArgs = solo.getArgumentsRequired();
+            if (requiredArgs > arguments.length) {
+                throw new MissingMethodException(methodName, javaClass, arguments);
+            }
+
+            totalRequiredArguments += requiredArgs;
+            solo = getInitializedExpression(solo, arguments);
+            try {
+                solo.convertArguments(persistentEntity);
+            } catch (ConversionException e) {
+                if (!(persistentEntity.getPropertyByName(solo.propertyName) instanceof Basic)) {
+                    throw new MissingMethodException(methodName, javaClass, arguments);
+                }
+            }
+            methodExpressions.add(solo);
+        }
+
+        // if the total of all the arguments necessary does not equal the number of arguments
+        // throw exception
+        if (totalRequiredArguments > arguments.length) {
+            throw new MissingMethodException(methodName, javaClass, arguments);
+        }
+
+        // calculate the remaining arguments
+        Object[] remainingArguments = new Object[arguments.length - totalRequiredArguments];
+        if (remainingArguments.length > 0) {
+            System.arraycopy(arguments, totalRequiredArguments, remainingArguments, 0, remainingArguments.length);
+        }
+
+        return new DynamicFinderInvocation(javaClass, methodName, remainingArguments,
+                methodExpressions, additionalCriteria, operator);
+    }
+
+    /**
+     * Initializes the arguments of the specified expression with the specified arguments.  If the
+     * expression is an Equal expression and the argument is null then a new expression is created
+     * and returned of type IsNull.
+     *
+     * @param expression expression to initialize
+     * @param arguments arguments to the expression
+     * @return the initialized expression
+     */
+    private static MethodExpression getInitializedExpression(MethodExpression expression, Object[] arguments) {
+        if (expression instanceof Equal && arguments.length == 1 && arguments[0] == null) {
+            expression = new IsNull(expression.propertyName);
+        } else {
+            expression.setArguments(arguments);
+        }
+        return expression;
+    }
+
+    /**
+     * Creates new instances of a parsed method expression through a method handle of its constructor, which is
+     * resolved once when the template is created
+     */
+    private static class ExpressionTemplate {
+        private static final MethodType FACTORY_TYPE = MethodType.methodType(MethodExpression.class, Class.class, String.class);
+
+        private final MethodHandle factory;
+        private final Class<?> expressionClass;
+        private final Class<?> targetClass;
+        private final String propertyName;
+
+        ExpressionTemplate(MethodExpression expression) {
+            this.expressionClass = expression.getClass();
+            this.targetClass = expression.targetClass;
+            this.propertyName = expression.propertyName;
+            MethodHandle handle;
+            try {
+                handle = MethodHandles.lookup().unreflectConstructor(expressionClass.getConstructor(Class.class, String.class));
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("Method expression [" + expressionClass +
+                        "] does not provide a constructor that takes parameters of type Class and String", e);
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("Method expression [" + expressionClass +
+                        "] does not provide an accessible constructor that takes parameters of type Class and String", e);
+            }
+            this.factory = handle.asType(FACTORY_TYPE);
+        }
+
+        MethodExpression newExpression() {
+            try {
+                return (MethodExpression) factory.invokeExact(targetClass, propertyName);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Cannot create method expression [" + expressionClass +
+                        "] for property [" + propertyName + "]: " + e.getMessage(), e);
+            }
+        }
+    }
+}
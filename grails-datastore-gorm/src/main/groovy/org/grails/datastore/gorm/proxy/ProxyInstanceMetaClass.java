@@ -19,6 +19,7 @@ import groovy.lang.MetaClass;
 
 import java.io.Serializable;
 
+import org.grails.datastore.mapping.core.AbstractSession;
 import org.grails.datastore.mapping.core.Session;
 import org.springframework.dao.DataIntegrityViolationException;
 
@@ -63,7 +64,9 @@ public class ProxyInstanceMetaClass extends DelegatingMetaClass {
      */
     public Object getProxyTarget() {
         if (proxyTarget == null) {
-            proxyTarget = session.retrieve(getTheClass(), getKey());
+            proxyTarget = session instanceof AbstractSession ?
+                    ((AbstractSession) session).retrieveProxyTarget(getTheClass(), getKey()) :
+                    session.retrieve(getTheClass(), getKey());
             if (proxyTarget == null) {
                 throw new DataIntegrityViolationException(
                         "Error loading association [" + getKey() + "] of type [" + getTheClass() +
@@ -20,6 +20,10 @@ import groovy.util.logging.Slf4j
 import org.grails.datastore.mapping.reflect.ClassUtils
 import org.springframework.beans.factory.config.BeanDefinition
 import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider
+import org.springframework.core.io.Resource
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver
+import org.springframework.core.io.support.ResourcePatternResolver
+import org.springframework.core.type.AnnotationMetadata
 import org.springframework.core.type.filter.AnnotationTypeFilter
 
 import java.lang.annotation.Annotation
@@ -48,6 +52,11 @@ class ClasspathEntityScanner {
      */
     List<String> ignoredPackages = ['com', 'net', '', 'org', 'java', 'javax', 'groovy']
 
+    /**
+     * Whether to read the entity indexes written at compile time instead of scanning the classpath roots that contain one
+     */
+    boolean useEntityIndex = false
+
     ClasspathEntityScanner() {
         if(ClassUtils.isPresent("grails.persistence.Entity")) {
             try {
@@ -64,8 +73,11 @@ class ClasspathEntityScanner {
      * @return The entities
      */
     Class[] scan(Package... packages) {
+        EntityIndex entityIndex = useEntityIndex ? EntityIndex.load(classLoader) : new EntityIndex(Collections.<EntityIndex.Entry>emptyList())
         ClassPathScanningCandidateComponentProvider componentProvider = new ClassPathScanningCandidateComponentProvider(false)
-        componentProvider.setMetadataReaderFactory(new AnnotationMetadataReaderFactory(classLoader))
+        AnnotationMetadataReaderFactory readerFactory = new AnnotationMetadataReaderFactory(classLoader)
+        ResourcePatternResolver resourcePatternResolver = new PathMatchingResourcePatternResolver(classLoader)
+        componentProvider.setMetadataReaderFactory(readerFactory)
         for(ann in annotations) {
             componentProvider.addIncludeFilter(new AnnotationTypeFilter(ann))
         }
@@ -76,12 +88,50 @@ class ClasspathEntityScanner {
                 log.error("Package [$packageName] will not be scanned as it is too generic and will slow down startup time. Use a more specific package")
             }
             else {
-                for (BeanDefinition candidate in componentProvider.findCandidateComponents(packageName)) {
-                    Class persistentEntity = Class.forName(candidate.beanClassName, false, classLoader )
-                    classes.add persistentEntity
+                if(entityIndex.isEmpty()) {
+                    for (BeanDefinition candidate in componentProvider.findCandidateComponents(packageName)) {
+                        Class persistentEntity = Class.forName(candidate.beanClassName, false, classLoader )
+                        classes.add persistentEntity
+                    }
+                    continue
+                }
+
+                for (EntityIndex.Entry entry in entityIndex.getEntries(packageName)) {
+                    try {
+                        Class persistentEntity = Class.forName(entry.className, false, classLoader)
+                        if(isAnnotatedEntity(persistentEntity)) {
+                            classes.add persistentEntity
+                        }
+                    } catch (ClassNotFoundException e) {
+                        log.debug("Ignoring stale entity index entry [${entry.className}]")
+                    }
+                }
+                // roots without an index are still scanned
+                String pattern = ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX +
+                        org.springframework.util.ClassUtils.convertClassNameToResourcePath(packageName) + '/**/*.class'
+                for (Resource resource in resourcePatternResolver.getResources(pattern)) {
+                    if(entityIndex.isIndexed(resource.URL)) {
+                        continue
+                    }
+                    AnnotationMetadata metadata = readerFactory.getMetadataReader(resource).annotationMetadata
+                    for(ann in annotations) {
+                        if(metadata.hasAnnotation(ann.name)) {
+                            classes.add Class.forName(metadata.className, false, classLoader)
+                            break
+                        }
+                    }
                 }
             }
         }
         return classes as Class[]
     }
+
+    private boolean isAnnotatedEntity(Class cls) {
+        for(ann in annotations) {
+            if(cls.getAnnotation(ann) != null) {
+                return true
+            }
+        }
+        return false
+    }
 }
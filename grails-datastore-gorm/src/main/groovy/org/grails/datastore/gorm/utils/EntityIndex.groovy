@@ -0,0 +1,337 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.datastore.gorm.utils
+
+import groovy.transform.CompileStatic
+import groovy.transform.EqualsAndHashCode
+import groovy.util.logging.Slf4j
+
+import java.lang.annotation.Annotation
+
+/**
+ * An index of the entities of a module written at compile time by {@link org.grails.compiler.gorm.GormEntityTransformation}.
+ * Each line of the index contains the class name of an entity followed by the tab separated datastore and connection
+ * qualifiers declared by the entity, if any.
+ *
+ * Reading the index avoids scanning the classpath roots that contain one for entities at startup, roots without an index
+ * are still scanned. Note that only entities compiled with the transformation are indexed, entities written in Java
+ * are not, which is why reading the index is opt-in: a module that mixes them should not rely on its index.
+ *
+ * @author Graeme Rocher
+ * @since 6.1
+ */
+@CompileStatic
+@Slf4j
+class EntityIndex implements Iterable<EntityIndex.Entry> {
+
+    /**
+     * The location of the index within a module
+     */
+    public static final String INDEX_LOCATION = "META-INF/grails-datastore/entities.idx"
+
+    /**
+     * The names of the annotations that mark a class as an entity
+     */
+    public static final List<String> ENTITY_ANNOTATIONS = Collections.unmodifiableList(['grails.gorm.annotation.Entity', 'grails.persistence.Entity', 'javax.persistence.Entity'])
+
+    private static final String SEPARATOR = "\t"
+    private static final String COMMENT = "#"
+    private static final String ENCODING = "UTF-8"
+
+    private final List<Entry> entries
+    private final Set<String> roots
+
+    /**
+     * @param entries The entries of the index
+     * @param roots The locations of the classpath roots the entries were read from
+     */
+    EntityIndex(Collection<Entry> entries, Collection<String> roots = Collections.<String>emptyList()) {
+        this.entries = Collections.unmodifiableList(new ArrayList<Entry>(entries))
+        this.roots = Collections.unmodifiableSet(new LinkedHashSet<String>(roots))
+    }
+
+    /**
+     * @return The locations of the classpath roots that contain an index
+     */
+    Set<String> getRoots() {
+        return roots
+    }
+
+    /**
+     * Whether the given resource is within a classpath root that contains an index, in which case the entities of the
+     * root are listed by the index and the resource does not need to be scanned
+     *
+     * @param resource The URL of the resource
+     * @return True if the root of the resource is indexed
+     */
+    boolean isIndexed(URL resource) {
+        String location = resource.toExternalForm()
+        for(root in roots) {
+            if(location.startsWith(root)) {
+                return true
+            }
+        }
+        return false
+    }
+
+    /**
+     * @return All of the entries of the index
+     */
+    List<Entry> getEntries() {
+        return entries
+    }
+
+    /**
+     * Finds the entries within the given package or any of its sub packages
+     *
+     * @param packageName The package name. An empty name matches every entry
+     * @return The entries
+     */
+    List<Entry> getEntries(String packageName) {
+        List<Entry> found = []
+        for(entry in entries) {
+            if(entry.isInPackage(packageName)) {
+                found.add(entry)
+            }
+        }
+        return found
+    }
+
+    /**
+     * @return Whether the index is empty
+     */
+    boolean isEmpty() {
+        return entries.isEmpty()
+    }
+
+    @Override
+    Iterator<Entry> iterator() {
+        return entries.iterator()
+    }
+
+    /**
+     * Loads and merges every index visible to the given class loader
+     *
+     * @param classLoader The class loader
+     * @return The index, empty if no module defines one
+     */
+    static EntityIndex load(ClassLoader classLoader) {
+        Map<String, Entry> entries = new LinkedHashMap<String, Entry>()
+        List<String> roots = []
+        Enumeration<URL> indexes
+        try {
+            indexes = classLoader.getResources(INDEX_LOCATION)
+        } catch (IOException e) {
+            log.warn("Error locating entity indexes: ${e.message}", e)
+            return new EntityIndex(Collections.<Entry>emptyList())
+        }
+        while(indexes.hasMoreElements()) {
+            URL url = indexes.nextElement()
+            try {
+                Reader reader = new InputStreamReader(url.openStream(), ENCODING)
+                try {
+                    for(entry in read(reader)) {
+                        if(!entries.containsKey(entry.className)) {
+                            entries.put(entry.className, entry)
+                        }
+                    }
+                } finally {
+                    reader.close()
+                }
+                String location = url.toExternalForm()
+                roots.add(location.substring(0, location.length() - INDEX_LOCATION.length()))
+            } catch (IOException e) {
+                log.warn("Error reading entity index [$url]: ${e.message}", e)
+            }
+        }
+        return new EntityIndex(entries.values(), roots)
+    }
+
+    /**
+     * Reads the entries of an index
+     *
+     * @param reader The reader
+     * @return The entries
+     */
+    static List<Entry> read(Reader reader) throws IOException {
+        List<Entry> entries = []
+        BufferedReader bufferedReader = new BufferedReader(reader)
+        String line
+        while((line = bufferedReader.readLine()) != null) {
+            Entry entry = Entry.parse(line)
+            if(entry != null) {
+                entries.add(entry)
+            }
+        }
+        return entries
+    }
+
+    /**
+     * Writes the given entries, ordered by class name
+     *
+     * @param writer The writer
+     * @param entries The entries
+     */
+    static void write(Writer writer, Collection<Entry> entries) throws IOException {
+        List<Entry> sorted = new ArrayList<Entry>(entries)
+        Collections.sort(sorted, new Comparator<Entry>() {
+            @Override
+            int compare(Entry e1, Entry e2) {
+                return e1.className <=> e2.className
+            }
+        })
+        writer.write(COMMENT + " Generated by GORM at compile time. Do not edit.\n")
+        for(entry in sorted) {
+            writer.write(entry.toString())
+            writer.write('\n')
+        }
+    }
+
+    /**
+     * Adds or replaces entries of the index within the given output directory. The index is read and written once, so
+     * the entries of a compilation should be added together
+     *
+     * @param outputDirectory The root directory of the compiled classes
+     * @param newEntries The entries
+     */
+    static synchronized void addEntries(File outputDirectory, Collection<Entry> newEntries) throws IOException {
+        File indexFile = new File(outputDirectory, INDEX_LOCATION)
+        Map<String, Entry> entries = new LinkedHashMap<String, Entry>()
+        if(indexFile.exists()) {
+            Reader reader = new InputStreamReader(new FileInputStream(indexFile), ENCODING)
+            try {
+                for(existing in read(reader)) {
+                    entries.put(existing.className, existing)
+                }
+            } finally {
+                reader.close()
+            }
+        }
+        boolean changed = false
+        for(entry in newEntries) {
+            if(entries.get(entry.className) != entry) {
+                entries.put(entry.className, entry)
+                changed = true
+            }
+        }
+        if(!changed) {
+            return
+        }
+
+        indexFile.parentFile.mkdirs()
+        Writer writer = new OutputStreamWriter(new FileOutputStream(indexFile), ENCODING)
+        try {
+            write(writer, entries.values())
+        } finally {
+            writer.close()
+        }
+    }
+
+    /**
+     * Whether the given class carries one of the entity annotations. Used to skip stale index entries
+     *
+     * @param cls The class
+     * @return True if it is an entity
+     */
+    static boolean isEntity(Class cls) {
+        for(Annotation annotation in cls.getAnnotations()) {
+            if(ENTITY_ANNOTATIONS.contains(annotation.annotationType().name)) {
+                return true
+            }
+        }
+        return false
+    }
+
+    /**
+     * An entry of the index
+     */
+    @EqualsAndHashCode
+    static class Entry {
+        /**
+         * The class name of the entity
+         */
+        final String className
+        /**
+         * The datastore the entity is mapped with or null if not specified
+         */
+        final String datastore
+        /**
+         * The connections the entity is mapped to, empty if not specified
+         */
+        final List<String> connections
+
+        Entry(String className, String datastore = null, List<String> connections = Collections.<String>emptyList()) {
+            this.className = className
+            this.datastore = datastore ?: null
+            this.connections = Collections.unmodifiableList(connections != null ? new ArrayList<String>(connections) : new ArrayList<String>())
+        }
+
+        /**
+         * @return The package name of the entity
+         */
+        String getPackageName() {
+            int i = className.lastIndexOf('.')
+            return i > -1 ? className.substring(0, i) : ''
+        }
+
+        /**
+         * @param packageName The package name
+         * @return Whether the entity is within the given package or any of its sub packages
+         */
+        boolean isInPackage(String packageName) {
+            if(!packageName) {
+                return true
+            }
+            return className.startsWith(packageName + '.')
+        }
+
+        /**
+         * Parses a line of the index
+         *
+         * @param line The line
+         * @return The entry or null if the line is blank or a comment
+         */
+        static Entry parse(String line) {
+            String trimmed = line.trim()
+            if(trimmed.length() == 0 || trimmed.startsWith(COMMENT)) {
+                return null
+            }
+            String[] tokens = trimmed.split(SEPARATOR)
+            String datastore = tokens.length > 1 ? tokens[1].trim() : null
+            List<String> connections = []
+            if(tokens.length > 2) {
+                for(String connection in tokens[2].split(',')) {
+                    if(connection.trim()) {
+                        connections.add(connection.trim())
+                    }
+                }
+            }
+            return new Entry(tokens[0].trim(), datastore, connections)
+        }
+
+        @Override
+        String toString() {
+            if(datastore == null && connections.isEmpty()) {
+                return className
+            }
+            String line = className + SEPARATOR + (datastore ?: '')
+            if(!connections.isEmpty()) {
+                line += SEPARATOR + connections.join(',')
+            }
+            return line
+        }
+    }
+}
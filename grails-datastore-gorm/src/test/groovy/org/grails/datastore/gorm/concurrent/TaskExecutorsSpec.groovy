@@ -0,0 +1,139 @@
+package org.grails.datastore.gorm.concurrent
+
+import grails.gorm.multitenancy.Tenants
+import org.grails.datastore.mapping.config.Settings
+import org.grails.datastore.mapping.core.Datastore
+import org.grails.datastore.mapping.core.DatastoreUtils
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
+
+/**
+ * Tests for {@link TaskExecutors}
+ */
+class TaskExecutorsSpec extends Specification {
+
+    void cleanup() {
+        System.clearProperty(Settings.SETTING_TASK_EXECUTOR)
+        TaskExecutors.reset()
+    }
+
+    void "test no executor is configured by default"() {
+        expect:
+        TaskExecutors.executor == null
+    }
+
+    void "test the current tenant is propagated to tasks"() {
+        given:
+        TaskExecutors.executor = { Runnable r -> new Thread(r).start() } as Executor
+        def latch = new CountDownLatch(1)
+        def tenantId = null
+
+        when:
+        Tenants.CurrentTenant.withTenant("moe") {
+            TaskExecutors.executor.execute {
+                tenantId = Tenants.CurrentTenant.get()
+                latch.countDown()
+            }
+        }
+
+        then:
+        latch.await(5, TimeUnit.SECONDS)
+        tenantId == "moe"
+        Tenants.CurrentTenant.get() == null
+    }
+
+    void "test the default setting disables the executor"() {
+        given:
+        System.setProperty(Settings.SETTING_TASK_EXECUTOR, TaskExecutors.DEFAULT)
+
+        expect:
+        TaskExecutors.executor == null
+    }
+
+    void "test the setting is read from the datastore configuration"() {
+        given:
+        def datastore = Mock(Datastore)
+
+        when:
+        TaskExecutors.configure(datastore, DatastoreUtils.createPropertyResolver((Settings.SETTING_TASK_EXECUTOR): TaskExecutorsSpec.name + '$InlineTaskExecutorFactory'))
+        String threadName = null
+        TaskExecutors.getExecutor(datastore).execute {
+            threadName = Thread.currentThread().name
+        }
+
+        then:"the executor only applies to the operations of the datastore"
+        threadName == Thread.currentThread().name
+        TaskExecutors.executor == null
+    }
+
+    void "test datastores configured differently keep their own executors"() {
+        given:
+        def inline = Mock(Datastore)
+        def pooled = Mock(Datastore)
+        def unconfigured = Mock(Datastore)
+
+        when:
+        TaskExecutors.configure(inline, DatastoreUtils.createPropertyResolver((Settings.SETTING_TASK_EXECUTOR): TaskExecutorsSpec.name + '$InlineTaskExecutorFactory'))
+        TaskExecutors.configure(pooled, DatastoreUtils.createPropertyResolver((Settings.SETTING_TASK_EXECUTOR): TaskExecutors.DEFAULT))
+        TaskExecutors.configure(unconfigured, DatastoreUtils.createPropertyResolver([:]))
+
+        then:
+        TaskExecutors.getExecutor(inline) != null
+        TaskExecutors.getExecutor(pooled) == null
+        TaskExecutors.getExecutor(unconfigured) == null
+
+        when:"the datastore is closed"
+        TaskExecutors.remove(inline)
+
+        then:
+        TaskExecutors.getExecutor(inline) == null
+    }
+
+    void "test a registered executor takes precedence over the datastore configuration"() {
+        given:
+        def registered = { Runnable r -> new Thread(r).start() } as Executor
+        def datastore = Mock(Datastore)
+        TaskExecutors.executor = registered
+
+        when:
+        TaskExecutors.configure(datastore, DatastoreUtils.createPropertyResolver((Settings.SETTING_TASK_EXECUTOR): TaskExecutors.DEFAULT))
+
+        then:
+        TaskExecutors.getExecutor(datastore) != null
+        TaskExecutors.getExecutor(datastore).target.is(registered)
+    }
+
+    @Requires({ new VirtualThreadTaskExecutorFactory().isAvailable() })
+    void "test tasks run on virtual threads"() {
+        given:
+        System.setProperty(Settings.SETTING_TASK_EXECUTOR, TaskExecutors.VIRTUAL)
+        def latch = new CountDownLatch(1)
+        String threadName = null
+
+        when:
+        TaskExecutors.executor.execute {
+            threadName = Thread.currentThread().name
+            latch.countDown()
+        }
+
+        then:
+        latch.await(5, TimeUnit.SECONDS)
+        threadName.startsWith(VirtualThreadTaskExecutorFactory.THREAD_NAME_PREFIX)
+    }
+
+    static class InlineTaskExecutorFactory implements TaskExecutorFactory {
+        @Override
+        boolean isAvailable() {
+            return true
+        }
+
+        @Override
+        Executor createExecutor() {
+            return { Runnable r -> r.run() } as Executor
+        }
+    }
+}
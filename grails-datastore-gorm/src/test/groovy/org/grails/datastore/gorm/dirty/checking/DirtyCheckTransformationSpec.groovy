@@ -1,7 +1,9 @@
 package org.grails.datastore.gorm.dirty.checking
 
+import grails.gorm.dirty.checking.CompactChangeTracking
 import grails.gorm.dirty.checking.DirtyCheck
 import org.grails.datastore.mapping.dirty.checking.DirtyCheckable
+import org.grails.datastore.mapping.dirty.checking.IndexedChangedProperties
 import spock.lang.Ignore
 import spock.lang.Specification
 import spock.lang.Issue
@@ -390,6 +392,73 @@ class FundProduct {
             !(book.class.name in book.listDirtyPropertyNames())
             book.listDirtyPropertyNames().size() == 1
     }
+
+    void "Test compact change tracking records changes by property index"() {
+        given:"A book with compact change tracking"
+            def book = new CompactBook(title: "The Stand", pages: 100)
+            book.trackChanges()
+
+        expect:"The changes are recorded in an indexed state"
+            book.createDirtyCheckingState() instanceof IndexedChangedProperties
+            !book.hasChanged()
+
+        when:"Properties are updated, including to an equal value"
+            book.title = "It"
+            book.pages = 100
+            book.title = "Carrie"
+            book.author = "Stephen King"
+
+        then:"Only the changes are recorded with the values prior to the first change"
+            book.hasChanged()
+            book.hasChanged("title")
+            !book.hasChanged("pages")
+            book.listDirtyPropertyNames() == ["title", "author"]
+            book.getOriginalValue("title") == "The Stand"
+            book.getOriginalValue("author") == null
+
+        when:"Changes are tracked again"
+            book.trackChanges()
+
+        then:"The previous changes are discarded"
+            !book.hasChanged()
+            book.listDirtyPropertyNames().isEmpty()
+    }
+
+    void "Test compact change tracking records subclass properties by name"() {
+        given:"A subclass of a book with compact change tracking"
+            def book = new CompactKidsBook(title: "Matilda", age: 8)
+            book.trackChanges()
+
+        when:"Properties of the parent and the subclass are updated"
+            book.title = "The BFG"
+            book.age = 9
+
+        then:"Both are recorded"
+            book.listDirtyPropertyNames().sort() == ["age", "title"]
+            book.getOriginalValue("age") == 8
+            book.getOriginalValue("title") == "Matilda"
+    }
+}
+
+@DirtyCheck
+@CompactChangeTracking
+class CompactBook {
+    String title
+    int pages
+
+    private String author
+
+    void setAuthor(String author) {
+        this.author = author
+    }
+    String getAuthor() {
+        return this.author
+    }
+}
+
+@DirtyCheck
+class CompactKidsBook extends CompactBook {
+    int age
 }
 
 @DirtyCheck
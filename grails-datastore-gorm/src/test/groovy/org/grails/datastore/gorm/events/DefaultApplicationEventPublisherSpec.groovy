@@ -0,0 +1,101 @@
+package org.grails.datastore.gorm.events
+
+import org.springframework.context.ApplicationEvent
+import org.springframework.context.ApplicationListener
+import org.springframework.context.PayloadApplicationEvent
+import org.springframework.context.event.SmartApplicationListener
+import spock.lang.Specification
+
+/**
+ * Tests for {@link DefaultApplicationEventPublisher}
+ */
+class DefaultApplicationEventPublisherSpec extends Specification {
+
+    void "test events are dispatched only to listeners supporting the event and source type"() {
+        given:
+        def publisher = new DefaultApplicationEventPublisher()
+        def received = []
+        publisher.addApplicationListener(new RecordingListener(TestEvent, String, 'smart', received))
+        publisher.addApplicationListener({ ApplicationEvent e -> received << 'plain' } as ApplicationListener)
+
+        when:
+        publisher.publishEvent(new TestEvent("source"))
+        publisher.publishEvent(new TestEvent(1L))
+
+        then:
+        received == ['smart', 'plain', 'plain']
+    }
+
+    void "test the dispatch table is rebuilt when a listener is added"() {
+        given:
+        def publisher = new DefaultApplicationEventPublisher()
+        def received = []
+
+        expect:
+        !publisher.hasListeners(TestEvent, String)
+
+        when:
+        publisher.publishEvent(new TestEvent("source"))
+        publisher.addApplicationListener(new RecordingListener(TestEvent, String, 'smart', received))
+        publisher.publishEvent(new TestEvent("source"))
+
+        then:
+        received == ['smart']
+        publisher.hasListeners(TestEvent, String)
+        !publisher.hasListeners(TestEvent, Long)
+    }
+
+    void "test payload events are only created when a listener wants them"() {
+        given:
+        def publisher = new DefaultApplicationEventPublisher()
+        def received = []
+
+        when:
+        publisher.publishEvent((Object) "payload")
+        publisher.addApplicationListener({ ApplicationEvent e -> received << ((PayloadApplicationEvent) e).payload } as ApplicationListener)
+        publisher.publishEvent((Object) "payload")
+
+        then:
+        received == ['payload']
+    }
+
+    static class TestEvent extends ApplicationEvent {
+        TestEvent(Object source) {
+            super(source)
+        }
+    }
+
+    static class RecordingListener implements SmartApplicationListener {
+        final Class eventType
+        final Class sourceType
+        final String name
+        final List received
+
+        RecordingListener(Class eventType, Class sourceType, String name, List received) {
+            this.eventType = eventType
+            this.sourceType = sourceType
+            this.name = name
+            this.received = received
+        }
+
+        @Override
+        boolean supportsEventType(Class<? extends ApplicationEvent> type) {
+            eventType.isAssignableFrom(type)
+        }
+
+        @Override
+        boolean supportsSourceType(Class<?> type) {
+            sourceType.isAssignableFrom(type)
+        }
+
+        @Override
+        void onApplicationEvent(ApplicationEvent event) {
+            received << name
+        }
+
+        @Override
+        int getOrder() {
+            0
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.grails.datastore.gorm.utils
+
+import org.codehaus.groovy.control.CompilerConfiguration
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+/**
+ * Tests for {@link EntityIndex}
+ */
+class EntityIndexSpec extends Specification {
+
+    File outputDirectory = Files.createTempDirectory("entity-index").toFile()
+
+    void cleanup() {
+        outputDirectory.deleteDir()
+    }
+
+    void "test entries are parsed with their qualifiers"() {
+        when:
+        def entries = EntityIndex.read(new StringReader("""# comment
+com.example.Book
+com.example.Author\tmongo
+com.example.Order\t\tone,two
+
+"""))
+
+        then:
+        entries == [
+                new EntityIndex.Entry("com.example.Book"),
+                new EntityIndex.Entry("com.example.Author", "mongo"),
+                new EntityIndex.Entry("com.example.Order", null, ["one", "two"])
+        ]
+        entries[2].toString() == "com.example.Order\t\tone,two"
+    }
+
+    void "test entries are filtered by package"() {
+        given:
+        def index = new EntityIndex([new EntityIndex.Entry("com.example.Book"), new EntityIndex.Entry("com.example.sub.Author"), new EntityIndex.Entry("com.examples.Other"), new EntityIndex.Entry("Script")])
+
+        expect:
+        index.getEntries("com.example")*.className == ["com.example.Book", "com.example.sub.Author"]
+        index.getEntries("")*.className.size() == 4
+        index.entries.findAll { it.packageName.isEmpty() }*.className == ["Script"]
+    }
+
+    void "test entries are merged into an existing index and loaded from the class loader"() {
+        when:
+        EntityIndex.addEntries(outputDirectory, [new EntityIndex.Entry("com.example.Book")])
+        EntityIndex.addEntries(outputDirectory, [new EntityIndex.Entry("com.example.Author", "mongo"), new EntityIndex.Entry("com.example.Book", null, ["other"])])
+        def index = EntityIndex.load(new URLClassLoader([outputDirectory.toURI().toURL()] as URL[], (ClassLoader) null))
+
+        then:
+        index.entries == [
+                new EntityIndex.Entry("com.example.Author", "mongo"),
+                new EntityIndex.Entry("com.example.Book", null, ["other"])
+        ]
+    }
+
+    void "test only resources within a classpath root that contains an index are considered indexed"() {
+        given:
+        File otherDirectory = Files.createTempDirectory("entity-index-other").toFile()
+        EntityIndex.addEntries(outputDirectory, [new EntityIndex.Entry("com.example.Book")])
+
+        when:
+        def index = EntityIndex.load(new URLClassLoader([outputDirectory.toURI().toURL(), otherDirectory.toURI().toURL()] as URL[], (ClassLoader) null))
+
+        then:
+        index.isIndexed(new File(outputDirectory, "com/example/Book.class").toURI().toURL())
+        !index.isIndexed(new File(otherDirectory, "com/example/Author.class").toURI().toURL())
+
+        cleanup:
+        otherDirectory.deleteDir()
+    }
+
+    void "test the entity transformation writes the index to the compilation output directory"() {
+        given:
+        def configuration = new CompilerConfiguration()
+        configuration.targetDirectory = outputDirectory
+
+        when:
+        new GroovyClassLoader(getClass().classLoader, configuration).parseClass('''
+package indexed
+
+import grails.gorm.annotation.Entity
+
+@Entity
+class IndexedBook {
+    String title
+
+    static mapWith = "simple"
+    static mapping = {
+        connections "one", "two"
+    }
+}
+''')
+        def entries = new File(outputDirectory, EntityIndex.INDEX_LOCATION).withReader("UTF-8") { Reader reader -> EntityIndex.read(reader) }
+
+        then:
+        entries == [new EntityIndex.Entry("indexed.IndexedBook", "simple", ["one", "two"])]
+    }
+}